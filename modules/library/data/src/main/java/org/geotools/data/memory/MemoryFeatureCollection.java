@@ -16,8 +16,11 @@
  */
 package org.geotools.data.memory;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
 
@@ -25,9 +28,12 @@ import org.geotools.data.DataUtilities;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.feature.collection.AbstractFeatureCollection;
 import org.geotools.feature.collection.RandomFeatureAccess;
+import org.geotools.feature.visitor.ParallelCalc;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.FeatureVisitor;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.util.ProgressListener;
 
 /**
  * Implement a SimpleFeatureCollection by burning memory!
@@ -70,6 +76,18 @@ public class MemoryFeatureCollection extends AbstractFeatureCollection implement
         return new MemoryIterator(contents.values().iterator());
     }
 
+    @Override
+    public void accepts(FeatureVisitor visitor, ProgressListener progress) throws IOException {
+        // aggregates that can be split are computed in parallel over the in memory features
+        if (ParallelCalc.isParallelizable(visitor, contents.size())) {
+            List<SimpleFeature> features = new ArrayList<SimpleFeature>(contents.values());
+            if (ParallelCalc.visit(features, visitor, progress)) {
+                return;
+            }
+        }
+        super.accepts(visitor, progress);
+    }
+
     class MemoryIterator implements Iterator<SimpleFeature>, SimpleFeatureIterator {
         Iterator<SimpleFeature> it;
 
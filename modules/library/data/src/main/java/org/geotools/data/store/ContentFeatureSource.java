@@ -56,6 +56,7 @@ import org.geotools.factory.Hints;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.ParallelCalc;
 import org.geotools.filter.function.Collection_AverageFunction;
 import org.geotools.filter.function.Collection_BoundsFunction;
 import org.geotools.filter.function.Collection_MaxFunction;
@@ -790,6 +791,8 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
 
         //subclass could not handle, resort to manually walkign through
         FeatureReader<SimpleFeatureType, SimpleFeature> reader = getReader(query);
+        // mergeable aggregates are computed on batches of features while the reader moves on
+        ParallelCalc parallel = ParallelCalc.create(visitor);
         try{
             float size = progress instanceof NullProgressListener ? 0.0f : (float) getCount( query );
             float position = 0;
@@ -799,7 +802,11 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
                 if (size > 0) progress.progress( position++/size );
                 try {
                     feature = reader.next();
-                    visitor.visit(feature);
+                    if (parallel != null) {
+                        parallel.visit(feature);
+                    } else {
+                        visitor.visit(feature);
+                    }
                 }
                 catch( IOException erp ){
                     progress.exceptionOccurred( erp );
@@ -812,8 +819,20 @@ public abstract class ContentFeatureSource implements SimpleFeatureSource {
                             + ":" + unexpected, unexpected);
                 }
             }
+            if (parallel != null) {
+                try {
+                    parallel.complete();
+                } catch (IOException erp) {
+                    progress.exceptionOccurred(erp);
+                    throw erp;
+                }
+                parallel = null;
+            }
         }
         finally {
+            if (parallel != null) {
+                parallel.cancel();
+            }
             progress.complete();            
             reader.close();
         }
@@ -1572,12 +1572,37 @@ public final class JDBCDataStore extends ContentDataStore
         insert(Collections.singletonList(feature), featureType, cx);
     }
 
+    /**
+     * The maximum number of rows inserted by a single multi-row statement
+     */
+    static final int MAX_INSERT_ROWS = 1000;
+
+    /**
+     * The maximum number of parameters bound to a single multi-row prepared statement (the
+     * PostgreSQL protocol limit is 32767)
+     */
+    static final int MAX_INSERT_PARAMETERS = 32767;
+
     /**
      * Inserts a collection of new features into the database for a particular
      * feature type / table.
      */
     protected void insert(Collection<? extends SimpleFeature> features, SimpleFeatureType featureType, Connection cx)
         throws IOException {
+        PreparedStatementCache statements = new PreparedStatementCache(this, cx);
+        try {
+            insert(features, featureType, cx, statements);
+        } finally {
+            statements.close();
+        }
+    }
+
+    /**
+     * Inserts a collection of new features into the database for a particular feature type / table,
+     * reusing the prepared statements cached for the connection.
+     */
+    void insert(Collection<? extends SimpleFeature> features, SimpleFeatureType featureType,
+            Connection cx, PreparedStatementCache statements) throws IOException {
         PrimaryKey key = getPrimaryKey(featureType);
 
         // we do this in a synchronized block because we need to do two queries,
@@ -1588,7 +1613,7 @@ public final class JDBCDataStore extends ContentDataStore
                     Map<InsertionClassifier, Collection<SimpleFeature>> kinds =
                             InsertionClassifier.classify(featureType, features);
                     for (InsertionClassifier kind: kinds.keySet()) {
-                        insertPS(kinds.get(kind), kind, featureType, cx, key);
+                        insertPS(kinds.get(kind), kind, featureType, cx, key, statements);
                     }
                 } else {
                     Collection<SimpleFeature> useExistings = new ArrayList<>();
@@ -1611,58 +1636,34 @@ public final class JDBCDataStore extends ContentDataStore
      * Specialized insertion for dialects that are using prepared statements.
      */
     private void insertPS(Collection<SimpleFeature> features, InsertionClassifier kind,
-                          SimpleFeatureType featureType, Connection cx, PrimaryKey key)
+                          SimpleFeatureType featureType, Connection cx, PrimaryKey key,
+                          PreparedStatementCache statements)
             throws IOException, SQLException {
         final PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
 
         final KeysFetcher keysFetcher = KeysFetcher.create(this, cx,kind.useExisting, key);
 
-        final String sql = buildInsertPS(kind, featureType, keysFetcher, dialect);
-        LOGGER.log(Level.FINE, "Inserting new features with ps: {0}", sql);
-
-        //create the prepared statement
-        final PreparedStatement ps;
-        if (keysFetcher.isPostInsert()) {
-            // ask the DB to return the values of all the keys after the insertion
-            ps = cx.prepareStatement(sql, keysFetcher.getColumnNames());
-        } else {
-            ps = cx.prepareStatement(sql);
+        if (insertBulk(features, featureType, keysFetcher, cx)) {
+            return;
         }
-        try {
-            for (SimpleFeature feature : features) {
-                //set the attribute values
-                int i = 1;
-                for(AttributeDescriptor att : featureType.getAttributeDescriptors()) {
-                    String colName = att.getLocalName();
-                    // skip the pk columns in case we have exposed them, we grab the
-                    // value from the pk itself
-                    if(keysFetcher.isKey(colName)) {
-                        continue;
-                    }
 
-                    Class binding = att.getType().getBinding();
-
-                    Object value = feature.getAttribute(colName);
-                    if (value == null && !att.isNillable()) {
-                        throw new IOException("Cannot set a NULL value on the not null column " +
-                                colName);
-                    }
+        final String values = buildInsertValuesPS(kind, featureType, keysFetcher, dialect);
+        if (features.size() > 1 && dialect.isMultiRowInsertSupported()
+                && !keysFetcher.isPostInsert()) {
+            insertMultiRowPS(features, featureType, values, keysFetcher, cx, statements);
+            return;
+        }
 
-                    if (Geometry.class.isAssignableFrom(binding)) {
-                        Geometry g = (Geometry) value;
-                        int srid = getGeometrySRID(g, att);
-                        int dimension = getGeometryDimension(g, att);
-                        dialect.setGeometryValue(g, dimension, srid, binding, ps, i);
-                    } else {
-                        dialect.setValue(value, binding, ps, i, cx);
-                    }
-                    if ( LOGGER.isLoggable( Level.FINE ) ) {
-                        LOGGER.fine( (i) + " = " + value );
-                    }
-                    i++;
-                }
+        final String sql = buildInsertPS(featureType, keysFetcher, dialect, values, 1);
+        LOGGER.log(Level.FINE, "Inserting new features with ps: {0}", sql);
 
-                keysFetcher.setKeyValues(dialect, ps, cx, featureType, feature, i);
+        // grab the prepared statement, asking the DB to return the values of all the keys
+        // after the insertion if needed
+        final PreparedStatement ps = statements.prepare(sql,
+                keysFetcher.isPostInsert() ? keysFetcher.getColumnNames() : null);
+        try {
+            for (SimpleFeature feature : features) {
+                setInsertValues(feature, featureType, keysFetcher, dialect, ps, 1, cx);
 
                 dialect.onInsert(ps, cx, featureType);
                 ps.addBatch();
@@ -1671,10 +1672,172 @@ public final class JDBCDataStore extends ContentDataStore
             checkAllInserted(inserts, features.size());
             keysFetcher.postInsert(featureType, features, ps);
         } finally {
-            closeSafe(ps);
+            // a failure might leave rows in the batch of the cached statement
+            try {
+                ps.clearBatch();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINER, "Failed to clear the insert batch", e);
+            }
         }
     }
 
+    /**
+     * Inserts the features with prepared statements inserting several rows each, for dialects
+     * supporting them, when all the key values are known before insert.
+     */
+    private void insertMultiRowPS(Collection<SimpleFeature> features,
+            SimpleFeatureType featureType, String values, KeysFetcher keysFetcher, Connection cx,
+            PreparedStatementCache statements) throws IOException, SQLException {
+        final PreparedStatementSQLDialect dialect = (PreparedStatementSQLDialect) getSQLDialect();
+
+        int parameters = 0;
+        for (int i = 0; i < values.length(); i++) {
+            if (values.charAt(i) == '?') {
+                parameters++;
+            }
+        }
+        final int maxRows = Math.max(1,
+                Math.min(MAX_INSERT_ROWS, MAX_INSERT_PARAMETERS / Math.max(1, parameters)));
+
+        Iterator<SimpleFeature> it = features.iterator();
+        int remaining = features.size();
+        while (remaining > 0) {
+            int rows = Math.min(remaining, maxRows);
+            // full chunks share the same statement, only the last one might need another
+            String sql = buildInsertPS(featureType, keysFetcher, dialect, values, rows);
+            LOGGER.log(Level.FINE, "Inserting {0} new features with ps: {1}",
+                    new Object[] { rows, sql });
+
+            PreparedStatement ps = statements.prepare(sql, null);
+            int column = 1;
+            for (int i = 0; i < rows; i++) {
+                column = setInsertValues(it.next(), featureType, keysFetcher, dialect, ps, column,
+                        cx);
+            }
+            dialect.onInsert(ps, cx, featureType);
+            checkAllInserted(new int[] { ps.executeUpdate() }, rows);
+            remaining -= rows;
+        }
+    }
+
+    /**
+     * Sets the attribute and key values of a feature in an insert prepared statement
+     *
+     * @return the index of the next parameter
+     */
+    private int setInsertValues(SimpleFeature feature, SimpleFeatureType featureType,
+            KeysFetcher keysFetcher, PreparedStatementSQLDialect dialect, PreparedStatement ps,
+            int column, Connection cx) throws IOException, SQLException {
+        //set the attribute values
+        int i = column;
+        for(AttributeDescriptor att : featureType.getAttributeDescriptors()) {
+            String colName = att.getLocalName();
+            // skip the pk columns in case we have exposed them, we grab the
+            // value from the pk itself
+            if(keysFetcher.isKey(colName)) {
+                continue;
+            }
+
+            Class binding = att.getType().getBinding();
+
+            Object value = feature.getAttribute(colName);
+            if (value == null && !att.isNillable()) {
+                throw new IOException("Cannot set a NULL value on the not null column " +
+                        colName);
+            }
+
+            if (Geometry.class.isAssignableFrom(binding)) {
+                Geometry g = (Geometry) value;
+                int srid = getGeometrySRID(g, att);
+                int dimension = getGeometryDimension(g, att);
+                dialect.setGeometryValue(g, dimension, srid, binding, ps, i);
+            } else {
+                dialect.setValue(value, binding, ps, i, cx);
+            }
+            if ( LOGGER.isLoggable( Level.FINE ) ) {
+                LOGGER.fine( (i) + " = " + value );
+            }
+            i++;
+        }
+
+        return keysFetcher.setKeyValues(dialect, ps, cx, featureType, feature, i);
+    }
+
+    /**
+     * Loads the features with the dialect bulk loading facility, if the dialect supports it and
+     * all the key values are known before insert.
+     *
+     * @return true if the features have been inserted, false otherwise
+     */
+    private boolean insertBulk(Collection<? extends SimpleFeature> features,
+            SimpleFeatureType featureType, KeysFetcher keysFetcher, Connection cx)
+            throws IOException, SQLException {
+        if (features.isEmpty() || !dialect.isBulkInsertSupported() || keysFetcher.isPostInsert()) {
+            return false;
+        }
+
+        // the attribute columns, then the key ones
+        List<AttributeDescriptor> attributes = new ArrayList<AttributeDescriptor>();
+        for (AttributeDescriptor att : featureType.getAttributeDescriptors()) {
+            if (!keysFetcher.isKey(att.getLocalName())) {
+                attributes.add(att);
+            }
+        }
+        String[] keyColumns = keysFetcher.getColumnNames();
+        int columns = attributes.size() + keyColumns.length;
+        String[] columnNames = new String[columns];
+        Class<?>[] bindings = new Class<?>[columns];
+        for (int i = 0; i < attributes.size(); i++) {
+            AttributeDescriptor att = attributes.get(i);
+            columnNames[i] = att.getLocalName();
+            bindings[i] = att.getType().getBinding();
+        }
+        PrimaryKey key = keysFetcher.key;
+        for (int i = 0; i < keyColumns.length; i++) {
+            columnNames[attributes.size() + i] = keyColumns[i];
+            bindings[attributes.size() + i] = key.getColumns().get(i).getType();
+        }
+
+        List<Object[]> rows = new ArrayList<Object[]>(features.size());
+        // same srid and dimension lookup as the single row inserts, geometry by geometry
+        int[][] srids = new int[features.size()][];
+        int[][] dimensions = new int[features.size()][];
+        for (SimpleFeature feature : features) {
+            Object[] row = new Object[columns];
+            int[] rowSrids = new int[columns];
+            int[] rowDimensions = new int[columns];
+            Arrays.fill(rowSrids, -1);
+            Arrays.fill(rowDimensions, -1);
+            for (int i = 0; i < attributes.size(); i++) {
+                AttributeDescriptor att = attributes.get(i);
+                Object value = feature.getAttribute(att.getLocalName());
+                if (value == null && !att.isNillable()) {
+                    throw new IOException("Cannot set a NULL value on the not null column "
+                            + att.getLocalName());
+                }
+                row[i] = value;
+                if (att instanceof GeometryDescriptor) {
+                    Geometry g = (Geometry) value;
+                    rowSrids[i] = getGeometrySRID(g, att);
+                    rowDimensions[i] = getGeometryDimension(g, att);
+                }
+            }
+            srids[rows.size()] = rowSrids;
+            dimensions[rows.size()] = rowDimensions;
+            List<Object> keyValues = keysFetcher.getKeyValues(cx, featureType, feature);
+            for (int i = 0; i < keyColumns.length; i++) {
+                row[attributes.size() + i] = keyValues.get(i);
+            }
+            rows.add(row);
+        }
+
+        LOGGER.log(Level.FINE, "Bulk loading {0} new features in {1}",
+                new Object[] { rows.size(), featureType.getTypeName() });
+        dialect.insertBulk(databaseSchema, featureType.getTypeName(), columnNames, bindings, srids,
+                dimensions, rows, cx);
+        return true;
+    }
+
     static void checkAllInserted(int[] inserts, int size) throws IOException {
         int sum = 0;
         for (int cur: inserts) {
@@ -1691,11 +1854,11 @@ public final class JDBCDataStore extends ContentDataStore
     }
 
     /**
-     * Build the insert statement that will be used in a PreparedStatement.
+     * Build the insert statement that will be used in a PreparedStatement, inserting the
+     * specified number of rows.
      */
-    private String buildInsertPS(InsertionClassifier kind,
-                                 SimpleFeatureType featureType, KeysFetcher keysFetcher,
-                                 PreparedStatementSQLDialect dialect) throws SQLException {
+    private String buildInsertPS(SimpleFeatureType featureType, KeysFetcher keysFetcher,
+                                 PreparedStatementSQLDialect dialect, String values, int rows) {
         StringBuffer sql = new StringBuffer();
         sql.append("INSERT INTO ");
         encodeTableName(featureType.getTypeName(), sql, null);
@@ -1719,7 +1882,24 @@ public final class JDBCDataStore extends ContentDataStore
         sql.setLength(sql.length() - 1);  // remove the last coma
 
         // values
-        sql.append(" ) VALUES ( ");
+        sql.append(" ) VALUES ");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(",");
+            }
+            sql.append(values);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Build the values of a row of a insert statement that will be used in a PreparedStatement.
+     */
+    private String buildInsertValuesPS(InsertionClassifier kind,
+                                       SimpleFeatureType featureType, KeysFetcher keysFetcher,
+                                       PreparedStatementSQLDialect dialect) throws SQLException {
+        StringBuffer sql = new StringBuffer();
+        sql.append("( ");
         for (AttributeDescriptor att : featureType.getAttributeDescriptors()) {
             String colName = att.getLocalName();
             // skip the pk columns in case we have exposed them, we grab the
@@ -1755,9 +1935,19 @@ public final class JDBCDataStore extends ContentDataStore
         if (features.isEmpty()) {
             return;
         }
-        final Statement st = cx.createStatement();
         final KeysFetcher keysFetcher = KeysFetcher.create(this, cx, useExisting, key);
+        if (insertBulk(features, featureType, keysFetcher, cx)) {
+            return;
+        }
+
+        final Statement st = cx.createStatement();
         try {
+            if (features.size() > 1 && dialect.isMultiRowInsertSupported()
+                    && !keysFetcher.isPostInsert()) {
+                insertMultiRowNonPS(features, featureType, keysFetcher, st, cx);
+                return;
+            }
+
             for (SimpleFeature feature : features) {
                 String sql = insertSQL(featureType, feature, keysFetcher, cx);
 
@@ -1773,6 +1963,34 @@ public final class JDBCDataStore extends ContentDataStore
         }
     }
 
+    /**
+     * Inserts the features with statements inserting several rows each, for dialects supporting
+     * them, when all the key values are known before insert.
+     */
+    private void insertMultiRowNonPS(Collection<? extends SimpleFeature> features,
+            SimpleFeatureType featureType, KeysFetcher keysFetcher, Statement st, Connection cx)
+            throws IOException, SQLException {
+        Iterator<? extends SimpleFeature> it = features.iterator();
+        int remaining = features.size();
+        while (remaining > 0) {
+            int rows = Math.min(remaining, MAX_INSERT_ROWS);
+            StringBuffer sql = new StringBuffer();
+            encodeInsertColumns(featureType, keysFetcher, sql);
+            for (int i = 0; i < rows; i++) {
+                if (i > 0) {
+                    sql.append(",");
+                }
+                encodeInsertValues(featureType, it.next(), keysFetcher, cx, sql);
+            }
+
+            ((BasicSQLDialect) dialect).onInsert(st, cx, featureType);
+
+            LOGGER.log(Level.FINE, "Inserting {0} new features: {1}", new Object[] { rows, sql });
+            checkAllInserted(new int[] { st.executeUpdate(sql.toString()) }, rows);
+            remaining -= rows;
+        }
+    }
+
     /**
      * Updates an existing feature(s) in the database for a particular feature type / table.
      */
@@ -3835,10 +4053,17 @@ public final class JDBCDataStore extends ContentDataStore
      */
     protected String insertSQL(SimpleFeatureType featureType, SimpleFeature feature, 
             KeysFetcher keysFetcher, Connection cx) throws SQLException, IOException {
-        BasicSQLDialect dialect = (BasicSQLDialect) getSQLDialect();
-        
-
         StringBuffer sql = new StringBuffer();
+        encodeInsertColumns(featureType, keysFetcher, sql);
+        encodeInsertValues(featureType, feature, keysFetcher, cx, sql);
+        return sql.toString();
+    }
+
+    /**
+     * Encodes the 'INSERT INTO table (columns) VALUES ' part of an insert statement.
+     */
+    void encodeInsertColumns(SimpleFeatureType featureType, KeysFetcher keysFetcher,
+            StringBuffer sql) {
         sql.append("INSERT INTO ");
         encodeTableName(featureType.getTypeName(), sql, null);
 
@@ -3859,8 +4084,19 @@ public final class JDBCDataStore extends ContentDataStore
         keysFetcher.addKeyColumns(sql);
         sql.setLength(sql.length() - 1);
 
+        sql.append(" ) VALUES ");
+    }
+
+    /**
+     * Encodes the '(values)' part of an insert statement for the specified feature.
+     */
+    void encodeInsertValues(SimpleFeatureType featureType, SimpleFeature feature,
+            KeysFetcher keysFetcher, Connection cx, StringBuffer sql)
+            throws SQLException, IOException {
+        BasicSQLDialect dialect = (BasicSQLDialect) getSQLDialect();
+
         //values
-        sql.append(" ) VALUES ( ");
+        sql.append("( ");
 
         for (int i = 0; i < featureType.getAttributeCount(); i++) {
             AttributeDescriptor att = featureType.getDescriptor(i);
@@ -3904,8 +4140,6 @@ public final class JDBCDataStore extends ContentDataStore
         sql.setLength(sql.length() - 1);  //remove last comma
 
         sql.append(")");
-
-        return sql.toString();
     }
 
     /**
@@ -4581,7 +4815,7 @@ public final class JDBCDataStore extends ContentDataStore
     		     	
     	if (isSimplificationRequired(hints, gatt)==true) {
     		Double distance = (Double) hints.get(Hints.GEOMETRY_SIMPLIFICATION);
-    		dialect.encodeGeometryColumnSimplified(gatt, prefix, srid, sql,distance);
+    		dialect.encodeGeometryColumnSimplified(gatt, prefix, srid, hints, sql, distance);
     		return;    		
     	}
 
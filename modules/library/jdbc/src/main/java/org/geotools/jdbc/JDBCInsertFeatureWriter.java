@@ -44,6 +44,11 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
      */
     private final ResultSetFeature[] buffer;
     private int curBufferPos = 0;
+
+    /**
+     * The insert statements prepared on this writer connection, reused among batches
+     */
+    private PreparedStatementCache statements;
     
     public JDBCInsertFeatureWriter(String sql, Connection cx,
             JDBCFeatureSource featureSource, Hints hints) throws SQLException, IOException {
@@ -110,6 +115,10 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
                 buffer[i].close();
                 buffer[i] = null;
             }
+            if (statements != null) {
+                statements.close();
+                statements = null;
+            }
             super.cleanup();
         }
     }
@@ -122,7 +131,10 @@ public class JDBCInsertFeatureWriter extends JDBCFeatureReader implements Featur
             //do the insert
             Collection<ResultSetFeature> features =
                     Arrays.asList(Arrays.copyOfRange(buffer, 0, curBufferPos));
-            dataStore.insert(features, featureType, st.getConnection());
+            if (statements == null) {
+                statements = new PreparedStatementCache(dataStore, st.getConnection());
+            }
+            dataStore.insert(features, featureType, st.getConnection(), statements);
 
             for (ResultSetFeature cur : features) {
                 //the datastore sets as userData, grab it and update the fid
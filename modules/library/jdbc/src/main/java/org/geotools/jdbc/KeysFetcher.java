@@ -120,6 +120,18 @@ abstract class KeysFetcher {
         }
     }
 
+    /**
+     * Returns all the key values for a bulk load, reporting the feature id as user data. Can only
+     * be used if all the values are known before insert.
+     */
+    public List<Object> getKeyValues(Connection cx, SimpleFeatureType featureType,
+                                     SimpleFeature feature) throws IOException, SQLException {
+        final List<Object> keyValues = getNextValues(cx, feature);
+        String fid = featureType.getTypeName() + "." + JDBCDataStore.encodeFID(keyValues);
+        feature.getUserData().put("fid", fid);
+        return keyValues;
+    }
+
     public abstract void addKeyColumns(StringBuffer sql);
 
     public abstract void addKeyBindings(StringBuffer sql);
@@ -0,0 +1,94 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the prepared statements used to insert features on a single connection, keyed by their
+ * SQL and generated key columns, so that batches with the same shape reuse the statement prepared
+ * by the previous ones. When full, the least recently used statement is closed.
+ * <p>
+ * This class is not thread safe, it is meant to be used by a single feature writer.
+ */
+class PreparedStatementCache {
+
+    static final int DEFAULT_MAX_SIZE = 16;
+
+    final JDBCDataStore dataStore;
+
+    final Connection cx;
+
+    final int maxSize;
+
+    final LinkedHashMap<String, PreparedStatement> statements;
+
+    PreparedStatementCache(JDBCDataStore dataStore, Connection cx) {
+        this(dataStore, cx, DEFAULT_MAX_SIZE);
+    }
+
+    PreparedStatementCache(JDBCDataStore dataStore, Connection cx, int maxSize) {
+        this.dataStore = dataStore;
+        this.cx = cx;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns a prepared statement for the specified SQL, preparing it only if not already cached
+     *
+     * @param sql The statement SQL
+     * @param generatedKeys The names of the columns whose generated values will be read after the
+     *        execution, or null if none
+     */
+    PreparedStatement prepare(String sql, String[] generatedKeys) throws SQLException {
+        String key = generatedKeys == null ? sql : sql + " -- " + Arrays.toString(generatedKeys);
+        PreparedStatement ps = statements.get(key);
+        if (ps != null) {
+            return ps;
+        }
+
+        if (generatedKeys != null) {
+            ps = cx.prepareStatement(sql, generatedKeys);
+        } else {
+            ps = cx.prepareStatement(sql);
+        }
+        statements.put(key, ps);
+        if (statements.size() > maxSize) {
+            Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+            dataStore.closeSafe(it.next().getValue());
+            it.remove();
+        }
+        return ps;
+    }
+
+    /**
+     * Closes all the cached statements
+     */
+    void close() {
+        for (PreparedStatement ps : statements.values()) {
+            dataStore.closeSafe(ps);
+        }
+        statements.clear();
+    }
+}
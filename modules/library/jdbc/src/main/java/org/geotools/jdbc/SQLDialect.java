@@ -822,6 +822,22 @@ public abstract class SQLDialect {
         throw new UnsupportedOperationException("Geometry simplification not supported");
     }
 
+    /**
+     * Encodes a simplified geometry, with access to the query hints, so that the other geometry
+     * hints supported by the dialect, such as {@link Hints#GEOMETRY_CLIP} and
+     * {@link Hints#GEOMETRY_SNAP}, can be applied along with the simplification.
+     * <p>
+     * This default implementation ignores the hints and calls
+     * {@link #encodeGeometryColumnSimplified(GeometryDescriptor, String, int, StringBuffer, Double)}
+     * </p>
+     * 
+     * @since 15.0
+     */
+    public void encodeGeometryColumnSimplified(GeometryDescriptor gatt, String prefix, int srid,
+            Hints hints, StringBuffer sql, Double distance) {
+        encodeGeometryColumnSimplified(gatt, prefix, srid, sql, distance);
+    }
+
     /**
      * Decodes a geometry value from the result of a query.
      * <p>
@@ -1105,8 +1121,59 @@ public abstract class SQLDialect {
     public Object getLastAutoGeneratedValue(String schemaName, String tableName,
         String columnName, Connection cx) throws SQLException {
         return null;
-    } 
-    
+    }
+
+    /**
+     * Returns true if the database can insert several rows with a single
+     * <code>INSERT INTO ... VALUES (...), (...)</code> statement.
+     * <p>
+     * When supported, each batch of new features (see {@link JDBCDataStore#getBatchInsertSize()})
+     * whose primary key values are all known before the insert is sent to the database as a
+     * single multi-row statement. Defaults to <code>false</code>.
+     * </p>
+     */
+    public boolean isMultiRowInsertSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true if the dialect can load new rows with a database specific bulk loading
+     * facility, see {@link #insertBulk(String, String, String[], Class[], int[][], int[][], List, Connection)}.
+     * Defaults to <code>false</code>.
+     */
+    public boolean isBulkInsertSupported() {
+        return false;
+    }
+
+    /**
+     * Loads a batch of new rows in a table using a database specific bulk loading facility, such as
+     * a <code>COPY</code> command, instead of <code>INSERT</code> statements.
+     * <p>
+     * This method is only called when {@link #isBulkInsertSupported()} returns true, and the
+     * primary key values of all the rows are known before the insert.
+     * </p>
+     * <p>
+     * This method is given a direct connection to the database, but this connection
+     * should never be closed. However any statements or result sets instantiated
+     * from the connection must be closed.
+     * </p>
+     * @param schemaName The schema name, this might be <code>null</code>.
+     * @param tableName The name of the table.
+     * @param columnNames The names of the columns being loaded.
+     * @param bindings The java types of the columns.
+     * @param srids The srid of each geometry value, indexed by row then column, as resolved for
+     *        the single row inserts, or -1 for non geometric columns.
+     * @param dimensions The dimension of each geometry value, indexed by row then column, or -1
+     *        for non geometric columns.
+     * @param rows The values of the rows, in the same order as the columns.
+     * @param cx The database connection.
+     */
+    public void insertBulk(String schemaName, String tableName, String[] columnNames,
+            Class<?>[] bindings, int[][] srids, int[][] dimensions, List<Object[]> rows,
+            Connection cx) throws SQLException, IOException {
+        throw new UnsupportedOperationException("Bulk inserts are not supported by this dialect");
+    }
+
     /**
      * Determines the name of the sequence (if any) which is used to increment
      * generate values for a table column.
@@ -1204,6 +1271,8 @@ public abstract class SQLDialect {
      *  
      * {@link Hints#GEOMETRY_GENERALIZATION}
      * {@link Hints#GEOMETRY_SIMPLIFICATION}
+     * {@link Hints#GEOMETRY_CLIP}
+     * {@link Hints#GEOMETRY_SNAP}
      *  
      * @param hints
      */
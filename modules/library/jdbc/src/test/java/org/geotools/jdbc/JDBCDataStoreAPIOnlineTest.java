@@ -61,6 +61,8 @@ import org.opengis.filter.FilterFactory;
 import org.opengis.filter.PropertyIsEqualTo;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
@@ -1721,6 +1723,54 @@ public abstract class JDBCDataStoreAPIOnlineTest extends JDBCTestSupport {
 	    assertTrue(original.getNumPoints()>=simplified.getNumPoints());
 	}
 
+    public void testClip() throws Exception {
+        SimpleFeatureSource fs = dataStore.getFeatureSource(tname("road"));
+        if (!fs.getSupportedHints().contains(Hints.GEOMETRY_CLIP)) {
+            return;
+        }
+
+        // r1 is LINESTRING(1 1, 2 2, 4 2, 5 1)
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        Envelope clip = new Envelope(0, 3, 0, 3);
+        Query query = new Query(tname("road"), ff.equals(ff.property(aname("name")),
+                ff.literal("r1")));
+        query.setHints(new Hints(Hints.GEOMETRY_CLIP, clip));
+        SimpleFeatureIterator iterator = fs.getFeatures(query).features();
+        try {
+            assertTrue(iterator.hasNext());
+            Geometry clipped = (Geometry) iterator.next().getDefaultGeometry();
+            assertTrue(clip.contains(clipped.getEnvelopeInternal()));
+            assertEquals(3, clipped.getEnvelopeInternal().getMaxX(), 1e-9);
+        } finally {
+            iterator.close();
+        }
+    }
+
+    public void testSnapToGrid() throws Exception {
+        SimpleFeatureSource fs = dataStore.getFeatureSource(tname("road"));
+        if (!fs.getSupportedHints().contains(Hints.GEOMETRY_SNAP)) {
+            return;
+        }
+
+        Query query = new Query(tname("road"));
+        query.setHints(new Hints(Hints.GEOMETRY_SNAP, 2d));
+        SimpleFeatureIterator iterator = fs.getFeatures(query).features();
+        int count = 0;
+        try {
+            while (iterator.hasNext()) {
+                Geometry snapped = (Geometry) iterator.next().getDefaultGeometry();
+                for (Coordinate c : snapped.getCoordinates()) {
+                    assertEquals(0, c.x % 2, 1e-9);
+                    assertEquals(0, c.y % 2, 1e-9);
+                }
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(3, count);
+    }
+
     @Override
     protected HashMap createDataStoreFactoryParams() throws Exception {
         HashMap params = super.createDataStoreFactoryParams();
@@ -149,6 +149,58 @@ public abstract class JDBCFeatureStoreOnlineTest extends JDBCTestSupport {
         }
     }
     
+    public void testAddFeaturesInBatches() throws IOException {
+        int batchInsertSize = dataStore.getBatchInsertSize();
+        dataStore.setBatchInsertSize(4);
+        try {
+            assertAddFeaturesInBatches(10);
+        } finally {
+            dataStore.setBatchInsertSize(batchInsertSize);
+        }
+    }
+
+    /**
+     * Adds features with provided ids, whose key values are known before the insert, so that
+     * dialects supporting multi-row or bulk inserts will use them
+     */
+    protected void assertAddFeaturesInBatches(int count) throws IOException {
+        SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
+        DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
+                featureStore.getSchema());
+
+        String typeName = b.getFeatureType().getTypeName();
+        for (int i = 0; i < count; i++) {
+            b.set(aname("intProperty"), new Integer(i + 100));
+            b.set(aname("stringProperty"), i % 2 == 0 ? null : "batch\t" + i);
+            b.set(aname("geometry"), new GeometryFactory().createPoint(new Coordinate(i, i)));
+            b.featureUserData(Hints.USE_PROVIDED_FID, Boolean.TRUE);
+            collection.add(b.buildFeature(typeName + "." + (i + 100)));
+        }
+        List<FeatureId> fids = featureStore.addFeatures((SimpleFeatureCollection) collection);
+        assertEquals(count, fids.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(fids.contains(SimpleFeatureBuilder.createDefaultFeatureIdentifier(typeName
+                    + "." + (i + 100))));
+        }
+        assertEquals(3 + count, featureStore.getFeatures().size());
+
+        FilterFactory ff = dataStore.getFilterFactory();
+        SimpleFeatureCollection features = featureStore.getFeatures(ff.id(Collections
+                .singleton(ff.featureId(typeName + ".105"))));
+        SimpleFeatureIterator iterator = features.features();
+        try {
+            assertTrue(iterator.hasNext());
+            SimpleFeature feature = iterator.next();
+            assertEquals(105, ((Number) feature.getAttribute(aname("intProperty"))).intValue());
+            assertEquals("batch\t5", feature.getAttribute(aname("stringProperty")));
+            assertTrue(new GeometryFactory().createPoint(new Coordinate(5, 5)).equalsExact(
+                    (Geometry) feature.getDefaultGeometry()));
+            assertFalse(iterator.hasNext());
+        } finally {
+            iterator.close();
+        }
+    }
+
     public void testAddInTransaction() throws IOException {
         SimpleFeatureBuilder b = new SimpleFeatureBuilder(featureStore.getSchema());
         DefaultFeatureCollection collection = new DefaultFeatureCollection(null,
@@ -20,8 +20,10 @@ import java.io.IOException;
 import java.util.NoSuchElementException;
 
 import org.geotools.feature.IllegalAttributeException;
+import org.geotools.filter.FilterCompiler;
 import org.geotools.filter.visitor.BindingFilterVisitor;
 import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.filter.Filter;
 
@@ -58,15 +60,20 @@ public class FilteringFeatureReader<T extends FeatureType, F extends Feature> im
      * Please don't call this method with Filter.INCLUDE or Filter.EXCLUDE (consider
      * not filtering and EmptyFeatureReader instead)
      * </p>
+     * <p>
+     * When the reader returns simple features, the filter is compiled for their type, see
+     * {@link FilterCompiler}.
+     * </p>
      *
      * @param featureReader  FeatureReader<SimpleFeatureType, SimpleFeature> being filtered
      * @param filter Filter used to limit the results of featureReader
      */
     public FilteringFeatureReader(FeatureReader<T, F> featureReader, Filter filter) {
         this.featureReader = featureReader;
-        this.filter = (Filter) filter
-                .accept(new BindingFilterVisitor(featureReader.getFeatureType()),
-                null);
+        final T schema = featureReader.getFeatureType();
+        final Filter bound = (Filter) filter.accept(new BindingFilterVisitor(schema), null);
+        this.filter = schema instanceof SimpleFeatureType ? FilterCompiler.compile(bound,
+                (SimpleFeatureType) schema) : bound;
         next = null;
     }
 
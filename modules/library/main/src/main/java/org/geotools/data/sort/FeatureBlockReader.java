@@ -18,11 +18,14 @@ package org.geotools.data.sort;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.opengis.feature.simple.SimpleFeature;
 
 /**
- * Reads the features stored in the specified block of a {@link RandomAccessFile}
+ * Reads the features stored in the specified block of a {@link RandomAccessFile}. The block is read
+ * ahead one page at a time, so that the merge does not need to seek for every single feature.
  * 
  * @author Andrea Aime - GeoSolutions
  */
@@ -36,6 +39,10 @@ class FeatureBlockReader {
 
     SimpleFeatureIO io;
 
+    List<SimpleFeature> page = new ArrayList<SimpleFeature>();
+
+    int pagePosition;
+
     public FeatureBlockReader(SimpleFeatureIO io, long start, int count) {
         this.offset = start;
         this.count = count;
@@ -59,20 +66,22 @@ class FeatureBlockReader {
             return null;
         }
 
-        // move to the next feature offset
-        io.seek(offset);
-
-        // read the feature
-        SimpleFeature sf = io.read();
+        if (pagePosition >= page.size()) {
+            // move to the next page offset and read it fully
+            page.clear();
+            pagePosition = 0;
+            io.seek(offset);
+            io.readPage(page);
+            offset = io.getOffset();
+        }
 
-        // update the offset for the next feature
-        offset = io.getOffset();
+        // grab the feature, releasing the page reference to it
+        SimpleFeature sf = page.get(pagePosition);
+        page.set(pagePosition++, null);
         count--;
 
         // return the feature
         return sf;
     }
 
-
-
 }
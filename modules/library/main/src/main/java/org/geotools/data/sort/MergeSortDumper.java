@@ -75,8 +75,9 @@ class MergeSortDumper {
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, Query query)
             throws IOException {
         int maxFeatures = getMaxFeatures(query);
+        boolean compressed = isSpillCompressed(query);
 
-        return getDelegateReader(reader, query.getSortBy(), maxFeatures);
+        return getDelegateReader(reader, query.getSortBy(), maxFeatures, compressed);
     }
 
     /**
@@ -99,8 +100,31 @@ class MergeSortDumper {
         return maxFeatures;
     }
 
+    /**
+     * Checks if the features spilled to disk should be compressed, from the query and system hints
+     * 
+     * @param query
+     * @return
+     */
+    static boolean isSpillCompressed(Query query) {
+        Hints hints = null;
+        if (query != null) {
+            hints = query.getHints();
+        }
+        if (hints != null && hints.get(Hints.SORT_SPILL_COMPRESSION) != null) {
+            return Boolean.TRUE.equals(hints.get(Hints.SORT_SPILL_COMPRESSION));
+        } else {
+            return Boolean.TRUE.equals(Hints.getSystemDefault(Hints.SORT_SPILL_COMPRESSION));
+        }
+    }
+
     static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
             int maxFeatures) throws IOException {
+        return getDelegateReader(reader, sortBy, maxFeatures, isSpillCompressed(Query.ALL));
+    }
+
+    static SimpleFeatureReader getDelegateReader(SimpleFeatureReader reader, SortBy[] sortBy,
+            int maxFeatures, boolean compressed) throws IOException {
         if (maxFeatures < 0) {
             maxFeatures = getMaxFeatures(Query.ALL);
         }
@@ -137,7 +161,7 @@ class MergeSortDumper {
                     if (io == null) {
                         file = File.createTempFile("sorted", ".features");
                         file.delete();
-                        io = new SimpleFeatureIO(file, schema);
+                        io = new SimpleFeatureIO(file, schema, compressed);
                     }
                     FeatureBlockReader fbr = storeToFile(io, features);
                     readers.add(fbr);
@@ -156,8 +180,9 @@ class MergeSortDumper {
                 return new DelegateSimpleFeatureReader(schema, fi);
             } else {
                 // go merge-sort
+                SimpleFeatureReader result = new MergeSortReader(schema, io, readers, comparator);
                 cleanFile = false;
-                return new MergeSortReader(schema, io, readers, comparator);
+                return result;
             }
 
         } finally {
@@ -171,7 +196,7 @@ class MergeSortDumper {
     }
 
     /**
-     * Writes the feature attributes to a binary file
+     * Writes the features to a binary file, as a block of pages
      * 
      * @param features
      * @return
@@ -181,10 +206,7 @@ class MergeSortDumper {
             throws IOException {
         long start = io.getOffset();
 
-        // write each attribute in the random access file
-        for (SimpleFeature sf : features) {
-            io.write(sf);
-        }
+        io.writeBlock(features);
 
         return new FeatureBlockReader(io, start, features.size());
     }
@@ -21,6 +21,7 @@ import java.io.RandomAccessFile;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.geotools.data.simple.SimpleFeatureReader;
 import org.opengis.feature.simple.SimpleFeature;
@@ -28,14 +29,15 @@ import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
  * Reads from a list of {@link FeatureBlockReader} backed by a {@link RandomAccessFile} and performs
- * the classic merge-sort algorithm
+ * the classic merge-sort algorithm. The block readers are kept in a heap ordered by their current
+ * feature, so that each feature costs log(k) comparisons when merging k blocks.
  * 
  * @author Andrea Aime - GeoSolutions
  * 
  */
 class MergeSortReader implements SimpleFeatureReader {
 
-    List<FeatureBlockReader> readers;
+    PriorityQueue<HeapEntry> heap;
 
     SimpleFeatureIO io;
 
@@ -44,11 +46,19 @@ class MergeSortReader implements SimpleFeatureReader {
     Comparator<SimpleFeature> comparator;
 
     public MergeSortReader(SimpleFeatureType schema, SimpleFeatureIO io,
-            List<FeatureBlockReader> readers, Comparator<SimpleFeature> comparator) {
+            List<FeatureBlockReader> readers, Comparator<SimpleFeature> comparator)
+            throws IOException {
         this.schema = schema;
         this.comparator = comparator;
-        this.readers = readers;
         this.io = io;
+        this.heap = new PriorityQueue<HeapEntry>(Math.max(1, readers.size()));
+        for (int i = 0; i < readers.size(); i++) {
+            FeatureBlockReader reader = readers.get(i);
+            SimpleFeature feature = reader.feature();
+            if (feature != null) {
+                heap.add(new HeapEntry(reader, feature, i));
+            }
+        }
     }
 
     public SimpleFeatureType getFeatureType() {
@@ -57,25 +67,16 @@ class MergeSortReader implements SimpleFeatureReader {
 
     public SimpleFeature next() throws IOException, IllegalArgumentException,
             NoSuchElementException {
-        if (readers.size() == 0) {
+        if (heap.isEmpty()) {
             throw new NoSuchElementException();
         }
 
-        // find the smallest feature
-        int selected = 0;
-        for (int i = 1; i < readers.size(); i++) {
-            SimpleFeature sf = readers.get(selected).feature();
-            SimpleFeature cf = readers.get(i).feature();
-            if (comparator.compare(sf, cf) > 0) {
-                selected = i;
-            }
-        }
-
-        // move on the reader of the selected feature
-        FeatureBlockReader reader = readers.get(selected);
-        SimpleFeature sf = reader.feature();
-        if (reader.next() == null) {
-            readers.remove(selected);
+        // grab the smallest feature, and move on the reader that provided it
+        HeapEntry entry = heap.poll();
+        SimpleFeature sf = entry.feature;
+        entry.feature = entry.reader.next();
+        if (entry.feature != null) {
+            heap.add(entry);
         }
 
         // return the selected feature
@@ -83,11 +84,38 @@ class MergeSortReader implements SimpleFeatureReader {
     }
 
     public boolean hasNext() throws IOException {
-        return readers.size() > 0;
+        return !heap.isEmpty();
     }
 
     public void close() throws IOException {
+        heap.clear();
         io.close(true);
     }
 
+    /**
+     * A block reader along with its current feature. Ties are broken using the block position, so
+     * that the merge is stable
+     */
+    class HeapEntry implements Comparable<HeapEntry> {
+        FeatureBlockReader reader;
+
+        SimpleFeature feature;
+
+        int block;
+
+        HeapEntry(FeatureBlockReader reader, SimpleFeature feature, int block) {
+            this.reader = reader;
+            this.feature = feature;
+            this.block = block;
+        }
+
+        public int compareTo(HeapEntry other) {
+            int result = comparator.compare(feature, other.feature);
+            if (result == 0) {
+                result = block < other.block ? -1 : (block == other.block ? 0 : 1);
+            }
+            return result;
+        }
+    }
+
 }
@@ -19,6 +19,7 @@ package org.geotools.data.sort;
 import java.util.Comparator;
 
 import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
  * Compares two feature based on an attribute value
@@ -31,6 +32,13 @@ class PropertyComparator implements Comparator<SimpleFeature> {
 
     boolean ascending;
 
+    /**
+     * The last feature type seen, and the index of the property in it (-1 if not found)
+     */
+    SimpleFeatureType lastType;
+
+    int lastIndex = -1;
+
     /**
      * Builds a new comparator
      * 
@@ -52,8 +60,8 @@ class PropertyComparator implements Comparator<SimpleFeature> {
     }
 
     private int compareAscending(SimpleFeature f1, SimpleFeature f2) {
-        Comparable o1 = (Comparable) f1.getAttribute(propertyName);
-        Comparable o2 = (Comparable) f2.getAttribute(propertyName);
+        Comparable o1 = (Comparable) getAttribute(f1);
+        Comparable o2 = (Comparable) getAttribute(f2);
 
         if (o1 == null) {
             if (o2 == null) {
@@ -68,4 +76,20 @@ class PropertyComparator implements Comparator<SimpleFeature> {
         }
     }
 
+    /**
+     * Reads the property by index, resolving it only when the feature type changes
+     */
+    private Object getAttribute(SimpleFeature feature) {
+        SimpleFeatureType type = feature.getFeatureType();
+        if (type != lastType) {
+            lastIndex = type.indexOf(propertyName);
+            lastType = type;
+        }
+        if (lastIndex >= 0) {
+            return feature.getAttribute(lastIndex);
+        } else {
+            return feature.getAttribute(propertyName);
+        }
+    }
+
 }
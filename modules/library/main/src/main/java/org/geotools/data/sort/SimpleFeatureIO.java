@@ -18,6 +18,10 @@ package org.geotools.data.sort;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -26,6 +30,9 @@ import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.opengis.feature.simple.SimpleFeature;
@@ -39,11 +46,25 @@ import com.vividsolutions.jts.io.WKBWriter;
 
 /**
  * Allows writing and reading features to/from the given file
+ * <p>
+ * Features can be written and read one at a time, or in blocks. A block is stored as a sequence of
+ * pages, each one holding roughly {@link #PAGE_SIZE} bytes of features, which are written and read
+ * back with a single file access, and are optionally compressed.
  * 
  * @author Andrea Aime - GeoSolutions
  */
 public class SimpleFeatureIO {
 
+    /**
+     * The target size of the pages used to store blocks of features
+     */
+    public static final int PAGE_SIZE = 64 * 1024;
+
+    /**
+     * Page header: feature count, raw length, stored length, compression flag
+     */
+    static final int PAGE_HEADER_SIZE = 13;
+
     RandomAccessFile raf;
 
     SimpleFeatureType schema;
@@ -52,11 +73,49 @@ public class SimpleFeatureIO {
 
     File file;
 
+    AttributeCodec[] codecs;
+
+    boolean compressed;
+
+    PageBuffer pageBuffer = new PageBuffer();
+
+    DataOutputStream pageOut = new DataOutputStream(pageBuffer);
+
+    byte[] header = new byte[PAGE_HEADER_SIZE];
+
+    byte[] readBuffer = new byte[0];
+
+    byte[] rawBuffer = new byte[0];
+
+    Deflater deflater;
+
+    Inflater inflater;
+
     public SimpleFeatureIO(File file, SimpleFeatureType schema) throws FileNotFoundException {
+        this(file, schema, false);
+    }
+
+    /**
+     * Builds a new feature IO
+     * 
+     * @param file The file used to store the features
+     * @param schema The schema of the features
+     * @param compressed If true, the pages written by {@link #writeBlock(List)} will be compressed
+     * @throws FileNotFoundException
+     */
+    public SimpleFeatureIO(File file, SimpleFeatureType schema, boolean compressed)
+            throws FileNotFoundException {
         this.file = file;
         this.raf = new RandomAccessFile(file, "rw");
         this.schema = schema;
         this.builder = new SimpleFeatureBuilder(schema);
+        this.compressed = compressed;
+
+        List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
+        this.codecs = new AttributeCodec[attributes.size()];
+        for (int i = 0; i < codecs.length; i++) {
+            codecs[i] = createCodec(attributes.get(i).getType().getBinding());
+        }
     }
 
     /**
@@ -66,66 +125,99 @@ public class SimpleFeatureIO {
      * @throws IOException
      */
     public void write(SimpleFeature sf) throws IOException {
-        // write each attribute in the random access file
-        List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
-        // write feature id
-        raf.writeUTF(sf.getID());
-        // write the attributes
-        for (AttributeDescriptor ad : attributes) {
-            Object value = sf.getAttribute(ad.getLocalName());
-            writeAttribute(ad, value);
+        // encode in memory, and then write out with a single file access
+        encode(sf, pageOut);
+        pageOut.flush();
+        raf.write(pageBuffer.buffer(), 0, pageBuffer.size());
+        pageBuffer.reset();
+    }
+
+    /**
+     * Writes the features as a block of pages at the current offset. The block can be read back
+     * using {@link #readPage(List)} until all its features have been read.
+     * 
+     * @param features
+     * @throws IOException
+     */
+    public void writeBlock(List<SimpleFeature> features) throws IOException {
+        int count = 0;
+        for (SimpleFeature sf : features) {
+            encode(sf, pageOut);
+            count++;
+            if (pageBuffer.size() >= PAGE_SIZE) {
+                writePage(count);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            writePage(count);
         }
     }
 
-    void writeAttribute(AttributeDescriptor ad, Object value) throws IOException {
-        if (value == null) {
-            // null marker
-            raf.writeBoolean(true);
-        } else {
-            // not null, write the contents. This one requires some explanation. We are not
-            // writing any type metadata in the stream for the types we can optimize (primitives,
-            // numbers,
-            // strings and the like). This means we have to be 100% sure the class we're writing is
-            // actually the one we can optimize for, and not some subclass. Thus, we are authorized
-            // to use identity comparison instead of isAssignableFrom or equality, when we read back
-            // it must be as if we did not serialize stuff at all
-            raf.writeBoolean(false);
-            Class<?> binding = ad.getType().getBinding();
-            if (binding == Boolean.class) {
-                raf.writeBoolean((Boolean) value);
-            } else if (binding == Byte.class || binding == byte.class) {
-                raf.writeByte((Byte) value);
-            } else if (binding == Short.class || binding == short.class) {
-                raf.writeShort((Short) value);
-            } else if (binding == Integer.class || binding == int.class) {
-                raf.writeInt((Integer) value);
-            } else if (binding == Long.class || binding == long.class) {
-                raf.writeLong((Long) value);
-            } else if (binding == Float.class || binding == float.class) {
-                raf.writeFloat((Float) value);
-            } else if (binding == Double.class || binding == double.class) {
-                raf.writeDouble((Double) value);
-            } else if (binding == String.class) {
-                raf.writeUTF((String) value);
-            } else if (binding == java.sql.Date.class || binding == java.sql.Time.class
-                    || binding == java.sql.Timestamp.class || binding == java.util.Date.class) {
-                raf.writeLong(((Date) value).getTime());
-            } else if (Geometry.class.isAssignableFrom(binding)) {
-                WKBWriter writer = new WKBWriter();
-                byte[] buffer = writer.write((Geometry) value);
-                int length = buffer.length;
-                raf.writeInt(length);
-                raf.write(buffer);
+    private void writePage(int count) throws IOException {
+        pageOut.flush();
+        byte[] data = pageBuffer.buffer();
+        int rawLength = pageBuffer.size();
+        int storedLength = rawLength;
+        boolean deflated = false;
+        if (compressed) {
+            if (deflater == null) {
+                deflater = new Deflater(Deflater.BEST_SPEED);
+            }
+            deflater.reset();
+            deflater.setInput(data, 0, rawLength);
+            deflater.finish();
+            if (readBuffer.length < rawLength) {
+                readBuffer = new byte[rawLength];
+            }
+            int length = 0;
+            while (!deflater.finished() && length < rawLength) {
+                length += deflater.deflate(readBuffer, length, rawLength - length);
+            }
+            // only keep the compressed version if it's actually smaller
+            if (deflater.finished() && length < rawLength) {
+                data = readBuffer;
+                storedLength = length;
+                deflated = true;
+            }
+        }
+
+        writeInt(header, 0, count);
+        writeInt(header, 4, rawLength);
+        writeInt(header, 8, storedLength);
+        header[12] = (byte) (deflated ? 1 : 0);
+        raf.write(header);
+        raf.write(data, 0, storedLength);
+        pageBuffer.reset();
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+                | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    void encode(SimpleFeature sf, DataOutput out) throws IOException {
+        // write feature id
+        out.writeUTF(sf.getID());
+        // write the attributes, positional access is only safe if the feature has our own schema
+        boolean sameSchema = sf.getFeatureType() == schema;
+        List<AttributeDescriptor> attributes = schema.getAttributeDescriptors();
+        for (int i = 0; i < codecs.length; i++) {
+            Object value = sameSchema ? sf.getAttribute(i) : sf.getAttribute(attributes.get(i)
+                    .getLocalName());
+            if (value == null) {
+                // null marker
+                out.writeBoolean(true);
             } else {
-                // can't optimize, in this case we use an ObjectOutputStream to write out
-                // full metadata
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(bos);
-                oos.writeObject(value);
-                oos.flush();
-                byte[] bytes = bos.toByteArray();
-                raf.writeInt(bytes.length);
-                raf.write(bytes);
+                out.writeBoolean(false);
+                codecs[i].write(out, value);
             }
         }
     }
@@ -137,12 +229,71 @@ public class SimpleFeatureIO {
      * @throws IOException
      */
     public SimpleFeature read() throws IOException {
+        return decode(raf);
+    }
+
+    /**
+     * Reads the next page of a block written with {@link #writeBlock(List)}, starting at the
+     * current offset, and adds its features to the target list
+     * 
+     * @param target The list receiving the features
+     * @return The number of features read
+     * @throws IOException
+     */
+    public int readPage(List<SimpleFeature> target) throws IOException {
+        raf.readFully(header);
+        int count = readInt(header, 0);
+        int rawLength = readInt(header, 4);
+        int storedLength = readInt(header, 8);
+        boolean deflated = header[12] != 0;
+
+        if (readBuffer.length < storedLength) {
+            readBuffer = new byte[storedLength];
+        }
+        raf.readFully(readBuffer, 0, storedLength);
+        byte[] data = readBuffer;
+        if (deflated) {
+            if (inflater == null) {
+                inflater = new Inflater();
+            }
+            inflater.reset();
+            inflater.setInput(readBuffer, 0, storedLength);
+            if (rawBuffer.length < rawLength) {
+                rawBuffer = new byte[rawLength];
+            }
+            try {
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(rawBuffer, length, rawLength - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != rawLength) {
+                    throw new IOException("Corrupted feature page, expected " + rawLength
+                            + " bytes but got " + length);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Failed to decompress the feature page", e);
+            }
+            data = rawBuffer;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 0, rawLength));
+        for (int i = 0; i < count; i++) {
+            target.add(decode(in));
+        }
+        return count;
+    }
+
+    SimpleFeature decode(DataInput in) throws IOException {
         // read the fid, check for file end
-        String fid = raf.readUTF();
+        String fid = in.readUTF();
         // read the other attributes, build the feature
-        for (AttributeDescriptor ad : schema.getAttributeDescriptors()) {
-            Object att = readAttribute(ad);
-            builder.add(att);
+        for (AttributeCodec codec : codecs) {
+            boolean isNull = in.readBoolean();
+            builder.add(isNull ? null : codec.read(in));
         }
 
         // return the feature
@@ -150,66 +301,129 @@ public class SimpleFeatureIO {
     }
 
     /**
-     * Reads the attributes.
+     * Picks the codec for the specified attribute binding.
+     * <p>
+     * This one requires some explanation. We are not writing any type metadata in the stream for
+     * the types we can optimize (primitives, numbers, strings and the like). This means we have to
+     * be 100% sure the class we're writing is actually the one we can optimize for, and not some
+     * subclass. Thus, we are authorized to use identity comparison instead of isAssignableFrom or
+     * equality, when we read back it must be as if we did not serialize stuff at all
      * 
-     * @param ad
+     * @param binding
      * @return
-     * @throws IOException
      */
-    Object readAttribute(AttributeDescriptor ad) throws IOException {
-        // See the comments in {@link MergeSortDumper#writeAttribute(RandomAccessFile,
-        // AttributeDescriptor, Object)} to get an insight on why the method is built like this
-        boolean isNull = raf.readBoolean();
-        if (isNull) {
-            return null;
+    AttributeCodec createCodec(Class<?> binding) {
+        if (binding == Boolean.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeBoolean((Boolean) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readBoolean();
+                }
+            };
+        } else if (binding == Byte.class || binding == byte.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeByte((Byte) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readByte();
+                }
+            };
+        } else if (binding == Short.class || binding == short.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeShort((Short) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readShort();
+                }
+            };
+        } else if (binding == Integer.class || binding == int.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeInt((Integer) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readInt();
+                }
+            };
+        } else if (binding == Long.class || binding == long.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeLong((Long) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readLong();
+                }
+            };
+        } else if (binding == Float.class || binding == float.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeFloat((Float) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readFloat();
+                }
+            };
+        } else if (binding == Double.class || binding == double.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeDouble((Double) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readDouble();
+                }
+            };
+        } else if (binding == String.class) {
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    out.writeUTF((String) value);
+                }
+
+                Object read(DataInput in) throws IOException {
+                    return in.readUTF();
+                }
+            };
+        } else if (binding == java.sql.Date.class || binding == java.sql.Time.class
+                || binding == java.sql.Timestamp.class || binding == java.util.Date.class) {
+            return new DateCodec(binding);
+        } else if (Geometry.class.isAssignableFrom(binding)) {
+            return new GeometryCodec();
         } else {
-            Class<?> binding = ad.getType().getBinding();
-            if (binding == Boolean.class) {
-                return raf.readBoolean();
-            } else if (binding == Byte.class || binding == byte.class) {
-                return raf.readByte();
-            } else if (binding == Short.class || binding == short.class) {
-                return raf.readShort();
-            } else if (binding == Integer.class || binding == int.class) {
-                return raf.readInt();
-            } else if (binding == Long.class || binding == long.class) {
-                return raf.readLong();
-            } else if (binding == Float.class || binding == float.class) {
-                return raf.readFloat();
-            } else if (binding == Double.class || binding == double.class) {
-                return raf.readDouble();
-            } else if (binding == String.class) {
-                return raf.readUTF();
-            } else if (binding == java.sql.Date.class) {
-                return new java.sql.Date(raf.readLong());
-            } else if (binding == java.sql.Time.class) {
-                return new java.sql.Time(raf.readLong());
-            } else if (binding == java.sql.Timestamp.class) {
-                return new java.sql.Timestamp(raf.readLong());
-            } else if (binding == java.util.Date.class) {
-                return new java.util.Date(raf.readLong());
-            } else if (Geometry.class.isAssignableFrom(binding)) {
-                WKBReader reader = new WKBReader();
-                int length = raf.readInt();
-                byte[] buffer = new byte[length];
-                raf.read(buffer);
-                try {
-                    return reader.read(buffer);
-                } catch (ParseException e) {
-                    throw new IOException("Failed to parse the geometry WKB", e);
+            // can't optimize, in this case we use an ObjectOutputStream to write out
+            // full metadata
+            return new AttributeCodec() {
+                void write(DataOutput out, Object value) throws IOException {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    ObjectOutputStream oos = new ObjectOutputStream(bos);
+                    oos.writeObject(value);
+                    oos.flush();
+                    byte[] bytes = bos.toByteArray();
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
                 }
-            } else {
-                int length = raf.readInt();
-                byte[] buffer = new byte[length];
-                raf.read(buffer);
-                ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
-                ObjectInputStream ois = new ObjectInputStream(bis);
-                try {
-                    return ois.readObject();
-                } catch (ClassNotFoundException e) {
-                    throw new IOException("Could not read back object", e);
+
+                Object read(DataInput in) throws IOException {
+                    byte[] buffer = new byte[in.readInt()];
+                    in.readFully(buffer);
+                    ByteArrayInputStream bis = new ByteArrayInputStream(buffer);
+                    ObjectInputStream ois = new ObjectInputStream(bis);
+                    try {
+                        return ois.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException("Could not read back object", e);
+                    }
                 }
-            }
+            };
         }
     }
 
@@ -253,6 +467,14 @@ public class SimpleFeatureIO {
         try {
             raf.close();
         } finally {
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+            if (inflater != null) {
+                inflater.end();
+                inflater = null;
+            }
             if (deleteFile) {
                 file.delete();
             }
@@ -270,4 +492,73 @@ public class SimpleFeatureIO {
         return "SimpleFeatureIO [schema=" + schema + ", file=" + file + "]";
     }
 
+    /**
+     * Writes and reads back the values of a single attribute
+     */
+    static abstract class AttributeCodec {
+        abstract void write(DataOutput out, Object value) throws IOException;
+
+        abstract Object read(DataInput in) throws IOException;
+    }
+
+    static class DateCodec extends AttributeCodec {
+        Class<?> binding;
+
+        DateCodec(Class<?> binding) {
+            this.binding = binding;
+        }
+
+        void write(DataOutput out, Object value) throws IOException {
+            out.writeLong(((Date) value).getTime());
+        }
+
+        Object read(DataInput in) throws IOException {
+            long time = in.readLong();
+            if (binding == java.sql.Date.class) {
+                return new java.sql.Date(time);
+            } else if (binding == java.sql.Time.class) {
+                return new java.sql.Time(time);
+            } else if (binding == java.sql.Timestamp.class) {
+                return new java.sql.Timestamp(time);
+            } else {
+                return new java.util.Date(time);
+            }
+        }
+    }
+
+    static class GeometryCodec extends AttributeCodec {
+        WKBWriter writer = new WKBWriter();
+
+        WKBReader reader = new WKBReader();
+
+        void write(DataOutput out, Object value) throws IOException {
+            byte[] buffer = writer.write((Geometry) value);
+            out.writeInt(buffer.length);
+            out.write(buffer);
+        }
+
+        Object read(DataInput in) throws IOException {
+            byte[] buffer = new byte[in.readInt()];
+            in.readFully(buffer);
+            try {
+                return reader.read(buffer);
+            } catch (ParseException e) {
+                throw new IOException("Failed to parse the geometry WKB", e);
+            }
+        }
+    }
+
+    /**
+     * A byte array output stream giving access to its internal buffer, to avoid copies
+     */
+    static class PageBuffer extends ByteArrayOutputStream {
+        public PageBuffer() {
+            super(PAGE_SIZE + 1024);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
 }
@@ -38,7 +38,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class AverageVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
 
     /**
@@ -191,6 +191,29 @@ public class AverageVisitor implements FeatureCalc, FeatureAttributeVisitor {
         // in fact visited each feature
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != AverageVisitor.class || isOptimized) {
+            // an optimized result cannot be merged with anything else
+            return null;
+        }
+        if (!ParallelCalc.isThreadSafe(expr)) {
+            return null;
+        }
+        return new AverageVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        AverageVisitor other = (AverageVisitor) partial;
+        if (other.strategy == null) {
+            return;
+        } else if (strategy == null) {
+            strategy = other.strategy;
+        } else {
+            AverageResult merged = (AverageResult) getResult().merge(other.getResult());
+            setValue(merged.getCount(), merged.getSum());
+        }
+    }
+
     /**
      * Encapsulates the strategy pattern for the "Average" Visitor
      */
@@ -31,7 +31,7 @@ import org.opengis.feature.simple.SimpleFeature;
  *
  * @source $URL$
  */
-public class CountVisitor implements FeatureCalc {
+public class CountVisitor implements MergeableFeatureCalc {
     Integer count = null;
 
     public void init(SimpleFeatureCollection collection) {
@@ -70,6 +70,21 @@ public class CountVisitor implements FeatureCalc {
         return new CountResult(count);
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != CountVisitor.class) {
+            // subclasses might carry extra state we don't know how to merge
+            return null;
+        }
+        return new CountVisitor();
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        Integer other = ((CountVisitor) partial).count;
+        if (other != null) {
+            setValue(getCount() + other);
+        }
+    }
+
     public static class CountResult extends AbstractCalcResult {
         private int count;
 
@@ -37,7 +37,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MaxVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class MaxVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Comparable maxvalue;
     Comparable curvalue;
@@ -176,6 +176,26 @@ public class MaxVisitor implements FeatureCalc, FeatureAttributeVisitor {
         maxvalue = (Comparable) result;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != MaxVisitor.class) {
+            // subclasses might carry extra state we don't know how to merge
+            return null;
+        }
+        if (!ParallelCalc.isThreadSafe(expr)) {
+            return null;
+        }
+        return new MaxVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MaxVisitor other = (MaxVisitor) partial;
+        countNull += other.countNull;
+        countNaN += other.countNaN;
+        if (other.visited && (!visited || other.maxvalue.compareTo(maxvalue) > 0)) {
+            setValue(other.maxvalue);
+        }
+    }
+
     public static class MaxResult extends AbstractCalcResult {
         private Comparable maxValue;
 
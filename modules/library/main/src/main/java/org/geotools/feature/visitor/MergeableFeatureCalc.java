@@ -0,0 +1,47 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+/**
+ * A {@link FeatureCalc} whose calculation can be split among partitions of the features. Each
+ * partition is visited by its own partial calculator, possibly on a different thread, and the
+ * partial calculators are then merged back into the original one.
+ *
+ * @see ParallelCalc
+ */
+public interface MergeableFeatureCalc extends FeatureCalc {
+
+    /**
+     * Returns a new calculator, configured like this one but without any state, that can visit a
+     * partition of the features. The partial calculator will be used by a single thread, but the
+     * partial calculators of a visit run concurrently, so anything they share with this one, such
+     * as the expression they evaluate, must be thread safe (see
+     * {@link ParallelCalc#isThreadSafe(org.opengis.filter.expression.Expression)}).
+     *
+     * @return the partial calculator, or null if the calculation cannot be split (e.g., because its
+     *         result depends on the visit order of all the features)
+     */
+    MergeableFeatureCalc createPartial();
+
+    /**
+     * Merges the state of a partial calculator into this one. Partial calculators are merged in the
+     * same order as the partitions they visited.
+     *
+     * @param partial a calculator returned by {@link #createPartial()}
+     */
+    void merge(MergeableFeatureCalc partial);
+}
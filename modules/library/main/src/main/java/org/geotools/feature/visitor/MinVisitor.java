@@ -37,7 +37,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class MinVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     Comparable minvalue;
     Comparable curvalue;
@@ -149,6 +149,24 @@ public class MinVisitor implements FeatureCalc, FeatureAttributeVisitor {
         minvalue = (Comparable) result;
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != MinVisitor.class) {
+            // subclasses might carry extra state we don't know how to merge
+            return null;
+        }
+        if (!ParallelCalc.isThreadSafe(expr)) {
+            return null;
+        }
+        return new MinVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        MinVisitor other = (MinVisitor) partial;
+        if (other.visited && (!visited || other.minvalue.compareTo(minvalue) < 0)) {
+            setValue(other.minvalue);
+        }
+    }
+
     public static class MinResult extends AbstractCalcResult {
         private Comparable minValue;
 
@@ -0,0 +1,318 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import org.geotools.util.NullProgressListener;
+import org.opengis.feature.Feature;
+import org.opengis.feature.FeatureVisitor;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
+import org.opengis.util.ProgressListener;
+
+/**
+ * Runs a {@link MergeableFeatureCalc} in parallel, splitting the features in partitions that are
+ * visited by partial calculators on a shared {@link ForkJoinPool}, and then merging the partial
+ * calculators back into the original one, in partition order.
+ * <p>
+ * Two modes are supported:
+ * <ul>
+ * <li>{@link #visit(List, FeatureVisitor)} recursively splits an in memory list of features</li>
+ * <li>{@link #create(FeatureVisitor)} returns a calculator that accumulates the features coming
+ * from a stream (e.g., a feature reader) in batches, each batch being visited as soon as it's full
+ * while the stream keeps on being read. At most a few batches per pool thread are kept in memory.
+ * </li>
+ * </ul>
+ * The partial calculators evaluate the visitor expression concurrently, so only the visitors
+ * whose expression is {@linkplain #isThreadSafe(Expression) thread safe} are run in parallel.
+ * <p>
+ * Parallel calculation can be disabled setting the {@link #ENABLED_KEY} system property to false.
+ */
+public class ParallelCalc {
+
+    /**
+     * The system property used to enable/disable parallel calculations
+     */
+    public static final String ENABLED_KEY = "org.geotools.feature.visitor.parallelCalc";
+
+    /**
+     * The number of features visited by each partial calculator
+     */
+    public static final int BATCH_SIZE = 1024;
+
+    static boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_KEY));
+
+    static ForkJoinPool POOL;
+
+    /**
+     * Returns the pool used for the parallel calculations, creating it on first usage
+     */
+    static synchronized ForkJoinPool getPool() {
+        if (POOL == null) {
+            POOL = new ForkJoinPool();
+        }
+        return POOL;
+    }
+
+    /**
+     * Returns true if the visitor can be run in parallel
+     */
+    public static boolean isParallelizable(FeatureVisitor visitor) {
+        return ENABLED && visitor instanceof MergeableFeatureCalc
+                && ((MergeableFeatureCalc) visitor).createPartial() != null;
+    }
+
+    /**
+     * Returns true if the visitor can be run in parallel over the given number of features, that
+     * is, if there are enough features to make it worthwhile
+     */
+    public static boolean isParallelizable(FeatureVisitor visitor, int size) {
+        return size >= BATCH_SIZE * 2 && isParallelizable(visitor);
+    }
+
+    /**
+     * Returns true if the expression can be evaluated by several threads at once. Functions may
+     * keep state between evaluations, so only property names and literals are considered safe.
+     */
+    public static boolean isThreadSafe(Expression expression) {
+        return expression == null || expression instanceof PropertyName
+                || expression instanceof Literal;
+    }
+
+    /**
+     * Visits the features with the specified visitor, in parallel if the visitor supports it and
+     * there are enough features to make it worthwhile.
+     *
+     * @return true if the features have been visited in parallel, false if the visitor could not
+     *         be run in parallel and the caller should visit the features sequentially instead
+     */
+    public static boolean visit(List<? extends Feature> features, FeatureVisitor visitor) {
+        if (!isParallelizable(visitor, features.size())) {
+            return false;
+        }
+
+        MergeableFeatureCalc target = (MergeableFeatureCalc) visitor;
+        target.merge(getPool().invoke(
+                new PartitionTask(target, features, 0, features.size(), BATCH_SIZE)));
+        return true;
+    }
+
+    /**
+     * Visits the features with the specified visitor like {@link #visit(List, FeatureVisitor)},
+     * reporting the progress as the partitions complete, in order, and stopping when the
+     * listener gets canceled, in which case the visitor state is undefined.
+     *
+     * @param progress the progress listener, or null
+     * @return true if the features have been visited in parallel, false if the visitor could not
+     *         be run in parallel and the caller should visit the features sequentially instead
+     * @throws IOException if the calculation of one of the partitions failed
+     */
+    public static boolean visit(List<? extends Feature> features, FeatureVisitor visitor,
+            ProgressListener progress) throws IOException {
+        if (!isParallelizable(visitor, features.size())) {
+            return false;
+        }
+        if (progress == null) {
+            progress = new NullProgressListener();
+        }
+
+        ForkJoinPool pool = getPool();
+        ParallelCalc calc = new ParallelCalc((MergeableFeatureCalc) visitor, pool, BATCH_SIZE,
+                Integer.MAX_VALUE);
+        int size = features.size();
+        progress.started();
+        try {
+            for (int start = 0; start < size; start += BATCH_SIZE) {
+                calc.pending.add(pool.submit(new PartitionTask(calc.target, features, start,
+                        Math.min(start + BATCH_SIZE, size), BATCH_SIZE)));
+            }
+            int visited = 0;
+            while (!calc.pending.isEmpty()) {
+                if (progress.isCanceled()) {
+                    break;
+                }
+                calc.mergeFirst();
+                visited = Math.min(visited + BATCH_SIZE, size);
+                progress.progress(100f * visited / size);
+            }
+        } catch (IOException e) {
+            progress.exceptionOccurred(e);
+            throw e;
+        } finally {
+            calc.cancel();
+            progress.complete();
+        }
+        return true;
+    }
+
+    /**
+     * Returns a parallel calculator for a stream of features, or null if the visitor cannot be run
+     * in parallel. The caller must call either {@link #complete()} after the last feature has been
+     * visited, or {@link #cancel()} if the visit is aborted.
+     */
+    public static ParallelCalc create(FeatureVisitor visitor) {
+        if (!isParallelizable(visitor)) {
+            return null;
+        }
+        ForkJoinPool pool = getPool();
+        return new ParallelCalc((MergeableFeatureCalc) visitor, pool, BATCH_SIZE,
+                pool.getParallelism() * 2);
+    }
+
+    MergeableFeatureCalc target;
+
+    ForkJoinPool pool;
+
+    int batchSize;
+
+    int maxPending;
+
+    List<Feature> batch;
+
+    LinkedList<Future<MergeableFeatureCalc>> pending = new LinkedList<Future<MergeableFeatureCalc>>();
+
+    ParallelCalc(MergeableFeatureCalc target, ForkJoinPool pool, int batchSize, int maxPending) {
+        this.target = target;
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.batch = new ArrayList<Feature>(batchSize);
+    }
+
+    /**
+     * Adds the feature to the current batch, submitting it for calculation if full
+     *
+     * @throws IOException if the calculation of one of the previous batches failed
+     */
+    public void visit(Feature feature) throws IOException {
+        batch.add(feature);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Waits for the calculation of all the batches and merges the results in the target visitor
+     *
+     * @throws IOException if the calculation of one of the batches failed
+     */
+    public void complete() throws IOException {
+        if (pending.isEmpty()) {
+            // not enough features to go parallel, the target can do it on its own
+            for (Feature feature : batch) {
+                target.visit(feature);
+            }
+            batch.clear();
+        } else {
+            if (!batch.isEmpty()) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                mergeFirst();
+            }
+        }
+    }
+
+    /**
+     * Cancels the batches still being calculated, the target visitor state is undefined
+     */
+    public void cancel() {
+        for (Future<MergeableFeatureCalc> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        batch.clear();
+    }
+
+    private void submit() throws IOException {
+        pending.add(pool.submit(new PartitionTask(target, batch, 0, batch.size(), batchSize)));
+        batch = new ArrayList<Feature>(batchSize);
+        // bound the amount of features held in memory if the calculation is slower than reading
+        while (pending.size() > maxPending) {
+            mergeFirst();
+        }
+    }
+
+    private void mergeFirst() throws IOException {
+        Future<MergeableFeatureCalc> future = pending.removeFirst();
+        try {
+            target.merge(future.get());
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the parallel calculation", e);
+        } catch (ExecutionException e) {
+            cancel();
+            throw new IOException("Parallel calculation failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Visits a range of a list of features, splitting it in halves until it's no larger than the
+     * threshold
+     */
+    static class PartitionTask extends RecursiveTask<MergeableFeatureCalc> {
+        private static final long serialVersionUID = -2427950520372283839L;
+
+        MergeableFeatureCalc target;
+
+        List<? extends Feature> features;
+
+        int start;
+
+        int end;
+
+        int threshold;
+
+        PartitionTask(MergeableFeatureCalc target, List<? extends Feature> features, int start,
+                int end, int threshold) {
+            this.target = target;
+            this.features = features;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected MergeableFeatureCalc compute() {
+            if (end - start <= threshold) {
+                MergeableFeatureCalc partial = target.createPartial();
+                for (int i = start; i < end; i++) {
+                    partial.visit(features.get(i));
+                }
+                return partial;
+            }
+
+            int mid = (start + end) >>> 1;
+            PartitionTask left = new PartitionTask(target, features, start, mid, threshold);
+            PartitionTask right = new PartitionTask(target, features, mid, end, threshold);
+            right.fork();
+            MergeableFeatureCalc result = left.compute();
+            result.merge(right.join());
+            return result;
+        }
+    }
+}
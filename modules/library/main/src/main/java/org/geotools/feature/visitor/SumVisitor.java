@@ -42,7 +42,7 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
+public class SumVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor {
     private Expression expr;
     SumStrategy strategy;
 
@@ -135,6 +135,28 @@ public class SumVisitor implements FeatureCalc, FeatureAttributeVisitor {
         return new SumResult(strategy);
     }
 
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != SumVisitor.class) {
+            // subclasses might carry extra state we don't know how to merge
+            return null;
+        }
+        if (!ParallelCalc.isThreadSafe(expr)) {
+            return null;
+        }
+        return new SumVisitor(expr);
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        SumVisitor other = (SumVisitor) partial;
+        if (other.strategy == null) {
+            return;
+        } else if (strategy == null) {
+            strategy = other.strategy;
+        } else {
+            setValue(getResult().merge(other.getResult()).getValue());
+        }
+    }
+
     interface SumStrategy {
         public void add(Object value);
 
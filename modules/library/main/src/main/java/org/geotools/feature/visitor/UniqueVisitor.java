@@ -45,7 +45,8 @@ import org.opengis.filter.expression.Expression;
  *
  * @source $URL$
  */
-public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor, LimitingVisitor {
+public class UniqueVisitor implements MergeableFeatureCalc, FeatureAttributeVisitor,
+        LimitingVisitor {
     private Expression expr;
     Set set = new HashSet();
     Set skipped = new HashSet();
@@ -240,5 +241,23 @@ public class UniqueVisitor implements FeatureCalc, FeatureAttributeVisitor, Limi
     public boolean hasLimits() {
         return startIndex > 0 || maxFeatures < Integer.MAX_VALUE;
     }
+
+    public MergeableFeatureCalc createPartial() {
+        if (getClass() != UniqueVisitor.class || hasLimits()) {
+            // paging depends on the order the values are found in the whole collection
+            return null;
+        }
+        if (!ParallelCalc.isThreadSafe(expr)) {
+            return null;
+        }
+        UniqueVisitor partial = new UniqueVisitor(expr);
+        partial.setPreserveOrder(preserveOrder);
+        return partial;
+    }
+
+    public void merge(MergeableFeatureCalc partial) {
+        // partials are merged in order, so the insertion order is preserved if required
+        set.addAll(((UniqueVisitor) partial).set);
+    }
 }
 
@@ -27,6 +27,7 @@ import org.geotools.filter.expression.PropertyAccessor;
 import org.geotools.filter.expression.PropertyAccessorFactory;
 import org.geotools.filter.expression.PropertyAccessors;
 import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.Name;
 import org.opengis.filter.expression.ExpressionVisitor;
@@ -198,6 +199,19 @@ public class AttributeExpressionImpl extends DefaultExpression implements Proper
     */
     @SuppressWarnings("unchecked")
     public <T> T evaluate(Object obj, Class<T> target) {
+        // plain attribute names of simple features are read by index
+        if (obj instanceof SimpleFeature) {
+            final SimpleFeature feature = (SimpleFeature) obj;
+            final int index = getAttributeIndex(feature.getFeatureType());
+            if (index >= 0) {
+                final Object value = feature.getAttribute(index);
+                if (target == null || target.isInstance(value)) {
+                    return (T) value;
+                }
+                return Converters.convert(value, target);
+            }
+        }
+
         // NC- new method
 
         PropertyAccessor accessor = getLastPropertyAccessor();
@@ -264,6 +278,45 @@ public class AttributeExpressionImpl extends DefaultExpression implements Proper
     private synchronized void setLastPropertyAccessor(PropertyAccessor accessor) {
         lastAccessor = accessor;
     }
+
+    // index caching, resolving the attribute name for each feature is expensive as well
+    private volatile AttributeIndex lastIndex;
+
+    /**
+     * Returns the index of the attribute in the given type, or -1 if the property name is not a
+     * plain attribute name of the type.
+     */
+    private int getAttributeIndex(SimpleFeatureType type) {
+        AttributeIndex index = lastIndex;
+        if (index == null || index.type != type || index.path != attPath) {
+            final String path = attPath;
+            int position = -1;
+            if (type != null && path != null && path.length() > 0 && path.indexOf('/') < 0
+                    && path.indexOf('@') < 0 && path.indexOf(':') < 0 && path.indexOf('[') < 0) {
+                position = type.indexOf(path);
+            }
+            lastIndex = index = new AttributeIndex(type, path, position);
+        }
+        return index.index;
+    }
+
+    /**
+     * The index of an attribute path in a feature type
+     */
+    private static final class AttributeIndex {
+
+        final SimpleFeatureType type;
+
+        final String path;
+
+        final int index;
+
+        AttributeIndex(SimpleFeatureType type, String path, int index) {
+            this.type = type;
+            this.path = path;
+            this.index = index;
+        }
+    }
    
      /**
      * Return this expression as a string.
@@ -0,0 +1,736 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.geotools.factory.Hints;
+import org.geotools.util.ConverterFactory;
+import org.geotools.util.Converters;
+import org.opengis.feature.Property;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.BinaryComparisonOperator;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterVisitor;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+
+/**
+ * Compiles a {@link Filter} for a {@link SimpleFeatureType}, returning a filter specialized in
+ * the evaluation of the features of that type.
+ * <p>
+ * The property names are bound to the attribute indexes, the literals are evaluated once and
+ * their conversions to the classes of the attribute values are cached, so evaluating a feature
+ * skips the property accessor lookup and most of the {@link Converters} calls. The compiled
+ * comparisons, likes, nulls and logic operators follow the evaluation rules of the filter
+ * implementations of this package. Everything else (spatial and temporal operators, other
+ * filter implementations, ...) is evaluated by the original filter, as are the features of
+ * another type and the multi valued attributes.
+ * <p>
+ * The compiled filter can be used from several threads. It hands the visitors over to the
+ * original filter, so it can be inspected like the original one.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class FilterCompiler {
+
+    private static final Hints SAFE_CONVERSION = new Hints(ConverterFactory.SAFE_CONVERSION,
+            Boolean.TRUE);
+
+    private static final Hints UNSAFE_CONVERSION = new Hints(ConverterFactory.SAFE_CONVERSION,
+            Boolean.FALSE);
+
+    /**
+     * Returned by the values which must be evaluated by the original filter.
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * Compiles the filter for the features of the given type.
+     *
+     * @param filter the filter to compile, may be {@code null}
+     * @param schema the type of the features the filter is going to evaluate
+     * @return the compiled filter, or the filter itself if no part of it can be compiled
+     */
+    public static Filter compile(Filter filter, SimpleFeatureType schema) {
+        if (filter instanceof CompiledFilter) {
+            final CompiledFilter compiled = (CompiledFilter) filter;
+            if (compiled.schema == schema) {
+                return compiled;
+            }
+            filter = compiled.filter;
+        }
+        if (filter == null || schema == null || filter == Filter.INCLUDE
+                || filter == Filter.EXCLUDE) {
+            return filter;
+        }
+        final Node root = compileNode(filter, schema);
+        if (root instanceof Interpreted) {
+            return filter;
+        }
+        return new CompiledFilter(filter, schema, root);
+    }
+
+    private static Node compileNode(Filter filter, SimpleFeatureType schema) {
+        if (filter == Filter.INCLUDE) {
+            return Constant.TRUE;
+        } else if (filter == Filter.EXCLUDE) {
+            return Constant.FALSE;
+        }
+        final Class<?> type = filter.getClass();
+        if (type == AndImpl.class || type == OrImpl.class) {
+            final List<Filter> children = ((LogicFilterImpl) filter).getChildren();
+            final Node[] nodes = new Node[children.size()];
+            boolean compiled = false;
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = compileNode(children.get(i), schema);
+                compiled |= !(nodes[i] instanceof Interpreted);
+            }
+            if (compiled) {
+                return type == AndImpl.class ? new AndNode(nodes) : new OrNode(nodes);
+            }
+        } else if (type == NotImpl.class) {
+            final Node child = compileNode(((NotImpl) filter).getFilter(), schema);
+            if (!(child instanceof Interpreted)) {
+                return new NotNode(child);
+            }
+        } else if (type == IsNullImpl.class) {
+            return new IsNullNode(filter, compileValue(((IsNullImpl) filter).getExpression(),
+                    schema));
+        } else if (type == LikeFilterImpl.class) {
+            final LikeFilterImpl like = (LikeFilterImpl) filter;
+            if (like.getExpression() != null && like.getLiteral() != null) {
+                final String regex = new LikeToRegexConverter(like).getPattern();
+                final Pattern pattern = like.isMatchingCase() ? Pattern.compile(regex) : Pattern
+                        .compile(regex, Pattern.CASE_INSENSITIVE);
+                return new LikeNode(filter, compileValue(like.getExpression(), schema), pattern);
+            }
+        } else if (type == IsBetweenImpl.class) {
+            final IsBetweenImpl between = (IsBetweenImpl) filter;
+            final Object lower = literal(between.getLowerBoundary());
+            final Object upper = literal(between.getUpperBoundary());
+            if (lower != UNRESOLVED && upper != UNRESOLVED && between.getExpression() != null) {
+                return new BetweenNode(between, compileValue(between.getExpression(), schema),
+                        lower, upper);
+            }
+        } else if (type == IsEqualsToImpl.class || type == IsNotEqualToImpl.class) {
+            final IsEqualsToImpl equals = type == IsEqualsToImpl.class ? (IsEqualsToImpl) filter
+                    : ((IsNotEqualToImpl) filter).delegate;
+            final Node node = compileComparison(filter, equals, schema);
+            if (node != null) {
+                return node;
+            }
+        } else if (type == IsGreaterThanImpl.class || type == IsGreaterThanOrEqualToImpl.class
+                || type == IsLessThenImpl.class || type == IsLessThenOrEqualToImpl.class) {
+            final Node node = compileComparison(filter, (CompareFilterImpl) filter, schema);
+            if (node != null) {
+                return node;
+            }
+        }
+        return new Interpreted(filter);
+    }
+
+    /**
+     * Compiles a comparison between a literal and another expression, or returns {@code null}.
+     */
+    private static Node compileComparison(Filter filter, BinaryComparisonOperator comparison,
+            SimpleFeatureType schema) {
+        final Expression e1 = comparison.getExpression1();
+        final Expression e2 = comparison.getExpression2();
+        if (e1 == null || e2 == null || (e1 instanceof Literal) == (e2 instanceof Literal)) {
+            return null;
+        }
+        final boolean literalFirst = e1 instanceof Literal;
+        final Object literal = literal(literalFirst ? e1 : e2);
+        if (literal == UNRESOLVED) {
+            return null;
+        }
+        final Value value = compileValue(literalFirst ? e2 : e1, schema);
+        if (comparison instanceof IsEqualsToImpl) {
+            return new EqualsNode(filter, value, literal, literalFirst,
+                    comparison.isMatchingCase(), filter instanceof IsNotEqualToImpl);
+        }
+        return new OrderNode((CompareFilterImpl) filter, value, literal, literalFirst);
+    }
+
+    /**
+     * Returns the value of a literal, or {@link #UNRESOLVED} if it's not a literal or holds
+     * several values.
+     */
+    private static Object literal(Expression expression) {
+        if (!(expression instanceof Literal)) {
+            return UNRESOLVED;
+        }
+        final Object value = expression.evaluate(null);
+        return value instanceof Collection || value instanceof Property ? UNRESOLVED : value;
+    }
+
+    private static Value compileValue(Expression expression, SimpleFeatureType schema) {
+        if (expression != null && expression.getClass() == AttributeExpressionImpl.class) {
+            final String name = ((AttributeExpressionImpl) expression).getPropertyName();
+            if (name != null && name.length() > 0 && name.indexOf('/') < 0
+                    && name.indexOf('@') < 0 && name.indexOf(':') < 0 && name.indexOf('[') < 0) {
+                final int index = schema.indexOf(name);
+                if (index >= 0) {
+                    return new AttributeValue(index);
+                }
+            }
+        }
+        return new ExpressionValue(expression);
+    }
+
+    /**
+     * The filter returned by {@link FilterCompiler#compile(Filter, SimpleFeatureType)}.
+     */
+    private static final class CompiledFilter implements Filter {
+
+        final Filter filter;
+
+        final SimpleFeatureType schema;
+
+        final Node root;
+
+        /** Another instance of the schema, found equal to it. */
+        volatile SimpleFeatureType equalSchema;
+
+        CompiledFilter(Filter filter, SimpleFeatureType schema, Node root) {
+            this.filter = filter;
+            this.schema = schema;
+            this.root = root;
+        }
+
+        public boolean evaluate(Object object) {
+            if (object instanceof SimpleFeature) {
+                final SimpleFeature feature = (SimpleFeature) object;
+                final SimpleFeatureType type = feature.getFeatureType();
+                if (type == schema || type == equalSchema) {
+                    return root.evaluate(feature);
+                } else if (schema.equals(type)) {
+                    equalSchema = type;
+                    return root.evaluate(feature);
+                }
+            }
+            return filter.evaluate(object);
+        }
+
+        public Object accept(FilterVisitor visitor, Object extraData) {
+            return filter.accept(visitor, extraData);
+        }
+
+        /**
+         * Compares the wrapped filters, the compiled form being only an optimization.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof CompiledFilter) {
+                obj = ((CompiledFilter) obj).filter;
+            }
+            return filter.equals(obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return filter.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return filter.toString();
+        }
+    }
+
+    /**
+     * A compiled filter.
+     */
+    private static abstract class Node {
+
+        abstract boolean evaluate(SimpleFeature feature);
+    }
+
+    /**
+     * A compiled expression.
+     */
+    private static abstract class Value {
+
+        /**
+         * Returns the value of the expression, or {@link #UNRESOLVED} when the original filter
+         * must evaluate the feature.
+         */
+        abstract Object evaluate(SimpleFeature feature);
+    }
+
+    private static final class AttributeValue extends Value {
+
+        private final int index;
+
+        AttributeValue(int index) {
+            this.index = index;
+        }
+
+        @Override
+        Object evaluate(SimpleFeature feature) {
+            final Object value = feature.getAttribute(index);
+            return value instanceof Collection || value instanceof Property ? UNRESOLVED
+                    : value;
+        }
+    }
+
+    private static final class ExpressionValue extends Value {
+
+        private final Expression expression;
+
+        ExpressionValue(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        Object evaluate(SimpleFeature feature) {
+            if (expression == null) {
+                return null;
+            }
+            final Object value = expression.evaluate(feature);
+            return value instanceof Collection || value instanceof Property ? UNRESOLVED
+                    : value;
+        }
+    }
+
+    /**
+     * The conversion of a literal to the class of the last value compared to it.
+     */
+    private static final class Conversion {
+
+        final Class<?> target;
+
+        final Object safe;
+
+        final Object unsafe;
+
+        Conversion(Object literal, Class<?> target, boolean withUnsafe) {
+            this.target = target;
+            this.safe = Converters.convert(literal, target, withUnsafe ? SAFE_CONVERSION : null);
+            this.unsafe = withUnsafe ? Converters.convert(literal, target, UNSAFE_CONVERSION)
+                    : null;
+        }
+    }
+
+    private static final class Constant extends Node {
+
+        static final Constant TRUE = new Constant(true);
+
+        static final Constant FALSE = new Constant(false);
+
+        private final boolean value;
+
+        private Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return value;
+        }
+    }
+
+    private static final class Interpreted extends Node {
+
+        private final Filter filter;
+
+        Interpreted(Filter filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return filter.evaluate(feature);
+        }
+    }
+
+    private static final class AndNode extends Node {
+
+        private final Node[] children;
+
+        AndNode(Node[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            for (Node child : children) {
+                if (!child.evaluate(feature)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class OrNode extends Node {
+
+        private final Node[] children;
+
+        OrNode(Node[] children) {
+            this.children = children;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            for (Node child : children) {
+                if (child.evaluate(feature)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class NotNode extends Node {
+
+        private final Node child;
+
+        NotNode(Node child) {
+            this.child = child;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            return !child.evaluate(feature);
+        }
+    }
+
+    /**
+     * Same as {@link IsNullImpl}.
+     */
+    private static final class IsNullNode extends Node {
+
+        private final Filter filter;
+
+        private final Value value;
+
+        IsNullNode(Filter filter, Value value) {
+            this.filter = filter;
+            this.value = value;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            final Object v = value.evaluate(feature);
+            if (v == UNRESOLVED) {
+                return filter.evaluate(feature);
+            }
+            return v == null;
+        }
+    }
+
+    /**
+     * Same as {@link LikeFilterImpl}, with the pattern compiled upfront.
+     */
+    private static final class LikeNode extends Node {
+
+        private final Filter filter;
+
+        private final Value value;
+
+        private final Pattern pattern;
+
+        LikeNode(Filter filter, Value value, Pattern pattern) {
+            this.filter = filter;
+            this.value = value;
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            final Object v = value.evaluate(feature);
+            if (v == UNRESOLVED) {
+                return filter.evaluate(feature);
+            }
+            return v != null && pattern.matcher(v.toString()).matches();
+        }
+    }
+
+    /**
+     * Same as {@link IsBetweenImpl}, with the conversions of the boundaries cached.
+     */
+    private static final class BetweenNode extends Node {
+
+        private final IsBetweenImpl filter;
+
+        private final Value value;
+
+        private final Object lower;
+
+        private final Object upper;
+
+        private volatile Conversion lowerConversion;
+
+        private volatile Conversion upperConversion;
+
+        BetweenNode(IsBetweenImpl filter, Value value, Object lower, Object upper) {
+            this.filter = filter;
+            this.value = value;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            final Object v = value.evaluate(feature);
+            if (v == UNRESOLVED) {
+                return filter.evaluate(feature);
+            } else if (v == null) {
+                return false;
+            }
+            final Class<?> target = v.getClass();
+            Conversion l = lowerConversion;
+            if (l == null || l.target != target) {
+                lowerConversion = l = new Conversion(lower, target, false);
+            }
+            Conversion u = upperConversion;
+            if (u == null || u.target != target) {
+                upperConversion = u = new Conversion(upper, target, false);
+            }
+            if (l.safe == null || u.safe == null) {
+                // the other conversions depend on the value
+                return filter.evaluateInternal(v, lower, upper);
+            }
+            return filter.comparable(l.safe).compareTo(v) <= 0
+                    && filter.comparable(u.safe).compareTo(v) >= 0;
+        }
+    }
+
+    /**
+     * Same as {@link IsEqualsToImpl} and {@link IsNotEqualToImpl}, with the conversions of the
+     * literal cached.
+     */
+    private static final class EqualsNode extends Node {
+
+        private final Filter filter;
+
+        private final Value value;
+
+        private final Object literal;
+
+        private final boolean literalFirst;
+
+        private final boolean matchCase;
+
+        private final boolean negate;
+
+        /** The literal as a number, {@code null} if it's not a number. */
+        private final Number literalNumber;
+
+        /** Whether the literal is a string which is not a number. */
+        private final boolean literalNotNumber;
+
+        private final String literalString;
+
+        private volatile Conversion conversion;
+
+        EqualsNode(Filter filter, Value value, Object literal, boolean literalFirst,
+                boolean matchCase, boolean negate) {
+            this.filter = filter;
+            this.value = value;
+            this.literal = literal;
+            this.literalFirst = literalFirst;
+            this.matchCase = matchCase;
+            this.negate = negate;
+            Number number = null;
+            if (literal instanceof Number) {
+                number = (Number) literal;
+            } else if (literal instanceof CharSequence) {
+                try {
+                    number = parseToNumber(literal.toString());
+                } catch (NumberFormatException e) {
+                    // compares as a string
+                }
+            }
+            this.literalNumber = number;
+            this.literalNotNumber = literal instanceof CharSequence && number == null;
+            this.literalString = matchCase || literal == null ? null : Converters.convert(
+                    literal, String.class);
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            final Object v = value.evaluate(feature);
+            if (v == UNRESOLVED) {
+                return filter.evaluate(feature);
+            }
+            return equals(v) != negate;
+        }
+
+        private boolean equals(Object v) {
+            if (v == literal) {
+                return true;
+            }
+            if (v == null || literal == null) {
+                return false;
+            }
+            if (literalFirst ? literal.equals(v) : v.equals(literal)) {
+                return true;
+            }
+
+            // the literal converted to the value class
+            final Class<?> target = v.getClass();
+            Conversion c = conversion;
+            if (c == null || c.target != target) {
+                conversion = c = new Conversion(literal, target, false);
+            }
+            if (c.safe != null && v.equals(c.safe)) {
+                return true;
+            }
+
+            final boolean valueNumeric = v instanceof Number;
+            final boolean literalNumeric = literal instanceof Number;
+            if ((valueNumeric && literalNumeric) || (valueNumeric && literal instanceof CharSequence)
+                    || (literalNumeric && v instanceof CharSequence)) {
+                if (literalNotNumber) {
+                    return false;
+                }
+                final Number n1;
+                try {
+                    n1 = valueNumeric ? (Number) v : parseToNumber(v.toString());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                final Number n2 = literalNumber;
+                final double fp1 = n1.doubleValue();
+                final double fp2 = n2.doubleValue();
+                final long lg1, lg2;
+                if (fp1 == (double) (lg1 = n1.longValue()) && fp2 == (double) (lg2 = n2.longValue())) {
+                    return lg1 == lg2;
+                } else {
+                    return (fp1 == fp2) || (Double.isNaN(fp1) && Double.isNaN(fp2));
+                }
+            } else if (!matchCase) {
+                final String s = Converters.convert(v, String.class);
+                return literalFirst ? literalString.equalsIgnoreCase(s) : s
+                        .equalsIgnoreCase(literalString);
+            }
+            return false;
+        }
+
+        private static Number parseToNumber(final String value) throws NumberFormatException {
+            try {
+                return Long.valueOf(value);
+            } catch (NumberFormatException e) {
+                return Double.valueOf(value);
+            }
+        }
+    }
+
+    /**
+     * Same as the greater and less than filters, with the conversions of the literal cached.
+     */
+    private static final class OrderNode extends Node {
+
+        private final CompareFilterImpl filter;
+
+        private final Value value;
+
+        private final Object literal;
+
+        private final boolean literalFirst;
+
+        private final int operator;
+
+        private volatile Conversion conversion;
+
+        OrderNode(CompareFilterImpl filter, Value value, Object literal, boolean literalFirst) {
+            this.filter = filter;
+            this.value = value;
+            this.literal = literal;
+            this.literalFirst = literalFirst;
+            final Class<?> type = filter.getClass();
+            this.operator = type == IsGreaterThanImpl.class ? 0
+                    : type == IsGreaterThanOrEqualToImpl.class ? 1
+                            : type == IsLessThenImpl.class ? 2 : 3;
+        }
+
+        @Override
+        boolean evaluate(SimpleFeature feature) {
+            Object v = value.evaluate(feature);
+            if (v == UNRESOLVED) {
+                return filter.evaluate(feature);
+            }
+            if (v == null || literal == null) {
+                return false;
+            }
+
+            // aligns the values as BinaryComparisonAbstract.eval(Object, Object)
+            Object l = literal;
+            final Class<?> target = v.getClass();
+            if (target != literal.getClass()) {
+                Conversion c = conversion;
+                if (c == null || c.target != target) {
+                    conversion = c = new Conversion(literal, target, true);
+                }
+                Object converted;
+                if (literalFirst) {
+                    if ((converted = Converters.convert(v, literal.getClass(), SAFE_CONVERSION)) != null) {
+                        v = converted;
+                    } else if (c.safe != null) {
+                        l = c.safe;
+                    } else if ((converted = Converters.convert(v, literal.getClass(),
+                            UNSAFE_CONVERSION)) != null) {
+                        v = converted;
+                    } else if (c.unsafe != null) {
+                        l = c.unsafe;
+                    }
+                } else {
+                    if (c.safe != null) {
+                        l = c.safe;
+                    } else if ((converted = Converters.convert(v, literal.getClass(),
+                            SAFE_CONVERSION)) != null) {
+                        v = converted;
+                    } else if (c.unsafe != null) {
+                        l = c.unsafe;
+                    } else if ((converted = Converters.convert(v, literal.getClass(),
+                            UNSAFE_CONVERSION)) != null) {
+                        v = converted;
+                    }
+                }
+            }
+
+            final Comparable c1 = filter.comparable(literalFirst ? l : v);
+            final Comparable c2 = filter.comparable(literalFirst ? v : l);
+            if (c1 == null || c2 == null) {
+                return false;
+            }
+            final int result = filter.compare(c1, c2);
+            switch (operator) {
+            case 0:
+                return result > 0;
+            case 1:
+                return result >= 0;
+            case 2:
+                return result < 0;
+            default:
+                return result <= 0;
+            }
+        }
+    }
+}
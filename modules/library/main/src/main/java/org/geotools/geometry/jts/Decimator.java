@@ -27,6 +27,7 @@ import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiPoint;
@@ -66,6 +67,25 @@ public final class Decimator {
     
     private static final double EPS = 1e-9; 
 
+    private static final GeometryFactory LITE_FACTORY = new GeometryFactory(
+            new LiteCoordinateSequenceFactory());
+
+    /**
+     * Scratch buffers smaller than this are never allocated
+     */
+    static final int MIN_SCRATCH_BUFFER_SIZE = 1024;
+
+    /**
+     * Scratch buffers larger than this are not retained in the thread local (8MB worth of doubles)
+     */
+    static final int MAX_SCRATCH_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Per thread buffer used to decimate and transform coordinates without touching the source
+     * geometries
+     */
+    private static final ThreadLocal<double[]> SCRATCH_BUFFER = new ThreadLocal<double[]>();
+
 	private double spanx = -1;
 
 	private double spany = -1;
@@ -228,10 +248,44 @@ public final class Decimator {
 	    this.spany = spany;
 	}
 
+    /**
+     * Decimates, transforms and generalizes the geometry, modifying its coordinates in place.
+     * The geometry must be based on {@link LiteCoordinateSequence}
+     * 
+     * @param geometry
+     * @param transform
+     * @return
+     * @throws TransformException
+     */
+    public final Geometry decimateTransformGeneralize(Geometry geometry,
+            MathTransform transform) throws TransformException {
+        return decimateTransformGeneralize(geometry, transform, false);
+    }
+
+    /**
+     * Decimates, transforms and generalizes the geometry. When <code>copy</code> is true the
+     * source geometry is left untouched, and can be based on any coordinate sequence: the
+     * coordinates are decimated and transformed in a per thread scratch buffer, and the
+     * resulting geometry will use {@link LiteCoordinateSequence} instances allocated at the
+     * exact output size. This is cheaper than cloning the geometry and then decimating it in
+     * place, as the full size copy of the coordinates is avoided.
+     * 
+     * @param geometry
+     * @param transform
+     * @param copy
+     * @return
+     * @throws TransformException
+     */
     public final Geometry decimateTransformGeneralize(Geometry geometry,
-			MathTransform transform) throws TransformException {
+			MathTransform transform, boolean copy) throws TransformException {
+        if (copy && transform != null && transform.getSourceDimensions() != 2) {
+            // the scratch buffer path works in 2D only
+            return decimateTransformGeneralize(LiteCoordinateSequence.cloneGeometry(geometry,
+                    transform.getSourceDimensions()), transform, false);
+        }
 		if (geometry instanceof GeometryCollection) {
 			GeometryCollection collection = (GeometryCollection) geometry;
+			final GeometryFactory factory = copy ? LITE_FACTORY : collection.getFactory();
 			final int length = collection.getNumGeometries();
 			boolean cloned = false;
 			Class elementType = null;
@@ -239,7 +293,7 @@ public final class Decimator {
 			for (int i = 0; i < length; i++) {
 				Geometry source = collection.getGeometryN(i);
                 Geometry generalized = decimateTransformGeneralize(source,
-						transform);
+						transform, copy);
                 
                 // lazily handle the case where we need to deep clone
                 if(generalized != source) {
@@ -262,22 +316,27 @@ public final class Decimator {
 			    if(elementType == Point.class) {
 			        Point[] points = new Point[elements.length];
 			        System.arraycopy(elements, 0, points, 0, elements.length);
-                    return collection.getFactory().createMultiPoint(points);
+                    return factory.createMultiPoint(points);
                 } else if (elementType == LineString.class) {
                     LineString[] lines = new LineString[elements.length];
                     System.arraycopy(elements, 0, lines, 0, elements.length);
-                    return collection.getFactory().createMultiLineString(lines);
+                    return factory.createMultiLineString(lines);
                 } else if (elementType == Polygon.class) {
                     Polygon[] polys = new Polygon[elements.length];
                     System.arraycopy(elements, 0, polys, 0, elements.length);
-                    return collection.getFactory().createMultiPolygon(polys);
+                    return factory.createMultiPolygon(polys);
                 } else {
-                    return collection.getFactory().createGeometryCollection(elements);
+                    return factory.createGeometryCollection(elements);
 			    }
 			} else {
 			    return collection;
 			}
 		} else if (geometry instanceof Point) {
+		    if (copy) {
+		        LiteCoordinateSequence seq = copyDecimateTransformGeneralize(
+		                ((Point) geometry).getCoordinateSequence(), transform, false, spanx, spany);
+		        return LITE_FACTORY.createPoint(seq);
+		    }
 			LiteCoordinateSequence seq = (LiteCoordinateSequence) ((Point) geometry)
 					.getCoordinateSequence();
             decimateTransformGeneralize(seq, transform, false, spanx, spany);
@@ -285,14 +344,14 @@ public final class Decimator {
 		} else if (geometry instanceof Polygon) {
 			Polygon polygon = (Polygon) geometry;
             LinearRing shell = (LinearRing) decimateTransformGeneralize(polygon.getExteriorRing(),
-                    transform);
+                    transform, copy);
             boolean cloned = shell != polygon.getExteriorRing();
             final int length = polygon.getNumInteriorRing();
             LinearRing[] holes = cloned ? new LinearRing[length] : null;
 			for (int i = 0; i < length; i++) {
                 LineString hole = polygon.getInteriorRingN(i);
                 LinearRing generalized = (LinearRing) decimateTransformGeneralize(hole,
-						transform);
+						transform, copy);
                 cloned |= generalized != hole;
                 if (cloned) {
                     if (holes == null) {
@@ -306,7 +365,8 @@ public final class Decimator {
             }
 
             if (cloned) {
-                return polygon.getFactory().createPolygon(shell, holes);
+                GeometryFactory factory = copy ? LITE_FACTORY : polygon.getFactory();
+                return factory.createPolygon(shell, holes);
             } else {
                 return polygon;
 			}
@@ -322,18 +382,29 @@ public final class Decimator {
                 spany = -1;
             }
             CoordinateSequence originalSequence = ls.getCoordinateSequence();
-            LiteCoordinateSequence seq = LiteCoordinateSequenceFactory.lite(originalSequence);
-            boolean loop = ls instanceof LinearRing;
-            if (!loop && seq.size() > 1) {
-                double x0 = seq.getOrdinate(0, 0);
-                double y0 = seq.getOrdinate(0, 1);
-                double x1 = seq.getOrdinate(seq.size() - 1, 0);
-                double y1 = seq.getOrdinate(seq.size() - 1, 1);
+            // closed lines are generalized as loops, but only rings are rebuilt as rings
+            boolean ring = ls instanceof LinearRing;
+            boolean loop = ring;
+            if (!loop && originalSequence.size() > 1) {
+                double x0 = originalSequence.getOrdinate(0, 0);
+                double y0 = originalSequence.getOrdinate(0, 1);
+                double x1 = originalSequence.getOrdinate(originalSequence.size() - 1, 0);
+                double y1 = originalSequence.getOrdinate(originalSequence.size() - 1, 1);
                 loop = Math.abs(x0 - x1) < EPS && Math.abs(y0 - y1) < EPS;
             }
+            if (copy) {
+                LiteCoordinateSequence seq = copyDecimateTransformGeneralize(originalSequence,
+                        transform, loop, spanx, spany);
+                if (ring) {
+                    return LITE_FACTORY.createLinearRing(seq);
+                } else {
+                    return LITE_FACTORY.createLineString(seq);
+                }
+            }
+            LiteCoordinateSequence seq = LiteCoordinateSequenceFactory.lite(originalSequence);
             decimateTransformGeneralize(seq, transform, loop, spanx, spany);
             if(seq != originalSequence) {
-                if(loop) {
+                if(ring) {
                     ls = ls.getFactory().createLinearRing(seq);
                 } else {
                     ls = ls.getFactory().createLineString(seq);
@@ -549,6 +620,78 @@ public final class Decimator {
 		}
 	}
 
+    /**
+     * Same as {@link #decimateTransformGeneralize(LiteCoordinateSequence, MathTransform, boolean, double, double)}
+     * but reads the source coordinates into a per thread scratch buffer, leaving the source
+     * sequence untouched, and allocates only the final coordinate array
+     */
+    private final LiteCoordinateSequence copyDecimateTransformGeneralize(
+            CoordinateSequence source, MathTransform transform, boolean ring, double spanx,
+            double spany) throws TransformException {
+        final int ncoords = source.size();
+        final double[] coords = getScratchBuffer(ncoords * 2);
+        if (source instanceof LiteCoordinateSequence && source.getDimension() == 2) {
+            System.arraycopy(((LiteCoordinateSequence) source).getArray(), 0, coords, 0,
+                    ncoords * 2);
+        } else {
+            for (int i = 0; i < ncoords; i++) {
+                coords[i * 2] = source.getOrdinate(i, 0);
+                coords[i * 2 + 1] = source.getOrdinate(i, 1);
+            }
+        }
+
+        boolean transforming = transform != null && !transform.isIdentity();
+        int actualCoords;
+        if (ncoords < 2 || (spanx == -1 && spany == -1)) {
+            // nothing to generalize, just transform
+            actualCoords = ncoords;
+        } else {
+            // generalize, use the heavier algorithm for longer lines
+            actualCoords = spanBasedGeneralize(ncoords, coords, spanx, spany);
+            if (DP_THRESHOLD > 0 && actualCoords > DP_THRESHOLD) {
+                actualCoords = dpBasedGeneralize(actualCoords, coords,
+                        Math.min(spanx, spany) * Math.min(spanx, spany));
+            }
+
+            // handle rings, keep at least a triangle, or the A-B-A pseudo ring
+            if (ring && actualCoords <= 3) {
+                if (ncoords > 3) {
+                    actualCoords = 3;
+                } else if (ncoords > 2) {
+                    actualCoords = 2;
+                }
+            }
+
+            // always have last one
+            coords[actualCoords * 2] = coords[(ncoords - 1) * 2];
+            coords[actualCoords * 2 + 1] = coords[(ncoords - 1) * 2 + 1];
+            actualCoords++;
+        }
+
+        double[] result = new double[actualCoords * 2];
+        if (transforming) {
+            transform.transform(coords, 0, result, 0, actualCoords);
+        } else {
+            System.arraycopy(coords, 0, result, 0, actualCoords * 2);
+        }
+        return new LiteCoordinateSequence(result, 2);
+    }
+
+    /**
+     * Returns a per thread scratch buffer that can hold at least the specified number of
+     * doubles. Very large buffers are not retained, to avoid pinning memory
+     */
+    static double[] getScratchBuffer(int size) {
+        double[] buffer = SCRATCH_BUFFER.get();
+        if (buffer == null || buffer.length < size) {
+            buffer = new double[Math.max(size, MIN_SCRATCH_BUFFER_SIZE)];
+            if (buffer.length <= MAX_SCRATCH_BUFFER_SIZE) {
+                SCRATCH_BUFFER.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
     private int spanBasedGeneralize(int ncoords, double[] coords, double spanx, double spany) {
         int actualCoords = 1;
 		double lastX = coords[0];
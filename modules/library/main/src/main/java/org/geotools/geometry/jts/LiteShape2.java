@@ -141,17 +141,23 @@ public final class LiteShape2 implements Shape, Cloneable {
 	public LiteShape2(Geometry geom, MathTransform mathTransform,
 			Decimator decimator, boolean generalize, boolean clone) throws TransformException,
 			FactoryException {
+		boolean copy = false;
 		if (geom != null) {
 		    if(!clone && geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)
 		        this.geometry = geom;
-		    else
+		    else if (decimator != null
+		            && (mathTransform == null || mathTransform.getSourceDimensions() == 2)) {
+		        // the decimator will build the copy, skipping the full size clone
+		        this.geometry = geom;
+		        copy = true;
+		    } else
 		        this.geometry = LiteCoordinateSequence.cloneGeometry(geom);
 		}
 
 		this.mathTransform = mathTransform;
 		if (decimator != null) {
             this.geometry = decimator
-                    .decimateTransformGeneralize(this.geometry, this.mathTransform);
+                    .decimateTransformGeneralize(this.geometry, this.mathTransform, copy);
 			this.geometry.geometryChanged();
 		} else {
 		        // if we have a transform a decimation span can be detected, so try to decimate anyways
@@ -1,16 +1,23 @@
 package org.geotools.data.sort;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import org.geotools.data.Query;
+
 import org.geotools.data.simple.DelegateSimpleFeatureReader;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureReader;
 import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.factory.Hints;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
@@ -180,6 +187,89 @@ public class SortedReaderTest {
         }
     }
 
+    @Test
+    public void testFileSortCompressed() throws IOException {
+        Query q = new Query("test");
+        q.setSortBy(peopleAsc);
+        q.setHints(new Hints(Hints.MAX_MEMORY_SORT, 5));
+        q.getHints().put(Hints.SORT_SPILL_COMPRESSION, Boolean.TRUE);
+        SimpleFeatureReader sr = null;
+        try {
+            sr = new SortedFeatureReader(fr, q);
+            assertSortedOnPeopleAsc(sr);
+        } finally {
+            if (sr != null) {
+                sr.close();
+            }
+        }
+    }
+
+    @Test
+    public void testFileSortStable() throws IOException {
+        // lots of ties on the byte attribute, the on disk merge must keep the same order
+        // as the in memory (stable) sort
+        SortBy[] byteAsc = new SortBy[] { ff.sort("byte", SortOrder.ASCENDING) };
+        List<String> expected = readIds(new SortedFeatureReader(new DelegateSimpleFeatureReader(
+                schema, fc.features()), byteAsc, 1000));
+        for (int maxFeatures : new int[] { 1, 7, 100 }) {
+            List<String> actual = readIds(new SortedFeatureReader(new DelegateSimpleFeatureReader(
+                    schema, fc.features()), byteAsc, maxFeatures));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testBlockRoundTrip() throws IOException {
+        List<SimpleFeature> features = new ArrayList<SimpleFeature>();
+        while (fr.hasNext()) {
+            features.add(fr.next());
+        }
+        // write enough to span multiple pages
+        List<SimpleFeature> block = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < 20; i++) {
+            block.addAll(features);
+        }
+
+        long[] lengths = new long[2];
+        for (int i = 0; i < 2; i++) {
+            boolean compressed = i == 1;
+            File file = File.createTempFile("sorted", ".features");
+            SimpleFeatureIO io = new SimpleFeatureIO(file, schema, compressed);
+            try {
+                io.writeBlock(block);
+                lengths[i] = io.getOffset();
+                io.seek(0);
+                List<SimpleFeature> read = new ArrayList<SimpleFeature>();
+                int pages = 0;
+                while (!io.endOfFile()) {
+                    io.readPage(read);
+                    pages++;
+                }
+                assertTrue(pages > 1);
+                assertEquals(block.size(), read.size());
+                for (int j = 0; j < block.size(); j++) {
+                    assertEquals(block.get(j).getID(), read.get(j).getID());
+                    assertEquals(block.get(j).getAttributes(), read.get(j).getAttributes());
+                }
+            } finally {
+                io.close(true);
+            }
+        }
+        assertTrue(lengths[1] < lengths[0]);
+    }
+
+    private List<String> readIds(SimpleFeatureReader reader) throws IOException {
+        List<String> result = new ArrayList<String>();
+        try {
+            while (reader.hasNext()) {
+                result.add(reader.next().getID());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
     @Test
     public void testIteratorSortReduce() throws IOException {
         // make it so that we are not going to hit the disk
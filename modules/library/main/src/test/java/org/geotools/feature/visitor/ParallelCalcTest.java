@@ -0,0 +1,195 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.feature.visitor;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.util.DefaultProgressListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.Feature;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.FilterFactory;
+
+public class ParallelCalcTest {
+
+    static final int COUNT = 10000;
+
+    SimpleFeatureType featureType;
+
+    List<SimpleFeature> features;
+
+    @Before
+    public void setUp() throws Exception {
+        SimpleFeatureTypeBuilder ftb = new SimpleFeatureTypeBuilder();
+        ftb.setName("test");
+        ftb.add("intVal", Integer.class);
+        ftb.add("doubleVal", Double.class);
+        ftb.add("name", String.class);
+        featureType = ftb.buildFeatureType();
+
+        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(featureType);
+        features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < COUNT; i++) {
+            // a few nulls, and values that can be summed exactly in any order
+            Double doubleVal = i % 100 == 0 ? null : Double.valueOf((i * 7) % 1000);
+            features.add(fb.buildFeature("f" + i, new Object[] { i - COUNT / 2, doubleVal,
+                    "n" + (i % 37) }));
+        }
+    }
+
+    @Test
+    public void testSum() throws Exception {
+        assertSameResult(new SumVisitor("intVal", featureType),
+                new SumVisitor("intVal", featureType), new SumVisitor("intVal", featureType));
+        assertSameResult(new SumVisitor("doubleVal", featureType), new SumVisitor("doubleVal",
+                featureType), new SumVisitor("doubleVal", featureType));
+    }
+
+    @Test
+    public void testAverage() throws Exception {
+        assertSameResult(new AverageVisitor("doubleVal", featureType), new AverageVisitor(
+                "doubleVal", featureType), new AverageVisitor("doubleVal", featureType));
+    }
+
+    @Test
+    public void testMinMax() throws Exception {
+        assertSameResult(new MinVisitor("intVal", featureType),
+                new MinVisitor("intVal", featureType), new MinVisitor("intVal", featureType));
+        assertSameResult(new MaxVisitor("doubleVal", featureType), new MaxVisitor("doubleVal",
+                featureType), new MaxVisitor("doubleVal", featureType));
+
+        MaxVisitor max = new MaxVisitor("doubleVal", featureType);
+        assertTrue(ParallelCalc.visit(features, max));
+        assertEquals(COUNT / 100, max.getNullCount());
+    }
+
+    @Test
+    public void testCount() throws Exception {
+        assertSameResult(new CountVisitor(), new CountVisitor(), new CountVisitor());
+    }
+
+    @Test
+    public void testUnique() throws Exception {
+        assertSameResult(new UniqueVisitor("name", featureType), new UniqueVisitor("name",
+                featureType), new UniqueVisitor("name", featureType));
+
+        UniqueVisitor sequential = new UniqueVisitor("name", featureType);
+        sequential.setPreserveOrder(true);
+        UniqueVisitor forkJoin = new UniqueVisitor("name", featureType);
+        forkJoin.setPreserveOrder(true);
+        UniqueVisitor streaming = new UniqueVisitor("name", featureType);
+        streaming.setPreserveOrder(true);
+        assertSameResult(sequential, forkJoin, streaming);
+        assertEquals(new ArrayList<Object>(sequential.getUnique()), new ArrayList<Object>(
+                forkJoin.getUnique()));
+        assertEquals(new ArrayList<Object>(sequential.getUnique()), new ArrayList<Object>(
+                streaming.getUnique()));
+    }
+
+    @Test
+    public void testNotParallelizable() throws Exception {
+        UniqueVisitor paged = new UniqueVisitor("name", featureType);
+        paged.setMaxFeatures(10);
+        assertFalse(ParallelCalc.isParallelizable(paged));
+        assertNull(ParallelCalc.create(paged));
+        assertFalse(ParallelCalc.visit(features, paged));
+
+        assertFalse(ParallelCalc.isParallelizable(new MedianVisitor("intVal", featureType)));
+        // subclasses might have extra state
+        assertFalse(ParallelCalc.isParallelizable(new CountVisitor() {
+        }));
+
+        // too few features
+        assertTrue(ParallelCalc.isParallelizable(new CountVisitor(), COUNT));
+        assertFalse(ParallelCalc.isParallelizable(new CountVisitor(),
+                ParallelCalc.BATCH_SIZE * 2 - 1));
+        assertFalse(ParallelCalc.visit(features.subList(0, 10), new CountVisitor()));
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        DefaultProgressListener progress = new DefaultProgressListener();
+        CountVisitor count = new CountVisitor();
+        assertTrue(ParallelCalc.visit(features, count, progress));
+        assertEquals(COUNT, count.getCount());
+        assertTrue(progress.isStarted());
+        assertTrue(progress.isCompleted());
+        assertEquals(100f, progress.getProgress(), 0f);
+
+        // a canceled visit stops before merging the partitions
+        progress = new DefaultProgressListener();
+        progress.setCanceled(true);
+        count = new CountVisitor();
+        assertTrue(ParallelCalc.visit(features, count, progress));
+        assertEquals(0, count.getCount());
+        assertTrue(progress.isCompleted());
+    }
+
+    @Test
+    public void testFunctionNotParallelized() throws Exception {
+        // functions might keep state, and are not evaluated by concurrent partials
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        SumVisitor sum = new SumVisitor(ff.function("abs", ff.property("intVal")));
+        assertFalse(ParallelCalc.isParallelizable(sum));
+        assertFalse(ParallelCalc.visit(features, sum, null));
+        assertTrue(ParallelCalc.isParallelizable(new SumVisitor(ff.property("intVal"))));
+    }
+
+    @Test
+    public void testSmallStream() throws Exception {
+        // a single batch is visited on the calling thread
+        CountVisitor count = new CountVisitor();
+        ParallelCalc calc = ParallelCalc.create(count);
+        for (int i = 0; i < 10; i++) {
+            calc.visit(features.get(i));
+        }
+        assertTrue(calc.pending.isEmpty());
+        calc.complete();
+        assertEquals(10, count.getCount());
+    }
+
+    /**
+     * Visits the features sequentially, with the fork/join and with the streaming parallel
+     * calculations, checking the results are the same
+     */
+    void assertSameResult(MergeableFeatureCalc sequential, MergeableFeatureCalc forkJoin,
+            MergeableFeatureCalc streaming) throws Exception {
+        for (Feature feature : features) {
+            sequential.visit(feature);
+        }
+        Object expected = sequential.getResult().getValue();
+
+        assertTrue(ParallelCalc.visit(features, forkJoin));
+        assertEquals(expected, forkJoin.getResult().getValue());
+
+        ParallelCalc calc = ParallelCalc.create(streaming);
+        assertNotNull(calc);
+        for (Feature feature : features) {
+            calc.visit(feature);
+        }
+        calc.complete();
+        assertEquals(expected, streaming.getResult().getValue());
+    }
+}
@@ -52,6 +52,36 @@ public class AttributeExpressionTest extends TestCase {
 		ex = new AttributeExpressionImpl( "@id" );
 		assertEquals( "fid", ex.evaluate( feature ) );
 	}
+
+	public void testFeatureTypeChange() {
+		SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+		typeBuilder.setName( "first" );
+		typeBuilder.add( "foo", Integer.class );
+		typeBuilder.add( "bar", Double.class );
+		SimpleFeatureType first = typeBuilder.buildFeatureType();
+
+		typeBuilder.setName( "second" );
+		typeBuilder.add( "bar", Double.class );
+		typeBuilder.add( "foo", Integer.class );
+		SimpleFeatureType second = typeBuilder.buildFeatureType();
+
+		typeBuilder.setName( "third" );
+		typeBuilder.add( "bar", Double.class );
+		SimpleFeatureType third = typeBuilder.buildFeatureType();
+
+		SimpleFeature f1 = SimpleFeatureBuilder.build( first, new Object[] { 1, 2.0 }, "f1" );
+		SimpleFeature f2 = SimpleFeatureBuilder.build( second, new Object[] { 3.0, 4 }, "f2" );
+		SimpleFeature f3 = SimpleFeatureBuilder.build( third, new Object[] { 5.0 }, "f3" );
+
+		// the attribute index follows the feature type
+		AttributeExpressionImpl ex = new AttributeExpressionImpl( "foo" );
+		assertEquals( new Integer( 1 ), ex.evaluate( f1 ) );
+		assertEquals( new Integer( 4 ), ex.evaluate( f2 ) );
+		assertEquals( "1", ex.evaluate( f1, String.class ) );
+		assertEquals( new Double( 4 ), ex.evaluate( f2, Double.class ) );
+		assertNull( ex.evaluate( f3 ) );
+		assertEquals( new Integer( 1 ), ex.evaluate( f1 ) );
+	}
 	
 	
 }
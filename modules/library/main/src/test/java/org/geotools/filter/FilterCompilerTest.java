@@ -0,0 +1,204 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.expression.Expression;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/**
+ * Testing {@link FilterCompiler} class.
+ *
+ * @source $URL$
+ */
+public class FilterCompilerTest extends Assert {
+
+    private final FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(null);
+
+    private SimpleFeatureType schema;
+
+    private List<SimpleFeature> features;
+
+    @Before
+    public void setUp() throws Exception {
+        schema = DataUtilities.createType("test",
+                "geom:Point,name:String,count:Integer,size:Double,code:String,when:Date");
+        final GeometryFactory gf = new GeometryFactory();
+        final Object[][] rows = {
+                { "Road", 1, 1.5, "10", new Date(1000) },
+                { "road", 10, 10.0, "1E1", new Date(2000) },
+                { "River", 5, -0.0, "abc", new Date(3000) },
+                { "r_ver", -3, Double.NaN, "5", null },
+                { null, null, null, null, null } };
+        features = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < rows.length; i++) {
+            final Object[] row = rows[i];
+            final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(schema);
+            builder.add(gf.createPoint(new Coordinate(i, i)));
+            builder.addAll(row);
+            features.add(builder.buildFeature("test." + i));
+        }
+    }
+
+    @Test
+    public void testComparisons() {
+        final Object[] literals = { 1, 10L, "10", "1.5", 1.5f, "abc", "ROAD", "5", null,
+                new Date(2000), "1970-01-01T00:00:02Z" };
+        for (String name : new String[] { "name", "count", "size", "code", "when" }) {
+            for (Object literal : literals) {
+                for (boolean literalFirst : new boolean[] { false, true }) {
+                    final Expression e1 = literalFirst ? ff.literal(literal) : ff.property(name);
+                    final Expression e2 = literalFirst ? ff.property(name) : ff.literal(literal);
+                    for (boolean matchCase : new boolean[] { true, false }) {
+                        assertCompiled(ff.equal(e1, e2, matchCase));
+                        assertCompiled(ff.notEqual(e1, e2, matchCase));
+                        assertCompiled(ff.greater(e1, e2, matchCase));
+                        assertCompiled(ff.greaterOrEqual(e1, e2, matchCase));
+                        assertCompiled(ff.less(e1, e2, matchCase));
+                        assertCompiled(ff.lessOrEqual(e1, e2, matchCase));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBetween() {
+        final Object[][] bounds = { { 1, 5 }, { "1", "10" }, { 0.5, "7" }, { "a", "s" },
+                { new Date(1500), "1970-01-01T00:00:03Z" } };
+        for (String name : new String[] { "name", "count", "size", "code", "when" }) {
+            for (Object[] bound : bounds) {
+                assertCompiled(ff.between(ff.property(name), ff.literal(bound[0]),
+                        ff.literal(bound[1])));
+            }
+        }
+    }
+
+    @Test
+    public void testLikeAndNull() {
+        for (String name : new String[] { "name", "code", "count" }) {
+            assertCompiled(ff.isNull(ff.property(name)));
+            for (String pattern : new String[] { "R*", "r!_v*", "?oad", "1*" }) {
+                for (boolean matchCase : new boolean[] { true, false }) {
+                    assertCompiled(ff.like(ff.property(name), pattern, "*", "?", "!", matchCase));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLogic() {
+        final Filter road = ff.like(ff.property("name"), "r*", "*", "?", "!", false);
+        final Filter small = ff.less(ff.property("count"), ff.literal(5));
+        final Filter bbox = ff.bbox("geom", 0.5, 0.5, 3.5, 3.5, null);
+        assertCompiled(ff.and(road, small));
+        assertCompiled(ff.or(road, small));
+        assertCompiled(ff.not(ff.and(road, bbox)));
+        assertCompiled(ff.or(Arrays.asList(small, bbox, Filter.EXCLUDE)));
+        assertCompiled(ff.and(Arrays.asList(road, Filter.INCLUDE)));
+    }
+
+    @Test
+    public void testNotCompiled() throws Exception {
+        // nothing to compile
+        final Filter bbox = ff.bbox("geom", 0.5, 0.5, 3.5, 3.5, null);
+        assertSame(bbox, FilterCompiler.compile(bbox, schema));
+        assertSame(Filter.INCLUDE, FilterCompiler.compile(Filter.INCLUDE, schema));
+        assertNull(FilterCompiler.compile(null, schema));
+
+        // the compiled filter can be inspected as the original one
+        final Filter filter = ff.equals(ff.property("name"), ff.literal("Road"));
+        final Filter compiled = FilterCompiler.compile(filter, schema);
+        assertNotSame(filter, compiled);
+        assertEquals(filter.toString(), compiled.toString());
+        assertEquals(compiled, filter);
+        assertEquals(filter.hashCode(), compiled.hashCode());
+        final SimpleFeatureType copy = DataUtilities.createType("copy", "name:String");
+        assertEquals(compiled, FilterCompiler.compile(filter, copy));
+        assertFalse(compiled.equals(FilterCompiler.compile(
+                ff.equals(ff.property("name"), ff.literal("River")), schema)));
+        assertSame(compiled, FilterCompiler.compile(compiled, schema));
+        final FilterAttributeExtractor extractor = new FilterAttributeExtractor();
+        compiled.accept(extractor, null);
+        assertEquals(Collections.singleton("name"), extractor.getAttributeNameSet());
+    }
+
+    @Test
+    public void testOtherFeatures() throws Exception {
+        final Filter filter = ff.greater(ff.property("count"), ff.literal(2));
+        final Filter compiled = FilterCompiler.compile(filter, schema);
+
+        // an equal type
+        final SimpleFeatureType copy = DataUtilities.createType("test",
+                "geom:Point,name:String,count:Integer,size:Double,code:String,when:Date");
+        final SimpleFeature feature = SimpleFeatureBuilder.retype(features.get(2), copy);
+        assertTrue(compiled.evaluate(feature));
+
+        // another type, with the attributes in another order
+        final SimpleFeatureType other = DataUtilities.createType("other",
+                "count:Integer,name:String");
+        final SimpleFeature small = SimpleFeatureBuilder.build(other, new Object[] { 1, "a" },
+                null);
+        final SimpleFeature big = SimpleFeatureBuilder.build(other, new Object[] { 3, "b" },
+                null);
+        assertFalse(compiled.evaluate(small));
+        assertTrue(compiled.evaluate(big));
+
+        // not a feature
+        assertFalse(compiled.evaluate(null));
+    }
+
+    /**
+     * Checks the compiled filter evaluates the features as the original one.
+     */
+    private void assertCompiled(Filter filter) {
+        final Filter compiled = FilterCompiler.compile(filter, schema);
+        for (SimpleFeature feature : features) {
+            boolean expected;
+            try {
+                expected = filter.evaluate(feature);
+            } catch (RuntimeException e) {
+                // the compiled filter fails as well
+                try {
+                    compiled.evaluate(feature);
+                    fail(filter + " should fail on " + feature.getID());
+                } catch (RuntimeException e2) {
+                    // fine
+                }
+                continue;
+            }
+            assertEquals(filter + " on " + feature.getID(), expected, compiled.evaluate(feature));
+        }
+    }
+}
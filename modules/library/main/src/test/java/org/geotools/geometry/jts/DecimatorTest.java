@@ -17,6 +17,7 @@
 package org.geotools.geometry.jts;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -35,6 +36,7 @@ import com.vividsolutions.jts.geom.LineString;
 import com.vividsolutions.jts.geom.LinearRing;
 import com.vividsolutions.jts.geom.MultiLineString;
 import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
 
 /**
  * 
@@ -209,4 +211,67 @@ public class DecimatorTest {
         assertEquals("CircularString", origin.getGeometryN(1).getGeometryType());
         assertEquals("LineString", simplified.getGeometryN(1).getGeometryType());
     }
+
+    @Test
+    public void testCopyLeavesSourceUntouched() throws Exception {
+        LineString ls = gf.createLineString(csf.create(new double[] {0,0,1,1,2,2,3,3,4,4,5,5}));
+        LineString original = (LineString) ls.clone();
+        
+        Decimator d = new Decimator(identity, new Rectangle(0,0,5,5), 1);
+        LineString copy = (LineString) d.decimateTransformGeneralize(ls, identity, true);
+        assertTrue(original.equalsExact(ls));
+        assertEquals(4, copy.getNumPoints());
+        assertTrue(copy.getCoordinateSequence() instanceof LiteCoordinateSequence);
+        // the copy is sized exactly
+        assertEquals(8, ((LiteCoordinateSequence) copy.getCoordinateSequence()).getArray().length);
+        
+        // same result as the in place decimation
+        LineString inPlace = (LineString) d.decimateTransformGeneralize(ls, identity);
+        assertTrue(inPlace.equalsExact(copy));
+    }
+    
+    @Test
+    public void testCopyNonLitePolygon() throws Exception {
+        GeometryFactory jtsFactory = new GeometryFactory();
+        Polygon polygon = (Polygon) new WKTReader2(jtsFactory)
+                .read("POLYGON((0 0, 0 10, 0.1 10, 10 10, 10 0, 0 0), (2 2, 2 3, 3 3, 3 2, 2 2))");
+        Polygon original = (Polygon) polygon.clone();
+        MathTransform scale = new AffineTransform2D(AffineTransform.getScaleInstance(2, 2));
+        
+        Decimator d = new Decimator(1, 1);
+        Polygon copy = (Polygon) d.decimateTransformGeneralize(polygon, scale, true);
+        assertTrue(original.equalsExact(polygon));
+        assertEquals(5, copy.getExteriorRing().getNumPoints());
+        assertEquals(1, copy.getNumInteriorRing());
+        assertEquals(20, copy.getEnvelopeInternal().getMaxX(), 0d);
+        assertTrue(copy.getExteriorRing().getCoordinateSequence() instanceof LiteCoordinateSequence);
+        assertTrue(copy.isValid());
+    }
+
+    @Test
+    public void testCopyRingCollapse() throws Exception {
+        LinearRing g = gf.createLinearRing(csf.create(new double[] {0,0,0,10,2,10,2,0,0,0}));
+        
+        Decimator d = new Decimator(20, 20);
+        LinearRing copy = (LinearRing) d.decimateTransformGeneralize(g, identity, true);
+        assertEquals(5, g.getNumPoints());
+        assertEquals(4, copy.getNumPoints());
+        assertTrue(copy.isValid());
+    }
+
+    @Test
+    public void testClosedLineStringStaysLineString() throws Exception {
+        MathTransform scale = new AffineTransform2D(AffineTransform.getScaleInstance(2, 2));
+        Decimator d = new Decimator(-1, -1);
+
+        // too few points to be a ring
+        LineString g = gf.createLineString(csf.create(new double[] {0,0,0,10,0,0}));
+        LineString copy = (LineString) d.decimateTransformGeneralize(g, scale, true);
+        assertFalse(copy instanceof LinearRing);
+        assertEquals(3, copy.getNumPoints());
+        assertEquals(20, copy.getEnvelopeInternal().getMaxY(), 0d);
+        LineString inPlace = (LineString) d.decimateTransformGeneralize(g, scale);
+        assertFalse(inPlace instanceof LinearRing);
+        assertTrue(inPlace.equalsExact(copy));
+    }
 }
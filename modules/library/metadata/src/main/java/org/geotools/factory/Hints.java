@@ -608,6 +608,15 @@ public class Hints extends RenderingHints {
      * @since 2.7.3
      */
     public static final Key MAX_MEMORY_SORT = new Key(Integer.class);
+
+    /**
+     * Key to control whether the features spilled to disk during a fallback merge-sort
+     * (see {@link #MAX_MEMORY_SORT}) should be compressed. Compression trades some CPU
+     * for less disk I/O, it's off by default.
+     *
+     * @since 15.0
+     */
+    public static final Key SORT_SPILL_COMPRESSION = new Key(Boolean.class);
     
     /**
      * Asks a datastore having a vector pyramid (pre-generalized geometries)
@@ -632,6 +641,26 @@ public class Hints extends RenderingHints {
 
      */
     public static final Key GEOMETRY_SIMPLIFICATION = new Key(Double.class);
+
+    /**
+     * Asks a datastore to clip the geometries it returns to the specified envelope, expressed
+     * in the native coordinate reference system of the data, so that the parts of large
+     * geometries falling outside of the area of interest are not transferred. Clipping
+     * introduces new borders in polygons, the envelope should thus be larger than the area
+     * being displayed.
+     *
+     * @since 15.0
+     */
+    public static final Key GEOMETRY_CLIP = new Key("com.vividsolutions.jts.geom.Envelope");
+
+    /**
+     * Asks a datastore to snap the coordinates of the geometries it returns to a grid of the
+     * specified size, removing the points that end up being repeated. Like
+     * {@link #GEOMETRY_SIMPLIFICATION}, the geometries returned might not be valid.
+     *
+     * @since 15.0
+     */
+    public static final Key GEOMETRY_SNAP = new Key(Double.class);
     
     /**
      * The rendering aid used to avoid painting tiny features over and over in the same pixel
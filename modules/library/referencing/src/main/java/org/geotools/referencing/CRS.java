@@ -203,6 +203,14 @@ public final class CRS {
      */
     private static CoordinateOperationFactory lenientFactory;
 
+    /**
+     * The transforms found by {@link #findMathTransform(CoordinateReferenceSystem,
+     * CoordinateReferenceSystem, boolean) findMathTransform}.
+     */
+    private static final MathTransformCache TRANSFORMS = new MathTransformCache(
+            Integer.getInteger("org.geotools.referencing.mathTransformCacheSize",
+                    MathTransformCache.DEFAULT_MAXIMUM_SIZE));
+
     /**
      * Registers a listener automatically invoked when the system-wide configuration changed.
      */
@@ -215,6 +223,7 @@ public final class CRS {
                     strictFactory  = null;
                     lenientFactory = null;
                 }
+                TRANSFORMS.clear();
             }
         });
     }
@@ -1191,6 +1200,7 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
      *         target CRS.
      *
      * @see Hints#LENIENT_DATUM_SHIFT
+     * @see #getMathTransformCache
      */
     public static MathTransform findMathTransform(final CoordinateReferenceSystem sourceCRS,
                                                   final CoordinateReferenceSystem targetCRS,
@@ -1201,8 +1211,28 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
             // Slight optimization in order to avoid the overhead of loading the full referencing engine.
             return IdentityTransform.create(sourceCRS.getCoordinateSystem().getDimension());
         }
+        final MathTransformCache.Key key = new MathTransformCache.Key(sourceCRS, targetCRS, lenient);
+        final MathTransform cached = TRANSFORMS.get(key);
+        if (cached != null) {
+            return cached;
+        }
         CoordinateOperationFactory operationFactory = getCoordinateOperationFactory(lenient);
-        return operationFactory.createOperation(sourceCRS, targetCRS).getMathTransform();
+        final MathTransform transform =
+                operationFactory.createOperation(sourceCRS, targetCRS).getMathTransform();
+        return TRANSFORMS.put(key, transform);
+    }
+
+    /**
+     * Returns the cache of the transforms found by {@link #findMathTransform(CoordinateReferenceSystem,
+     * CoordinateReferenceSystem, boolean) findMathTransform}, which provides hit and miss statistics.
+     * The cache is cleared on {@linkplain #reset reset} and when the system-wide configuration changes.
+     *
+     * @return The math transform cache.
+     *
+     * @since 15.0
+     */
+    public static MathTransformCache getMathTransformCache() {
+        return TRANSFORMS;
     }
 
     /**
@@ -1846,6 +1876,7 @@ search:             if (DefaultCoordinateSystemAxis.isCompassDirection(axis.getD
         xyFactory = null;
         strictFactory = null;
         lenientFactory = null;
+        TRANSFORMS.clear();
     }
     
     /**
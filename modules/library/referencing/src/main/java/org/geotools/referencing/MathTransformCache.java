@@ -0,0 +1,286 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.referencing.datum.DefaultGeodeticDatum;
+import org.geotools.util.Utilities;
+import org.opengis.referencing.crs.CompoundCRS;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.SingleCRS;
+import org.opengis.referencing.datum.Datum;
+import org.opengis.referencing.operation.MathTransform;
+
+
+/**
+ * The cache of math transforms used by {@link CRS#findMathTransform(CoordinateReferenceSystem,
+ * CoordinateReferenceSystem, boolean) CRS.findMathTransform}. Transforms are cached for a
+ * (<var>source CRS</var>, <var>target CRS</var>, <var>lenient</var>) triplet, comparing the
+ * CRS {@linkplain CRS#equalsIgnoreMetadata ignoring metadata}, except the identifiers and the
+ * Bursa-Wolf parameters since those two drive the choice of the datum shift.
+ * <p>
+ * The cache is safe for concurrent use and never blocks. It holds at most
+ * {@link #getMaximumSize} transforms, the oldest ones being discarded first. The maximum size
+ * can be set with the {@code org.geotools.referencing.mathTransformCacheSize} system property,
+ * a size of zero disabling the cache.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ *
+ * @see CRS#getMathTransformCache
+ */
+public final class MathTransformCache {
+    /**
+     * The default maximum number of transforms in the cache.
+     */
+    static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    /**
+     * The cached transforms.
+     */
+    private final ConcurrentHashMap<Key,MathTransform> transforms =
+            new ConcurrentHashMap<Key,MathTransform>();
+
+    /**
+     * The keys in insertion order, used for discarding the oldest transforms.
+     */
+    private final Queue<Key> keys = new ConcurrentLinkedQueue<Key>();
+
+    /**
+     * The maximum number of transforms in the cache.
+     */
+    private final int maximumSize;
+
+    /**
+     * The number of lookups that found, or did not find, a transform in the cache.
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    /**
+     * Creates a cache holding at most the specified number of transforms.
+     */
+    MathTransformCache(final int maximumSize) {
+        this.maximumSize = Math.max(0, maximumSize);
+    }
+
+    /**
+     * Returns the cached transform for the specified key, or {@code null} if none.
+     */
+    MathTransform get(final Key key) {
+        if (maximumSize == 0) {
+            return null;
+        }
+        final MathTransform transform = transforms.get(key);
+        if (transform != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return transform;
+    }
+
+    /**
+     * Caches the specified transform, unless an other thread did it first.
+     *
+     * @return The transform which is now in the cache for the specified key.
+     */
+    MathTransform put(final Key key, final MathTransform transform) {
+        if (maximumSize == 0) {
+            return transform;
+        }
+        final MathTransform previous = transforms.putIfAbsent(key, transform);
+        if (previous != null) {
+            return previous;
+        }
+        keys.add(key);
+        while (transforms.size() > maximumSize) {
+            final Key oldest = keys.poll();
+            if (oldest == null) {
+                break;
+            }
+            transforms.remove(oldest);
+        }
+        return transform;
+    }
+
+    /**
+     * Returns the maximum number of transforms in this cache.
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of transforms currently in this cache.
+     */
+    public int size() {
+        return transforms.size();
+    }
+
+    /**
+     * Returns the number of lookups that found a transform in this cache.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a transform in this cache.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of lookups that found a transform in this cache,
+     * or {@link Double#NaN} if there was no lookup yet.
+     */
+    public double getHitRatio() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return (total == 0) ? Double.NaN : (double) h / total;
+    }
+
+    /**
+     * Removes all transforms from this cache and resets the statistics.
+     */
+    public void clear() {
+        transforms.clear();
+        keys.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /**
+     * Returns a string representation of the cache statistics.
+     */
+    @Override
+    public String toString() {
+        return "MathTransformCache[size=" + size() + ", maximumSize=" + maximumSize +
+                ", hits=" + hits.get() + ", misses=" + misses.get() + ']';
+    }
+
+    /**
+     * The key of a cached transform.
+     */
+    static final class Key {
+        /**
+         * The source and target CRS.
+         */
+        private final CoordinateReferenceSystem sourceCRS, targetCRS;
+
+        /**
+         * Whether lenient datum shifts are allowed.
+         */
+        private final boolean lenient;
+
+        /**
+         * The hash code value, computed once for ever at construction time.
+         */
+        private final int hash;
+
+        /**
+         * Creates a key for the specified source and target CRS.
+         */
+        Key(final CoordinateReferenceSystem sourceCRS,
+            final CoordinateReferenceSystem targetCRS, final boolean lenient)
+        {
+            this.sourceCRS = sourceCRS;
+            this.targetCRS = targetCRS;
+            this.lenient   = lenient;
+            // CRS implementations hash ignoring metadata, consistently with equalsIgnoreMetadata
+            this.hash = (37 * sourceCRS.hashCode() + targetCRS.hashCode()) * 2 + (lenient ? 1 : 0);
+        }
+
+        /**
+         * Returns the hash code value.
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        /**
+         * Compares this key with the specified object for equality.
+         */
+        @Override
+        public boolean equals(final Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (object instanceof Key) {
+                final Key that = (Key) object;
+                return this.hash == that.hash && this.lenient == that.lenient &&
+                       sameTransform(this.sourceCRS, that.sourceCRS) &&
+                       sameTransform(this.targetCRS, that.targetCRS);
+            }
+            return false;
+        }
+
+        /**
+         * Returns {@code true} if the transforms involving the specified CRS are the same.
+         * The authority backed factory looks for the transformation paths using the CRS
+         * identifiers, and the Bursa-Wolf parameters are ignored by {@code equalsIgnoreMetadata}.
+         */
+        private static boolean sameTransform(final CoordinateReferenceSystem crs1,
+                                             final CoordinateReferenceSystem crs2)
+        {
+            if (crs1 == crs2) {
+                return true;
+            }
+            return CRS.equalsIgnoreMetadata(crs1, crs2) &&
+                   Utilities.equals(crs1.getIdentifiers(), crs2.getIdentifiers()) &&
+                   Utilities.equals(getBursaWolfParameters(crs1), getBursaWolfParameters(crs2));
+        }
+
+        /**
+         * Returns the Bursa-Wolf parameters of all the geodetic datums in the specified CRS.
+         */
+        private static List<Object> getBursaWolfParameters(final CoordinateReferenceSystem crs) {
+            final List<Object> parameters = new ArrayList<Object>();
+            addBursaWolfParameters(crs, parameters);
+            return parameters;
+        }
+
+        private static void addBursaWolfParameters(final CoordinateReferenceSystem crs,
+                                                   final List<Object> parameters)
+        {
+            if (crs instanceof CompoundCRS) {
+                for (final CoordinateReferenceSystem component :
+                        ((CompoundCRS) crs).getCoordinateReferenceSystems())
+                {
+                    addBursaWolfParameters(component, parameters);
+                }
+            } else if (crs instanceof SingleCRS) {
+                final Datum datum = ((SingleCRS) crs).getDatum();
+                if (datum instanceof DefaultGeodeticDatum) {
+                    for (final Object p : ((DefaultGeodeticDatum) datum).getBursaWolfParameters()) {
+                        parameters.add(p);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -19,15 +19,11 @@
  */
 package org.geotools.referencing.factory;
 
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.Set;
-import java.util.Iterator;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.WeakHashMap;
-import java.util.LinkedHashMap;
 import java.util.logging.LogRecord;
 import java.util.logging.Level;
 import javax.measure.unit.Unit;
@@ -63,10 +59,14 @@ import org.geotools.resources.i18n.LoggingKeys;
  * <p>
  * Objects are cached by strong references, up to the amount of objects specified at
  * construction time. If a greater amount of objects are cached, the oldest ones will
- * be retained through a {@linkplain WeakReference weak reference} instead of a strong
+ * be retained through a {@linkplain java.lang.ref.WeakReference weak reference} instead of a strong
  * one. This means that this buffered factory will continue to returns them as long as
  * they are in use somewhere else in the Java virtual machine, but will be discarted
  * (and recreated on the fly if needed) otherwise.
+ * <p>
+ * Cached objects are returned without locking. The creation of an object only blocks the
+ * threads asking for the same code, so threads asking for different codes can proceed in
+ * parallel up to the backing store.
  *
  * @since 2.1
  *
@@ -77,7 +77,7 @@ import org.geotools.resources.i18n.LoggingKeys;
  */
 public class BufferedAuthorityFactory extends AbstractAuthorityFactory implements BufferedFactory {
     /**
-     * The default value for {@link #maxStrongReferences}.
+     * The default value for the maximum number of objects to keep by strong reference.
      */
     static final int DEFAULT_MAX = 20;
 
@@ -93,17 +93,10 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
     volatile AbstractAuthorityFactory backingStore;
 
     /**
-     * The pool of cached objects.
-     */
-    private final LinkedHashMap<Object,Object> pool =
-            new LinkedHashMap<Object,Object>(32, 0.75f, true);
-
-    /**
-     * The maximum number of objects to keep by strong reference. If a greater amount of
-     * objects are created, then the strong references for the oldest ones are replaced by
-     * weak references.
+     * The cache of referencing objects. Objects are retrieved without locking, while the
+     * creation of an object only blocks the threads asking for the same code.
      */
-    private final int maxStrongReferences;
+    private final ReferencingObjectCache objectCache;
 
     /**
      * The pool of objects identified by {@link #find}.
@@ -145,8 +138,8 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
         while (factory instanceof BufferedAuthorityFactory) {
             factory = ((BufferedAuthorityFactory) factory).backingStore;
         }
-        this.backingStore        = factory;
-        this.maxStrongReferences = maxStrongReferences;
+        this.backingStore = factory;
+        this.objectCache  = new ReferencingObjectCache(maxStrongReferences);
         completeHints();
     }
 
@@ -164,7 +157,7 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      */
     BufferedAuthorityFactory(final int priority, final int maxStrongReferences) {
         super(priority);
-        this.maxStrongReferences = maxStrongReferences;
+        this.objectCache = new ReferencingObjectCache(maxStrongReferences);
         // completeHints() will be invoked by DeferredAuthorityFactory.getBackingStore()
     }
 
@@ -351,19 +344,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized IdentifiedObject createObject(final String code)
+    public IdentifiedObject createObject(final String code)
             throws FactoryException
     {
-        final IdentifiedObject object;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof IdentifiedObject) {
-            object = (IdentifiedObject) cached;
-        } else {
-            object = getBackingStore().createObject(code);
+            return (IdentifiedObject) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof IdentifiedObject) {
+                return (IdentifiedObject) cached;
+            }
+            final IdentifiedObject object = getBackingStore().createObject(code);
+            objectCache.put(key, object);
+            return object;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, object);
-        return object;
     }
 
     /**
@@ -372,19 +372,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Datum createDatum(final String code)
+    public Datum createDatum(final String code)
             throws FactoryException
     {
-        final Datum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof Datum) {
-            datum = (Datum) cached;
-        } else {
-            datum = getBackingStore().createDatum(code);
+            return (Datum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof Datum) {
+                return (Datum) cached;
+            }
+            final Datum datum = getBackingStore().createDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -393,19 +400,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EngineeringDatum createEngineeringDatum(final String code)
+    public EngineeringDatum createEngineeringDatum(final String code)
             throws FactoryException
     {
-        final EngineeringDatum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof EngineeringDatum) {
-            datum = (EngineeringDatum) cached;
-        } else {
-            datum = getBackingStore().createEngineeringDatum(code);
+            return (EngineeringDatum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof EngineeringDatum) {
+                return (EngineeringDatum) cached;
+            }
+            final EngineeringDatum datum = getBackingStore().createEngineeringDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -414,19 +428,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ImageDatum createImageDatum(final String code)
+    public ImageDatum createImageDatum(final String code)
             throws FactoryException
     {
-        final ImageDatum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof ImageDatum) {
-            datum = (ImageDatum) cached;
-        } else {
-            datum = getBackingStore().createImageDatum(code);
+            return (ImageDatum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof ImageDatum) {
+                return (ImageDatum) cached;
+            }
+            final ImageDatum datum = getBackingStore().createImageDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -435,19 +456,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalDatum createVerticalDatum(final String code)
+    public VerticalDatum createVerticalDatum(final String code)
             throws FactoryException
     {
-        final VerticalDatum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof VerticalDatum) {
-            datum = (VerticalDatum) cached;
-        } else {
-            datum = getBackingStore().createVerticalDatum(code);
+            return (VerticalDatum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof VerticalDatum) {
+                return (VerticalDatum) cached;
+            }
+            final VerticalDatum datum = getBackingStore().createVerticalDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -456,19 +484,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TemporalDatum createTemporalDatum(final String code)
+    public TemporalDatum createTemporalDatum(final String code)
             throws FactoryException
     {
-        final TemporalDatum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof TemporalDatum) {
-            datum = (TemporalDatum) cached;
-        } else {
-            datum = getBackingStore().createTemporalDatum(code);
+            return (TemporalDatum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof TemporalDatum) {
+                return (TemporalDatum) cached;
+            }
+            final TemporalDatum datum = getBackingStore().createTemporalDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -477,19 +512,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeodeticDatum createGeodeticDatum(final String code)
+    public GeodeticDatum createGeodeticDatum(final String code)
             throws FactoryException
     {
-        final GeodeticDatum datum;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof GeodeticDatum) {
-            datum = (GeodeticDatum) cached;
-        } else {
-            datum = getBackingStore().createGeodeticDatum(code);
+            return (GeodeticDatum) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof GeodeticDatum) {
+                return (GeodeticDatum) cached;
+            }
+            final GeodeticDatum datum = getBackingStore().createGeodeticDatum(code);
+            objectCache.put(key, datum);
+            return datum;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, datum);
-        return datum;
     }
 
     /**
@@ -498,19 +540,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Ellipsoid createEllipsoid(final String code)
+    public Ellipsoid createEllipsoid(final String code)
             throws FactoryException
     {
-        final Ellipsoid ellipsoid;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof Ellipsoid) {
-            ellipsoid = (Ellipsoid) cached;
-        } else {
-            ellipsoid = getBackingStore().createEllipsoid(code);
+            return (Ellipsoid) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof Ellipsoid) {
+                return (Ellipsoid) cached;
+            }
+            final Ellipsoid ellipsoid = getBackingStore().createEllipsoid(code);
+            objectCache.put(key, ellipsoid);
+            return ellipsoid;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, ellipsoid);
-        return ellipsoid;
     }
 
     /**
@@ -519,19 +568,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized PrimeMeridian createPrimeMeridian(final String code)
+    public PrimeMeridian createPrimeMeridian(final String code)
             throws FactoryException
     {
-        final PrimeMeridian meridian;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof PrimeMeridian) {
-            meridian = (PrimeMeridian) cached;
-        } else {
-            meridian = getBackingStore().createPrimeMeridian(code);
+            return (PrimeMeridian) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof PrimeMeridian) {
+                return (PrimeMeridian) cached;
+            }
+            final PrimeMeridian meridian = getBackingStore().createPrimeMeridian(code);
+            objectCache.put(key, meridian);
+            return meridian;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, meridian);
-        return meridian;
     }
 
     /**
@@ -540,19 +596,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Extent createExtent(final String code)
+    public Extent createExtent(final String code)
             throws FactoryException
     {
-        final Extent extent;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof Extent) {
-            extent = (Extent) cached;
-        } else {
-            extent = getBackingStore().createExtent(code);
+            return (Extent) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof Extent) {
+                return (Extent) cached;
+            }
+            final Extent extent = getBackingStore().createExtent(code);
+            objectCache.put(key, extent);
+            return extent;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, extent);
-        return extent;
     }
 
     /**
@@ -561,19 +624,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateSystem createCoordinateSystem(final String code)
+    public CoordinateSystem createCoordinateSystem(final String code)
             throws FactoryException
     {
-        final CoordinateSystem cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CoordinateSystem) {
-            cs = (CoordinateSystem) cached;
-        } else {
-            cs = getBackingStore().createCoordinateSystem(code);
+            return (CoordinateSystem) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CoordinateSystem) {
+                return (CoordinateSystem) cached;
+            }
+            final CoordinateSystem cs = getBackingStore().createCoordinateSystem(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -582,19 +652,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CartesianCS createCartesianCS(final String code)
+    public CartesianCS createCartesianCS(final String code)
             throws FactoryException
     {
-        final CartesianCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CartesianCS) {
-            cs = (CartesianCS) cached;
-        } else {
-            cs = getBackingStore().createCartesianCS(code);
+            return (CartesianCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CartesianCS) {
+                return (CartesianCS) cached;
+            }
+            final CartesianCS cs = getBackingStore().createCartesianCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -603,19 +680,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized PolarCS createPolarCS(final String code)
+    public PolarCS createPolarCS(final String code)
             throws FactoryException
     {
-        final PolarCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof PolarCS) {
-            cs = (PolarCS) cached;
-        } else {
-            cs = getBackingStore().createPolarCS(code);
+            return (PolarCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof PolarCS) {
+                return (PolarCS) cached;
+            }
+            final PolarCS cs = getBackingStore().createPolarCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -624,19 +708,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CylindricalCS createCylindricalCS(final String code)
+    public CylindricalCS createCylindricalCS(final String code)
             throws FactoryException
     {
-        final CylindricalCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CylindricalCS) {
-            cs = (CylindricalCS) cached;
-        } else {
-            cs = getBackingStore().createCylindricalCS(code);
+            return (CylindricalCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CylindricalCS) {
+                return (CylindricalCS) cached;
+            }
+            final CylindricalCS cs = getBackingStore().createCylindricalCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -645,19 +736,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized SphericalCS createSphericalCS(final String code)
+    public SphericalCS createSphericalCS(final String code)
             throws FactoryException
     {
-        final SphericalCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof SphericalCS) {
-            cs = (SphericalCS) cached;
-        } else {
-            cs = getBackingStore().createSphericalCS(code);
+            return (SphericalCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof SphericalCS) {
+                return (SphericalCS) cached;
+            }
+            final SphericalCS cs = getBackingStore().createSphericalCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -666,19 +764,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EllipsoidalCS createEllipsoidalCS(final String code)
+    public EllipsoidalCS createEllipsoidalCS(final String code)
             throws FactoryException
     {
-        final EllipsoidalCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof EllipsoidalCS) {
-            cs = (EllipsoidalCS) cached;
-        } else {
-            cs = getBackingStore().createEllipsoidalCS(code);
+            return (EllipsoidalCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof EllipsoidalCS) {
+                return (EllipsoidalCS) cached;
+            }
+            final EllipsoidalCS cs = getBackingStore().createEllipsoidalCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -687,19 +792,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalCS createVerticalCS(final String code)
+    public VerticalCS createVerticalCS(final String code)
             throws FactoryException
     {
-        final VerticalCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof VerticalCS) {
-            cs = (VerticalCS) cached;
-        } else {
-            cs = getBackingStore().createVerticalCS(code);
+            return (VerticalCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof VerticalCS) {
+                return (VerticalCS) cached;
+            }
+            final VerticalCS cs = getBackingStore().createVerticalCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -708,19 +820,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TimeCS createTimeCS(final String code)
+    public TimeCS createTimeCS(final String code)
             throws FactoryException
     {
-        final TimeCS cs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof TimeCS) {
-            cs = (TimeCS) cached;
-        } else {
-            cs = getBackingStore().createTimeCS(code);
+            return (TimeCS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof TimeCS) {
+                return (TimeCS) cached;
+            }
+            final TimeCS cs = getBackingStore().createTimeCS(code);
+            objectCache.put(key, cs);
+            return cs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, cs);
-        return cs;
     }
 
     /**
@@ -729,19 +848,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateSystemAxis createCoordinateSystemAxis(final String code)
+    public CoordinateSystemAxis createCoordinateSystemAxis(final String code)
             throws FactoryException
     {
-        final CoordinateSystemAxis axis;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CoordinateSystemAxis) {
-            axis = (CoordinateSystemAxis) cached;
-        } else {
-            axis = getBackingStore().createCoordinateSystemAxis(code);
+            return (CoordinateSystemAxis) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CoordinateSystemAxis) {
+                return (CoordinateSystemAxis) cached;
+            }
+            final CoordinateSystemAxis axis = getBackingStore().createCoordinateSystemAxis(code);
+            objectCache.put(key, axis);
+            return axis;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, axis);
-        return axis;
     }
 
     /**
@@ -750,19 +876,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized Unit<?> createUnit(final String code)
+    public Unit<?> createUnit(final String code)
             throws FactoryException
     {
-        final Unit<?> unit;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof Unit) {
-            unit = (Unit) cached;
-        } else {
-            unit = getBackingStore().createUnit(code);
+            return (Unit) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof Unit) {
+                return (Unit) cached;
+            }
+            final Unit<?> unit = getBackingStore().createUnit(code);
+            objectCache.put(key, unit);
+            return unit;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, unit);
-        return unit;
     }
 
     /**
@@ -771,19 +904,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CoordinateReferenceSystem createCoordinateReferenceSystem(final String code)
+    public CoordinateReferenceSystem createCoordinateReferenceSystem(final String code)
             throws FactoryException
     {
-        final CoordinateReferenceSystem crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CoordinateReferenceSystem) {
-            crs = (CoordinateReferenceSystem) cached;
-        } else {
-            crs = getBackingStore().createCoordinateReferenceSystem(code);
+            return (CoordinateReferenceSystem) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CoordinateReferenceSystem) {
+                return (CoordinateReferenceSystem) cached;
+            }
+            final CoordinateReferenceSystem crs = getBackingStore().createCoordinateReferenceSystem(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -792,19 +932,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized CompoundCRS createCompoundCRS(final String code)
+    public CompoundCRS createCompoundCRS(final String code)
             throws FactoryException
     {
-        final CompoundCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CompoundCRS) {
-            crs = (CompoundCRS) cached;
-        } else {
-            crs = getBackingStore().createCompoundCRS(code);
+            return (CompoundCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CompoundCRS) {
+                return (CompoundCRS) cached;
+            }
+            final CompoundCRS crs = getBackingStore().createCompoundCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -813,19 +960,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized DerivedCRS createDerivedCRS(final String code)
+    public DerivedCRS createDerivedCRS(final String code)
             throws FactoryException
     {
-        final DerivedCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof DerivedCRS) {
-            crs = (DerivedCRS) cached;
-        } else {
-            crs = getBackingStore().createDerivedCRS(code);
+            return (DerivedCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof DerivedCRS) {
+                return (DerivedCRS) cached;
+            }
+            final DerivedCRS crs = getBackingStore().createDerivedCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -834,19 +988,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized EngineeringCRS createEngineeringCRS(final String code)
+    public EngineeringCRS createEngineeringCRS(final String code)
             throws FactoryException
     {
-        final EngineeringCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof EngineeringCRS) {
-            crs = (EngineeringCRS) cached;
-        } else {
-            crs = getBackingStore().createEngineeringCRS(code);
+            return (EngineeringCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof EngineeringCRS) {
+                return (EngineeringCRS) cached;
+            }
+            final EngineeringCRS crs = getBackingStore().createEngineeringCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -855,19 +1016,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeographicCRS createGeographicCRS(final String code)
+    public GeographicCRS createGeographicCRS(final String code)
             throws FactoryException
     {
-        final GeographicCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof GeographicCRS) {
-            crs = (GeographicCRS) cached;
-        } else {
-            crs = getBackingStore().createGeographicCRS(code);
+            return (GeographicCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof GeographicCRS) {
+                return (GeographicCRS) cached;
+            }
+            final GeographicCRS crs = getBackingStore().createGeographicCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -876,19 +1044,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized GeocentricCRS createGeocentricCRS(final String code)
+    public GeocentricCRS createGeocentricCRS(final String code)
             throws FactoryException
     {
-        final GeocentricCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof GeocentricCRS) {
-            crs = (GeocentricCRS) cached;
-        } else {
-            crs = getBackingStore().createGeocentricCRS(code);
+            return (GeocentricCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof GeocentricCRS) {
+                return (GeocentricCRS) cached;
+            }
+            final GeocentricCRS crs = getBackingStore().createGeocentricCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -897,19 +1072,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ImageCRS createImageCRS(final String code)
+    public ImageCRS createImageCRS(final String code)
             throws FactoryException
     {
-        final ImageCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof ImageCRS) {
-            crs = (ImageCRS) cached;
-        } else {
-            crs = getBackingStore().createImageCRS(code);
+            return (ImageCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof ImageCRS) {
+                return (ImageCRS) cached;
+            }
+            final ImageCRS crs = getBackingStore().createImageCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -918,19 +1100,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized ProjectedCRS createProjectedCRS(final String code)
+    public ProjectedCRS createProjectedCRS(final String code)
             throws FactoryException
     {
-        final ProjectedCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof ProjectedCRS) {
-            crs = (ProjectedCRS) cached;
-        } else {
-            crs = getBackingStore().createProjectedCRS(code);
+            return (ProjectedCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof ProjectedCRS) {
+                return (ProjectedCRS) cached;
+            }
+            final ProjectedCRS crs = getBackingStore().createProjectedCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -939,19 +1128,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized TemporalCRS createTemporalCRS(final String code)
+    public TemporalCRS createTemporalCRS(final String code)
             throws FactoryException
     {
-        final TemporalCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof TemporalCRS) {
-            crs = (TemporalCRS) cached;
-        } else {
-            crs = getBackingStore().createTemporalCRS(code);
+            return (TemporalCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof TemporalCRS) {
+                return (TemporalCRS) cached;
+            }
+            final TemporalCRS crs = getBackingStore().createTemporalCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -960,19 +1156,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @throws FactoryException if the object creation failed.
      */
     @Override
-    public synchronized VerticalCRS createVerticalCRS(final String code)
+    public VerticalCRS createVerticalCRS(final String code)
             throws FactoryException
     {
-        final VerticalCRS crs;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof VerticalCRS) {
-            crs = (VerticalCRS) cached;
-        } else {
-            crs = getBackingStore().createVerticalCRS(code);
+            return (VerticalCRS) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof VerticalCRS) {
+                return (VerticalCRS) cached;
+            }
+            final VerticalCRS crs = getBackingStore().createVerticalCRS(code);
+            objectCache.put(key, crs);
+            return crs;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, crs);
-        return crs;
     }
 
     /**
@@ -983,19 +1186,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized ParameterDescriptor createParameterDescriptor(final String code)
+    public ParameterDescriptor createParameterDescriptor(final String code)
             throws FactoryException
     {
-        final ParameterDescriptor parameter;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof ParameterDescriptor) {
-            parameter = (ParameterDescriptor) cached;
-        } else {
-            parameter = getBackingStore().createParameterDescriptor(code);
+            return (ParameterDescriptor) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof ParameterDescriptor) {
+                return (ParameterDescriptor) cached;
+            }
+            final ParameterDescriptor parameter = getBackingStore().createParameterDescriptor(code);
+            objectCache.put(key, parameter);
+            return parameter;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, parameter);
-        return parameter;
     }
 
     /**
@@ -1006,19 +1216,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized OperationMethod createOperationMethod(final String code)
+    public OperationMethod createOperationMethod(final String code)
             throws FactoryException
     {
-        final OperationMethod method;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof OperationMethod) {
-            method = (OperationMethod) cached;
-        } else {
-            method = getBackingStore().createOperationMethod(code);
+            return (OperationMethod) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof OperationMethod) {
+                return (OperationMethod) cached;
+            }
+            final OperationMethod method = getBackingStore().createOperationMethod(code);
+            objectCache.put(key, method);
+            return method;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, method);
-        return method;
     }
 
     /**
@@ -1029,19 +1246,26 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized CoordinateOperation createCoordinateOperation(final String code)
+    public CoordinateOperation createCoordinateOperation(final String code)
             throws FactoryException
     {
-        final CoordinateOperation operation;
         final String key = trimAuthority(code);
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof CoordinateOperation) {
-            operation = (CoordinateOperation) cached;
-        } else {
-            operation = getBackingStore().createCoordinateOperation(code);
+            return (CoordinateOperation) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof CoordinateOperation) {
+                return (CoordinateOperation) cached;
+            }
+            final CoordinateOperation operation = getBackingStore().createCoordinateOperation(code);
+            objectCache.put(key, operation);
+            return operation;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, operation);
-        return operation;
     }
 
     /**
@@ -1052,21 +1276,28 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
      * @since 2.2
      */
     @Override
-    public synchronized Set<CoordinateOperation> createFromCoordinateReferenceSystemCodes(
+    public Set<CoordinateOperation> createFromCoordinateReferenceSystemCodes(
                         final String sourceCRS, final String targetCRS)
             throws FactoryException
     {
-        final Set<CoordinateOperation> operations;
         final CodePair key = new CodePair(trimAuthority(sourceCRS), trimAuthority(targetCRS));
-        final Object cached = get(key);
+        Object cached = objectCache.get(key);
         if (cached instanceof Set) {
-            operations = (Set<CoordinateOperation>) cached;
-        } else {
-            operations = Collections.unmodifiableSet(getBackingStore()
-                         .createFromCoordinateReferenceSystemCodes(sourceCRS, targetCRS));
+            return (Set<CoordinateOperation>) cached;
+        }
+        objectCache.writeLock(key);
+        try {
+            cached = objectCache.peek(key);
+            if (cached instanceof Set) {
+                return (Set<CoordinateOperation>) cached;
+            }
+            final Set<CoordinateOperation> operations = Collections.unmodifiableSet(getBackingStore()
+                             .createFromCoordinateReferenceSystemCodes(sourceCRS, targetCRS));
+            objectCache.put(key, operations);
+            return operations;
+        } finally {
+            objectCache.writeUnLock(key);
         }
-        put(key, operations);
-        return operations;
     }
 
     /**
@@ -1200,52 +1431,15 @@ public class BufferedAuthorityFactory extends AbstractAuthorityFactory implement
             backingStore.dispose();
             backingStore = null;
         }
-        pool.clear();
+        objectCache.clear();
         findPool.clear();
         super.dispose();
     }
 
     /**
-     * Returns an object from the pool for the specified code. If the object was retained as a
-     * {@linkplain Reference weak reference}, the {@link Reference#get referent} is returned.
-     *
-     * @todo Consider logging a message here to the finer or finest level.
-     */
-    private Object get(final Object key) {
-        assert Thread.holdsLock(this);
-        Object object = pool.get(key);
-        if (object instanceof Reference) {
-            object = ((Reference<?>) object).get();
-        }
-        return object;
-    }
-
-    /**
-     * Put an element in the pool. This method is invoked everytime a {@code createFoo(...)}
-     * method is invoked, even if an object was already in the pool for the given code, for
-     * the following reasons: 1) Replaces weak reference by strong reference (if applicable)
-     * and 2) Alters the linked hash set order, so that this object is declared as the last
-     * one used.
+     * Returns {@code true} if some objects are currently being created by the backing store.
      */
-    private void put(final Object key, final Object object) {
-        assert Thread.holdsLock(this);
-        pool.put(key, object);
-        int toReplace = pool.size() - maxStrongReferences;
-        if (toReplace > 0) {
-            for (final Iterator<Map.Entry<Object,Object>> it=pool.entrySet().iterator(); it.hasNext();) {
-                final Map.Entry<Object,Object> entry = it.next();
-                final Object value = entry.getValue();
-                if (value instanceof Reference) {
-                    if (((Reference) value).get() == null) {
-                        it.remove();
-                    }
-                    continue;
-                }
-                entry.setValue(new WeakReference<Object>(value));
-                if (--toReplace == 0) {
-                    break;
-                }
-            }
-        }
+    final boolean isCreating() {
+        return objectCache.isWriting();
     }
 }
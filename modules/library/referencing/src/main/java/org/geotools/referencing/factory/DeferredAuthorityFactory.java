@@ -127,19 +127,21 @@ public abstract class DeferredAuthorityFactory extends BufferedAuthorityFactory
      */
     @Override
     protected final AbstractAuthorityFactory getBackingStore() throws FactoryException {
-        if (backingStore == null) {
-            synchronized (this) {
-                if(backingStore == null) {
-                    backingStore = createBackingStore();
-                    if (backingStore == null) {
-                        throw new FactoryNotFoundException(Errors.format(ErrorKeys.NO_DATA_SOURCE));
-                    }
-                    completeHints();
+        /*
+         * Reads the backing store and marks it as used under the lock held by the disposer,
+         * so the disposer either runs before and we get a new backing store, or sees it used.
+         */
+        synchronized (this) {
+            if (backingStore == null) {
+                backingStore = createBackingStore();
+                if (backingStore == null) {
+                    throw new FactoryNotFoundException(Errors.format(ErrorKeys.NO_DATA_SOURCE));
                 }
+                completeHints();
             }
+            used = true; // Tell to the disposer to wait again.
+            return backingStore;
         }
-        used = true; // Tell to the disposer to wait again.
-        return backingStore;
     }
 
     /**
@@ -249,7 +251,7 @@ public abstract class DeferredAuthorityFactory extends BufferedAuthorityFactory
     private final class Disposer extends TimerTask {
         public void run() {
             synchronized (DeferredAuthorityFactory.this) {
-                if (used || !canDisposeBackingStore(backingStore)) {
+                if (used || isCreating() || !canDisposeBackingStore(backingStore)) {
                     used = false;
                     return;
                 }
@@ -0,0 +1,323 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.geotools.util.ObjectCache;
+
+
+/**
+ * A concurrent cache for the referencing objects created by the buffered authority factories.
+ * <p>
+ * Objects are cached by strong references, up to the amount of objects specified at
+ * construction time. If a greater amount of objects are cached, the oldest ones will
+ * be retained through a {@linkplain WeakReference weak reference} instead of a strong
+ * one, until they are asked for again.
+ * <p>
+ * {@link #get} never blocks, so cache hits can proceed in parallel. The
+ * {@link #writeLock}/{@link #writeUnLock} pair reserves a single key while its object is
+ * being created, so that concurrent requests for the same code wait for the creation to
+ * complete instead of creating the object again, while requests for other codes are not
+ * affected:
+ * <blockquote><pre>
+ * Object cached = cache.get(key);
+ * if (cached == null) {
+ *     cache.writeLock(key);
+ *     try {
+ *         cached = cache.peek(key);
+ *         if (cached == null) {
+ *             cached = backingStore.createFoo(code);
+ *             cache.put(key, cached);
+ *         }
+ *     } finally {
+ *         cache.writeUnLock(key);
+ *     }
+ * }
+ * </pre></blockquote>
+ * The creation of an object often requires the creation of its components through the same
+ * factories, while holding the backing store locks. A thread that is already creating an object
+ * never waits for the keys reserved by other threads, it creates the component on its own
+ * instead, in order to avoid deadlocks.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+final class ReferencingObjectCache implements ObjectCache {
+    /**
+     * The number of keys reserved by the current thread, in any cache.
+     */
+    private static final ThreadLocal<int[]> WRITING = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    /**
+     * The pool of cached objects. The values are either the cached objects,
+     * or {@link WeakEntry} references to them.
+     */
+    private final ConcurrentHashMap<Object,Object> pool = new ConcurrentHashMap<Object,Object>();
+
+    /**
+     * The keys reserved by {@link #writeLock}.
+     */
+    private final ConcurrentHashMap<Object,Reservation> reservations =
+            new ConcurrentHashMap<Object,Reservation>();
+
+    /**
+     * The keys of the strong references, oldest first. May contain keys whose value
+     * has been removed or replaced since then.
+     */
+    private final Queue<Object> strongKeys = new ConcurrentLinkedQueue<Object>();
+
+    /**
+     * The number of values held by strong reference.
+     */
+    private final AtomicInteger strongCount = new AtomicInteger();
+
+    /**
+     * The weak references cleared by the garbage collector.
+     */
+    private final ReferenceQueue<Object> cleared = new ReferenceQueue<Object>();
+
+    /**
+     * The maximum number of objects to keep by strong reference. If a greater amount of
+     * objects are created, then the strong references for the oldest ones are replaced by
+     * weak references.
+     */
+    private final int maxStrongReferences;
+
+    /**
+     * Creates a new cache which will hold the specified amount of object by strong references.
+     * Any additional object will be hold by weak references.
+     */
+    public ReferencingObjectCache(final int maxStrongReferences) {
+        this.maxStrongReferences = maxStrongReferences;
+    }
+
+    /**
+     * Removes all entries from this cache. Reserved keys stay reserved.
+     */
+    public void clear() {
+        pool.clear();
+        strongKeys.clear();
+        strongCount.set(0);
+    }
+
+    /**
+     * Returns an object from the pool for the specified code, without blocking. If the object
+     * was retained as a {@linkplain Reference weak reference}, it is held again by a strong one.
+     *
+     * @param key The authority code.
+     */
+    public Object get(final Object key) {
+        final Object value = pool.get(key);
+        if (value instanceof WeakEntry) {
+            final Object object = ((WeakEntry) value).get();
+            if (object == null) {
+                pool.remove(key, value);
+            } else if (pool.replace(key, value, object)) {
+                addStrong(key);
+            }
+            return object;
+        }
+        return value;
+    }
+
+    /**
+     * Same as {@link #get}, to be used while holding the lock on the key.
+     */
+    public Object peek(final Object key) {
+        return get(key);
+    }
+
+    /**
+     * Puts an element in the pool, held by a strong reference.
+     *
+     * @param key the authority code.
+     * @param object The referencing object to add in the pool.
+     */
+    public void put(final Object key, final Object object) {
+        final Object previous = pool.put(key, object);
+        if (previous == null || previous instanceof WeakEntry) {
+            addStrong(key);
+        }
+        expungeCleared();
+    }
+
+    /**
+     * Reserves the specified key, waiting for the thread that reserved it already, if any. The
+     * lock is reentrant. If the current thread has already reserved a key (in any cache), this
+     * method returns immediately instead of waiting for other threads.
+     */
+    public void writeLock(final Object key) {
+        final int[] writing = WRITING.get();
+        final Thread current = Thread.currentThread();
+        Reservation reservation = null;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                final Reservation existing = reservations.get(key);
+                if (existing == null) {
+                    if (reservation == null) {
+                        reservation = new Reservation(current);
+                    }
+                    if (reservations.putIfAbsent(key, reservation) == null) {
+                        writing[0]++;
+                        return;
+                    }
+                } else if (existing.owner == current) {
+                    existing.count++;
+                    return;
+                } else if (writing[0] != 0) {
+                    // may be waiting for a thread that waits for us, don't
+                    return;
+                } else {
+                    try {
+                        existing.done.await();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Releases the reservation of the specified key, if owned by the current thread.
+     */
+    public void writeUnLock(final Object key) {
+        final Reservation reservation = reservations.get(key);
+        if (reservation != null && reservation.owner == Thread.currentThread()) {
+            if (--reservation.count == 0) {
+                reservations.remove(key, reservation);
+                WRITING.get()[0]--;
+                reservation.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if some keys are currently reserved, that is, if some objects
+     * are being created.
+     */
+    boolean isWriting() {
+        return !reservations.isEmpty();
+    }
+
+    /**
+     * Returns a copy of the keys currently in the cache.
+     */
+    public Set<Object> getKeys() {
+        return new HashSet<Object>(pool.keySet());
+    }
+
+    /**
+     * Removes a given key from the cache.
+     */
+    public void remove(final Object key) {
+        final Object value = pool.remove(key);
+        if (value != null && !(value instanceof WeakEntry)) {
+            strongCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Records a new strong reference, replacing the oldest ones by weak references if there
+     * are too many.
+     */
+    private void addStrong(final Object key) {
+        strongKeys.add(key);
+        int toReplace = strongCount.incrementAndGet() - maxStrongReferences;
+        while (toReplace > 0) {
+            final Object oldest = strongKeys.poll();
+            if (oldest == null) {
+                break;
+            }
+            final Object value = pool.get(oldest);
+            if (value != null && !(value instanceof WeakEntry)
+                    && pool.replace(oldest, value, new WeakEntry(oldest, value, cleared)))
+            {
+                toReplace = strongCount.decrementAndGet() - maxStrongReferences;
+            }
+        }
+    }
+
+    /**
+     * Removes the entries whose referent has been garbage collected.
+     */
+    private void expungeCleared() {
+        Reference<?> reference;
+        while ((reference = cleared.poll()) != null) {
+            pool.remove(((WeakEntry) reference).key, reference);
+        }
+    }
+
+    /**
+     * A weak reference to a cached object, remembering its key.
+     */
+    private static final class WeakEntry extends WeakReference<Object> {
+        final Object key;
+
+        WeakEntry(final Object key, final Object value, final ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * A key reserved by a thread.
+     */
+    private static final class Reservation {
+        /**
+         * The thread that reserved the key.
+         */
+        final Thread owner;
+
+        /**
+         * The number of times the owner reserved the key, only accessed by the owner.
+         */
+        int count = 1;
+
+        /**
+         * Released when the owner releases the key.
+         */
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Reservation(final Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.gridshift;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.geotools.resources.i18n.ErrorKeys;
+import org.geotools.resources.i18n.Errors;
+
+/**
+ * Reads grid shift files in byte buffers.
+ *
+ * @source $URL$
+ */
+final class GridShiftBuffers {
+
+    private GridShiftBuffers() {
+    }
+
+    /**
+     * Returns the content of the given grid file. Files are memory-mapped, so the returned buffer
+     * doesn't use any heap and its pages are read from disk only when first accessed. The other
+     * resources (for example in a JAR) are fully read in a heap buffer.
+     * <p>
+     * The file is closed when this method returns, the mapping stays valid until the buffer is
+     * garbage collected.
+     *
+     * @param url the grid location
+     * @return the grid content, in big endian byte order
+     * @throws IOException if the grid can't be read
+     */
+    static ByteBuffer read(URL url) throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            File file = DataUtilities.urlToFile(url);
+            if (!file.exists() || !file.canRead()) {
+                throw new IOException(Errors.format(ErrorKeys.FILE_DOES_NOT_EXIST_$1, file));
+            }
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+        }
+
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+}
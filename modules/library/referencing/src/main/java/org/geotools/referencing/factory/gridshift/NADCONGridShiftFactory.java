@@ -16,6 +16,9 @@
  */
 package org.geotools.referencing.factory.gridshift;
 
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.geom.Point2D;
 import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.File;
@@ -96,6 +99,15 @@ public class NADCONGridShiftFactory extends ReferencingFactory implements Buffer
      */
     private static final int GRID_CACHE_HARD_REFERENCES = 10;
 
+    /**
+     * The layout of the binary grids, see {@link #loadBinaryGrid(URL, URL)}.
+     */
+    private static final int HEADER_BYTES = 96;
+
+    private static final int SEPARATOR_BYTES = 4;
+
+    private static final int DESCRIPTION_LENGTH = 64;
+
     /**
      * Logger.
      */
@@ -106,11 +118,17 @@ public class NADCONGridShiftFactory extends ReferencingFactory implements Buffer
      */
     private SoftValueHashMap<NADCONKey, NADConGridShift> gridCache;
 
+    /**
+     * The soft cache that holds the grid stores.
+     */
+    private SoftValueHashMap<NADCONKey, NADCONGridStore> storeCache;
+
     /**
      * Constructs a factory with the default priority.
      */
     public NADCONGridShiftFactory() {
         gridCache = new SoftValueHashMap<NADCONKey, NADConGridShift>(GRID_CACHE_HARD_REFERENCES);
+        storeCache = new SoftValueHashMap<NADCONKey, NADCONGridStore>(GRID_CACHE_HARD_REFERENCES);
     }
 
     public NADConGridShift loadGridShift(URL latGridURL, URL longGridURL) throws FactoryException {
@@ -131,24 +149,44 @@ public class NADCONGridShiftFactory extends ReferencingFactory implements Buffer
         }
     }
 
+    /**
+     * Returns the store for the given latitude and longitude shift grids. The binary grids are
+     * memory-mapped rather than loaded on the heap. The stores are cached, so all the transforms
+     * using the same grids share the same store.
+     * 
+     * @param latGridURL URL to the latitude shift grid
+     * @param longGridURL URL to the longitude shift grid
+     * @return the grid store
+     * @throws FactoryException if the grids can't be read
+     */
+    public NADCONGridStore loadGridStore(URL latGridURL, URL longGridURL) throws FactoryException {
+        NADCONKey key = new NADCONKey(latGridURL.toExternalForm(), longGridURL.toExternalForm());
+        synchronized (storeCache) { // Prevent simultaneous threads trying to load same grid
+            NADCONGridStore store = storeCache.get(key);
+            if (store == null) {
+                if (isBinaryGrid(latGridURL, longGridURL)) {
+                    try {
+                        store = loadMappedGrid(latGridURL, longGridURL);
+                    } catch (IOException exception) {
+                        throw new FactoryException(exception.getLocalizedMessage(), exception);
+                    }
+                } else {
+                    NADConGridShift grid = loadGridShiftInternal(latGridURL, longGridURL);
+                    store = toStore(grid, latGridURL + ", " + longGridURL);
+                }
+                storeCache.put(key, store);
+            }
+            return store;
+        }
+    }
+
     private NADConGridShift loadGridShiftInternal(URL latGridURL, URL longGridURL)
             throws FactoryException {
-        // decide if text or binary grid will be used
-        String latGridName = DataUtilities.urlToFile(latGridURL).getPath();
-        String longGridName = DataUtilities.urlToFile(longGridURL).getPath();
         try {
-            if ((latGridName.endsWith(".las") && longGridName.endsWith(".los"))
-                    || (latGridName.endsWith(".LAS") && longGridName.endsWith(".LOS"))) {
+            if (isBinaryGrid(latGridURL, longGridURL)) {
                 return loadBinaryGrid(latGridURL, longGridURL);
-            } else if ((latGridName.endsWith(".laa") && longGridName.endsWith(".loa"))
-                    || (latGridName.endsWith(".LAA") && longGridName.endsWith(".LOA"))) {
-                return loadTextGrid(latGridURL, longGridURL);
             } else {
-                throw new FactoryException(Errors.format(ErrorKeys.UNSUPPORTED_FILE_TYPE_$2,
-                        latGridName.substring(latGridName.lastIndexOf('.') + 1),
-                        longGridName.substring(longGridName.lastIndexOf('.') + 1)));
-                // Note: the +1 above hide the dot, but also make sure that the code is
-                // valid even if the path do not contains '.' at all (-1 + 1 == 0).
+                return loadTextGrid(latGridURL, longGridURL);
             }
         } catch (IOException exception) {
             final Throwable cause = exception.getCause();
@@ -159,6 +197,94 @@ public class NADCONGridShiftFactory extends ReferencingFactory implements Buffer
         }
     }
 
+    /**
+     * Decides if text or binary grid will be used.
+     * 
+     * @return {@code true} for binary grids, {@code false} for text grids
+     * @throws FactoryException if the file extensions are not the NADCON ones
+     */
+    private boolean isBinaryGrid(URL latGridURL, URL longGridURL) throws FactoryException {
+        String latGridName = DataUtilities.urlToFile(latGridURL).getPath();
+        String longGridName = DataUtilities.urlToFile(longGridURL).getPath();
+        if ((latGridName.endsWith(".las") && longGridName.endsWith(".los"))
+                || (latGridName.endsWith(".LAS") && longGridName.endsWith(".LOS"))) {
+            return true;
+        } else if ((latGridName.endsWith(".laa") && longGridName.endsWith(".loa"))
+                || (latGridName.endsWith(".LAA") && longGridName.endsWith(".LOA"))) {
+            return false;
+        } else {
+            throw new FactoryException(Errors.format(ErrorKeys.UNSUPPORTED_FILE_TYPE_$2,
+                    latGridName.substring(latGridName.lastIndexOf('.') + 1),
+                    longGridName.substring(longGridName.lastIndexOf('.') + 1)));
+            // Note: the +1 above hide the dot, but also make sure that the code is
+            // valid even if the path do not contains '.' at all (-1 + 1 == 0).
+        }
+    }
+
+    /**
+     * Memory-maps latitude and longitude binary grid shift files. See
+     * {@link #loadBinaryGrid(URL, URL)} for the file layout.
+     * 
+     * @param latGridUrl URL to the binary latitude shift file (.las extention).
+     * @param longGridUrl URL to the binary longitude shift file (.los extention).
+     * @throws IOException if the data files cannot be read.
+     * @throws FactoryException if there is an inconsistency in the data
+     */
+    private NADCONGridStore loadMappedGrid(final URL latGridUrl, final URL longGridUrl)
+            throws IOException, FactoryException {
+        ByteBuffer latBuffer = GridShiftBuffers.read(latGridUrl).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer longBuffer = GridShiftBuffers.read(longGridUrl).order(ByteOrder.LITTLE_ENDIAN);
+        if (latBuffer.limit() < HEADER_BYTES || longBuffer.limit() < HEADER_BYTES) {
+            throw new EOFException(Errors.format(ErrorKeys.END_OF_DATA_FILE));
+        }
+
+        // check that latitude grid header is the same as for latitude grid
+        for (int i = DESCRIPTION_LENGTH; i < HEADER_BYTES; i += 4) {
+            if (latBuffer.getInt(i) != longBuffer.getInt(i)) {
+                throw new FactoryException(Errors.format(ErrorKeys.GRID_LOCATIONS_UNEQUAL));
+            }
+        }
+        int nc = latBuffer.getInt(DESCRIPTION_LENGTH);
+        int nr = latBuffer.getInt(DESCRIPTION_LENGTH + 4);
+        float xmin = latBuffer.getFloat(DESCRIPTION_LENGTH + 12);
+        float dx = latBuffer.getFloat(DESCRIPTION_LENGTH + 16);
+        float ymin = latBuffer.getFloat(DESCRIPTION_LENGTH + 20);
+        float dy = latBuffer.getFloat(DESCRIPTION_LENGTH + 24);
+        float xmax = xmin + ((nc - 1) * dx);
+        float ymax = ymin + ((nr - 1) * dy);
+
+        // the data starts at the second record, after the record separator
+        final int RECORD_LENGTH = (nc * 4) + SEPARATOR_BYTES;
+        final long length = (long) (nr + 1) * RECORD_LENGTH;
+        if (nc < 2 || nr < 2 || latBuffer.limit() < length || longBuffer.limit() < length) {
+            throw new EOFException(Errors.format(ErrorKeys.END_OF_DATA_FILE));
+        }
+        return new NADCONGridStore(latBuffer, longBuffer, RECORD_LENGTH + SEPARATOR_BYTES,
+                RECORD_LENGTH, xmin, ymin, xmax, ymax, dx, dy, nc, nr,
+                latGridUrl + ", " + longGridUrl);
+    }
+
+    /**
+     * Copies the values of a grid loaded on the heap in a store.
+     */
+    private NADCONGridStore toStore(NADConGridShift grid, String description) {
+        Dimension size = grid.getSize();
+        ByteBuffer latBuffer = ByteBuffer.allocate(size.width * size.height * 4);
+        ByteBuffer longBuffer = ByteBuffer.allocate(size.width * size.height * 4);
+        Point point = new Point();
+        for (point.y = 0; point.y < size.height; point.y++) {
+            for (point.x = 0; point.x < size.width; point.x++) {
+                Point2D shift = grid.getLocalizationPoint(point);
+                int offset = (point.y * size.width + point.x) * 4;
+                longBuffer.putFloat(offset, (float) shift.getX());
+                latBuffer.putFloat(offset, (float) shift.getY());
+            }
+        }
+        return new NADCONGridStore(latBuffer, longBuffer, 0, size.width * 4, grid.getMinX(),
+                grid.getMinY(), grid.getMaxX(), grid.getMaxY(), grid.getDx(), grid.getDy(),
+                size.width, size.height, description);
+    }
+
     /**
      * Reads latitude and longitude binary grid shift file data into {@link grid}. The file is
      * organized into records, with the first record containing the header information, followed by
@@ -177,9 +303,6 @@ public class NADCONGridShiftFactory extends ReferencingFactory implements Buffer
      */
     private NADConGridShift loadBinaryGrid(final URL latGridUrl, final URL longGridUrl)
             throws IOException, FactoryException {
-        final int HEADER_BYTES = 96;
-        final int SEPARATOR_BYTES = 4;
-        final int DESCRIPTION_LENGTH = 64;
         ReadableByteChannel latChannel = null;
         ReadableByteChannel longChannel = null;
         NADConGridShift gridShift = null;
@@ -0,0 +1,204 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.gridshift;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pair of NADCON latitude and longitude shift grids, interpolated directly in the grid
+ * buffers. The binary grids ({@code .las} and {@code .los} files) are memory-mapped, so they
+ * cost no heap and load instantly, the text grids are parsed in heap buffers.
+ * <p>
+ * Instances are immutable and can be shared by any number of threads,
+ * {@link NADCONGridShiftFactory} caches them by location.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class NADCONGridStore {
+
+    /**
+     * The latitude and longitude shifts, in seconds.
+     */
+    private final ByteBuffer latShifts, longShifts;
+
+    /**
+     * The offset of the first value in the buffers, and the distance between two rows.
+     */
+    private final int dataOffset, rowLength;
+
+    private final double minX, minY, maxX, maxY, dx, dy;
+
+    private final int width, height;
+
+    private final String description;
+
+    /**
+     * Creates a store reading the shifts in the given buffers. The values are floats, organized
+     * in rows from low to high latitude and from low to high longitude in each row.
+     *
+     * @param latShifts the latitude shifts, in seconds
+     * @param longShifts the longitude shifts, in seconds (positive west)
+     * @param dataOffset the offset of the first value in the buffers
+     * @param rowLength the number of bytes between two rows in the buffers
+     */
+    NADCONGridStore(ByteBuffer latShifts, ByteBuffer longShifts, int dataOffset,
+            int rowLength, double xmin, double ymin, double xmax, double ymax, double dx,
+            double dy, int width, int height, String description) {
+        this.latShifts = latShifts;
+        this.longShifts = longShifts;
+        this.dataOffset = dataOffset;
+        this.rowLength = rowLength;
+        this.minX = xmin;
+        this.minY = ymin;
+        this.maxX = xmax;
+        this.maxY = ymax;
+        this.dx = dx;
+        this.dy = dy;
+        this.width = width;
+        this.height = height;
+        this.description = description;
+    }
+
+    /**
+     * The minimum longitude value covered by this grid (decimal degrees)
+     */
+    public double getMinX() {
+        return minX;
+    }
+
+    /**
+     * The minimum latitude value covered by this grid (decimal degrees)
+     */
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * The maximum longitude value covered by this grid (decimal degrees)
+     */
+    public double getMaxX() {
+        return maxX;
+    }
+
+    /**
+     * The maximum latitude value covered by this grid (decimal degrees)
+     */
+    public double getMaxY() {
+        return maxY;
+    }
+
+    /**
+     * The difference between longitude grid points (decimal degrees)
+     */
+    public double getDx() {
+        return dx;
+    }
+
+    /**
+     * The difference between latitude grid points (decimal degrees)
+     */
+    public double getDy() {
+        return dy;
+    }
+
+    /**
+     * Interpolates the shifts at the given point, which must be inside the grid bounds.
+     *
+     * @param x the longitude, in decimal degrees
+     * @param y the latitude, in decimal degrees
+     * @param shift receives the longitude (positive west) and latitude shifts, in seconds
+     */
+    public void interpolate(double x, double y, double[] shift) {
+        final double gx = (x - minX) / dx;
+        final double gy = (y - minY) / dy;
+        final int col = Math.max(0, Math.min((int) gx, width - 2));
+        final int row = Math.max(0, Math.min((int) gy, height - 2));
+        final double fx = gx - col;
+        final double fy = gy - row;
+        final int a = dataOffset + row * rowLength + col * 4;
+        final int c = a + rowLength;
+        shift[0] = interpolate(longShifts, a, c, fx, fy);
+        shift[1] = interpolate(latShifts, a, c, fx, fy);
+    }
+
+    private static double interpolate(ByteBuffer buffer, int a, int c, double fx, double fy) {
+        final double va = buffer.getFloat(a);
+        final double vb = buffer.getFloat(a + 4);
+        final double vc = buffer.getFloat(c);
+        final double vd = buffer.getFloat(c + 4);
+        final double low = va + (vb - va) * fx;
+        final double high = vc + (vd - vc) * fx;
+        return low + (high - low) * fy;
+    }
+
+    /**
+     * Returns a hash value for this grid. To make this faster it does not check the grid
+     * values.
+     */
+    @Override
+    public int hashCode() {
+        final long code = Double.doubleToLongBits(minX)
+            + (37 * (Double.doubleToLongBits(minY)
+            + (37 * (Double.doubleToLongBits(dx)
+            + (37 * (Double.doubleToLongBits(dy)
+            + (37 * (width + 37 * height))))))));
+
+        return (int) code ^ (int) (code >>> 32);
+    }
+
+    /**
+     * Compares the specified object with this grid for equality, including the shift values.
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (!(object instanceof NADCONGridStore)) {
+            return false;
+        }
+        final NADCONGridStore that = (NADCONGridStore) object;
+        if (Double.doubleToLongBits(this.minX) != Double.doubleToLongBits(that.minX)
+                || Double.doubleToLongBits(this.minY) != Double.doubleToLongBits(that.minY)
+                || Double.doubleToLongBits(this.dx) != Double.doubleToLongBits(that.dx)
+                || Double.doubleToLongBits(this.dy) != Double.doubleToLongBits(that.dy)
+                || this.width != that.width || this.height != that.height) {
+            return false;
+        }
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                final int i = this.dataOffset + row * this.rowLength + col * 4;
+                final int j = that.dataOffset + row * that.rowLength + col * 4;
+                if (Float.floatToIntBits(this.latShifts.getFloat(i)) != Float
+                        .floatToIntBits(that.latShifts.getFloat(j))
+                        || Float.floatToIntBits(this.longShifts.getFloat(i)) != Float
+                                .floatToIntBits(that.longShifts.getFloat(j))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "NADCONGridStore[" + description + ", " + width + " x " + height + "]";
+    }
+}
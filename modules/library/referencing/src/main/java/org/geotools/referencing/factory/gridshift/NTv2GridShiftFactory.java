@@ -61,12 +61,18 @@ public class NTv2GridShiftFactory extends ReferencingFactory implements Buffered
      */
     private SoftValueHashMap<String, GridShiftFile> ntv2GridCache;
 
+    /**
+     * The soft cache that holds the memory-mapped grids.
+     */
+    private SoftValueHashMap<String, NTv2GridStore> ntv2StoreCache;
+
     /**
      * Constructs a factory with the default priority.
      */
     public NTv2GridShiftFactory() {
         super();
         ntv2GridCache = new SoftValueHashMap<String, GridShiftFile>(GRID_CACHE_HARD_REFERENCES);
+        ntv2StoreCache = new SoftValueHashMap<String, NTv2GridStore>(GRID_CACHE_HARD_REFERENCES);
     }
 
     /**
@@ -79,6 +85,7 @@ public class NTv2GridShiftFactory extends ReferencingFactory implements Buffered
     public NTv2GridShiftFactory(final int priority) {
         super(priority);
         ntv2GridCache = new SoftValueHashMap<String, GridShiftFile>(GRID_CACHE_HARD_REFERENCES);
+        ntv2StoreCache = new SoftValueHashMap<String, NTv2GridStore>(GRID_CACHE_HARD_REFERENCES);
     }
 
     /**
@@ -124,7 +131,34 @@ public class NTv2GridShiftFactory extends ReferencingFactory implements Buffered
         }
     }
 
-    
+    /**
+     * Creates a memory-mapped NTv2 grid. Only the grid headers are read, the shift values are
+     * read from the mapped file when used, so the grid costs no heap. The grids are cached, so
+     * all the transforms using the same grid share the same store.
+     * 
+     * @param gridLocation The NTv2 grid location
+     * @return the grid
+     * @throws FactoryException if grid cannot be created
+     */
+    public NTv2GridStore createNTv2GridStore(URL gridLocation) throws FactoryException {
+        if (gridLocation == null) {
+            throw new FactoryException("The grid location must be not null");
+        }
+
+        synchronized (ntv2StoreCache) { // Prevent simultaneous threads trying to load same grid
+            NTv2GridStore store = ntv2StoreCache.get(gridLocation.toExternalForm());
+            if (store == null) {
+                try {
+                    store = new NTv2GridStore(gridLocation);
+                } catch (IOException e) {
+                    throw new FactoryException("NTv2 Grid " + gridLocation
+                            + " could not be created.", e);
+                }
+                ntv2StoreCache.put(gridLocation.toExternalForm(), store);
+            }
+            return store;
+        }
+    }
 
     /**
      * Checks if a given resource is a valid NTv2 file without fully loading it.
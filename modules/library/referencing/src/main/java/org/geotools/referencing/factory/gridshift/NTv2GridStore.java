@@ -0,0 +1,356 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.gridshift;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A NTv2 grid shift file read directly from a memory-mapped buffer. Only the headers are parsed
+ * when the grid is opened, the shift values are read from the buffer on each lookup, so a grid
+ * costs no heap and the pages of a sub-grid are loaded from disk only when a point falls in it.
+ * <p>
+ * The shifts are computed with the same sub-grid selection (the densest sub-grid covering the
+ * point) and bilinear interpolation as the <cite>jgridshift</cite> library. Instances are
+ * immutable and can be shared by any number of threads, {@link NTv2GridShiftFactory} caches
+ * them by location.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class NTv2GridStore {
+
+    /**
+     * The length of a header record or of a grid node.
+     */
+    private static final int RECORD_LENGTH = 16;
+
+    /**
+     * The number of records in the overview header and in each sub-grid header.
+     */
+    private static final int HEADER_RECORDS = 11;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * The location of the grid.
+     */
+    private final URL location;
+
+    /**
+     * The grid content.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The sub-grids with no parent.
+     */
+    private final SubGrid[] topLevel;
+
+    /**
+     * The number of sub-grids.
+     */
+    private final int subGridCount;
+
+    /**
+     * Opens the grid at the given location, parsing its headers.
+     *
+     * @param location the grid location
+     * @throws IOException if the grid can't be read or is not a valid NTv2 grid
+     */
+    public NTv2GridStore(URL location) throws IOException {
+        this.location = location;
+        this.buffer = GridShiftBuffers.read(location);
+        if (buffer.limit() < 2 * HEADER_RECORDS * RECORD_LENGTH) {
+            throw new IOException(location + " is not a NTv2 grid, the file is too short");
+        }
+        // NUM_OREC is always 11, which tells the byte order of the file
+        if (buffer.getInt(8) != HEADER_RECORDS) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        checkName(0, "NUM_OREC");
+        if (buffer.getInt(8) != HEADER_RECORDS) {
+            throw new IOException(location + " is not a NTv2 grid, unexpected NUM_OREC value");
+        }
+        checkName(RECORD_LENGTH, "NUM_SREC");
+        checkName(2 * RECORD_LENGTH, "NUM_FILE");
+        checkName(3 * RECORD_LENGTH, "GS_TYPE");
+        final int count = buffer.getInt(2 * RECORD_LENGTH + 8);
+        final double unit = getUnit(getString(3 * RECORD_LENGTH + 8));
+
+        final List<SubGrid> grids = new ArrayList<SubGrid>(count);
+        int offset = HEADER_RECORDS * RECORD_LENGTH;
+        for (int i = 0; i < count; i++) {
+            SubGrid grid = new SubGrid(offset, unit);
+            grids.add(grid);
+            offset = grid.dataOffset + grid.rows * grid.cols * RECORD_LENGTH;
+        }
+
+        final List<SubGrid> roots = new ArrayList<SubGrid>();
+        for (SubGrid grid : grids) {
+            SubGrid parent = null;
+            if (!"NONE".equalsIgnoreCase(grid.parent)) {
+                for (SubGrid candidate : grids) {
+                    if (candidate.name.equals(grid.parent)) {
+                        parent = candidate;
+                        break;
+                    }
+                }
+            }
+            if (parent == null) {
+                roots.add(grid);
+            } else {
+                parent.children.add(grid);
+            }
+        }
+        this.topLevel = roots.toArray(new SubGrid[roots.size()]);
+        this.subGridCount = count;
+    }
+
+    /**
+     * Returns the location of this grid.
+     */
+    public URL getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the number of sub-grids in this grid.
+     */
+    public int getSubGridCount() {
+        return subGridCount;
+    }
+
+    /**
+     * Shifts a point from the source datum to the target datum of this grid.
+     *
+     * @param point the longitude (positive east) and latitude in decimal degrees, replaced
+     *        by the shifted values
+     * @param offset the index of the longitude in {@code point}
+     * @return {@code false} if the point is not covered by this grid, in which case it is
+     *         left unchanged
+     */
+    public boolean shiftForward(double[] point, int offset) {
+        final double lon = -point[offset] * 3600;
+        final double lat = point[offset + 1] * 3600;
+        final double[] shift = new double[2];
+        if (!interpolate(lon, lat, shift)) {
+            return false;
+        }
+        point[offset] = -(lon + shift[1]) / 3600;
+        point[offset + 1] = (lat + shift[0]) / 3600;
+        return true;
+    }
+
+    /**
+     * Shifts a point from the target datum to the source datum of this grid, iterating over
+     * the forward shifts.
+     *
+     * @param point the longitude (positive east) and latitude in decimal degrees, replaced
+     *        by the shifted values
+     * @param offset the index of the longitude in {@code point}
+     * @return {@code false} if the point is not covered by this grid, in which case it is
+     *         left unchanged
+     */
+    public boolean shiftReverse(double[] point, int offset) {
+        final double lon = -point[offset] * 3600;
+        final double lat = point[offset + 1] * 3600;
+        final double[] shift = new double[2];
+        double x = lon;
+        double y = lat;
+        for (int i = 0; i < 4; i++) {
+            if (!interpolate(x, y, shift)) {
+                return false;
+            }
+            x = lon - shift[1];
+            y = lat - shift[0];
+        }
+        point[offset] = -x / 3600;
+        point[offset + 1] = y / 3600;
+        return true;
+    }
+
+    /**
+     * Computes the shift of a point, in seconds.
+     *
+     * @param lon the longitude, positive west, in seconds
+     * @param lat the latitude, in seconds
+     * @param shift receives the latitude and longitude (positive west) shifts
+     * @return {@code false} if the point is not covered by this grid
+     */
+    private boolean interpolate(double lon, double lat, double[] shift) {
+        SubGrid grid = null;
+        for (SubGrid candidate : topLevel) {
+            if (candidate.contains(lon, lat)) {
+                grid = candidate.densest(lon, lat);
+                break;
+            }
+        }
+        if (grid == null) {
+            return false;
+        }
+        grid.interpolate(lon, lat, shift);
+        return true;
+    }
+
+    /**
+     * Checks the name of the header record at the given offset.
+     */
+    private void checkName(int offset, String expected) throws IOException {
+        String name = getString(offset);
+        if (!expected.equalsIgnoreCase(name)) {
+            throw new IOException(location + " is not a NTv2 grid, expected " + expected
+                    + " record but found " + name);
+        }
+    }
+
+    /**
+     * Returns the 8 characters string at the given offset, trimmed.
+     */
+    private String getString(int offset) {
+        byte[] bytes = new byte[8];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, ASCII).trim();
+    }
+
+    /**
+     * Returns the number of seconds in the unit of the given {@code GS_TYPE}.
+     */
+    private double getUnit(String type) throws IOException {
+        if ("SECONDS".equalsIgnoreCase(type)) {
+            return 1;
+        } else if ("MINUTES".equalsIgnoreCase(type)) {
+            return 60;
+        } else if ("DEGREES".equalsIgnoreCase(type)) {
+            return 3600;
+        }
+        throw new IOException(location + " uses the unsupported " + type + " grid shift type");
+    }
+
+    @Override
+    public String toString() {
+        return "NTv2GridStore[" + location + ", " + subGridCount + " sub-grids]";
+    }
+
+    /**
+     * A sub-grid, reading its nodes from the grid buffer. Coordinates are in seconds, with
+     * longitudes positive west.
+     */
+    private final class SubGrid {
+
+        final String name;
+
+        final String parent;
+
+        final double minLat, maxLat, minLon, maxLon, latInc, lonInc;
+
+        final int rows, cols;
+
+        /**
+         * The offset of the first node in the buffer.
+         */
+        final int dataOffset;
+
+        /**
+         * The conversion factor of the shifts to seconds.
+         */
+        final double unit;
+
+        final List<SubGrid> children = new ArrayList<SubGrid>(0);
+
+        SubGrid(int offset, double unit) throws IOException {
+            if (offset + HEADER_RECORDS * RECORD_LENGTH > buffer.limit()) {
+                throw new IOException(location + " is truncated");
+            }
+            checkName(offset, "SUB_NAME");
+            name = getString(offset + 8);
+            parent = getString(offset + RECORD_LENGTH + 8);
+            minLat = getDouble(offset, 4, "S_LAT") * unit;
+            maxLat = getDouble(offset, 5, "N_LAT") * unit;
+            minLon = getDouble(offset, 6, "E_LONG") * unit;
+            maxLon = getDouble(offset, 7, "W_LONG") * unit;
+            latInc = getDouble(offset, 8, "LAT_INC") * unit;
+            lonInc = getDouble(offset, 9, "LONG_INC") * unit;
+            checkName(offset + 10 * RECORD_LENGTH, "GS_COUNT");
+            final int count = buffer.getInt(offset + 10 * RECORD_LENGTH + 8);
+            rows = (int) Math.round((maxLat - minLat) / latInc) + 1;
+            cols = (int) Math.round((maxLon - minLon) / lonInc) + 1;
+            if (rows < 2 || cols < 2 || rows * cols != count) {
+                throw new IOException(location + " sub-grid " + name + " has " + count
+                        + " nodes, which is inconsistent with its extent");
+            }
+            dataOffset = offset + HEADER_RECORDS * RECORD_LENGTH;
+            if (dataOffset + (long) count * RECORD_LENGTH > buffer.limit()) {
+                throw new IOException(location + " is truncated");
+            }
+            this.unit = unit;
+        }
+
+        private double getDouble(int offset, int record, String expected) throws IOException {
+            checkName(offset + record * RECORD_LENGTH, expected);
+            return buffer.getDouble(offset + record * RECORD_LENGTH + 8);
+        }
+
+        boolean contains(double lon, double lat) {
+            return lon >= minLon && lon < maxLon && lat >= minLat && lat < maxLat;
+        }
+
+        /**
+         * Returns the densest sub-grid containing the given point, assuming this one does.
+         */
+        SubGrid densest(double lon, double lat) {
+            for (SubGrid child : children) {
+                if (child.contains(lon, lat)) {
+                    return child.densest(lon, lat);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Bilinear interpolation of the shifts in the cell containing the point. The nodes
+         * are ordered from south to north, then east to west.
+         */
+        void interpolate(double lon, double lat, double[] shift) {
+            final int col = Math.min((int) ((lon - minLon) / lonInc), cols - 2);
+            final int row = Math.min((int) ((lat - minLat) / latInc), rows - 2);
+            final double x = (lon - (minLon + lonInc * col)) / lonInc;
+            final double y = (lat - (minLat + latInc * row)) / latInc;
+            final int a = dataOffset + (col + row * cols) * RECORD_LENGTH;
+            final int b = a + RECORD_LENGTH;
+            final int c = a + cols * RECORD_LENGTH;
+            final int d = c + RECORD_LENGTH;
+            for (int i = 0; i < 2; i++) {
+                final double va = buffer.getFloat(a + 4 * i);
+                final double vb = buffer.getFloat(b + 4 * i);
+                final double vc = buffer.getFloat(c + 4 * i);
+                final double vd = buffer.getFloat(d + 4 * i);
+                shift[i] = (va + (vb - va) * x + (vc - va) * y + (va - vb - vc + vd) * x * y)
+                        * unit;
+            }
+        }
+    }
+}
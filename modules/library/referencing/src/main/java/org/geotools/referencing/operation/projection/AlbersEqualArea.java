@@ -223,6 +223,47 @@ public class AlbersEqualArea extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+     * stored in the given array, in place. Uses the same equations than
+     * {@link #transformNormalized(double, double, Point2D)} in a single loop.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        final int end = offset + 2*numPts;
+        for (int i=offset; i<end; i+=2) {
+            final double x = ordinates[i] * n;
+            final double y = ordinates[i+1];
+            double rho;
+            if (isSpherical) {
+                rho = c - n*2 * sin(y);
+            } else {
+                rho = c - n * qsfn(sin(y));
+            }
+            if (rho < 0.0) {
+                if (rho > -EPSILON) {
+                    rho = 0.0;
+                } else {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(ErrorKeys.TOLERANCE_ERROR);
+                    }
+                    continue;
+                }
+            }
+            rho = sqrt(rho) / n;
+            ordinates[i  ] =        rho * sin(x);
+            ordinates[i+1] = rho0 - rho * cos(x);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Transforms the specified (<var>x</var>,<var>y</var>) coordinates
      * and stores the result in {@code ptDst}.
@@ -243,6 +243,49 @@ public abstract class LambertConformal extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+     * stored in the given array, in place. Uses the same equations than
+     * {@link #transformNormalized(double, double, Point2D)} in a single loop.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        final int end = offset + 2*numPts;
+        for (int i=offset; i<end; i+=2) {
+            double x = ordinates[i];
+            final double y = ordinates[i+1];
+            final double rho;
+            // Snyder p. 108
+            if (abs(abs(y) - PI/2) < EPSILON) {
+                if (y*n <= 0) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(y);
+                    }
+                    continue;
+                }
+                rho = 0;
+            } else if (isSpherical) {
+                rho = F * pow(tan(PI/4 + 0.5*y), -n);
+            } else {
+                rho = F * pow(tsfn(y, sin(y)), n);
+            }
+            x *= n;
+            if (belgium) {
+                x -= BELGE_A;
+            }
+            ordinates[i  ] =        rho * sin(x);
+            ordinates[i+1] = rho0 - rho * cos(x);
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Transforms the specified (<var>x</var>,<var>y</var>) coordinates
      * and stores the result in {@code ptDst}.
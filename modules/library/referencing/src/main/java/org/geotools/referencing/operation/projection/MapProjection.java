@@ -24,6 +24,7 @@ import static java.lang.Math.*;
 
 import java.awt.geom.Point2D;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -132,6 +133,12 @@ public abstract class MapProjection extends AbstractMathTransform
      * Maximum number of iterations for iterative computations.
      */
     private static final int MAXIMUM_ITERATIONS = 15;
+
+    /**
+     * Number of points copied in a temporary {@code double[]} array when transforming
+     * {@code float[]} arrays.
+     */
+    private static final int BUFFER_SIZE = 512;
     
     /**
      * Constants used to calculate {@link #en0}, {@link #en1},
@@ -906,49 +913,47 @@ public abstract class MapProjection extends AbstractMathTransform
     }
 
     /**
-     * Transforms a list of coordinate point ordinal values. Ordinates must be
-     * (<var>longitude</var>,<var>latitude</var>) pairs in decimal degrees.
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians) stored
+     * in the given array, in place. This is the bulk counterpart of
+     * {@link #transformNormalized(double, double, Point2D)}, invoked by
+     * {@link #transform(double[],int,double[],int,int)} after the {@link #centralMeridian} has
+     * been removed from every longitude, and before the {@link #globalScale} and false
+     * easting/northing are applied on the results.
+     * <p>
+     * The default implementation invokes {@code transformNormalized(x, y, ptDst)} for each point.
+     * Subclasses can override this method with a plain loop over the array, which avoids the
+     * per-point method calls, {@link Point2D} usage and exception handling. Subclasses overriding
+     * {@code transformNormalized(x, y, ptDst)} must override this method too, otherwise the two
+     * methods may give different results.
      *
+     * @param ordinates The (<var>&lambda;</var>,<var>&phi;</var>) pairs to transform.
+     * @param offset    The offset of the first ordinate in the array.
+     * @param numPts    The number of points to transform.
      * @throws ProjectionException if a point can't be transformed. This method tries to transform
      *         every points even if some of them can't be transformed. Non-transformable points will
      *         have value {@link Double#NaN}. If more than one point can't be transformed, then this
      *         exception may be about an arbitrary point.
+     *
+     * @since 15.0
      */
-    public final void transform(final double[] srcPts, int srcOff,
-                                final double[] dstPts, int dstOff, int numPts)
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
             throws ProjectionException
     {
-        /*
-         * Vérifie s'il faudra parcourir le tableau en sens inverse.
-         * Ce sera le cas si les tableaux source et destination se
-         * chevauchent et que la destination est après la source.
-         */
-        final boolean reverse = (srcPts == dstPts && srcOff < dstOff &&
-                                 srcOff + (2*numPts) > dstOff);
-        if (reverse) {
-            srcOff += 2*numPts;
-            dstOff += 2*numPts;
-        }
         final Point2D.Double point = new Point2D.Double();
         ProjectionException firstException = null;
-        while (--numPts >= 0) {
+        final int end = offset + 2*numPts;
+        for (int i=offset; i<end; i+=2) {
             try {
-                point.x = srcPts[srcOff++];
-                point.y = srcPts[srcOff++];
-                transform(point, point);
-                dstPts[dstOff++] = point.x;
-                dstPts[dstOff++] = point.y;
+                final Point2D result = transformNormalized(ordinates[i], ordinates[i+1], point);
+                ordinates[i  ] = result.getX();
+                ordinates[i+1] = result.getY();
             } catch (ProjectionException exception) {
-                dstPts[dstOff++] = Double.NaN;
-                dstPts[dstOff++] = Double.NaN;
+                ordinates[i  ] = Double.NaN;
+                ordinates[i+1] = Double.NaN;
                 if (firstException == null) {
                     firstException = exception;
                 }
             }
-            if (reverse) {
-                srcOff -= 4;
-                dstOff -= 4;
-            }
         }
         if (firstException != null) {
             throw firstException;
@@ -958,6 +963,83 @@ public abstract class MapProjection extends AbstractMathTransform
     /**
      * Transforms a list of coordinate point ordinal values. Ordinates must be
      * (<var>longitude</var>,<var>latitude</var>) pairs in decimal degrees.
+     * <p>
+     * The points are processed in three passes over the destination array: normalization of the
+     * longitudes and latitudes, projection by {@link #transformNormalized(double[],int,int)}, then
+     * scaling and translation to the false easting and northing.
+     *
+     * @throws ProjectionException if a point can't be transformed. This method tries to transform
+     *         every points even if some of them can't be transformed. Non-transformable points will
+     *         have value {@link Double#NaN}. If more than one point can't be transformed, then this
+     *         exception may be about an arbitrary point.
+     */
+    public final void transform(final double[] srcPts, final int srcOff,
+                                final double[] dstPts, final int dstOff, final int numPts)
+            throws ProjectionException
+    {
+        if (numPts <= 0) {
+            return;
+        }
+        final int end = dstOff + 2*numPts;
+        double[] sources = null;
+        if (invertible) {
+            // Keeps a copy of the source points for the checkReciprocal assertions.
+            assert (sources = Arrays.copyOfRange(srcPts, srcOff, srcOff + 2*numPts)) != null;
+        }
+        /*
+         * Copies the points in the destination array first, so the remaining of this method
+         * works in place. System.arraycopy handles the case where source and destination overlap.
+         * See transform(Point2D, Point2D) for the reason why the longitude is rolled only when
+         * the central meridian is not zero.
+         */
+        if (srcPts != dstPts || srcOff != dstOff) {
+            System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+        }
+        boolean verify = verifyCoordinateRanges();
+        for (int i=dstOff; i<end; i+=2) {
+            final double x = dstPts[i];
+            final double y = dstPts[i+1];
+            if (verify && verifyGeographicRanges(this, x, y)) {
+                warningLogged();
+                verify = false;
+            }
+            dstPts[i  ] = (centralMeridian != 0) ?
+                    rollLongitude(toRadians(x) - centralMeridian) : toRadians(x);
+            dstPts[i+1] = toRadians(y);
+        }
+        ProjectionException firstException = null;
+        try {
+            transformNormalized(dstPts, dstOff, numPts);
+        } catch (ProjectionException exception) {
+            firstException = exception;
+        }
+        for (int i=dstOff; i<end; i+=2) {
+            dstPts[i  ] = globalScale*dstPts[i  ] + falseEasting;
+            dstPts[i+1] = globalScale*dstPts[i+1] + falseNorthing;
+        }
+        if (sources != null) {
+            final Point2D.Double point  = new Point2D.Double();
+            final Point2D.Double target = new Point2D.Double();
+            for (int i=0, j=dstOff; j<end; i+=2, j+=2) {
+                point.x = dstPts[j];
+                point.y = dstPts[j+1];
+                if (!Double.isNaN(point.x) && !Double.isNaN(point.y)) {
+                    target.x = sources[i];
+                    target.y = sources[i+1];
+                    assert checkReciprocal(point, target, true);
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Transforms a list of coordinate point ordinal values. Ordinates must be
+     * (<var>longitude</var>,<var>latitude</var>) pairs in decimal degrees. The points are
+     * copied by blocks in a temporary array of type {@code double[]} and transformed by
+     * {@link #transform(double[],int,double[],int,int)}.
      *
      * @throws ProjectionException if a point can't be transformed. This method tries to transform
      *         every points even if some of them can't be transformed. Non-transformable points will
@@ -969,32 +1051,33 @@ public abstract class MapProjection extends AbstractMathTransform
                                 final float[] dstPts, int dstOff, int numPts)
             throws ProjectionException
     {
-        final boolean reverse = (srcPts == dstPts && srcOff < dstOff &&
-                                 srcOff + (2*numPts) > dstOff);
-        if (reverse) {
-            srcOff += 2*numPts;
-            dstOff += 2*numPts;
+        if (numPts <= 0) {
+            return;
         }
-        final Point2D.Double point = new Point2D.Double();
+        if (srcPts == dstPts && srcOff < dstOff && srcOff + 2*numPts > dstOff) {
+            // Overlapping arrays: move the points first, then work in place.
+            System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+            srcOff = dstOff;
+        }
+        final double[] buffer = new double[2 * Math.min(numPts, BUFFER_SIZE)];
         ProjectionException firstException = null;
-        while (--numPts >= 0) {
+        while (numPts > 0) {
+            final int n = Math.min(numPts, BUFFER_SIZE);
+            final int length = 2*n;
+            for (int i=0; i<length; i++) {
+                buffer[i] = srcPts[srcOff++];
+            }
             try {
-                point.x = srcPts[srcOff++];
-                point.y = srcPts[srcOff++];
-                transform(point, point);
-                dstPts[dstOff++] = (float) point.x;
-                dstPts[dstOff++] = (float) point.y;
+                transform(buffer, 0, buffer, 0, n);
             } catch (ProjectionException exception) {
-                dstPts[dstOff++] = Float.NaN;
-                dstPts[dstOff++] = Float.NaN;
                 if (firstException == null) {
                     firstException = exception;
                 }
             }
-            if (reverse) {
-                srcOff -= 4;
-                dstOff -= 4;
+            for (int i=0; i<length; i++) {
+                dstPts[dstOff++] = (float) buffer[i];
             }
+            numPts -= n;
         }
         if (firstException != null) {
             throw firstException;
@@ -154,6 +154,34 @@ public abstract class Mercator extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+     * stored in the given array, in place. Uses the same equations than
+     * {@link #transformNormalized(double, double, Point2D)} in a single loop.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        ProjectionException firstException = null;
+        final int end = offset + 2*numPts;
+        for (int i=offset; i<end; i+=2) {
+            final double y = ordinates[i+1];
+            if (abs(y) > (PI/2 - EPSILON)) {
+                ordinates[i  ] = Double.NaN;
+                ordinates[i+1] = Double.NaN;
+                if (firstException == null) {
+                    firstException = new ProjectionException(y);
+                }
+                continue;
+            }
+            ordinates[i+1] = -log(tsfn(y, sin(y)));
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
     /**
      * Transforms the specified (<var>x</var>,<var>y</var>) coordinates
      * and stores the result in {@code ptDst}.
@@ -221,6 +249,33 @@ public abstract class Mercator extends MapProjection {
             return new Point2D.Double(x,y);
         }
 
+        /**
+         * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+         * stored in the given array, in place, using equations for a sphere.
+         */
+        @Override
+        protected void transformNormalized(final double[] ordinates, final int offset,
+                                           final int numPts) throws ProjectionException
+        {
+            ProjectionException firstException = null;
+            final int end = offset + 2*numPts;
+            for (int i=offset; i<end; i+=2) {
+                final double y = ordinates[i+1];
+                if (abs(y) > (PI/2 - EPSILON)) {
+                    ordinates[i  ] = Double.NaN;
+                    ordinates[i+1] = Double.NaN;
+                    if (firstException == null) {
+                        firstException = new ProjectionException(y);
+                    }
+                    continue;
+                }
+                ordinates[i+1] = log(tan(PI/4 + 0.5*y));
+            }
+            if (firstException != null) {
+                throw firstException;
+            }
+        }
+
         /**
          * Transforms the specified (<var>x</var>,<var>y</var>) coordinates
          * and stores the result in {@code ptDst} using equations for a sphere.
@@ -199,6 +199,40 @@ public class PolarStereographic extends Stereographic {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+     * stored in the given array, in place. Uses the same equations than
+     * {@link #transformNormalized(double, double, Point2D)} in a single loop.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        if (isSpherical) {
+            // Spherical subclass: use its own equations, point by point.
+            super.transformNormalized(ordinates, offset, numPts);
+            return;
+        }
+        final int end = offset + 2*numPts;
+        if (southPole) {
+            for (int i=offset; i<end; i+=2) {
+                final double x = ordinates[i];
+                final double y = ordinates[i+1];
+                final double rho = k0 * tsfn(-y, -sin(y));
+                ordinates[i  ] = rho * sin(x);
+                ordinates[i+1] = rho * cos(x);
+            }
+        } else {
+            for (int i=offset; i<end; i+=2) {
+                final double x = ordinates[i];
+                final double y = ordinates[i+1];
+                final double rho = k0 * tsfn(y, sin(y));
+                ordinates[i  ] =  rho * sin(x);
+                ordinates[i+1] = -rho * cos(x);
+            }
+        }
+    }
+
     /**
      * Transforms the specified (<var>x</var>,<var>y</var>) coordinates (units in radians)
      * and stores the result in {@code ptDst} (linear distance on a unit sphere).
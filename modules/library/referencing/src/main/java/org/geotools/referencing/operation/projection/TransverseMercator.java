@@ -207,6 +207,49 @@ public class TransverseMercator extends MapProjection {
         return new Point2D.Double(x,y);
     }
 
+    /**
+     * Transforms the (<var>&lambda;</var>,<var>&phi;</var>) coordinates (units in radians)
+     * stored in the given array, in place. Uses the same equations than
+     * {@link #transformNormalized(double, double, Point2D)} in a single loop.
+     */
+    @Override
+    protected void transformNormalized(final double[] ordinates, final int offset, final int numPts)
+            throws ProjectionException
+    {
+        if (isSpherical) {
+            // Spherical subclass: use its own equations, point by point.
+            super.transformNormalized(ordinates, offset, numPts);
+            return;
+        }
+        final double es  = excentricitySquared;
+        final double esp = this.esp;
+        final double ml0 = this.ml0;
+        final int end = offset + 2*numPts;
+        for (int i=offset; i<end; i+=2) {
+            final double x = ordinates[i];
+            final double y = ordinates[i+1];
+            final double sinphi = sin(y);
+            final double cosphi = cos(y);
+            double t = (abs(cosphi) > EPSILON) ? sinphi/cosphi : 0;
+            t *= t;
+            double al = cosphi*x;
+            final double als = al*al;
+            al /= sqrt(1.0 - es * sinphi*sinphi);
+            final double n = esp * cosphi*cosphi;
+
+            ordinates[i+1] = mlfn(y, sinphi, cosphi) - ml0 +
+                sinphi * al * x *
+                FC2 * ( 1.0 +
+                FC4 * als * (5.0 - t + n*(9.0 + 4.0*n) +
+                FC6 * als * (61.0 + t * (t - 58.0) + n*(270.0 - 330.0*t) +
+                FC8 * als * (1385.0 + t * ( t*(543.0 - t) - 3111.0)))));
+
+            ordinates[i] = al*(FC1 + FC3 * als*(1.0 - t + n +
+                FC5 * als * (5.0 + t*(t - 18.0) + n*(14.0 - 58.0*t) +
+                FC7 * als * (61.0+ t*(t*(179.0 - t) - 479.0 )))));
+        }
+    }
+
     /**
      * Transforms the specified (<var>x</var>,<var>y</var>) coordinates
      * and stores the result in {@code ptDst}.
@@ -0,0 +1,324 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.transform;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.logging.Level;
+
+import org.geotools.referencing.operation.LinearTransform;
+import org.geotools.resources.i18n.ErrorKeys;
+import org.geotools.resources.i18n.Errors;
+import org.geotools.util.Utilities;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.Matrix;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.TransformException;
+
+
+/**
+ * Approximates a two-dimensional transform by bilinear interpolation in a regular grid of
+ * control points computed with the exact transform. The grid covers a rectangular domain in
+ * source coordinates, and is made dense enough for the interpolated points to be within a given
+ * tolerance (in target units) of the exact ones, using the same subdivision algorithm than
+ * {@link WarpBuilder}. Points outside the domain, or in cells where a control point could not
+ * be transformed, are transformed by the exact transform.
+ * <p>
+ * This is typically used for rendering, where transforming every vertex of every geometry with
+ * the exact transform is expensive while a sub-pixel error is not visible. The
+ * {@linkplain #inverse inverse} and the {@linkplain #derivative derivatives} are the exact ones.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public class ApproximateTransform2D extends AbstractMathTransform implements MathTransform2D {
+    /**
+     * The size of the square in which the domain is mapped for the {@link WarpBuilder}
+     * subdivision. Since the subdivision stops at cells of 4 units, this limits the grid
+     * to 64 &times; 64 cells.
+     */
+    private static final int GRID_SIZE = 256;
+
+    /**
+     * The exact transform.
+     */
+    private final MathTransform transform;
+
+    /**
+     * The domain where the transform is approximated.
+     */
+    private final Rectangle2D domain;
+
+    /**
+     * The tolerance used for building the grid, in target units.
+     */
+    private final double tolerance;
+
+    /**
+     * The number of columns and rows of cells in the grid.
+     */
+    private final int cols, rows;
+
+    /**
+     * The conversion factors from source coordinates to cell coordinates.
+     */
+    private final double minX, minY, scaleX, scaleY;
+
+    /**
+     * The transformed control points, as (<var>x</var>,<var>y</var>) pairs row after row.
+     * There is {@code (rows + 1) * (cols + 1)} points.
+     */
+    private final double[] grid;
+
+    /**
+     * Builds the grid of control points.
+     */
+    private ApproximateTransform2D(final MathTransform transform, final Rectangle2D domain,
+                                   final double tolerance, final int cols, final int rows)
+            throws TransformException
+    {
+        this.transform = transform;
+        this.domain    = (Rectangle2D) domain.clone();
+        this.tolerance = tolerance;
+        this.cols      = cols;
+        this.rows      = rows;
+        minX   = domain.getMinX();
+        minY   = domain.getMinY();
+        scaleX = cols / domain.getWidth();
+        scaleY = rows / domain.getHeight();
+        grid   = new double[2 * (rows + 1) * (cols + 1)];
+        final double[] sources = new double[grid.length];
+        int k = 0;
+        for (int r=0; r<=rows; r++) {
+            final double y = (r == rows) ? domain.getMaxY() : minY + r / scaleY;
+            for (int c=0; c<=cols; c++) {
+                sources[k++] = (c == cols) ? domain.getMaxX() : minX + c / scaleX;
+                sources[k++] = y;
+            }
+        }
+        try {
+            transform.transform(sources, 0, grid, 0, grid.length / 2);
+        } catch (TransformException e) {
+            /*
+             * The transform may have stopped anywhere, leaving some points untouched.
+             * Transforms them again one by one, the control points that can't be
+             * transformed being NaN, so the cells using them use the exact transform.
+             */
+            WarpBuilder.LOGGER.log(Level.FINE, "Some control points can't be transformed", e);
+            for (int i=0; i<grid.length; i+=2) {
+                try {
+                    transform.transform(sources, i, grid, i, 1);
+                } catch (TransformException exception) {
+                    grid[i  ] = Double.NaN;
+                    grid[i+1] = Double.NaN;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a transform approximating the given one in the specified domain, within the given
+     * tolerance. If the transform is linear, or if no grid denser than {@code 64 × 64} cells
+     * can approximate it with the requested accuracy, then the transform is returned unchanged.
+     *
+     * @param  transform The two-dimensional transform to approximate.
+     * @param  domain    The area where to approximate, in source coordinates.
+     * @param  tolerance The maximal error, in target units.
+     * @return The approximated transform, or {@code transform} if it can't be approximated.
+     */
+    public static MathTransform create(final MathTransform transform, final Rectangle2D domain,
+                                       final double tolerance)
+    {
+        if (transform instanceof LinearTransform || transform instanceof ApproximateTransform2D
+                || transform.getSourceDimensions() != 2 || transform.getTargetDimensions() != 2
+                || !(tolerance > 0) || domain == null || !(domain.getWidth() > 0)
+                || !(domain.getHeight() > 0))
+        {
+            return transform;
+        }
+        /*
+         * WarpBuilder works in a pixel space, with cells no smaller than 4 pixels.
+         * Maps the domain to a square of GRID_SIZE pixels for the subdivision.
+         */
+        final MathTransform gridToDomain = ProjectiveTransform.create(new AffineTransform(
+                domain.getWidth() / GRID_SIZE, 0, 0, domain.getHeight() / GRID_SIZE,
+                domain.getMinX(), domain.getMinY()));
+        final MathTransform gridToTarget = ConcatenatedTransform.create(gridToDomain, transform);
+        if (!(gridToTarget instanceof MathTransform2D)) {
+            return transform;
+        }
+        try {
+            final int[] depths = new WarpBuilder(tolerance).computeOptimalDepths(
+                    (MathTransform2D) gridToTarget, 0, GRID_SIZE, 0, GRID_SIZE, 0, 0);
+            return new ApproximateTransform2D(transform, domain, tolerance,
+                    1 << depths[1], 1 << depths[0]);
+        } catch (WarpBuilder.ExcessiveDepthException e) {
+            WarpBuilder.LOGGER.log(Level.FINE, "Can't approximate the transform: " + e.getMessage());
+        } catch (TransformException e) {
+            WarpBuilder.LOGGER.log(Level.FINE, "Can't approximate the transform", e);
+        }
+        return transform;
+    }
+
+    /**
+     * Returns the exact transform.
+     */
+    public MathTransform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Returns the domain where the transform is approximated.
+     */
+    public Rectangle2D getDomain() {
+        return (Rectangle2D) domain.clone();
+    }
+
+    /**
+     * Returns the tolerance, in target units.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Gets the dimension of input points, which is 2.
+     */
+    public int getSourceDimensions() {
+        return 2;
+    }
+
+    /**
+     * Gets the dimension of output points, which is 2.
+     */
+    public int getTargetDimensions() {
+        return 2;
+    }
+
+    /**
+     * Transforms a list of coordinate point ordinal values. The points inside the domain are
+     * interpolated in the grid, the other ones are transformed by the exact transform.
+     */
+    public void transform(final double[] srcPts, final int srcOff,
+                          final double[] dstPts, final int dstOff, final int numPts)
+            throws TransformException
+    {
+        if (srcPts != dstPts || srcOff != dstOff) {
+            System.arraycopy(srcPts, srcOff, dstPts, dstOff, 2*numPts);
+        }
+        final int stride = 2 * (cols + 1);
+        TransformException firstException = null;
+        final int end = dstOff + 2*numPts;
+        for (int i=dstOff; i<end; i+=2) {
+            final double gx = (dstPts[i  ] - minX) * scaleX;
+            final double gy = (dstPts[i+1] - minY) * scaleY;
+            // Also false for NaN.
+            if (gx >= 0 && gx <= cols && gy >= 0 && gy <= rows) {
+                final int c = Math.min((int) gx, cols - 1);
+                final int r = Math.min((int) gy, rows - 1);
+                final double fx = gx - c;
+                final double fy = gy - r;
+                final int k0 = 2*c + r*stride;
+                final int k1 = k0 + stride;
+                final double x0 = grid[k0  ] + fx * (grid[k0+2] - grid[k0  ]);
+                final double y0 = grid[k0+1] + fx * (grid[k0+3] - grid[k0+1]);
+                final double x1 = grid[k1  ] + fx * (grid[k1+2] - grid[k1  ]);
+                final double y1 = grid[k1+1] + fx * (grid[k1+3] - grid[k1+1]);
+                final double x = x0 + fy * (x1 - x0);
+                final double y = y0 + fy * (y1 - y0);
+                if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                    dstPts[i  ] = x;
+                    dstPts[i+1] = y;
+                    continue;
+                }
+            }
+            try {
+                transform.transform(dstPts, i, dstPts, i, 1);
+            } catch (TransformException exception) {
+                dstPts[i  ] = Double.NaN;
+                dstPts[i+1] = Double.NaN;
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+        }
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Gets the derivative of the exact transform at a point.
+     */
+    @Override
+    public Matrix derivative(final Point2D point) throws TransformException {
+        if (transform instanceof MathTransform2D) {
+            return ((MathTransform2D) transform).derivative(point);
+        }
+        return super.derivative(point);
+    }
+
+    /**
+     * Returns the inverse of the exact transform.
+     */
+    @Override
+    public MathTransform2D inverse() throws NoninvertibleTransformException {
+        final MathTransform inverse = transform.inverse();
+        if (inverse instanceof MathTransform2D) {
+            return (MathTransform2D) inverse;
+        }
+        throw new NoninvertibleTransformException(Errors.format(ErrorKeys.NONINVERTIBLE_TRANSFORM));
+    }
+
+    /**
+     * Returns a hash value for this transform.
+     */
+    @Override
+    public int hashCode() {
+        return transform.hashCode() ^ domain.hashCode();
+    }
+
+    /**
+     * Compares this transform with the given object for equality.
+     */
+    @Override
+    public boolean equals(final Object object) {
+        if (object == this) {
+            return true;
+        }
+        if (object != null && object.getClass().equals(getClass())) {
+            final ApproximateTransform2D that = (ApproximateTransform2D) object;
+            return Utilities.equals(this.transform, that.transform) &&
+                   Utilities.equals(this.domain,    that.domain) &&
+                   Double.doubleToLongBits(this.tolerance) == Double.doubleToLongBits(that.tolerance);
+        }
+        return false;
+    }
+
+    /**
+     * Returns a string representation of this transform.
+     */
+    @Override
+    public String toString() {
+        return "ApproximateTransform2D[" + cols + " x " + rows + " cells, tolerance " + tolerance
+                + ", " + transform + "]";
+    }
+}
@@ -37,6 +37,12 @@ class ConcatenatedTransformDirect extends ConcatenatedTransform {
      */
     private static final long serialVersionUID = -3568975979013908920L;
 
+    /**
+     * The number of points given to each step before moving to the next points. Small enough
+     * for the intermediate results to stay in the processor cache between the steps.
+     */
+    private static final int BLOCK_SIZE = 512;
+
     /**
      * Constructs a concatenated transform.
      */
@@ -69,16 +75,61 @@ class ConcatenatedTransformDirect extends ConcatenatedTransform {
     }
 
     /**
-     * Transforms a list of coordinate point ordinal values.
+     * Transforms a list of coordinate point ordinal values. The points are processed by blocks:
+     * both transforms are applied on a block before moving to the next one, so a chain like
+     * affine transform, map projection and affine transform is done in a single pass over
+     * the arrays instead of one pass per step.
+     *
+     * @throws TransformException if a point can't be transformed. This method tries to transform
+     *         every blocks even if some points can't be transformed. If more than one point can't
+     *         be transformed, then this exception may be about an arbitrary point.
      */
     @Override
-    public void transform(final double[] srcPts, final int srcOff,
-                          final double[] dstPts, final int dstOff, final int numPts)
+    public void transform(final double[] srcPts, int srcOff,
+                          final double[] dstPts, int dstOff, int numPts)
             throws TransformException
     {
         assert isValid();
-        transform1.transform(srcPts, srcOff, dstPts, dstOff, numPts);
-        transform2.transform(dstPts, dstOff, dstPts, dstOff, numPts);
+        if (numPts <= BLOCK_SIZE) {
+            transform1.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+            transform2.transform(dstPts, dstOff, dstPts, dstOff, numPts);
+            return;
+        }
+        final int dimension = getSourceDimensions();
+        if (srcPts == dstPts && srcOff < dstOff && srcOff + numPts*dimension > dstOff) {
+            // Overlapping arrays: move the points first, then work in place.
+            System.arraycopy(srcPts, srcOff, dstPts, dstOff, numPts*dimension);
+            srcOff = dstOff;
+        }
+        TransformException firstException = null;
+        do {
+            final int n = Math.min(numPts, BLOCK_SIZE);
+            /*
+             * Map projections set the points that can't be transformed to NaN and still
+             * transform the other ones, so the second step is applied even if the first
+             * one failed.
+             */
+            try {
+                transform1.transform(srcPts, srcOff, dstPts, dstOff, n);
+            } catch (TransformException exception) {
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+            try {
+                transform2.transform(dstPts, dstOff, dstPts, dstOff, n);
+            } catch (TransformException exception) {
+                if (firstException == null) {
+                    firstException = exception;
+                }
+            }
+            srcOff += n * dimension;
+            dstOff += n * dimension;
+            numPts -= n;
+        } while (numPts != 0);
+        if (firstException != null) {
+            throw firstException;
+        }
     }
 
     // Do NOT override the transform(float[]...) version because we really need to use an
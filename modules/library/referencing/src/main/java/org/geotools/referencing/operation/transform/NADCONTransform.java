@@ -32,9 +32,8 @@ import org.geotools.referencing.NamedIdentifier;
 import org.geotools.referencing.ReferencingFactoryFinder;
 import org.geotools.referencing.factory.gridshift.GridShiftLocator;
 import org.geotools.referencing.factory.gridshift.NADCONGridShiftFactory;
-import org.geotools.referencing.factory.gridshift.NADConGridShift;
+import org.geotools.referencing.factory.gridshift.NADCONGridStore;
 import org.geotools.referencing.operation.MathTransformProvider;
-import org.geotools.referencing.operation.builder.LocalizationGrid;
 import org.geotools.resources.Arguments;
 import org.geotools.resources.i18n.ErrorKeys;
 import org.geotools.resources.i18n.Errors;
@@ -175,19 +174,6 @@ public class NADCONTransform extends AbstractMathTransform implements MathTransf
      */
     private final URI longGridName;
 
-   
-    /**
-     * Longitude and latitude grid shift values. Values are organized from low
-     * to high longitude (low x index to high) and low to high latitude (low y
-     * index to high).
-     */
-    private LocalizationGrid gridShift;
-
-    /**
-     * The {@link #gridShift} values as a {@code LocalizationGridTransform2D}.
-     * Used for interpolating shift values.
-     */
-    private MathTransform gridShiftTransform;
 
     /**
      * The inverse of this transform. Will be created only when needed.
@@ -195,9 +181,10 @@ public class NADCONTransform extends AbstractMathTransform implements MathTransf
     private transient MathTransform2D inverse;
 
     /**
-     * The grid driving this transform
+     * The grid driving this transform, shared with the other transforms using the same grids.
+     * Values are organized from low to high longitude and low to high latitude.
      */
-    NADConGridShift grid;
+    NADCONGridStore grid;
 
 
     /**
@@ -232,8 +219,7 @@ public class NADCONTransform extends AbstractMathTransform implements MathTransf
         URL latGridURL = locateGrid(latGridName);
         URL longGridURL = locateGrid(longGridName);
         
-        this.grid = FACTORY.loadGridShift(latGridURL, longGridURL);
-        this.gridShiftTransform = grid.getMathTransform();
+        this.grid = FACTORY.loadGridStore(latGridURL, longGridURL);
     }
     
     protected URL locateGrid(URI uri ) throws FactoryException {
@@ -327,6 +313,7 @@ public class NADCONTransform extends AbstractMathTransform implements MathTransf
             dstOff -= ((numPts - 1) * step);
         }
 
+        final double[] array = new double[2];
         while (--numPts >= 0) {
             double x = srcPts[srcOff++];
             double y = srcPts[srcOff++];
@@ -337,14 +324,9 @@ public class NADCONTransform extends AbstractMathTransform implements MathTransf
                         + " " + grid.getMinY() + ")(" + grid.getMaxX() + " " + grid.getMaxY() + "))"); 
             }
 
-            //find the grid the point is in (index is 0 based)
-            final double xgrid = (x - grid.getMinX()) / grid.getDx();
-            final double ygrid = (y - grid.getMinY()) / grid.getDy();
-            double[] array = new double[] { xgrid, ygrid };
-
-            //use the LocalizationGridTransform2D transform method (bilineal interpolation)
+            //bilinear interpolation in the cell the point is in
             //returned shift values are in seconds, longitude shift values are + west
-            gridShiftTransform.transform(array, 0, array, 0, 1);
+            grid.interpolate(x, y, array);
 
             dstPts[dstOff++] = x - (array[0] / SEC_2_DEG);
             dstPts[dstOff++] = y + (array[1] / SEC_2_DEG);
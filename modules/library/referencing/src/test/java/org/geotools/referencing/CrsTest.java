@@ -365,4 +365,54 @@ public final class CrsTest {
         assertEquals(15.96, transformed.getMaximum(0), 0.01);
         assertEquals(41.61, transformed.getMaximum(1), 0.01);
     }
+
+    /**
+     * Tests that the transforms found for CRS equal ignoring metadata are cached.
+     */
+    @Test
+    public void testMathTransformCache() throws FactoryException {
+        final CoordinateReferenceSystem utm1 = CRS.parseWKT(WKT.UTM_10N);
+        final CoordinateReferenceSystem utm2 = CRS.parseWKT(WKT.UTM_10N);
+        assertNotSame(utm1, utm2);
+        final MathTransformCache cache = CRS.getMathTransformCache();
+        cache.clear();
+
+        final MathTransform mt1 = CRS.findMathTransform(DefaultGeographicCRS.WGS84, utm1, true);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        final MathTransform mt2 = CRS.findMathTransform(DefaultGeographicCRS.WGS84, utm2, true);
+        assertSame(mt1, mt2);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0.5, cache.getHitRatio(), 0d);
+
+        // leniency is part of the key
+        CRS.findMathTransform(DefaultGeographicCRS.WGS84, utm2, false);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * Tests that the math transform cache discards the oldest transforms when full.
+     */
+    @Test
+    public void testMathTransformCacheBounded() throws FactoryException, TransformException {
+        final MathTransformCache cache = new MathTransformCache(2);
+        final CoordinateReferenceSystem wgs84 = DefaultGeographicCRS.WGS84;
+        final CoordinateReferenceSystem utm = CRS.parseWKT(WKT.UTM_10N);
+        final MathTransform mt = CRS.findMathTransform(wgs84, utm, true);
+        final MathTransformCache.Key k1 = new MathTransformCache.Key(wgs84, utm, true);
+        final MathTransformCache.Key k2 = new MathTransformCache.Key(wgs84, utm, false);
+        final MathTransformCache.Key k3 = new MathTransformCache.Key(utm, wgs84, true);
+        assertSame(mt, cache.put(k1, mt));
+        cache.put(k2, mt);
+        assertSame(mt, cache.get(k1));
+        cache.put(k3, mt.inverse());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(k1));
+        assertSame(mt, cache.get(k2));
+    }
 }
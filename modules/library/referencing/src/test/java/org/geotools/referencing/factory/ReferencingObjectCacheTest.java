@@ -0,0 +1,162 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ReferencingObjectCache}.
+ *
+ * @source $URL$
+ */
+public class ReferencingObjectCacheTest {
+
+    @Test
+    public void testPutGet() {
+        ReferencingObjectCache cache = new ReferencingObjectCache(10);
+        Object value = new Object();
+        assertNull(cache.get("4326"));
+        cache.put("4326", value);
+        assertSame(value, cache.get("4326"));
+        assertSame(value, cache.peek("4326"));
+        assertTrue(cache.getKeys().contains("4326"));
+
+        cache.remove("4326");
+        assertNull(cache.get("4326"));
+    }
+
+    @Test
+    public void testWeakReferences() {
+        ReferencingObjectCache cache = new ReferencingObjectCache(2);
+        // keep the values reachable, the demoted ones must still be found
+        Object[] values = new Object[5];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Object();
+            cache.put(i, values[i]);
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertSame(values[i], cache.get(i));
+        }
+        assertEquals(values.length, cache.getKeys().size());
+
+        cache.clear();
+        assertTrue(cache.getKeys().isEmpty());
+        assertNull(cache.get(0));
+    }
+
+    @Test
+    public void testSameKeyWaits() throws Exception {
+        final ReferencingObjectCache cache = new ReferencingObjectCache(10);
+        final Object value = new Object();
+        final AtomicReference<Object> found = new AtomicReference<Object>();
+        final CountDownLatch done = new CountDownLatch(1);
+        cache.writeLock("4326");
+        assertTrue(cache.isWriting());
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                cache.writeLock("4326");
+                try {
+                    found.set(cache.peek("4326"));
+                } finally {
+                    cache.writeUnLock("4326");
+                }
+                done.countDown();
+            }
+        };
+        reader.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        cache.put("4326", value);
+        cache.writeUnLock("4326");
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertSame(value, found.get());
+        assertFalse(cache.isWriting());
+    }
+
+    @Test
+    public void testOtherKeyDoesNotWait() throws Exception {
+        final ReferencingObjectCache cache = new ReferencingObjectCache(10);
+        final CountDownLatch done = new CountDownLatch(1);
+        cache.writeLock("4326");
+        try {
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    cache.writeLock("3857");
+                    try {
+                        cache.put("3857", "mercator");
+                    } finally {
+                        cache.writeUnLock("3857");
+                    }
+                    done.countDown();
+                }
+            };
+            other.start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals("mercator", cache.get("3857"));
+        } finally {
+            cache.writeUnLock("4326");
+        }
+    }
+
+    @Test
+    public void testReentrantLock() {
+        ReferencingObjectCache cache = new ReferencingObjectCache(10);
+        cache.writeLock("4326");
+        cache.writeLock("4326");
+        cache.writeUnLock("4326");
+        assertTrue(cache.isWriting());
+        cache.writeUnLock("4326");
+        assertFalse(cache.isWriting());
+    }
+
+    @Test
+    public void testNestedCreationDoesNotWait() throws Exception {
+        // a thread creating an object must not wait for the components reserved by another
+        // thread, which may be waiting for the backing store this thread holds
+        final ReferencingObjectCache cache = new ReferencingObjectCache(10);
+        final CountDownLatch done = new CountDownLatch(1);
+        cache.writeLock("8901");
+        try {
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    cache.writeLock("4326");
+                    try {
+                        cache.writeLock("8901");
+                        cache.writeUnLock("8901");
+                    } finally {
+                        cache.writeUnLock("4326");
+                    }
+                    done.countDown();
+                }
+            };
+            other.start();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            cache.writeUnLock("8901");
+        }
+        assertFalse(cache.isWriting());
+    }
+}
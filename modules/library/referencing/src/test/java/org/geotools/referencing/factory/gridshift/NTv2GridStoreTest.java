@@ -0,0 +1,102 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.gridshift;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.Test;
+
+import au.com.objectix.jgridshift.GridShift;
+import au.com.objectix.jgridshift.GridShiftFile;
+
+/**
+ * Unit tests for {@link NTv2GridStore}
+ *
+ * @source $URL$
+ */
+public class NTv2GridStoreTest {
+
+    private static final URL TEST_GRID = NTv2GridStoreTest.class.getResource("BALR2009.gsb");
+
+    private static final URL MALFORMED_GRID = NTv2GridStoreTest.class.getResource("malformedNTv2grid.gsb");
+
+    private static final double TOLERANCE = 1E-7;
+
+    @Test
+    public void testSameAsJGridShift() throws Exception {
+        NTv2GridStore store = new NTv2GridStore(TEST_GRID);
+        assertEquals(1, store.getSubGridCount());
+
+        GridShiftFile grid = new NTv2GridShiftFactory().createNTv2Grid(TEST_GRID);
+        GridShift shift = new GridShift();
+        double[] point = new double[2];
+        for (double lon = 1; lon < 4.8; lon += 0.17) {
+            for (double lat = 37.9; lat < 40.8; lat += 0.13) {
+                // forward
+                shift.setLonPositiveEastDegrees(lon);
+                shift.setLatDegrees(lat);
+                point[0] = lon;
+                point[1] = lat;
+                boolean shifted = grid.gridShiftForward(shift);
+                assertEquals(shifted, store.shiftForward(point, 0));
+                if (shifted) {
+                    assertEquals(shift.getShiftedLonPositiveEastDegrees(), point[0], TOLERANCE);
+                    assertEquals(shift.getShiftedLatDegrees(), point[1], TOLERANCE);
+                } else {
+                    assertEquals(lon, point[0], 0);
+                    assertEquals(lat, point[1], 0);
+                }
+
+                // reverse
+                shift.setLonPositiveEastDegrees(lon);
+                shift.setLatDegrees(lat);
+                point[0] = lon;
+                point[1] = lat;
+                shifted = grid.gridShiftReverse(shift);
+                assertEquals(shifted, store.shiftReverse(point, 0));
+                if (shifted) {
+                    assertEquals(shift.getShiftedLonPositiveEastDegrees(), point[0], TOLERANCE);
+                    assertEquals(shift.getShiftedLatDegrees(), point[1], TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNotCovered() throws Exception {
+        NTv2GridStore store = new NTv2GridStore(TEST_GRID);
+        double[] point = { 10, 10 };
+        assertFalse(store.shiftForward(point, 0));
+        assertFalse(store.shiftReverse(point, 0));
+        assertEquals(10, point[0], 0);
+        assertEquals(10, point[1], 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformed() throws Exception {
+        new NTv2GridStore(MALFORMED_GRID);
+    }
+
+    @Test
+    public void testShared() throws Exception {
+        NTv2GridShiftFactory factory = new NTv2GridShiftFactory();
+        assertSame(factory.createNTv2GridStore(TEST_GRID), factory.createNTv2GridStore(TEST_GRID));
+    }
+}
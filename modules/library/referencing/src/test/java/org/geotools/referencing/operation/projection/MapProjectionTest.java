@@ -19,13 +19,19 @@ package org.geotools.referencing.operation.projection;
 import static org.geotools.referencing.operation.projection.MapProjection.AbstractProvider.SEMI_MAJOR;
 import static org.geotools.referencing.operation.projection.MapProjection.AbstractProvider.SEMI_MINOR;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 
 import org.geotools.referencing.ReferencingFactoryFinder;
+import org.geotools.referencing.operation.matrix.GeneralMatrix;
 import org.junit.Test;
 import org.opengis.parameter.ParameterValueGroup;
 import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransform2D;
 import org.opengis.referencing.operation.MathTransformFactory;
 import org.opengis.referencing.operation.TransformException;
 
@@ -127,4 +133,140 @@ public final class MapProjectionTest {
     	Point2D target2 = new Point2D.Double(src.getX(), src.getY()+0.000000000001);
     	assertEquals(1.1117412E-7, mt.orthodromicDistance(src, target2), 1E-12);
     }
+
+    /**
+     * Creates a projection on the WGS84 ellipsoid, or on a sphere if {@code spherical}
+     * is {@code true}, with the given parameters as (name, value) pairs.
+     */
+    private static MapProjection createProjection(final String name, final boolean spherical,
+            final Object... parameters) throws FactoryException
+    {
+        MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+        final ParameterValueGroup values = mtFactory.getDefaultParameters(name);
+        values.parameter(SEMI_MAJOR.getName().getCode()).setValue(6378137.0);
+        values.parameter(SEMI_MINOR.getName().getCode()).setValue(spherical ? 6378137.0 : 6356752.314245179);
+        for (int i=0; i<parameters.length; i+=2) {
+            values.parameter((String) parameters[i]).setValue(((Number) parameters[i+1]).doubleValue());
+        }
+        return (MapProjection) mtFactory.createParameterizedTransform(values);
+    }
+
+    /**
+     * Creates a grid of (longitude, latitude) points in the given area.
+     */
+    private static double[] createGrid(final double xmin, final double xmax,
+                                       final double ymin, final double ymax, final int size)
+    {
+        final double[] points = new double[2 * size * size];
+        int k = 0;
+        for (int i=0; i<size; i++) {
+            for (int j=0; j<size; j++) {
+                points[k++] = xmin + (xmax - xmin) * i / (size - 1);
+                points[k++] = ymin + (ymax - ymin) * j / (size - 1);
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Checks that transforming an array gives the same result than transforming the points
+     * one by one.
+     */
+    private static void assertBulkTransform(final MathTransform2D mt, final double[] points)
+            throws TransformException
+    {
+        final double[] dst = new double[points.length];
+        mt.transform(points, 0, dst, 0, points.length / 2);
+        final float[] floats = new float[points.length];
+        for (int i=0; i<points.length; i++) {
+            floats[i] = (float) points[i];
+        }
+        mt.transform(floats, 0, floats, 0, points.length / 2);
+        final Point2D.Double point = new Point2D.Double();
+        for (int i=0; i<points.length; i+=2) {
+            point.x = points[i];
+            point.y = points[i+1];
+            mt.transform(point, point);
+            assertEquals(point.x, dst[i],   1E-6);
+            assertEquals(point.y, dst[i+1], 1E-6);
+            assertEquals(point.x, floats[i],   2);
+            assertEquals(point.y, floats[i+1], 2);
+        }
+        // Transform in place, with the destination overlapping the source.
+        final double[] shifted = new double[points.length + 2];
+        System.arraycopy(points, 0, shifted, 0, points.length);
+        mt.transform(shifted, 0, shifted, 2, points.length / 2);
+        for (int i=0; i<points.length; i++) {
+            assertEquals(dst[i], shifted[i+2], 1E-6);
+        }
+    }
+
+    /**
+     * Tests the array transforms of the projections having a bulk implementation.
+     */
+    @Test
+    public void testBulkTransform() throws TransformException, FactoryException {
+        assertBulkTransform(createProjection("Transverse_Mercator", false,
+                "central_meridian", 9, "scale_factor", 0.9996, "false_easting", 500000),
+                createGrid(6, 12, -60, 60, 20));
+        assertBulkTransform(createProjection("Transverse_Mercator", true,
+                "central_meridian", 9), createGrid(6, 12, -60, 60, 20));
+        assertBulkTransform(createProjection("Mercator_1SP", false, "central_meridian", 110),
+                createGrid(-180, 180, -80, 80, 20));
+        assertBulkTransform(createGoogleMercator(), createGrid(-180, 180, -80, 80, 20));
+        assertBulkTransform(createProjection("Lambert_Conformal_Conic_2SP", false,
+                "central_meridian", 3, "latitude_of_origin", 46.5,
+                "standard_parallel_1", 44, "standard_parallel_2", 49,
+                "false_easting", 700000, "false_northing", 6600000),
+                createGrid(-5, 10, 41, 52, 20));
+        assertBulkTransform(createProjection("Albers_Conic_Equal_Area", false,
+                "central_meridian", -96, "latitude_of_origin", 23,
+                "standard_parallel_1", 29.5, "standard_parallel_2", 45.5),
+                createGrid(-125, -65, 20, 50, 20));
+        assertBulkTransform(createProjection("Polar_Stereographic", false,
+                "latitude_of_origin", 90, "scale_factor", 0.994, "false_easting", 2000000,
+                "false_northing", 2000000), createGrid(-180, 180, 60, 89, 20));
+        assertBulkTransform(createProjection("Polar_Stereographic", false,
+                "latitude_of_origin", -90, "scale_factor", 0.994, "false_easting", 2000000,
+                "false_northing", 2000000), createGrid(-180, 180, -89, -60, 20));
+    }
+
+    /**
+     * Tests that the points which can't be transformed are set to NaN, while the other
+     * ones are still transformed.
+     */
+    @Test
+    public void testBulkTransformFailure() throws TransformException, FactoryException {
+        final MapProjection mt = createProjection("Mercator_1SP", false);
+        final double[] points = {10, 45, 10, 90, 20, 45};
+        final double[] dst = new double[points.length];
+        try {
+            mt.transform(points, 0, dst, 0, 3);
+            fail("The pole can't be projected");
+        } catch (ProjectionException e) {
+            // expected
+        }
+        assertTrue(Double.isNaN(dst[2]));
+        assertTrue(Double.isNaN(dst[3]));
+        final Point2D point = mt.transform(new Point2D.Double(20, 45), null);
+        assertEquals(point.getX(), dst[4], 1E-6);
+        assertEquals(point.getY(), dst[5], 1E-6);
+    }
+
+    /**
+     * Tests the concatenation of a projection with affine transforms on more points than
+     * a single block.
+     */
+    @Test
+    public void testConcatenatedBulkTransform() throws TransformException, FactoryException {
+        MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+        final MathTransform swap = mtFactory.createAffineTransform(
+                new GeneralMatrix(new AffineTransform(0, 1, 1, 0, 0, 0)));
+        final MathTransform scale = mtFactory.createAffineTransform(
+                new GeneralMatrix(AffineTransform.getScaleInstance(0.001, 0.001)));
+        final MathTransform mt = mtFactory.createConcatenatedTransform(swap,
+                mtFactory.createConcatenatedTransform(createProjection("Transverse_Mercator",
+                        false, "central_meridian", 9), scale));
+        assertBulkTransform((MathTransform2D) mt, createGrid(-60, 60, 6, 12, 40));
+    }
 }
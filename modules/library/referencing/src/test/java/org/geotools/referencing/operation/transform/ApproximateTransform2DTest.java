@@ -0,0 +1,189 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.operation.transform;
+
+import static org.junit.Assert.*;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.geotools.referencing.ReferencingFactoryFinder;
+import org.junit.Test;
+import org.opengis.parameter.ParameterValueGroup;
+import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.MathTransform2D;
+import org.opengis.referencing.operation.MathTransformFactory;
+import org.opengis.referencing.operation.NoninvertibleTransformException;
+import org.opengis.referencing.operation.TransformException;
+
+
+/**
+ * Tests the {@link ApproximateTransform2D} class.
+ *
+ * @source $URL$
+ */
+public final class ApproximateTransform2DTest {
+    /**
+     * Creates a UTM zone 32 north projection on the WGS84 ellipsoid.
+     */
+    private static MathTransform createUTM() throws Exception {
+        MathTransformFactory mtFactory = ReferencingFactoryFinder.getMathTransformFactory(null);
+        ParameterValueGroup values = mtFactory.getDefaultParameters("Transverse_Mercator");
+        values.parameter("semi_major").setValue(6378137.0);
+        values.parameter("semi_minor").setValue(6356752.314245179);
+        values.parameter("central_meridian").setValue(9.0);
+        values.parameter("scale_factor").setValue(0.9996);
+        values.parameter("false_easting").setValue(500000.0);
+        return mtFactory.createParameterizedTransform(values);
+    }
+
+    /**
+     * Tests that the interpolated points are within the tolerance of the exact ones.
+     */
+    @Test
+    public void testAccuracy() throws Exception {
+        MathTransform exact = createUTM();
+        Rectangle2D domain = new Rectangle2D.Double(7, 44, 2, 2);
+        MathTransform approx = ApproximateTransform2D.create(exact, domain, 10);
+        assertTrue(approx instanceof ApproximateTransform2D);
+        assertSame(exact, ((ApproximateTransform2D) approx).getTransform());
+
+        Random random = new Random(6314698432163L);
+        double[] points = new double[2000];
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = 7 + 2 * random.nextDouble();
+            points[i + 1] = 44 + 2 * random.nextDouble();
+        }
+        double[] expected = new double[points.length];
+        double[] actual = new double[points.length];
+        exact.transform(points, 0, expected, 0, points.length / 2);
+        approx.transform(points, 0, actual, 0, points.length / 2);
+        for (int i = 0; i < points.length; i++) {
+            assertEquals(expected[i], actual[i], 10);
+        }
+        // the control points are exact
+        double[] corner = { 7, 44 };
+        double[] result = new double[2];
+        exact.transform(corner, 0, expected, 0, 1);
+        approx.transform(corner, 0, result, 0, 1);
+        assertEquals(expected[0], result[0], 1e-6);
+        assertEquals(expected[1], result[1], 1e-6);
+    }
+
+    /**
+     * Tests that the points outside the domain are transformed exactly.
+     */
+    @Test
+    public void testOutsideDomain() throws Exception {
+        MathTransform exact = createUTM();
+        MathTransform approx = ApproximateTransform2D.create(exact,
+                new Rectangle2D.Double(7, 44, 2, 2), 10);
+        double[] points = { 3.5, 50.25, 12, 40, 8, 46.5 };
+        double[] expected = new double[points.length];
+        double[] actual = points.clone();
+        exact.transform(points, 0, expected, 0, 3);
+        approx.transform(actual, 0, actual, 0, 3);
+        assertArrayEquals(expected, actual, 1e-6);
+    }
+
+    /**
+     * Tests the transforms which are not approximated.
+     */
+    @Test
+    public void testNotApproximated() throws Exception {
+        Rectangle2D domain = new Rectangle2D.Double(0, 0, 10, 10);
+        MathTransform affine = ProjectiveTransform.create(new AffineTransform(2, 0, 0, 3, 5, 7));
+        assertSame(affine, ApproximateTransform2D.create(affine, domain, 1));
+
+        MathTransform exact = createUTM();
+        assertSame(exact, ApproximateTransform2D.create(exact, domain, 0));
+        assertSame(exact, ApproximateTransform2D.create(exact, new Rectangle2D.Double(), 1));
+        MathTransform approx = ApproximateTransform2D.create(exact, domain, 10);
+        assertSame(approx, ApproximateTransform2D.create(approx, domain, 10));
+    }
+
+    /**
+     * A transform failing on the batches of more than 5 points, after transforming the first
+     * half of them. The single points are transformed.
+     */
+    private static final class PartiallyFailingTransform extends AbstractMathTransform
+            implements MathTransform2D {
+        private final MathTransform transform;
+
+        PartiallyFailingTransform(MathTransform transform) {
+            this.transform = transform;
+        }
+
+        public int getSourceDimensions() {
+            return 2;
+        }
+
+        public int getTargetDimensions() {
+            return 2;
+        }
+
+        public void transform(double[] srcPts, int srcOff, double[] dstPts, int dstOff,
+                int numPts) throws TransformException {
+            if (numPts > 5) {
+                transform.transform(srcPts, srcOff, dstPts, dstOff, numPts / 2);
+                throw new TransformException("Failed after " + numPts / 2 + " points");
+            }
+            transform.transform(srcPts, srcOff, dstPts, dstOff, numPts);
+        }
+
+        @Override
+        public MathTransform2D inverse() throws NoninvertibleTransformException {
+            throw new NoninvertibleTransformException("Not needed by the test");
+        }
+    }
+
+    /**
+     * Tests that a batch transform failing on the control points doesn't leave untransformed
+     * points in the grid.
+     */
+    @Test
+    public void testPartialFailure() throws Exception {
+        MathTransform exact = new PartiallyFailingTransform(createUTM());
+        MathTransform approx = ApproximateTransform2D.create(exact,
+                new Rectangle2D.Double(7, 44, 2, 2), 10);
+        assertTrue(approx instanceof ApproximateTransform2D);
+
+        double[] expected = new double[2];
+        double[] actual = new double[2];
+        for (double x = 7; x <= 9; x += 0.125) {
+            for (double y = 44; y <= 46; y += 0.125) {
+                double[] point = { x, y };
+                exact.transform(point, 0, expected, 0, 1);
+                approx.transform(point, 0, actual, 0, 1);
+                assertEquals(expected[0], actual[0], 10);
+                assertEquals(expected[1], actual[1], 10);
+            }
+        }
+    }
+
+    /**
+     * Tests that the inverse is the exact one.
+     */
+    @Test
+    public void testInverse() throws Exception {
+        MathTransform exact = createUTM();
+        MathTransform approx = ApproximateTransform2D.create(exact,
+                new Rectangle2D.Double(7, 44, 2, 2), 10);
+        assertEquals(exact.inverse(), approx.inverse());
+    }
+}
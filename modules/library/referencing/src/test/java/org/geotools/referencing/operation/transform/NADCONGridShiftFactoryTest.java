@@ -9,6 +9,7 @@ import java.io.IOException;
 
 import org.geotools.referencing.factory.gridshift.DataUtilities;
 import org.geotools.referencing.factory.gridshift.NADCONGridShiftFactory;
+import org.geotools.referencing.factory.gridshift.NADCONGridStore;
 import org.geotools.referencing.factory.gridshift.NADConGridShift;
 import org.junit.Test;
 import org.opengis.referencing.FactoryException;
@@ -37,6 +38,37 @@ public class NADCONGridShiftFactoryTest {
 		assertTrue(tlos.delete());
 	}
 
+	@Test
+	public void testGridStore() throws IOException, FactoryException {
+		File gridShifts = new File("src/test/resources/org/geotools/referencing/factory/gridshift");
+		File las = new File(gridShifts, "stpaul.las");
+		File los = new File(gridShifts, "stpaul.los");
+
+		NADCONGridShiftFactory factory = new NADCONGridShiftFactory();
+		NADCONGridStore store = factory.loadGridStore(DataUtilities.fileToURL(las), DataUtilities.fileToURL(los));
+		// the mapped grids are shared
+		assertSame(store, factory.loadGridStore(DataUtilities.fileToURL(las), DataUtilities.fileToURL(los)));
+		assertEquals(-171, store.getMinX(), 1e-6);
+		assertEquals(57, store.getMinY(), 1e-6);
+		assertEquals(-169, store.getMaxX(), 1e-6);
+		assertEquals(58, store.getMaxY(), 1e-6);
+
+		// same shifts as the grid loaded on the heap
+		NADConGridShift grid = factory.loadGridShift(DataUtilities.fileToURL(las), DataUtilities.fileToURL(los));
+		double[] shift = new double[2];
+		double[] expected = new double[2];
+		for (double x = -171; x <= -169; x += 0.13) {
+			for (double y = 57; y <= 58; y += 0.07) {
+				store.interpolate(x, y, shift);
+				expected[0] = (x - grid.getMinX()) / grid.getDx();
+				expected[1] = (y - grid.getMinY()) / grid.getDy();
+				grid.getMathTransform().transform(expected, 0, expected, 0, 1);
+				assertEquals(expected[0], shift[0], 1e-6);
+				assertEquals(expected[1], shift[1], 1e-6);
+			}
+		}
+	}
+
 	private void copyFile(File src, File dst) throws IOException  {
 		FileInputStream fis = null;
 		FileOutputStream fos = null;
@@ -429,7 +429,7 @@ public final class LabelCacheImpl implements LabelCache {
                     + " are layers that started rendering but have not completed,"
                     + " stop() or endLayer() must be called before end() is called");
         }
-        LabelIndex glyphs = new LabelIndex();
+        LabelIndex glyphs = new LabelIndex(displayArea);
         glyphs.reserveArea( reserved );
 
         //Used to check the paintLineLabel function
@@ -812,6 +812,30 @@ public final class LabelCacheImpl implements LabelCache {
     }
 
 
+    /**
+     * Checks the label against the index, using its oriented bounds if it has an orientation
+     */
+    private static boolean labelsWithinDistance(LabelIndex index, Rectangle2D labelEnvelope,
+            Rectangle2D textBounds, AffineTransform orientation, double distance) {
+        if (orientation != null) {
+            return index.labelsWithinDistance(textBounds, orientation, distance);
+        } else {
+            return index.labelsWithinDistance(labelEnvelope, distance);
+        }
+    }
+
+    /**
+     * Adds the label to the index, with its oriented bounds if it has an orientation
+     */
+    private static void addLabel(LabelIndex index, LabelCacheItem labelItem,
+            Rectangle2D labelEnvelope, Rectangle2D textBounds, AffineTransform orientation) {
+        if (orientation != null) {
+            index.addLabel(labelItem, textBounds, orientation);
+        } else {
+            index.addLabel(labelItem, labelEnvelope);
+        }
+    }
+
     private boolean paintLineLabels(LabelPainter painter, AffineTransform originalTransform,
             Rectangle displayArea, LabelIndex paintedBounds) throws Exception {
         final LabelCacheItem labelItem = painter.getLabel();
@@ -903,6 +927,8 @@ public final class LabelCacheImpl implements LabelCache {
                     // reset transform and other computation parameters
                     tx.setToIdentity();
                     Rectangle2D labelEnvelope;
+                    // the transform of the straight labels, their bounds are kept oriented
+                    AffineTransform orientation = null;
                     double maxAngleChange = 0;
 
                     // the line ordinates where we presume the label will start
@@ -921,6 +947,7 @@ public final class LabelCacheImpl implements LabelCache {
                             // straight bounds
                             setupLineTransform(painter, cursor, centroid, tx, true);
                             labelEnvelope = tx.createTransformedShape(textBounds).getBounds2D();
+                            orientation = tx;
                         } else {
                             // otherwise use curved bounds, more expensive to
                             // compute
@@ -930,13 +957,14 @@ public final class LabelCacheImpl implements LabelCache {
                     } else {
                         setupLineTransform(painter, cursor, centroid, tx, false);
                         labelEnvelope = tx.createTransformedShape(textBounds).getBounds2D();
+                        orientation = tx;
                     }
 
                     // try to paint the label, the condition under which this
                     // happens are complex
                     if ((displayArea.contains(labelEnvelope) || labelItem.isPartialsEnabled())
-                            && !(labelItem.isConflictResolutionEnabled() && paintedBounds.labelsWithinDistance(labelEnvelope, extraSpace))
-                            && !groupLabels.labelsWithinDistance(labelEnvelope, minDistance)) {
+                            && !(labelItem.isConflictResolutionEnabled() && labelsWithinDistance(paintedBounds, labelEnvelope, textBounds, orientation, extraSpace))
+                            && !labelsWithinDistance(groupLabels, labelEnvelope, textBounds, orientation, minDistance)) {
                         if (labelItem.isFollowLineEnabled()) {
                             // for curved labels we never paint in case of
                             // overrun
@@ -971,14 +999,15 @@ public final class LabelCacheImpl implements LabelCache {
                     // displacement sequence
                     if (painted) {
                         labelCount++;
-                        groupLabels.addLabel(labelItem, labelEnvelope);
+                        addLabel(groupLabels, labelItem, labelEnvelope, textBounds, orientation);
                         if(labelItem.isConflictResolutionEnabled()) {
                             if(DEBUG_CACHE_BOUNDS) {
                                 painter.graphics.setStroke(new BasicStroke());
                                 painter.graphics.setColor(Color.RED);
-                                painter.graphics.draw(labelEnvelope);
+                                painter.graphics.draw(orientation != null ? orientation
+                                        .createTransformedShape(textBounds) : labelEnvelope);
                             }
-                            paintedBounds.addLabel(labelItem, labelEnvelope);
+                            addLabel(paintedBounds, labelItem, labelEnvelope, textBounds, orientation);
                         }
                     } else {
                         // this will generate a sequence like s, -2s, 3s, -4s,
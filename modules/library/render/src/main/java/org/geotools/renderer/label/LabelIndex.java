@@ -16,16 +16,19 @@
  */
 package org.geotools.renderer.label;
 
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
-import com.vividsolutions.jts.geom.Envelope;
-import com.vividsolutions.jts.index.quadtree.Quadtree;
-
 /**
  * Stores label items and helps in finding the interferering ones, either by
- * pure overlap or within a certain distance from the specified bounds
+ * pure overlap or within a certain distance from the specified bounds.
+ * <p>
+ * The labels are hashed into a uniform grid of screen cells, sized from the
+ * area being labelled. Labels falling out of the area are hashed into the
+ * border cells. Label bounds can be axis aligned or oriented, in which case
+ * they are checked for interference on their own axes as well.
  * 
  * @author Andrea Aime
  * 
@@ -36,7 +39,82 @@ import com.vividsolutions.jts.index.quadtree.Quadtree;
  */
 public class LabelIndex {
 
-    Quadtree index = new Quadtree();
+    /**
+     * The minimum size of a grid cell, in pixels
+     */
+    static final double MIN_CELL_SIZE = 32;
+
+    /**
+     * The maximum number of grid cells along each axis
+     */
+    static final int MAX_CELLS = 64;
+
+    final double minX;
+
+    final double minY;
+
+    final double cellSize;
+
+    final int columns;
+
+    final int rows;
+
+    /**
+     * The labels found in each cell, as positions in the label arrays, lazily
+     * allocated
+     */
+    final int[][] cells;
+
+    final int[] cellCounts;
+
+    /**
+     * The axis aligned bounds of the labels, as minx, miny, maxx, maxy
+     */
+    double[] envelopes = new double[64];
+
+    /**
+     * The corners of the oriented labels, {@code null} for axis aligned ones
+     */
+    double[][] corners = new double[16][];
+
+    /**
+     * The labelled items (keeping the item around helps in debugging),
+     * {@code null} for reserved areas
+     */
+    LabelCacheItem[] items = new LabelCacheItem[16];
+
+    int count;
+
+    /**
+     * Builds an index with a single cell, suitable for a small number of labels
+     */
+    public LabelIndex() {
+        this(null);
+    }
+
+    /**
+     * Builds an index whose grid covers the specified area
+     * 
+     * @param area the area being labelled, usually the display area
+     */
+    public LabelIndex(Rectangle2D area) {
+        if (area == null || area.isEmpty()) {
+            minX = 0;
+            minY = 0;
+            cellSize = 1;
+            columns = 1;
+            rows = 1;
+        } else {
+            minX = area.getMinX();
+            minY = area.getMinY();
+            cellSize = Math.max(MIN_CELL_SIZE,
+                    Math.max(area.getWidth(), area.getHeight()) / MAX_CELLS);
+            columns = Math.max(1, (int) Math.ceil(area.getWidth() / cellSize));
+            rows = Math.max(1, (int) Math.ceil(area.getHeight() / cellSize));
+        }
+        cells = new int[columns * rows][];
+        cellCounts = new int[columns * rows];
+    }
 
     /**
      * Returns true if there is any label in the index within the specified
@@ -47,23 +125,35 @@ public class LabelIndex {
      * @param distance
      * @return
      */
-    @SuppressWarnings("unchecked")
     public boolean labelsWithinDistance(Rectangle2D bounds, double distance) {
         if (distance < 0)
             return false;
 
-        Envelope e = toEnvelope(bounds);
-        e.expandBy(distance);
-        List<InterferenceItem> results = index.query(e);
-        if (results.size() == 0)
+        return interferes(Math.min(bounds.getMinX(), bounds.getMaxX()),
+                Math.min(bounds.getMinY(), bounds.getMaxY()),
+                Math.max(bounds.getMinX(), bounds.getMaxX()),
+                Math.max(bounds.getMinY(), bounds.getMaxY()), null, distance);
+    }
+
+    /**
+     * Returns true if there is any label in the index within the specified
+     * distance from the oriented bounds. For speed reasons the bounds will be
+     * simply expanded by the distance along their axes and the axes of the
+     * labels in the index
+     * 
+     * @param bounds the label bounds, in the label space
+     * @param transform the transformation from the label space to the screen
+     * @param distance
+     * @return
+     */
+    public boolean labelsWithinDistance(Rectangle2D bounds, AffineTransform transform,
+            double distance) {
+        if (distance < 0)
             return false;
-        for (Iterator<InterferenceItem> it = results.iterator(); it.hasNext();) {
-            InterferenceItem item = it.next();
-            if (item.env.intersects(e)) {
-                return true;
-            }
-        }
-        return false;
+
+        double[] corners = corners(bounds, transform);
+        return interferes(minX(corners), minY(corners), maxX(corners), maxY(corners),
+                corners, distance);
     }
 
     /**
@@ -73,51 +163,191 @@ public class LabelIndex {
      * @param bounds
      */
     public void addLabel(LabelCacheItem item, Rectangle2D bounds) {
-        Envelope e = toEnvelope(bounds);
-        index.insert(e, new InterferenceItem(e, item));
+        add(item, Math.min(bounds.getMinX(), bounds.getMaxX()),
+                Math.min(bounds.getMinY(), bounds.getMaxY()),
+                Math.max(bounds.getMinX(), bounds.getMaxX()),
+                Math.max(bounds.getMinY(), bounds.getMaxY()), null);
     }
 
     /**
-     * Turns the specified Java2D rectangle into a JTS envelope
+     * Adds an oriented label into the index
      * 
-     * @param bounds
-     * @return
+     * @param item
+     * @param bounds the label bounds, in the label space
+     * @param transform the transformation from the label space to the screen
      */
-    private Envelope toEnvelope(Rectangle2D bounds) {
-        return new Envelope(bounds.getMinX(), bounds.getMaxX(), bounds.getMinY(), bounds.getMaxY());
+    public void addLabel(LabelCacheItem item, Rectangle2D bounds, AffineTransform transform) {
+        double[] corners = corners(bounds, transform);
+        add(item, minX(corners), minY(corners), maxX(corners), maxY(corners), corners);
     }
 
     /**
-     * Simple structure stored into the quadtree (keeping the item around helps
-     * in debugging)
-     * 
-     * @author Andrea Aime
+     * Reserve the area indicated by these Geometry.
      * 
+     * @param reserved
      */
-    static class InterferenceItem {
-        Envelope env;
+    public void reserveArea(List<Rectangle2D> reserved) {
+        for( Rectangle2D area : reserved ){
+            addLabel(null, area);
+        }
+    }
+
+    boolean interferes(double qMinX, double qMinY, double qMaxX, double qMaxY,
+            double[] qCorners, double distance) {
+        if (count == 0)
+            return false;
 
-        LabelCacheItem item;
+        // the corners of axis aligned bounds, computed if an oriented label is met
+        double[] a = qCorners;
+        final double aMinX = qMinX, aMinY = qMinY, aMaxX = qMaxX, aMaxY = qMaxY;
 
-        public InterferenceItem(Envelope env, LabelCacheItem item) {
-            super();
-            this.env = env;
-            this.item = item;
+        // the expanded bounds
+        qMinX -= distance;
+        qMinY -= distance;
+        qMaxX += distance;
+        qMaxY += distance;
+        final int c0 = column(qMinX), c1 = column(qMaxX);
+        final int r0 = row(qMinY), r1 = row(qMaxY);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                final int cell = r * columns + c;
+                final int[] labels = cells[cell];
+                for (int i = 0, n = cellCounts[cell]; i < n; i++) {
+                    final int label = labels[i];
+                    final int e = label * 4;
+                    if (envelopes[e] <= qMaxX && envelopes[e + 2] >= qMinX
+                            && envelopes[e + 1] <= qMaxY && envelopes[e + 3] >= qMinY) {
+                        final double[] lCorners = corners[label];
+                        if (qCorners == null && lCorners == null) {
+                            return true;
+                        }
+                        if (a == null) {
+                            a = new double[] { aMinX, aMinY, aMaxX, aMinY, aMaxX, aMaxY, aMinX,
+                                    aMaxY };
+                        }
+                        final double[] b = lCorners != null ? lCorners : corners(envelopes, e);
+                        if (!separated(a, b, distance) && !separated(b, a, distance)) {
+                            return true;
+                        }
+                    }
+                }
+            }
         }
+        return false;
+    }
+
+    void add(LabelCacheItem item, double minX, double minY, double maxX, double maxY,
+            double[] labelCorners) {
+        final int label = count++;
+        if (items.length == label) {
+            items = Arrays.copyOf(items, label * 2);
+            corners = Arrays.copyOf(corners, label * 2);
+            envelopes = Arrays.copyOf(envelopes, label * 8);
+        }
+        items[label] = item;
+        corners[label] = labelCorners;
+        final int e = label * 4;
+        envelopes[e] = minX;
+        envelopes[e + 1] = minY;
+        envelopes[e + 2] = maxX;
+        envelopes[e + 3] = maxY;
 
+        final int c0 = column(minX), c1 = column(maxX);
+        final int r0 = row(minY), r1 = row(maxY);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                final int cell = r * columns + c;
+                int[] labels = cells[cell];
+                final int n = cellCounts[cell];
+                if (labels == null) {
+                    labels = cells[cell] = new int[4];
+                } else if (labels.length == n) {
+                    labels = cells[cell] = Arrays.copyOf(labels, n * 2);
+                }
+                labels[n] = label;
+                cellCounts[cell] = n + 1;
+            }
+        }
     }
 
     /**
-     * Reserve the area indicated by these Geometry.
-     * 
-     * @param reserved
+     * Returns the grid column of the ordinate, clamped to the grid. Clamping
+     * preserves the ordering, so interfering bounds always share a cell
      */
-    public void reserveArea(List<Rectangle2D> reserved) {
-        for( Rectangle2D area : reserved ){
-            Envelope env = toEnvelope(area);
-            
-            InterferenceItem item = new InterferenceItem(env,null);            
-            index.insert( env, item );
+    int column(double x) {
+        final double c = Math.floor((x - minX) / cellSize);
+        return c <= 0 ? 0 : c >= columns - 1 ? columns - 1 : (int) c;
+    }
+
+    int row(double y) {
+        final double r = Math.floor((y - minY) / cellSize);
+        return r <= 0 ? 0 : r >= rows - 1 ? rows - 1 : (int) r;
+    }
+
+    /**
+     * Returns true if the projections of the two convex quadrilaterals on the
+     * normals of the edges of the first one are farther than the distance
+     */
+    static boolean separated(double[] a, double[] b, double distance) {
+        for (int i = 0; i < 2; i++) {
+            // the normal of the edge starting at the i-th corner
+            double nx = a[2 * i + 3] - a[2 * i + 1];
+            double ny = a[2 * i] - a[2 * i + 2];
+            final double length = Math.sqrt(nx * nx + ny * ny);
+            if (length == 0) {
+                continue;
+            }
+            nx /= length;
+            ny /= length;
+            double aMin = Double.POSITIVE_INFINITY, aMax = Double.NEGATIVE_INFINITY;
+            double bMin = Double.POSITIVE_INFINITY, bMax = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < 8; j += 2) {
+                final double pa = a[j] * nx + a[j + 1] * ny;
+                aMin = Math.min(aMin, pa);
+                aMax = Math.max(aMax, pa);
+                final double pb = b[j] * nx + b[j + 1] * ny;
+                bMin = Math.min(bMin, pb);
+                bMax = Math.max(bMax, pb);
+            }
+            if (aMax + distance < bMin || bMax + distance < aMin) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the corners of the transformed rectangle, in order
+     */
+    static double[] corners(Rectangle2D bounds, AffineTransform transform) {
+        final double[] corners = new double[] { bounds.getMinX(), bounds.getMinY(),
+                bounds.getMaxX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(),
+                bounds.getMinX(), bounds.getMaxY() };
+        if (transform != null) {
+            transform.transform(corners, 0, corners, 0, 4);
         }
+        return corners;
+    }
+
+    static double[] corners(double[] envelopes, int e) {
+        return new double[] { envelopes[e], envelopes[e + 1], envelopes[e + 2],
+                envelopes[e + 1], envelopes[e + 2], envelopes[e + 3], envelopes[e],
+                envelopes[e + 3] };
+    }
+
+    static double minX(double[] corners) {
+        return Math.min(Math.min(corners[0], corners[2]), Math.min(corners[4], corners[6]));
+    }
+
+    static double minY(double[] corners) {
+        return Math.min(Math.min(corners[1], corners[3]), Math.min(corners[5], corners[7]));
+    }
+
+    static double maxX(double[] corners) {
+        return Math.max(Math.max(corners[0], corners[2]), Math.max(corners[4], corners[6]));
+    }
+
+    static double maxY(double[] corners) {
+        return Math.max(Math.max(corners[1], corners[3]), Math.max(corners[5], corners[7]));
     }
 }
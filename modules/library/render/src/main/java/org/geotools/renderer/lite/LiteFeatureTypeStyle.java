@@ -20,10 +20,14 @@ import java.awt.Composite;
 import java.awt.Graphics2D;
 import java.util.List;
 
+import org.geotools.filter.FilterCompiler;
 import org.geotools.map.Layer;
 import org.geotools.renderer.ScreenMap;
 import org.geotools.renderer.crs.ProjectionHandler;
 import org.geotools.styling.Rule;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 import org.opengis.filter.expression.Expression;
 import org.opengis.filter.sort.SortBy;
 
@@ -96,6 +100,11 @@ final class LiteFeatureTypeStyle {
      */
     int metaBuffer;
 
+    /**
+     * The filters of the rules, compiled for the type of the features being painted
+     */
+    private CompiledRules compiledRules;
+
     /**
      * use this for only the 1st FTS. We don't actually create an image for it -- we just use the
      * graphics. WATCH OUT FOR THIS. NOTE: image=null in this case
@@ -114,4 +123,44 @@ final class LiteFeatureTypeStyle {
         this.transformation = transformation;
     }
 
+    /**
+     * Returns the filters of the {@link #ruleList} compiled for the type of the given feature (see
+     * {@link FilterCompiler}), or the filters themselves if the feature is not simple. The rules
+     * are not supposed to change once the features are being painted.
+     * 
+     * @param feature the feature being painted
+     * @return the rule filters, in the order of the rules, with {@code null} for rules without
+     *         a filter
+     */
+    Filter[] getRuleFilters(Object feature) {
+        final SimpleFeatureType type = feature instanceof SimpleFeature ? ((SimpleFeature) feature)
+                .getFeatureType() : null;
+        CompiledRules compiled = compiledRules;
+        if (compiled == null
+                || (compiled.type != type && (type == null || !type.equals(compiled.type)))) {
+            final Filter[] filters = new Filter[ruleList.length];
+            for (int i = 0; i < filters.length; i++) {
+                final Filter filter = ruleList[i].getFilter();
+                filters[i] = type == null ? filter : FilterCompiler.compile(filter, type);
+            }
+            compiledRules = compiled = new CompiledRules(type, filters);
+        }
+        return compiled.filters;
+    }
+
+    /**
+     * The rule filters compiled for a feature type
+     */
+    private static final class CompiledRules {
+
+        final SimpleFeatureType type;
+
+        final Filter[] filters;
+
+        CompiledRules(SimpleFeatureType type, Filter[] filters) {
+            this.type = type;
+            this.filters = filters;
+        }
+    }
+
 }
@@ -0,0 +1,493 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Paint;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.renderer.style.MarkStyle2D;
+import org.geotools.util.LRULinkedHashMap;
+
+/**
+ * Caches pre-rasterized marks, so that the same mark painted over and over (the common case of
+ * a point layer) is blitted with a {@link Graphics2D#drawImage} instead of being filled and
+ * stroked as a vector shape each time.
+ * <p>
+ * The sprites are keyed on the mark shape, size, offsets, colors, stroke, composites and
+ * antialiasing hints. In order to keep their number low the mark rotation is bucketed so that
+ * the mark outline moves by less than a tenth of a pixel, and the mark position is snapped to a
+ * quarter of pixel, the output is thus the same as the vector one within antialiasing tolerance.
+ * When the strokes are normalized (the default {@link RenderingHints#KEY_STROKE_CONTROL} value)
+ * Java2D rounds each vertex to the pixel grid, so that a subpixel offset can move the mark edges
+ * by a whole pixel: in this case the mark is centered on the nearest pixel instead, as done for
+ * icons (see {@link StyledShapePainter#ROUND_ICON_COORDS}).
+ * <p>
+ * Only colors, source over composites and graphics whose transform is an integer translation are
+ * supported, {@link #isSupported(Graphics2D, MarkStyle2D)} tells when the cache can be used.
+ * <p>
+ * The cache is bounded by a memory budget (see {@link #MEMORY_BUDGET_KEY}), the least recently
+ * used sprites are evicted first. Marks whose size, rotation or offsets vary continuously would
+ * rasterize a new sprite for most features and flush the cache, so once a mark style missed
+ * {@link #MAX_STYLE_MISSES} sprites it is painted as vectors only.
+ *
+ * @source $URL$
+ */
+final class MarkSpriteCache {
+
+    /**
+     * The system property setting the memory budget of the shared cache, in bytes
+     */
+    static final String MEMORY_BUDGET_KEY = "org.geotools.renderer.lite.markSpriteCacheSize";
+
+    /**
+     * The number of steps a pixel is split into when positioning a sprite
+     */
+    static final int SUBPIXELS = 4;
+
+    /**
+     * Marks whose sprite would be larger than this are painted as vectors
+     */
+    static final int MAX_SPRITE_SIZE = 128;
+
+    /**
+     * The number of sprites a mark style (its shape, paints, stroke and composites) can miss
+     * before it stops being painted with sprites
+     */
+    static final int MAX_STYLE_MISSES = 64;
+
+    /**
+     * The maximum number of mark styles whose misses are tracked
+     */
+    static final int MAX_TRACKED_STYLES = 1024;
+
+    /**
+     * The approximate memory used by a cache entry, besides the image pixels
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private static final MarkSpriteCache INSTANCE = new MarkSpriteCache(Long.getLong(
+            MEMORY_BUDGET_KEY, 16 * 1024 * 1024));
+
+    private final Map<SpriteKey, Sprite> sprites = new LinkedHashMap<SpriteKey, Sprite>(64,
+            0.75f, true);
+
+    private final long memoryBudget;
+
+    private long memoryUsed;
+
+    /**
+     * The number of misses of the recently painted mark styles, guarded by the sprites lock
+     */
+    private final Map<StyleKey, int[]> styleMisses = new LRULinkedHashMap<StyleKey, int[]>(16,
+            0.75f, true, MAX_TRACKED_STYLES);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the cache shared by all the painters
+     */
+    static MarkSpriteCache getInstance() {
+        return INSTANCE;
+    }
+
+    MarkSpriteCache(long memoryBudget) {
+        if (memoryBudget < 0) {
+            throw new IllegalArgumentException("The memory budget cannot be negative: "
+                    + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Returns true if the mark can be painted with a sprite on the graphics
+     */
+    static boolean isSupported(Graphics2D graphics, MarkStyle2D style) {
+        if (style.getShape() == null || !isSupported(style.getFill())
+                || !isSupported(style.getFillComposite()) || !isSupported(style.getContour())
+                || !isSupported(style.getContourComposite())) {
+            return false;
+        }
+        if (style.getContour() != null && !(style.getStroke() instanceof BasicStroke)) {
+            return false;
+        }
+        // the sprites are painted in device space, they cannot be scaled or rotated
+        final AffineTransform at = graphics.getTransform();
+        if (at.getType() == AffineTransform.TYPE_IDENTITY) {
+            return true;
+        }
+        return at.getType() == AffineTransform.TYPE_TRANSLATION
+                && at.getTranslateX() == Math.rint(at.getTranslateX())
+                && at.getTranslateY() == Math.rint(at.getTranslateY());
+    }
+
+    private static boolean isSupported(Paint paint) {
+        return paint == null || paint instanceof Color;
+    }
+
+    private static boolean isSupported(Composite composite) {
+        return composite == null || (composite instanceof AlphaComposite
+                && ((AlphaComposite) composite).getRule() == AlphaComposite.SRC_OVER);
+    }
+
+    /**
+     * Paints the mark centered at the specified position. The caller must have checked the mark
+     * is supported with {@link #isSupported(Graphics2D, MarkStyle2D)}.
+     *
+     * @return false if the mark is too large to be painted with a sprite, or its style missed
+     *         too many sprites, and must be painted as a vector instead
+     */
+    boolean paint(Graphics2D graphics, MarkStyle2D style, float x, float y) {
+        if (Float.isNaN(x) || Float.isNaN(y) || Float.isInfinite(x) || Float.isInfinite(y)) {
+            return false;
+        }
+        final int steps = RenderingHints.VALUE_STROKE_PURE.equals(graphics
+                .getRenderingHint(RenderingHints.KEY_STROKE_CONTROL)) ? SUBPIXELS : 1;
+        int ix = (int) Math.floor(x);
+        int iy = (int) Math.floor(y);
+        int sx = Math.round((x - ix) * steps);
+        int sy = Math.round((y - iy) * steps);
+        if (sx == steps) {
+            ix++;
+            sx = 0;
+        }
+        if (sy == steps) {
+            iy++;
+            sy = 0;
+        }
+        sx *= SUBPIXELS / steps;
+        sy *= SUBPIXELS / steps;
+
+        final SpriteKey key = new SpriteKey(graphics, style, sx, sy);
+        Sprite sprite;
+        synchronized (sprites) {
+            sprite = sprites.get(key);
+        }
+        if (sprite != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            if (!styleMissed(key.style)) {
+                return false;
+            }
+            sprite = new Sprite(key, style);
+            put(key, sprite);
+        }
+        if (sprite.image == null) {
+            return false;
+        }
+
+        final Composite composite = graphics.getComposite();
+        graphics.setComposite(AlphaComposite.SrcOver);
+        graphics.drawImage(sprite.image, ix + sprite.x, iy + sprite.y, null);
+        graphics.setComposite(composite);
+        return true;
+    }
+
+    /**
+     * Records a miss of the mark style, returning false once the style missed too many times
+     */
+    private boolean styleMissed(StyleKey style) {
+        synchronized (sprites) {
+            int[] count = styleMisses.get(style);
+            if (count == null) {
+                count = new int[1];
+                styleMisses.put(style, count);
+            }
+            if (count[0] >= MAX_STYLE_MISSES) {
+                return false;
+            }
+            count[0]++;
+            return true;
+        }
+    }
+
+    private void put(SpriteKey key, Sprite sprite) {
+        synchronized (sprites) {
+            final Sprite old = sprites.put(key, sprite);
+            if (old != null) {
+                memoryUsed -= old.memory;
+            }
+            memoryUsed += sprite.memory;
+            final Iterator<Sprite> it = sprites.values().iterator();
+            while (memoryUsed > memoryBudget && it.hasNext()) {
+                memoryUsed -= it.next().memory;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the sprites and the style miss budgets, the hit and miss counts are preserved
+     */
+    void clear() {
+        synchronized (sprites) {
+            sprites.clear();
+            styleMisses.clear();
+            memoryUsed = 0;
+        }
+    }
+
+    /**
+     * Returns the number of cached sprites
+     */
+    int size() {
+        synchronized (sprites) {
+            return sprites.size();
+        }
+    }
+
+    /**
+     * Returns the approximate memory used by the cached sprites, in bytes
+     */
+    long getMemoryUsed() {
+        synchronized (sprites) {
+            return memoryUsed;
+        }
+    }
+
+    long getHitCount() {
+        return hits.get();
+    }
+
+    long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the step, in radians, of the rotation buckets for a mark of the given size
+     */
+    static double getRotationStep(double size) {
+        // an eighth of pixel on the mark circumference
+        return 0.125 / Math.max(size, 1);
+    }
+
+    /**
+     * The parts of a sprite identity that do not vary continuously among features: the mark
+     * shape, paints, stroke, composites and antialiasing hints
+     */
+    static final class StyleKey {
+
+        final Shape shape;
+
+        final boolean maxMarkSize;
+
+        final Paint fill, contour;
+
+        final Composite fillComposite, contourComposite;
+
+        final Stroke stroke;
+
+        final Object antialiasing, strokeControl;
+
+        final int hashCode;
+
+        StyleKey(Graphics2D graphics, MarkStyle2D style) {
+            this.shape = style.getShape();
+            this.maxMarkSize = MarkStyle2D.isMaxMarkSizeEnabled();
+            this.fill = style.getFill();
+            this.fillComposite = fill != null ? style.getFillComposite() : null;
+            this.contour = style.getContour();
+            this.contourComposite = contour != null ? style.getContourComposite() : null;
+            this.stroke = contour != null ? style.getStroke() : null;
+            this.antialiasing = graphics.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+            this.strokeControl = graphics.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL);
+
+            int hash = System.identityHashCode(shape);
+            hash = 31 * hash + hashCode(fill);
+            hash = 31 * hash + hashCode(contour);
+            hash = 31 * hash + hashCode(stroke);
+            this.hashCode = hash;
+        }
+
+        private static int hashCode(Object o) {
+            return o != null ? o.hashCode() : 0;
+        }
+
+        private static boolean equals(Object o1, Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof StyleKey)) {
+                return false;
+            }
+            final StyleKey other = (StyleKey) obj;
+            return hashCode == other.hashCode && shape == other.shape
+                    && maxMarkSize == other.maxMarkSize
+                    && equals(fill, other.fill) && equals(contour, other.contour)
+                    && equals(fillComposite, other.fillComposite)
+                    && equals(contourComposite, other.contourComposite)
+                    && equals(stroke, other.stroke) && equals(antialiasing, other.antialiasing)
+                    && equals(strokeControl, other.strokeControl);
+        }
+    }
+
+    /**
+     * The identity of a sprite, everything that affects the rasterized mark
+     */
+    static final class SpriteKey {
+
+        final StyleKey style;
+
+        final double size;
+
+        final float displacementX, displacementY, anchorPointX, anchorPointY;
+
+        final long rotation;
+
+        final int subpixelX, subpixelY;
+
+        final int hashCode;
+
+        SpriteKey(Graphics2D graphics, MarkStyle2D style, int subpixelX, int subpixelY) {
+            this.style = new StyleKey(graphics, style);
+            this.size = style.getSize();
+            this.displacementX = style.getDisplacementX();
+            this.displacementY = style.getDisplacementY();
+            this.anchorPointX = style.getAnchorPointX();
+            this.anchorPointY = style.getAnchorPointY();
+            this.rotation = Math.round(style.getRotation() / getRotationStep(size));
+            this.subpixelX = subpixelX;
+            this.subpixelY = subpixelY;
+
+            int hash = this.style.hashCode();
+            long bits = Double.doubleToLongBits(size);
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            hash = 31 * hash + Float.floatToIntBits(displacementX);
+            hash = 31 * hash + Float.floatToIntBits(displacementY);
+            hash = 31 * hash + Float.floatToIntBits(anchorPointX);
+            hash = 31 * hash + Float.floatToIntBits(anchorPointY);
+            hash = 31 * hash + (int) (rotation ^ (rotation >>> 32));
+            hash = 31 * hash + (subpixelX * SUBPIXELS + subpixelY);
+            this.hashCode = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SpriteKey)) {
+                return false;
+            }
+            final SpriteKey other = (SpriteKey) obj;
+            return hashCode == other.hashCode
+                    && Double.doubleToLongBits(size) == Double.doubleToLongBits(other.size)
+                    && displacementX == other.displacementX
+                    && displacementY == other.displacementY
+                    && anchorPointX == other.anchorPointX && anchorPointY == other.anchorPointY
+                    && rotation == other.rotation && subpixelX == other.subpixelX
+                    && subpixelY == other.subpixelY && style.equals(other.style);
+        }
+    }
+
+    /**
+     * A rasterized mark, and the offset of its upper left corner from the mark position
+     */
+    static final class Sprite {
+
+        final BufferedImage image;
+
+        final int x, y;
+
+        final long memory;
+
+        Sprite(SpriteKey key, MarkStyle2D style) {
+            final float rotation = (float) (key.rotation * getRotationStep(key.size));
+            final Shape shape = style.getTransformedShape(0, 0, 0, rotation);
+            Rectangle2D bounds = shape.getBounds2D();
+            if (key.style.stroke != null) {
+                bounds = bounds.createUnion(key.style.stroke.createStrokedShape(shape)
+                        .getBounds2D());
+            }
+            // one pixel of margin for the antialiasing, one more for the subpixel offset
+            x = (int) Math.floor(bounds.getMinX()) - 1;
+            y = (int) Math.floor(bounds.getMinY()) - 1;
+            final int width = (int) Math.ceil(bounds.getMaxX()) + 2 - x;
+            final int height = (int) Math.ceil(bounds.getMaxY()) + 2 - y;
+            if (width > MAX_SPRITE_SIZE || height > MAX_SPRITE_SIZE) {
+                // remember the mark is too big, without wasting memory
+                image = null;
+                memory = ENTRY_OVERHEAD;
+                return;
+            }
+
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            memory = ENTRY_OVERHEAD + 4L * width * height;
+            final Graphics2D graphics = image.createGraphics();
+            try {
+                if (key.style.antialiasing != null) {
+                    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                            key.style.antialiasing);
+                }
+                if (key.style.strokeControl != null) {
+                    graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                            key.style.strokeControl);
+                }
+                graphics.translate(-x + (double) key.subpixelX / SUBPIXELS, -y
+                        + (double) key.subpixelY / SUBPIXELS);
+                if (key.style.fill != null) {
+                    graphics.setPaint(key.style.fill);
+                    graphics.setComposite(composite(key.style.fillComposite));
+                    graphics.fill(shape);
+                }
+                if (key.style.contour != null) {
+                    graphics.setPaint(key.style.contour);
+                    graphics.setStroke(key.style.stroke);
+                    graphics.setComposite(composite(key.style.contourComposite));
+                    graphics.draw(shape);
+                }
+            } finally {
+                graphics.dispose();
+            }
+        }
+
+        private static Composite composite(Composite composite) {
+            return composite != null ? composite : AlphaComposite.SrcOver;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import java.awt.Shape;
 import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.awt.image.RenderedImage;
@@ -38,15 +39,19 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,6 +74,7 @@ import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
 import org.geotools.feature.FeatureTypes;
 import org.geotools.feature.SchemaException;
+import org.geotools.filter.FilterAttributeExtractor;
 import org.geotools.filter.IllegalFilterException;
 import org.geotools.filter.function.GeometryTransformationVisitor;
 import org.geotools.filter.spatial.DefaultCRSFilterVisitor;
@@ -93,6 +99,7 @@ import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
+import org.geotools.referencing.operation.transform.ApproximateTransform2D;
 import org.geotools.referencing.operation.transform.ConcatenatedTransform;
 import org.geotools.referencing.operation.transform.ProjectiveTransform;
 import org.geotools.renderer.GTRenderer;
@@ -107,6 +114,7 @@ import org.geotools.renderer.lite.gridcoverage2d.GridCoverageRenderer;
 import org.geotools.renderer.style.LineStyle2D;
 import org.geotools.renderer.style.SLDStyleFactory;
 import org.geotools.renderer.style.Style2D;
+import org.geotools.renderer.style.StyleCache;
 import org.geotools.resources.coverage.FeatureUtilities;
 import org.geotools.resources.image.ImageUtilities;
 import org.geotools.styling.FeatureTypeStyle;
@@ -185,6 +193,14 @@ public class StreamingRenderer implements GTRenderer {
 
     private static final int REPROJECTION_RASTER_GUTTER = 10;
 
+    /**
+     * Extra pixels around the query area that datastores clipping geometries (see
+     * {@link Hints#GEOMETRY_CLIP}) are asked to keep, so that the borders created by the clipping
+     * do not show up in the map. The query area already includes the rendering buffer, the
+     * symbolizer sizes it does not cover are added to this gutter.
+     */
+    private static final int DATASTORE_CLIP_GUTTER = 10;
+
     private final static int defaultMaxFiltersToSendToDatastore = 5; // default
 
     /**
@@ -217,7 +233,7 @@ public class StreamingRenderer implements GTRenderer {
     /** The logger for the rendering module. */
     private static final Logger LOGGER = org.geotools.util.logging.Logging.getLogger("org.geotools.rendering");
 
-    int error = 0;
+    final AtomicInteger error = new AtomicInteger();
 
     /** Filter factory for creating bounding box filters */
     protected final static FilterFactory2 filterFactory = CommonFactoryFinder.getFilterFactory2(null);
@@ -356,6 +372,16 @@ public class StreamingRenderer implements GTRenderer {
      */
     public static final String CONTINUOUS_MAP_WRAPPING = "continuousMapWrapping";
 
+    /**
+     * Maximum error, in pixels, allowed when reprojecting geometries (a {@link Number},
+     * {@value #APPROXIMATE_TRANSFORM_TOLERANCE_DEFAULT} by default). When positive, the
+     * reprojection to the map CRS is approximated by interpolation in a grid of exactly
+     * transformed points covering the map extent, which is much faster than the exact
+     * transform. Use zero to always use the exact transform.
+     */
+    public static final String APPROXIMATE_TRANSFORM_TOLERANCE_KEY = "approximateTransformTolerance";
+    private static final double APPROXIMATE_TRANSFORM_TOLERANCE_DEFAULT = 0.333;
+
     /**
      * Boolean flag indicating whether vector rendering should be preferred when
      * painting graphic fills. See {@link SLDStyleFactory#isVectorRenderingEnabled()}
@@ -365,12 +391,45 @@ public class StreamingRenderer implements GTRenderer {
     private static boolean VECTOR_RENDERING_ENABLED_DEFAULT = false;
 
     public static final String LABEL_CACHE_KEY = "labelCache";
+
+    /**
+     * The {@link StyleCache} holding the styles built while rendering. By default each renderer
+     * has its own, passing the same cache to several renderers allows them to share the styles
+     * built for the same symbolizers. The copies of the rules rescaled to pixels are shared as
+     * well, so the cache must be cleared after modifying a style painted with it.
+     */
+    public static final String STYLE_CACHE_KEY = "styleCache";
     public static final String FORCE_EPSG_AXIS_ORDER_KEY = "ForceEPSGAxisOrder";
     public static final String DPI_KEY = "dpi";
     public static final String DECLARED_SCALE_DENOM_KEY = "declaredScaleDenominator";
     public static final String SCALE_COMPUTATION_METHOD_KEY = "scaleComputationMethod";
     public static final String BYLAYER_INTERPOLATION = "byLayerInterpolation";
 
+    /**
+     * Boolean flag enabling parallel layer rendering (disabled by default).
+     * <p>When enabled the layers of each compositing group are read and turned into shapes
+     * concurrently, each one painting on its own back buffer. The back buffers are then merged on
+     * the target graphics in the original layer order. The layers are processed by a set of
+     * worker threads dedicated to the paint call, their number, and so the number of back buffers
+     * in memory, is set by {@link #MAX_PARALLEL_LAYERS_KEY}. The thread pool provided via
+     * {@link #setThreadPool(ExecutorService)} is used only for the painter, as in sequential mode.</p>
+     * <p>Labels having the same priority in different layers might be resolved in a different
+     * order than in sequential mode</p>
+     */
+    public static final String PARALLEL_LAYER_RENDERING_KEY = "parallelLayerRendering";
+
+    /**
+     * The maximum number of layers rendered at the same time when
+     * {@link #PARALLEL_LAYER_RENDERING_KEY} is enabled (an {@link Integer}, defaults to
+     * {@link #DEFAULT_MAX_PARALLEL_LAYERS})
+     */
+    public static final String MAX_PARALLEL_LAYERS_KEY = "maxParallelLayers";
+
+    /**
+     * The default value of {@link #MAX_PARALLEL_LAYERS_KEY}
+     */
+    public static final int DEFAULT_MAX_PARALLEL_LAYERS = 4;
+
     /**
      * "vectorRenderingEnabled"      - Boolean  yes/no (see default vectorRenderingEnabledDEFAULT)
      * "declaredScaleDenominator"    - Double   the value of the scale denominator to use by the renderer.  
@@ -486,6 +545,8 @@ public class StreamingRenderer implements GTRenderer {
     }
 
     private void fireErrorEvent(Throwable t) {
+        // layers rendered in parallel report errors from different threads
+        error.incrementAndGet();
         LOGGER.log(Level.SEVERE, t.getLocalizedMessage(), t);
         if (renderListeners.size() > 0) {
             Exception e;
@@ -714,7 +775,7 @@ public class StreamingRenderer implements GTRenderer {
         mapExtent = new ReferencedEnvelope(mapArea);
         this.screenSize = paintArea;
         this.worldToScreenTransform = worldToScreen;
-        error = 0;
+        error.set(0);
         if (java2dHints != null)
             graphics.setRenderingHints(java2dHints);
         // add the anchor for graphic fills
@@ -770,6 +831,19 @@ public class StreamingRenderer implements GTRenderer {
             localPool = true;
         }
         Future painterFuture = localThreadPool.submit(painterThread);
+        // the layer workers get their own threads, were they sharing the pool with the painters
+        // of other renderers they could wait forever for a painter that cannot run. Labels are
+        // going to be added by multiple threads at the same time
+        final int maxParallelLayers = getMaxParallelLayers();
+        final LabelCache originalLabelCache = labelCache;
+        final LinkedList<ParallelLayer> parallelLayers = new LinkedList<ParallelLayer>();
+        ExecutorService layerExecutor = null;
+        if (maxParallelLayers > 0) {
+            layerExecutor = Executors.newFixedThreadPool(maxParallelLayers);
+            if (!(labelCache instanceof SynchronizedLabelCache)) {
+                labelCache = new SynchronizedLabelCache(labelCache);
+            }
+        }
         try {
             if(mapContent == null) {
                 throw new IllegalStateException("Cannot call paint, you did not set a MapContent in this renderer");
@@ -811,6 +885,23 @@ public class StreamingRenderer implements GTRenderer {
                     }
 
                     labelCache.startLayer(layerId);
+                    boolean parallelizable = maxParallelLayers > 0
+                            && !(layer instanceof DirectLayer) && !(layer instanceof ZGroupLayer);
+                    if (parallelizable) {
+                        // make room for the new layer, merging the oldest ones in z-order
+                        while (parallelLayers.size() >= maxParallelLayers) {
+                            mergeParallelLayer(parallelLayers.removeFirst(), graphics);
+                        }
+                        parallelLayers.add(submitParallelLayer(layerExecutor,
+                                compositingGraphic, layer, layerId));
+                        continue;
+                    } else {
+                        // direct and z-group layers paint straight on the compositing
+                        // graphics, the layers before them need to be there already
+                        while (!parallelLayers.isEmpty()) {
+                            mergeParallelLayer(parallelLayers.removeFirst(), graphics);
+                        }
+                    }
                     if (layer instanceof DirectLayer) {
                         RenderingRequest request = new RenderDirectLayerRequest(compositingGraphic,
                                 (DirectLayer) layer);
@@ -838,6 +929,9 @@ public class StreamingRenderer implements GTRenderer {
         
                     labelCache.endLayer(layerId, graphics, screenSize);
                 }
+                while (!parallelLayers.isEmpty()) {
+                    mergeParallelLayer(parallelLayers.removeFirst(), graphics);
+                }
                 
                 // have we been painting on a back buffer? If so, merge on the main graphic
                 if (compositingGraphic instanceof DelayedBackbufferGraphic) {
@@ -856,6 +950,11 @@ public class StreamingRenderer implements GTRenderer {
             }
         } finally {
             try {
+                // rendering might have been stopped while layers were still in flight, they
+                // must be done before the label cache is restored
+                if (layerExecutor != null) {
+                    cancelParallelLayers(parallelLayers, layerExecutor);
+                }
                 if(!renderingStopRequested) {
                     requests.put(new EndRequest());
                     painterFuture.get();
@@ -864,6 +963,7 @@ public class StreamingRenderer implements GTRenderer {
                 painterFuture.cancel(true);
                 fireErrorEvent(e);
             } finally {
+                labelCache = originalLabelCache;
                 if(localPool) {
                     localThreadPool.shutdown();
                 }
@@ -881,15 +981,95 @@ public class StreamingRenderer implements GTRenderer {
                     styleFactory.getHitRatio()).append(" , hits ").append(
                             styleFactory.getHits()).append(", requests ").append(
                                     styleFactory.getRequests()).toString());
-        if (error > 0) {
+        if (error.get() > 0) {
             LOGGER
             .warning(new StringBuffer(
             "Number of Errors during paint(Graphics2D, AffineTransform) = ")
-            .append(error).toString());
+            .append(error.get()).toString());
         }
         
     }
 
+    /**
+     * Returns the max number of layers that can be rendered in parallel, or zero if parallel
+     * layer rendering is disabled
+     * @return
+     */
+    private int getMaxParallelLayers() {
+        if (rendererHints == null
+                || !Boolean.TRUE.equals(rendererHints.get(PARALLEL_LAYER_RENDERING_KEY))) {
+            return 0;
+        }
+        Object max = rendererHints.get(MAX_PARALLEL_LAYERS_KEY);
+        if (max instanceof Number) {
+            return Math.max(0, ((Number) max).intValue());
+        }
+        return DEFAULT_MAX_PARALLEL_LAYERS;
+    }
+
+    /**
+     * Starts reading and styling the layer features in a separate thread, the
+     * shapes are painted on a back buffer that will be later merged by
+     * {@link #mergeParallelLayer(ParallelLayer, Graphics2D)}
+     */
+    private ParallelLayer submitParallelLayer(ExecutorService executor,
+            Graphics2D compositingGraphic, final Layer layer, final String layerId) {
+        final DelayedBackbufferGraphic layerGraphic = new DelayedBackbufferGraphic(
+                compositingGraphic, screenSize);
+        Future<Void> future = executor.submit(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                try {
+                    processStylers(layerGraphic, layer, layerId);
+                } catch (Throwable t) {
+                    fireErrorEvent(t);
+                }
+                return null;
+            }
+        });
+        return new ParallelLayer(layerId, compositingGraphic, layerGraphic, future);
+    }
+
+    /**
+     * Waits for the layer to be fully processed, then queues the merge of its back buffer
+     * onto the compositing graphics
+     */
+    private void mergeParallelLayer(ParallelLayer parallelLayer, Graphics2D graphics) {
+        try {
+            parallelLayer.future.get();
+            requests.put(new MergeBackbufferRequest(parallelLayer.compositingGraphic,
+                    parallelLayer.layerGraphic));
+        } catch (InterruptedException e) {
+            parallelLayer.future.cancel(true);
+            Thread.currentThread().interrupt();
+            fireErrorEvent(e);
+        } catch (Exception e) {
+            parallelLayer.future.cancel(true);
+            fireErrorEvent(e);
+        }
+        labelCache.endLayer(parallelLayer.layerId, graphics, screenSize);
+    }
+
+    /**
+     * Cancels the layers still being rendered in parallel, and waits for the workers to be done
+     * with them
+     */
+    private void cancelParallelLayers(LinkedList<ParallelLayer> parallelLayers,
+            ExecutorService executor) {
+        for (ParallelLayer parallelLayer : parallelLayers) {
+            parallelLayer.future.cancel(true);
+        }
+        parallelLayers.clear();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fireErrorEvent(e);
+        }
+    }
+
     /**
      * Builds the blocking queue used to bridge between the data loading thread and
      * the painting one
@@ -1012,6 +1192,8 @@ public class StreamingRenderer implements GTRenderer {
         }
 
         ReferencedEnvelope envelope = new ReferencedEnvelope(mapArea, mapCRS);
+        // the area the datastore can clip geometries to, if the query uses a single envelope
+        ReferencedEnvelope clipEnvelope = null;
         // see what attributes we really need by exploring the styles
         // for testing purposes we have a null case -->
         try {
@@ -1038,6 +1220,9 @@ public class StreamingRenderer implements GTRenderer {
                     envelopes = Collections.singletonList(envelope);
                 }
             }
+            if (envelopes.size() == 1) {
+                clipEnvelope = envelopes.get(0);
+            }
 
             if(LOGGER.isLoggable(Level.FINE))
                 LOGGER.fine("Querying layer " + schema.getName() +  " with bbox: " + envelope);
@@ -1137,6 +1322,22 @@ public class StreamingRenderer implements GTRenderer {
                         // perform some in memory generalization
                         hints.put(Hints.GEOMETRY_DISTANCE, distance);
                     }
+                    // ... and have it cut away the parts of large geometries we are not going
+                    // to paint, as well as the precision we cannot display
+                    if (clipEnvelope != null && fsHints.contains(Hints.GEOMETRY_CLIP)
+                            && !needsFullGeometries(styleList, schema)) {
+                        int gutter = findDatastoreClipGutter(styleList);
+                        if (gutter >= 0) {
+                            double[] pixelSpans = Decimator.computeGeneralizationDistances(
+                                    mt.inverse(), screenSize, 1.0);
+                            Envelope clip = new Envelope(clipEnvelope);
+                            clip.expandBy(pixelSpans[0] * gutter, pixelSpans[1] * gutter);
+                            hints.put(Hints.GEOMETRY_CLIP, clip);
+                        }
+                    }
+                    if (distance > 0 && fsHints.contains(Hints.GEOMETRY_SNAP)) {
+                        hints.put(Hints.GEOMETRY_SNAP, distance);
+                    }
                 }
             }
         } catch(Exception e) {
@@ -1204,6 +1405,90 @@ public class StreamingRenderer implements GTRenderer {
         return definitionQuery;
     }
 
+    /**
+     * Returns true if any symbolizer computes its geometry with an expression other than a plain
+     * property reference, as the result could change if the datastore clipped the geometries
+     */
+    boolean hasGeometryTransformations(List<LiteFeatureTypeStyle> styles) {
+        for (LiteFeatureTypeStyle lts : styles) {
+            List<Rule> rules = new ArrayList<Rule>();
+            rules.addAll(Arrays.asList(lts.ruleList));
+            rules.addAll(Arrays.asList(lts.elseRules));
+            for (Rule r : rules) {
+                for (Symbolizer s : r.symbolizers()) {
+                    Expression geometry = s.getGeometry();
+                    if (geometry != null && !(geometry instanceof PropertyName)) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns true if the styles need the full geometries, so that the datastore must not clip
+     * them: a symbolizer computes its geometry with an expression, labels are placed on the
+     * geometry (the in memory clipping leaves it alone for the same reason), or a rule filter
+     * uses the geometry
+     */
+    boolean needsFullGeometries(List<LiteFeatureTypeStyle> styles, FeatureType schema) {
+        if (hasGeometryTransformations(styles)) {
+            return true;
+        }
+        for (LiteFeatureTypeStyle lts : styles) {
+            List<Rule> rules = new ArrayList<Rule>();
+            rules.addAll(Arrays.asList(lts.ruleList));
+            rules.addAll(Arrays.asList(lts.elseRules));
+            for (Rule r : rules) {
+                for (Symbolizer s : r.symbolizers()) {
+                    if (s instanceof TextSymbolizer) {
+                        return true;
+                    }
+                }
+                if (r.getFilter() != null) {
+                    FilterAttributeExtractor extractor = new FilterAttributeExtractor();
+                    r.getFilter().accept(extractor, null);
+                    for (PropertyName pn : extractor.getPropertyNameSet()) {
+                        if ("".equals(pn.getPropertyName())
+                                || pn.evaluate(schema) instanceof GeometryDescriptor) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Returns the pixels the datastore clipping must keep around the query area so that it cuts
+     * no more than the in memory clipping does, or -1 if the symbolizer sizes cannot be
+     * estimated and the datastore should not clip
+     */
+    private int findDatastoreClipGutter(List<LiteFeatureTypeStyle> styles) {
+        final MetaBufferEstimator rbe = new MetaBufferEstimator();
+        int metaBuffer = 0;
+        for (LiteFeatureTypeStyle lfts : styles) {
+            for (Rule rule : lfts.elseRules) {
+                rbe.visit(rule);
+            }
+            for (Rule rule : lfts.ruleList) {
+                rbe.visit(rule);
+            }
+            metaBuffer = Math.max(metaBuffer, lfts.metaBuffer);
+        }
+        if (!rbe.isEstimateAccurate()) {
+            return -1;
+        }
+        // the query area is expanded by either the rendering buffer or the meta buffer
+        int included = getRenderingBuffer() > 0 ? getRenderingBuffer() : metaBuffer;
+        int halfSize = (int) Math.ceil(rbe.getBuffer() / 2.0);
+        return DATASTORE_CLIP_GUTTER + Math.max(0, halfSize - included);
+    }
+
     /**
      * Takes care of eventual geometric transformations
      * @param styles
@@ -1456,6 +1741,44 @@ public class StreamingRenderer implements GTRenderer {
         return Boolean.TRUE.equals(result);
     }
     
+    /**
+     * Returns the maximum error in pixels allowed when approximating the reprojection
+     * @return
+     */
+    private double getApproximateTransformTolerance() {
+        if (rendererHints == null)
+            return APPROXIMATE_TRANSFORM_TOLERANCE_DEFAULT;
+        Object result = rendererHints.get(APPROXIMATE_TRANSFORM_TOLERANCE_KEY);
+        if (result instanceof Number)
+            return ((Number) result).doubleValue();
+        return APPROXIMATE_TRANSFORM_TOLERANCE_DEFAULT;
+    }
+
+    /**
+     * Approximates the given reprojection transform over the map extent, expressed in the
+     * source CRS. Returns the transform unchanged if it can't be approximated.
+     * @param transform the transform from the source CRS
+     * @param sourceCrs the source CRS
+     * @param tolerance the maximum error, in target units
+     * @return
+     */
+    private MathTransform approximateTransform(MathTransform transform,
+            CoordinateReferenceSystem sourceCrs, double tolerance) {
+        if (transform == null || sourceCrs == null || !(tolerance > 0) || mapExtent == null
+                || transform.isIdentity())
+            return transform;
+        try {
+            ReferencedEnvelope domain = mapExtent.transform(sourceCrs, true);
+            return ApproximateTransform2D.create(transform, new Rectangle2D.Double(
+                    domain.getMinX(), domain.getMinY(), domain.getWidth(), domain.getHeight()),
+                    tolerance);
+        } catch (Exception e) {
+            // the map extent can't be expressed in the source CRS, use the exact transform
+            LOGGER.log(Level.FINE, "Can't approximate the transform", e);
+            return transform;
+        }
+    }
+
     /**
      * Checks if continuous map wrapping is enabled
      * @return
@@ -2104,22 +2427,32 @@ public class StreamingRenderer implements GTRenderer {
      * @param lfts
      */
     void applyUnitRescale(final ArrayList<LiteFeatureTypeStyle> lfts) {
-        // apply dpi rescale
+        // dpi rescale
         double dpi = RendererUtilities.getDpi(getRendererHints());
         double standardDpi = RendererUtilities.getDpi(Collections.emptyMap());
+        double scaleFactor = dpi / standardDpi;
+        DpiRescaleStyleVisitor dpiVisitor = null;
         if(dpi != standardDpi) {
-            double scaleFactor = dpi / standardDpi;
-            DpiRescaleStyleVisitor dpiVisitor = new GraphicsAwareDpiRescaleStyleVisitor(scaleFactor);
-            for(LiteFeatureTypeStyle fts : lfts) {
-                rescaleFeatureTypeStyle(fts, dpiVisitor);
-            }
+            dpiVisitor = new GraphicsAwareDpiRescaleStyleVisitor(scaleFactor);
         }
         
-        // apply UOM rescaling
+        // UOM rescaling
         double pixelsPerMeters = RendererUtilities.calculatePixelsPerMeterRatio(scaleDenominator, rendererHints);
         UomRescaleStyleVisitor rescaleVisitor = new UomRescaleStyleVisitor(pixelsPerMeters);
+        
+        // the renderers sharing a style cache reuse the same rescaled rules, so that the
+        // styles cached for their symbolizers are found again
+        StyleCache cache = null;
+        if(rendererHints != null && rendererHints.get(STYLE_CACHE_KEY) instanceof StyleCache) {
+            cache = (StyleCache) rendererHints.get(STYLE_CACHE_KEY);
+        }
         for(LiteFeatureTypeStyle fts : lfts) {
-            rescaleFeatureTypeStyle(fts, rescaleVisitor);
+            rescaleRules(fts.ruleList, dpiVisitor, rescaleVisitor, cache, scaleFactor,
+                    pixelsPerMeters);
+            if(fts.elseRules != null) {
+                rescaleRules(fts.elseRules, dpiVisitor, rescaleVisitor, cache, scaleFactor,
+                        pixelsPerMeters);
+            }
         }
     }
     
@@ -2252,20 +2585,29 @@ public class StreamingRenderer implements GTRenderer {
     }
 
     /**
-     * Utility method to apply the two rescale visitors without duplicating code
-     * @param fts
-     * @param visitor
+     * Replaces the rules with their copies rescaled by the dpi (if not null) and uom visitors,
+     * looking them up in the cache first (if not null)
      */
-    void rescaleFeatureTypeStyle(LiteFeatureTypeStyle fts, DuplicatingStyleVisitor visitor) {
-        for (int i = 0; i < fts.ruleList.length; i++) {
-            visitor.visit(fts.ruleList[i]);
-            fts.ruleList[i] = (Rule) visitor.getCopy();
-        }
-        if(fts.elseRules != null) {
-            for (int i = 0; i < fts.elseRules.length; i++) {
-                visitor.visit(fts.elseRules[i]);
-                fts.elseRules[i] = (Rule) visitor.getCopy();
+    void rescaleRules(Rule[] rules, DuplicatingStyleVisitor dpiVisitor,
+            DuplicatingStyleVisitor uomVisitor, StyleCache cache, double dpiScale,
+            double pixelsPerMeter) {
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+            Rule rescaled = cache == null ? null : cache.getRescaledRule(rule, dpiScale,
+                    pixelsPerMeter);
+            if(rescaled == null) {
+                rescaled = rule;
+                if(dpiVisitor != null) {
+                    dpiVisitor.visit(rescaled);
+                    rescaled = (Rule) dpiVisitor.getCopy();
+                }
+                uomVisitor.visit(rescaled);
+                rescaled = (Rule) uomVisitor.getCopy();
+                if(cache != null) {
+                    cache.putRescaledRule(rule, dpiScale, pixelsPerMeter, rescaled);
+                }
             }
+            rules[i] = rescaled;
         }
     }
 
@@ -2425,6 +2767,7 @@ public class StreamingRenderer implements GTRenderer {
             boolean doElse = true;
             Rule[] elseRuleList = fts.elseRules;
             Rule[] ruleList = fts.ruleList;
+            Filter[] filters = fts.getRuleFilters(rf.feature);
             Rule r;
             Filter filter;
             Graphics2D graphics = fts.graphics;
@@ -2432,7 +2775,7 @@ public class StreamingRenderer implements GTRenderer {
             final int length = ruleList.length;
             for (int t = 0; t < length; t++) {
                 r = ruleList[t];
-                filter = r.getFilter();
+                filter = filters[t];
 
                 if (filter == null || filter.evaluate(rf.feature)) {
                     doElse = false;
@@ -2866,6 +3209,9 @@ public class StreamingRenderer implements GTRenderer {
         if(hints != null && hints.containsKey(LINE_WIDTH_OPTIMIZATION_KEY)) {
             styleFactory.setLineOptimizationEnabled(Boolean.TRUE.equals(hints.get(LINE_WIDTH_OPTIMIZATION_KEY)));
         }
+        if(hints != null && hints.get(STYLE_CACHE_KEY) instanceof StyleCache) {
+            styleFactory.setStyleCache((StyleCache) hints.get(STYLE_CACHE_KEY));
+        }
         rendererHints = hints;
 
         // sets whether vector rendering is enabled in the SLDStyleFactory
@@ -3033,9 +3379,17 @@ public class StreamingRenderer implements GTRenderer {
                     sa.xform = fullTransform;
                     sa.crsxform = crsTransform;
                     sa.axform = atTransform;
+                    double tolerance = getApproximateTransformTolerance();
                     if(projectionHandler != null) {
                         sa.rxform = projectionHandler.getRenderingTransform(sa.crsxform);
+                        // the wrapped transforms (e.g. dateline handling) depend on the
+                        // continuity of the transformed points, leave them alone
+                        if(sa.rxform == sa.crsxform) {
+                            double scale = XAffineTransform.getScale(worldToScreenTransform);
+                            sa.rxform = approximateTransform(sa.rxform, sa.crs, tolerance / scale);
+                        }
                     } else {
+                        sa.xform = approximateTransform(fullTransform, sa.crs, tolerance);
                         sa.rxform = sa.crsxform;
                     }
     
@@ -3103,9 +3457,13 @@ public class StreamingRenderer implements GTRenderer {
 
             // we need to clone if the clone flag is high or if the coordinate sequence is not the one we asked for
             Geometry geom = originalGeom;
-            if (clone
-                    || !(geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory)) {
-                int dim = sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
+            boolean cloneRequired = clone
+                    || !(geom.getFactory().getCoordinateSequenceFactory() instanceof LiteCoordinateSequenceFactory);
+            int dim = sa != null && sa.crs != null ? sa.crs.getCoordinateSystem().getDimension() : 2;
+            // in the simple case the decimator can build the copy while generalizing,
+            // avoiding a full size copy of the coordinates
+            boolean decimatorCopy = cloneRequired && dim == 2 && projectionHandler == null;
+            if (cloneRequired && !decimatorCopy) {
                 geom = LiteCoordinateSequence.cloneGeometry(geom, dim);
             }
 
@@ -3142,8 +3500,7 @@ public class StreamingRenderer implements GTRenderer {
                         shape = null;
                     } else {
                         // apply the affine transform turning the coordinates into pixels
-                        d = new Decimator(-1, -1);
-                        geom = d.decimateTransformGeneralize(geom, sa.axform);
+                        geom = NULL_DECIMATOR.decimateTransformGeneralize(geom, sa.axform);
     
                         // wrap into a lite shape
                         geom.geometryChanged();
@@ -3154,7 +3511,7 @@ public class StreamingRenderer implements GTRenderer {
                 MathTransform xform = null;
                 if (sa != null)
                     xform = sa.xform;
-                shape = new LiteShape2(geom, xform, getDecimator(xform), false, false);
+                shape = new LiteShape2(geom, xform, getDecimator(xform), false, decimatorCopy);
             }
 
             // cache the result
@@ -3302,6 +3659,57 @@ public class StreamingRenderer implements GTRenderer {
         }
     }
     
+    /**
+     * A layer being rendered in parallel on its own back buffer
+     */
+    static class ParallelLayer {
+        String layerId;
+
+        Graphics2D compositingGraphic;
+
+        DelayedBackbufferGraphic layerGraphic;
+
+        Future<Void> future;
+
+        public ParallelLayer(String layerId, Graphics2D compositingGraphic,
+                DelayedBackbufferGraphic layerGraphic, Future<Void> future) {
+            this.layerId = layerId;
+            this.compositingGraphic = compositingGraphic;
+            this.layerGraphic = layerGraphic;
+            this.future = future;
+        }
+    }
+
+    /**
+     * A request to merge the back buffer of a layer rendered in parallel onto the
+     * compositing graphics
+     */
+    class MergeBackbufferRequest extends RenderingRequest {
+        Graphics2D graphics;
+
+        DelayedBackbufferGraphic backbuffer;
+
+        public MergeBackbufferRequest(Graphics2D graphics, DelayedBackbufferGraphic backbuffer) {
+            this.graphics = graphics;
+            this.backbuffer = backbuffer;
+        }
+
+        @Override
+        void execute() {
+            // we may have not found anything to paint, in that case the back buffer
+            // has not been initialized
+            final BufferedImage image = backbuffer.image;
+            if (image != null) {
+                if (graphics instanceof DelayedBackbufferGraphic) {
+                    ((DelayedBackbufferGraphic) graphics).init();
+                }
+                backbuffer.dispose();
+                graphics.setComposite(AlphaComposite.SrcOver);
+                graphics.drawImage(image, 0, 0, null);
+            }
+        }
+    }
+
     class MargeCompositingGroupRequest extends RenderingRequest {
         Graphics2D graphics;
 
@@ -84,6 +84,12 @@ public final class StyledShapePainter {
      */
     public static boolean ROUND_ICON_COORDS = Boolean.parseBoolean(System.getProperty("org.geotools.renderer.lite.roundIconCoords", "true"));
 
+    /**
+     * Whether marks should be rasterized once and then blitted as images, instead of being painted
+     * as vectors at each point. The output matches the vector one within antialiasing tolerance.
+     */
+    public static boolean MARK_SPRITES = Boolean.parseBoolean(System.getProperty("org.geotools.renderer.lite.markSprites", "false"));
+
     /**
      * the label cache, used to populate the label cache with reserved areas for labelling 
      * obstacles
@@ -180,23 +186,29 @@ public final class StyledShapePainter {
             // get the point onto the shape has to be painted
             float[] coords = new float[2];
             MarkStyle2D ms2d = (MarkStyle2D) style;
+            MarkSpriteCache sprites = null;
+            if (MARK_SPRITES && MarkSpriteCache.isSupported(graphics, ms2d)) {
+                sprites = MarkSpriteCache.getInstance();
+            }
 
             Shape transformedShape ;
             while (!(citer.isDone())) {
                 if (citer.currentSegment(coords) != PathIterator.SEG_MOVETO) {
                     transformedShape = ms2d.getTransformedShape(coords[0], coords[1]);
                     if (transformedShape != null) {
-                        if (ms2d.getFill() != null) {
-                            graphics.setPaint(ms2d.getFill());
-                            graphics.setComposite(ms2d.getFillComposite());
-                            graphics.fill(transformedShape);
-                        }
+                        if (sprites == null || !sprites.paint(graphics, ms2d, coords[0], coords[1])) {
+                            if (ms2d.getFill() != null) {
+                                graphics.setPaint(ms2d.getFill());
+                                graphics.setComposite(ms2d.getFillComposite());
+                                graphics.fill(transformedShape);
+                            }
 
-                        if (ms2d.getContour() != null) {
-                            graphics.setPaint(ms2d.getContour());
-                            graphics.setStroke(ms2d.getStroke());
-                            graphics.setComposite(ms2d.getContourComposite());
-                            graphics.draw(transformedShape);
+                            if (ms2d.getContour() != null) {
+                                graphics.setPaint(ms2d.getContour());
+                                graphics.setStroke(ms2d.getStroke());
+                                graphics.setComposite(ms2d.getContourComposite());
+                                graphics.draw(transformedShape);
+                            }
                         }
 
                         if (isLabelObstacle) {
@@ -33,10 +33,13 @@ import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -68,8 +71,8 @@ import org.geotools.styling.StyleFactory;
 import org.geotools.styling.Symbolizer;
 import org.geotools.styling.TextSymbolizer;
 import org.geotools.styling.TextSymbolizer2;
+import org.geotools.util.LRULinkedHashMap;
 import org.geotools.util.Range;
-import org.geotools.util.SoftValueHashMap;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.filter.FilterFactory;
@@ -190,11 +193,22 @@ public class SLDStyleFactory {
         ALPHA_COMPOSITE_LOOKUP.put("xor", AlphaComposite.XOR);
 	}
 
+	/**
+	 * The maximum number of distinct attribute values a dynamic symbolizer can
+	 * be evaluated against before its styles stop being cached
+	 */
+	static final int MAX_DYNAMIC_VALUES = 64;
+
 	/** Symbolizers that depend on attributes */
-	Map dynamicSymbolizers = new SoftValueHashMap();
+	Map<SymbolizerKey, DynamicSymbolizer> dynamicSymbolizers = Collections
+			.synchronizedMap(new LRULinkedHashMap<SymbolizerKey, DynamicSymbolizer>(
+					16, 0.75f, true, StyleCache.DEFAULT_MAXIMUM_SIZE));
 
-	/** Symbolizers that do not depend on attributes */
-	Map staticSymbolizers = new SoftValueHashMap();
+	/**
+	 * The styles of the symbolizers that do not depend on attributes, and of
+	 * the dynamic ones depending on a few attribute values, lazily created
+	 */
+	StyleCache styleCache;
 
 	/**
 	 * Build a default rendering hint to avoid NPE
@@ -250,6 +264,22 @@ public class SLDStyleFactory {
 		this.renderingHints = renderingHints;
 	}
 
+	/**
+	 * The cache of the styles built by this factory, which can be shared among
+	 * factories
+	 */
+	public StyleCache getStyleCache() {
+		if (styleCache == null)
+			styleCache = new StyleCache();
+		return styleCache;
+	}
+
+	public void setStyleCache(StyleCache styleCache) {
+		if (styleCache == null)
+			throw new NullPointerException("The style cache cannot be null");
+		this.styleCache = styleCache;
+	}
+
 	/**
 	 * Enabled by default, this optimization speeds up line rendering when the
 	 * line width is less than 1.5 pixels when antialiasing is disblaed.
@@ -337,6 +367,12 @@ public class SLDStyleFactory {
 	 * feature independent symbolizer with the same scaleRange.
 	 * </p>
 	 * 
+	 * <p>
+	 * The styles of the symbolizers depending on attributes are cached as well
+	 * by attribute values, as long as the symbolizer is evaluated against a
+	 * small number of distinct values (e.g., categorical colors).
+	 * </p>
+	 * 
 	 * @param drawMe
 	 *            The feature
 	 * @param symbolizer
@@ -352,7 +388,17 @@ public class SLDStyleFactory {
 		Style2D style = null;
 
 		SymbolizerKey key = new SymbolizerKey(symbolizer, scaleRange);
-		style = (Style2D) staticSymbolizers.get(key);
+		DynamicSymbolizer dynamic = dynamicSymbolizers.get(key);
+		StyleKey styleKey = null;
+		if (dynamic == null) {
+			styleKey = new StyleKey(key, this, null);
+		} else if (dynamic.cached) {
+			styleKey = new StyleKey(key, this, dynamic.evaluate(drawMe));
+		}
+		StyleCache styleCache = getStyleCache();
+		if (styleKey != null) {
+			style = styleCache.get(styleKey);
+		}
 
 		requests++;
 
@@ -369,20 +415,32 @@ public class SLDStyleFactory {
 				return null;
 			}
 
-			// if known dynamic symbolizer return the style
-			if (dynamicSymbolizers.containsKey(key)) {
+			// if known dynamic symbolizer cache by attribute values, while
+			// they are few
+			if (dynamic != null) {
+				if (styleKey != null && dynamic.valueMissed()) {
+					styleCache.put(styleKey, style);
+				}
 				return style;
 			} else {
 				// lets see if it's static or dynamic
 				StyleAttributeExtractorTruncated sae = new StyleAttributeExtractorTruncated();
 				sae.visit(symbolizer);
 
-				Set nameSet = sae.getAttributeNameSet();
+				Set<String> nameSet = sae.getAttributeNameSet();
 				boolean noAttributes = (nameSet == null) || (nameSet.size() == 0);
 				if (noAttributes && !sae.isUsingVolatileFunctions()) {
-					staticSymbolizers.put(key, style);
+					styleCache.put(styleKey, style);
 				} else {
-					dynamicSymbolizers.put(key, Boolean.TRUE);
+					// values can be cached only if the attributes are known
+					dynamic = new DynamicSymbolizer(nameSet,
+							!sae.isUsingVolatileFunctions()
+									&& !sae.isUsingDynamincProperties());
+					dynamicSymbolizers.put(key, dynamic);
+					if (dynamic.cached && dynamic.valueMissed()) {
+						styleCache.put(new StyleKey(key, this, dynamic
+								.evaluate(drawMe)), style);
+					}
 				}
 			}
 		}
@@ -1694,6 +1752,105 @@ public class SLDStyleFactory {
 		}
 	}
 
+	/**
+	 * A symbolizer depending on attributes, whose styles are cached by
+	 * attribute values until too many distinct values show up
+	 */
+	static class DynamicSymbolizer {
+		final PropertyName[] properties;
+
+		final AtomicInteger misses = new AtomicInteger();
+
+		volatile boolean cached;
+
+		DynamicSymbolizer(Set<String> names, boolean cacheable) {
+			properties = new PropertyName[names == null ? 0 : names.size()];
+			if (names != null) {
+				int i = 0;
+				for (String name : names) {
+					properties[i++] = ff.property(name);
+				}
+			}
+			cached = cacheable && properties.length > 0;
+		}
+
+		/**
+		 * Returns the values the symbolizer depends on
+		 */
+		List<Object> evaluate(Object feature) {
+			Object[] values = new Object[properties.length];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = properties[i].evaluate(feature);
+			}
+			return Arrays.asList(values);
+		}
+
+		/**
+		 * Records a cache miss, returning false and disabling the caching once
+		 * the symbolizer has missed too many times
+		 */
+		boolean valueMissed() {
+			if (misses.incrementAndGet() > MAX_DYNAMIC_VALUES) {
+				cached = false;
+			}
+			return cached;
+		}
+	}
+
+	/**
+	 * Key of the styles in the {@link StyleCache}, made of the symbolizer key,
+	 * the factory settings altering the styles and the attribute values for
+	 * the dynamic symbolizers
+	 */
+	static class StyleKey {
+		private final SymbolizerKey symbolizer;
+
+		private final boolean lineOptimization;
+
+		private final boolean vectorRendering;
+
+		private final Map<Object, Object> hints;
+
+		private final List<Object> values;
+
+		private final int hash;
+
+		StyleKey(SymbolizerKey symbolizer, SLDStyleFactory factory,
+				List<Object> values) {
+			this.symbolizer = symbolizer;
+			this.lineOptimization = factory.lineOptimizationEnabled;
+			this.vectorRendering = factory.vectorRenderingEnabled;
+			this.hints = factory.renderingHints;
+			this.values = values;
+			int hash = symbolizer.hashCode();
+			hash = hash * 37 + (lineOptimization ? 1 : 0);
+			hash = hash * 37 + (vectorRendering ? 1 : 0);
+			hash = hash * 37 + (hints == null ? 0 : hints.hashCode());
+			this.hash = hash * 37 + (values == null ? 0 : values.hashCode());
+		}
+
+		public boolean equals(Object obj) {
+			if (!(obj instanceof StyleKey)) {
+				return false;
+			}
+
+			StyleKey other = (StyleKey) obj;
+
+			return hash == other.hash
+					&& symbolizer.equals(other.symbolizer)
+					&& lineOptimization == other.lineOptimization
+					&& vectorRendering == other.vectorRendering
+					&& (hints == other.hints || (hints != null && hints
+							.equals(other.hints)))
+					&& (values == null ? other.values == null : values
+							.equals(other.values));
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+	}
+
 	private String evalToString(Expression exp, Object f, String fallback) {
 		if (exp == null) {
 			return fallback;
@@ -0,0 +1,243 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.style;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.geotools.styling.Rule;
+import org.geotools.util.LRULinkedHashMap;
+
+/**
+ * A bounded cache of the {@link Style2D} objects built by {@link SLDStyleFactory}, evicting the
+ * least recently used ones.
+ * <p>
+ * The cache is split in segments, each one guarded by its own lock, so that it can be shared
+ * among the renderers painting concurrently (see the
+ * {@link org.geotools.renderer.lite.StreamingRenderer#STYLE_CACHE_KEY} hint).
+ * <p>
+ * The styles are keyed on the identity of the symbolizers. Since the renderers paint copies of
+ * the rules rescaled to pixels, the cache also keeps the rescaled copies, keyed on the identity
+ * of the original rules, so that the renderers sharing it paint the same symbolizers.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public class StyleCache {
+
+    /**
+     * The default maximum number of cached styles
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private static final int SEGMENTS = 16;
+
+    private final Map<Object, Style2D>[] segments;
+
+    private final int maximumSize;
+
+    private final Map<RescaledRuleKey, Rule> rescaledRules;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Builds a cache holding up to {@link #DEFAULT_MAXIMUM_SIZE} styles
+     */
+    public StyleCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Builds a cache holding up to the specified number of styles
+     *
+     * @param maximumSize the maximum number of cached styles
+     */
+    @SuppressWarnings("unchecked")
+    public StyleCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive: "
+                    + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        final int count = Math.min(SEGMENTS, maximumSize);
+        segments = new Map[count];
+        for (int i = 0; i < count; i++) {
+            // spread the remainder over the first segments
+            final int size = maximumSize / count + (i < maximumSize % count ? 1 : 0);
+            segments[i] = new LRULinkedHashMap<Object, Style2D>(16, 0.75f, true, size);
+        }
+        rescaledRules = Collections.synchronizedMap(new LRULinkedHashMap<RescaledRuleKey, Rule>(
+                16, 0.75f, true, maximumSize));
+    }
+
+    /**
+     * Returns the cached style, or {@code null} if missing
+     */
+    Style2D get(Object key) {
+        final Map<Object, Style2D> segment = segment(key);
+        final Style2D style;
+        synchronized (segment) {
+            style = segment.get(key);
+        }
+        if (style != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return style;
+    }
+
+    /**
+     * Caches the style, possibly evicting the least recently used one
+     */
+    void put(Object key, Style2D style) {
+        final Map<Object, Style2D> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, style);
+        }
+    }
+
+    /**
+     * Returns the copy of the rule rescaled to pixels with the given factors, or {@code null} if
+     * missing
+     *
+     * @param rule the original rule
+     * @param dpiScale the ratio between the rendering and the standard dpi
+     * @param pixelsPerMeter the number of pixels per meter at the rendering scale
+     */
+    public Rule getRescaledRule(Rule rule, double dpiScale, double pixelsPerMeter) {
+        return rescaledRules.get(new RescaledRuleKey(rule, dpiScale, pixelsPerMeter));
+    }
+
+    /**
+     * Caches the copy of the rule rescaled to pixels with the given factors, possibly evicting
+     * the least recently used one
+     *
+     * @param rule the original rule
+     * @param dpiScale the ratio between the rendering and the standard dpi
+     * @param pixelsPerMeter the number of pixels per meter at the rendering scale
+     * @param rescaled the rescaled copy of the rule
+     */
+    public void putRescaledRule(Rule rule, double dpiScale, double pixelsPerMeter, Rule rescaled) {
+        rescaledRules.put(new RescaledRuleKey(rule, dpiScale, pixelsPerMeter), rescaled);
+    }
+
+    private Map<Object, Style2D> segment(Object key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Returns the maximum number of cached styles
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Returns the number of cached styles
+     */
+    public int size() {
+        int size = 0;
+        for (Map<Object, Style2D> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all the cached styles and rescaled rules, the hit and miss counts are preserved.
+     * This must be called after modifying a style painted with this cache.
+     */
+    public void clear() {
+        for (Map<Object, Style2D> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        rescaledRules.clear();
+    }
+
+    /**
+     * Returns the number of lookups that found a cached style
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that did not find a cached style
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the ratio of lookups that found a cached style, or 0 if no lookup happened
+     */
+    public double getHitRate() {
+        final long hits = this.hits.get();
+        final long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Key of the rescaled rules, comparing the original rules by identity
+     */
+    private static final class RescaledRuleKey {
+
+        private final Rule rule;
+
+        private final double dpiScale;
+
+        private final double pixelsPerMeter;
+
+        RescaledRuleKey(Rule rule, double dpiScale, double pixelsPerMeter) {
+            this.rule = rule;
+            this.dpiScale = dpiScale;
+            this.pixelsPerMeter = pixelsPerMeter;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RescaledRuleKey)) {
+                return false;
+            }
+            final RescaledRuleKey other = (RescaledRuleKey) obj;
+            return rule == other.rule
+                    && Double.doubleToLongBits(dpiScale) == Double
+                            .doubleToLongBits(other.dpiScale)
+                    && Double.doubleToLongBits(pixelsPerMeter) == Double
+                            .doubleToLongBits(other.pixelsPerMeter);
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(dpiScale) * 31
+                    + Double.doubleToLongBits(pixelsPerMeter);
+            return System.identityHashCode(rule) * 37 + (int) (bits ^ (bits >>> 32));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.label;
+
+import static org.junit.Assert.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ *
+ * @source $URL$
+ */
+public class LabelIndexTest {
+
+    @Test
+    public void testAgainstBruteForce() {
+        Random random = new Random(0);
+        for (Rectangle2D area : new Rectangle2D[] { null, new Rectangle(0, 0, 256, 256),
+                new Rectangle(-100, 50, 2048, 1024) }) {
+            LabelIndex index = new LabelIndex(area);
+            List<Rectangle2D> painted = new ArrayList<Rectangle2D>();
+            for (int i = 0; i < 500; i++) {
+                // labels partially or fully out of the area as well
+                Rectangle2D bounds = new Rectangle2D.Double(random.nextDouble() * 2400 - 200,
+                        random.nextDouble() * 1400 - 200, random.nextDouble() * 80,
+                        random.nextDouble() * 20);
+                int distance = random.nextInt(5);
+                boolean expected = false;
+                for (Rectangle2D other : painted) {
+                    expected |= other.getMinX() <= bounds.getMaxX() + distance
+                            && other.getMaxX() >= bounds.getMinX() - distance
+                            && other.getMinY() <= bounds.getMaxY() + distance
+                            && other.getMaxY() >= bounds.getMinY() - distance;
+                }
+                assertEquals(expected, index.labelsWithinDistance(bounds, distance));
+                if (!expected) {
+                    index.addLabel(null, bounds);
+                    painted.add(bounds);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReserveArea() {
+        LabelIndex index = new LabelIndex(new Rectangle(0, 0, 256, 256));
+        assertFalse(index.labelsWithinDistance(new Rectangle(10, 10, 10, 10), 0));
+        index.reserveArea(Collections.<Rectangle2D> singletonList(new Rectangle(0, 0, 20, 20)));
+        assertTrue(index.labelsWithinDistance(new Rectangle(10, 10, 10, 10), 0));
+        assertTrue(index.labelsWithinDistance(new Rectangle(25, 25, 10, 10), 5));
+        assertFalse(index.labelsWithinDistance(new Rectangle(25, 25, 10, 10), 4));
+        assertFalse(index.labelsWithinDistance(new Rectangle(10, 10, 10, 10), -1));
+    }
+
+    @Test
+    public void testOrientedLabels() {
+        LabelIndex index = new LabelIndex(new Rectangle(0, 0, 256, 256));
+        Rectangle2D label = new Rectangle2D.Double(0, 0, 100, 5);
+        AffineTransform diagonal = AffineTransform.getTranslateInstance(50, 50);
+        diagonal.rotate(Math.PI / 4);
+        index.addLabel(null, label, diagonal);
+
+        // a parallel label, whose bounds overlap the ones of the first label
+        AffineTransform parallel = AffineTransform.getTranslateInstance(70, 30);
+        parallel.rotate(Math.PI / 4);
+        Rectangle2D parallelBounds = parallel.createTransformedShape(label).getBounds2D();
+        assertTrue(index.labelsWithinDistance(parallelBounds, 0));
+        assertFalse(index.labelsWithinDistance(label, parallel, 0));
+        assertTrue(index.labelsWithinDistance(label, parallel, 30));
+        assertTrue(index.labelsWithinDistance(label, diagonal, 0));
+    }
+
+    @Test
+    public void testAxisAlignedAgainstOrientedLabel() {
+        LabelIndex index = new LabelIndex(new Rectangle(0, 0, 256, 256));
+        AffineTransform diagonal = AffineTransform.getTranslateInstance(50, 50);
+        diagonal.rotate(Math.PI / 4);
+        index.addLabel(null, new Rectangle2D.Double(0, 0, 100, 5), diagonal);
+
+        // a box in a corner of the envelope of the rotated label, away from the label
+        Rectangle2D box = new Rectangle2D.Double(110, 52, 8, 6);
+        assertFalse(index.labelsWithinDistance(box, 0));
+        assertTrue(index.labelsWithinDistance(box, 50));
+        assertTrue(index.labelsWithinDistance(new Rectangle2D.Double(78, 80, 4, 4), 0));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+
+import org.geotools.renderer.style.MarkStyle2D;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link MarkSpriteCache} class.
+ *
+ * @source $URL$
+ */
+public class MarkSpriteCacheTest extends Assert {
+
+    private MarkStyle2D buildMark(double size) {
+        MarkStyle2D mark = new MarkStyle2D();
+        mark.setShape(new Ellipse2D.Double(-0.5, -0.5, 1, 1));
+        mark.setSize(size);
+        mark.setFill(new Color(255, 0, 0, 180));
+        mark.setFillComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.7f));
+        mark.setContour(Color.BLACK);
+        mark.setContourComposite(AlphaComposite.SrcOver);
+        mark.setStroke(new BasicStroke(1.5f));
+        mark.setRotation(0.5f);
+        return mark;
+    }
+
+    private Graphics2D createGraphics(BufferedImage image) {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        return graphics;
+    }
+
+    @Test
+    public void testSameAsVector() {
+        MarkStyle2D mark = buildMark(12);
+        MarkSpriteCache cache = new MarkSpriteCache(1024 * 1024);
+        BufferedImage expected = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage actual = new BufferedImage(100, 100, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D vector = createGraphics(expected);
+        Graphics2D sprites = createGraphics(actual);
+        assertTrue(MarkSpriteCache.isSupported(sprites, mark));
+
+        // marks centered on pixels are painted as with vectors, but for the rotation bucketing
+        for (int i = 0; i < 10; i++) {
+            float x = 10 + i * 8;
+            float y = 10 + i * 7;
+            Shape shape = mark.getTransformedShape(x, y);
+            vector.setPaint(mark.getFill());
+            vector.setComposite(mark.getFillComposite());
+            vector.fill(shape);
+            vector.setPaint(mark.getContour());
+            vector.setStroke(mark.getStroke());
+            vector.setComposite(mark.getContourComposite());
+            vector.draw(shape);
+            assertTrue(cache.paint(sprites, mark, x, y));
+        }
+        vector.dispose();
+        sprites.dispose();
+        assertEquals(1, cache.size());
+        assertEquals(9, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                int p1 = expected.getRGB(x, y);
+                int p2 = actual.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int difference = Math.abs(((p1 >> shift) & 0xFF) - ((p2 >> shift) & 0xFF));
+                    assertTrue("Pixel " + x + "," + y, difference <= 4);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSubpixels() {
+        MarkStyle2D mark = buildMark(12);
+        MarkSpriteCache cache = new MarkSpriteCache(1024 * 1024);
+        Graphics2D graphics = createGraphics(new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_ARGB));
+
+        // normalized strokes, the marks are centered on the nearest pixel
+        cache.paint(graphics, mark, 10.3f, 10.6f);
+        cache.paint(graphics, mark, 20.1f, 20.9f);
+        assertEquals(1, cache.size());
+
+        // pure strokes, the marks are positioned at a quarter of pixel
+        graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
+                RenderingHints.VALUE_STROKE_PURE);
+        cache.paint(graphics, mark, 10.3f, 10.6f);
+        cache.paint(graphics, mark, 20.25f, 20.5f);
+        cache.paint(graphics, mark, 30.1f, 30.9f);
+        assertEquals(3, cache.size());
+        graphics.dispose();
+    }
+
+    @Test
+    public void testMemoryBudget() {
+        MarkSpriteCache cache = new MarkSpriteCache(4096);
+        Graphics2D graphics = createGraphics(new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_ARGB));
+        for (int i = 1; i < 30; i++) {
+            assertTrue(cache.paint(graphics, buildMark(i), 50, 50));
+            assertTrue(cache.getMemoryUsed() <= 4096);
+        }
+        assertTrue(cache.size() < 29);
+
+        // too big for a sprite
+        assertFalse(cache.paint(graphics, buildMark(MarkSpriteCache.MAX_SPRITE_SIZE), 50, 50));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryUsed());
+        graphics.dispose();
+    }
+
+    @Test
+    public void testStyleMissBudget() {
+        MarkSpriteCache cache = new MarkSpriteCache(1024 * 1024);
+        Graphics2D graphics = createGraphics(new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_ARGB));
+        MarkStyle2D mark = buildMark(10);
+
+        // a continuously varying size, each paint misses the cache
+        for (int i = 0; i < MarkSpriteCache.MAX_STYLE_MISSES; i++) {
+            mark.setSize(10 + i * 0.01);
+            assertTrue(cache.paint(graphics, mark, 50, 50));
+        }
+        mark.setSize(20);
+        assertFalse(cache.paint(graphics, mark, 50, 50));
+        assertEquals(MarkSpriteCache.MAX_STYLE_MISSES, cache.size());
+
+        // the sprites already there are still used, other styles are not affected
+        mark.setSize(10);
+        assertTrue(cache.paint(graphics, mark, 50, 50));
+        assertTrue(cache.paint(graphics, buildMark(20), 50, 50));
+
+        // clearing resets the budget
+        cache.clear();
+        mark.setSize(20);
+        assertTrue(cache.paint(graphics, mark, 50, 50));
+        graphics.dispose();
+    }
+
+    @Test
+    public void testNotSupported() {
+        Graphics2D graphics = createGraphics(new BufferedImage(100, 100,
+                BufferedImage.TYPE_INT_ARGB));
+        MarkStyle2D mark = buildMark(12);
+        assertTrue(MarkSpriteCache.isSupported(graphics, mark));
+
+        // integer translations are fine, scales are not
+        graphics.translate(10, 10);
+        assertTrue(MarkSpriteCache.isSupported(graphics, mark));
+        graphics.translate(0.5, 0);
+        assertFalse(MarkSpriteCache.isSupported(graphics, mark));
+        graphics.translate(-10.5, -10);
+        graphics.scale(2, 2);
+        assertFalse(MarkSpriteCache.isSupported(graphics, mark));
+        graphics.scale(0.5, 0.5);
+
+        mark.setContourComposite(AlphaComposite.Xor);
+        assertFalse(MarkSpriteCache.isSupported(graphics, mark));
+        mark = buildMark(12);
+        mark.setFill(new GradientPaint(0, 0, Color.RED, 10, 10, Color.BLUE));
+        assertFalse(MarkSpriteCache.isSupported(graphics, mark));
+        graphics.dispose();
+    }
+}
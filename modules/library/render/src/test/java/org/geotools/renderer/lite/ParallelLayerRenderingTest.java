@@ -0,0 +1,179 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.lite;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.data.property.PropertyDataStore;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.FeatureLayer;
+import org.geotools.map.MapContent;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.geotools.test.TestData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelLayerRenderingTest {
+
+    private static final long TIME = 4000;
+
+    ExecutorService pool;
+
+    SimpleFeatureSource squareFS;
+
+    SimpleFeatureSource buildingsFS;
+
+    ReferencedEnvelope bounds;
+
+    @Before
+    public void setUp() throws Exception {
+        File property = new File(TestData.getResource(this, "square.properties").toURI());
+        PropertyDataStore ds = new PropertyDataStore(property.getParentFile());
+        squareFS = ds.getFeatureSource("square");
+        buildingsFS = ds.getFeatureSource("buildings");
+        bounds = new ReferencedEnvelope(0, 10, 0, 10, DefaultGeographicCRS.WGS84);
+        pool = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLayerOrderPreserved() throws Exception {
+        StyleBuilder sb = new StyleBuilder();
+        Style red = sb.createStyle(sb.createPolygonSymbolizer(Color.RED));
+        Style blue = sb.createStyle(sb.createPolygonSymbolizer(Color.BLUE));
+        Style green = sb.createStyle(sb.createPolygonSymbolizer(Color.GREEN));
+
+        MapContent mc = new MapContent();
+        mc.addLayer(new FeatureLayer(squareFS, red));
+        mc.addLayer(new FeatureLayer(squareFS, blue));
+        mc.addLayer(new FeatureLayer(buildingsFS, green));
+
+        BufferedImage sequential = render(mc, false);
+        BufferedImage parallel = render(mc, true);
+        mc.dispose();
+
+        // the last layers must be on top
+        RendererBaseTest.assertPixel(parallel, 150, 150, Color.BLUE);
+        RendererBaseTest.assertPixel(parallel, 165, 225, Color.GREEN);
+        assertImagesEqual(sequential, parallel);
+    }
+
+    @Test
+    public void testManyLayers() throws Exception {
+        StyleBuilder sb = new StyleBuilder();
+        MapContent mc = new MapContent();
+        // more layers than the workers can handle at once, forces merging while rendering
+        for (int i = 0; i < 10; i++) {
+            Color color = new Color(i * 20, 0, 255 - i * 20);
+            mc.addLayer(new FeatureLayer(squareFS, sb.createStyle(sb
+                    .createPolygonSymbolizer(color))));
+        }
+
+        BufferedImage sequential = render(mc, false);
+        BufferedImage parallel = render(mc, true);
+        mc.dispose();
+
+        RendererBaseTest.assertPixel(parallel, 150, 150, new Color(180, 0, 75));
+        assertImagesEqual(sequential, parallel);
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        final MapContent mc1 = buildRedSquares(6);
+        final MapContent mc2 = buildRedSquares(6);
+        BufferedImage sequential = render(mc1, false);
+
+        // as many renderers as pool threads, the painters take all of them and the
+        // layer workers must not wait for a pool thread
+        pool.shutdown();
+        pool = Executors.newFixedThreadPool(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<BufferedImage> f1 = callers.submit(new Callable<BufferedImage>() {
+
+                @Override
+                public BufferedImage call() throws Exception {
+                    return render(mc1, true);
+                }
+            });
+            Future<BufferedImage> f2 = callers.submit(new Callable<BufferedImage>() {
+
+                @Override
+                public BufferedImage call() throws Exception {
+                    return render(mc2, true);
+                }
+            });
+            assertImagesEqual(sequential, f1.get(60, TimeUnit.SECONDS));
+            assertImagesEqual(sequential, f2.get(60, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+            mc1.dispose();
+            mc2.dispose();
+        }
+    }
+
+    private MapContent buildRedSquares(int layers) {
+        StyleBuilder sb = new StyleBuilder();
+        MapContent mc = new MapContent();
+        for (int i = 0; i < layers; i++) {
+            mc.addLayer(new FeatureLayer(squareFS, sb.createStyle(sb
+                    .createPolygonSymbolizer(Color.RED))));
+        }
+        return mc;
+    }
+
+    private BufferedImage render(MapContent mc, boolean parallel) throws Exception {
+        StreamingRenderer renderer = new StreamingRenderer();
+        renderer.setThreadPool(pool);
+        Map<Object, Object> hints = new HashMap<Object, Object>();
+        hints.put(StreamingRenderer.PARALLEL_LAYER_RENDERING_KEY, parallel);
+        hints.put(StreamingRenderer.MAX_PARALLEL_LAYERS_KEY, 3);
+        renderer.setRendererHints(hints);
+        renderer.setMapContent(mc);
+        return RendererBaseTest.showRender("Parallel " + parallel, renderer, TIME, bounds);
+    }
+
+    private void assertImagesEqual(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                assertEquals("Different pixel at " + x + "," + y, expected.getRGB(x, y),
+                        actual.getRGB(x, y));
+            }
+        }
+    }
+}
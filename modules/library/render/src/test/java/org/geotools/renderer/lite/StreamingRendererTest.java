@@ -21,10 +21,13 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.classextension.EasyMock.createNiceMock;
 import static org.easymock.classextension.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.Graphics2D;
+import java.awt.RenderingHints.Key;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
@@ -33,8 +36,12 @@ import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -54,6 +61,7 @@ import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.data.store.ContentEntry;
 import org.geotools.data.store.ContentFeatureSource;
+import org.geotools.factory.Hints;
 import org.geotools.feature.DefaultFeatureCollection;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -71,9 +79,11 @@ import org.geotools.referencing.CRS;
 import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.renderer.RenderListener;
 import org.geotools.renderer.lite.StreamingRenderer.RenderingRequest;
+import org.geotools.renderer.style.StyleCache;
 import org.geotools.resources.coverage.FeatureUtilities;
 import org.geotools.styling.DescriptionImpl;
 import org.geotools.styling.Graphic;
+import org.geotools.styling.LineSymbolizer;
 import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyleBuilder;
@@ -571,6 +581,109 @@ public class StreamingRendererTest {
         assertEquals(FastBBOX.class, filters.get(0).getClass());
     }
     
+    @Test
+    public void testDatastoreClipAndSnapHints() throws Exception {
+        final List<Query> queries = new ArrayList<Query>();
+        SimpleFeatureSource testSource = new CollectionFeatureSource(createLineCollection()) {
+            @Override
+            public SimpleFeatureCollection getFeatures(Query query) {
+                queries.add(query);
+                return super.getFeatures(query);
+            }
+
+            @Override
+            public synchronized Set<Key> getSupportedHints() {
+                return new HashSet<Key>(Arrays.asList(Hints.GEOMETRY_CLIP, Hints.GEOMETRY_SNAP));
+            }
+        };
+        ReferencedEnvelope envelope = new ReferencedEnvelope(0, 100, 0, 100,
+                DefaultGeographicCRS.WGS84);
+
+        renderLayer(new FeatureLayer(testSource, createLineStyle()), envelope);
+        assertEquals(1, queries.size());
+        Hints hints = queries.get(0).getHints();
+        Envelope clip = (Envelope) hints.get(Hints.GEOMETRY_CLIP);
+        assertNotNull(clip);
+        // larger than the map, but not by much
+        assertTrue(clip.contains(envelope));
+        assertTrue(clip.getWidth() < 150);
+        Double snap = (Double) hints.get(Hints.GEOMETRY_SNAP);
+        assertNotNull(snap);
+        assertTrue(snap > 0 && snap < 1);
+
+        // clipping is not safe when the symbolizers transform the geometry
+        StyleBuilder sb = new StyleBuilder();
+        LineSymbolizer ls = sb.createLineSymbolizer();
+        ls.setGeometry(sb.getFilterFactory().function("centroid",
+                sb.getFilterFactory().property("geom")));
+        queries.clear();
+        renderLayer(new FeatureLayer(testSource, sb.createStyle(ls)), envelope);
+        assertEquals(1, queries.size());
+        assertFalse(queries.get(0).getHints().containsKey(Hints.GEOMETRY_CLIP));
+
+        // nor when labels are placed on the geometries
+        Style labels = createLineStyle();
+        labels.featureTypeStyles().get(0).rules().get(0).symbolizers().add(
+                sb.createTextSymbolizer());
+        queries.clear();
+        renderLayer(new FeatureLayer(testSource, labels), envelope);
+        assertEquals(1, queries.size());
+        assertFalse(queries.get(0).getHints().containsKey(Hints.GEOMETRY_CLIP));
+
+        // or when the rules filter on the geometry
+        Style filtered = createLineStyle();
+        filtered.featureTypeStyles().get(0).rules().get(0).setFilter(
+                sb.getFilterFactory().greater(sb.getFilterFactory().function("geomLength",
+                        sb.getFilterFactory().property("geom")),
+                        sb.getFilterFactory().literal(50)));
+        queries.clear();
+        renderLayer(new FeatureLayer(testSource, filtered), envelope);
+        assertEquals(1, queries.size());
+        assertFalse(queries.get(0).getHints().containsKey(Hints.GEOMETRY_CLIP));
+    }
+
+    @Test
+    public void testStyleCacheSharedAcrossPaints() throws Exception {
+        StyleCache cache = new StyleCache();
+        Map<Object, Object> hints = Collections.<Object, Object> singletonMap(
+                StreamingRenderer.STYLE_CACHE_KEY, cache);
+        SimpleFeatureSource source = new CollectionFeatureSource(createLineCollection());
+        Style style = createLineStyle();
+        ReferencedEnvelope envelope = new ReferencedEnvelope(-180, -170, 0, 10,
+                DefaultGeographicCRS.WGS84);
+
+        renderLayer(new FeatureLayer(source, style), envelope, hints);
+        assertEquals(1, cache.getMissCount());
+        long hits = cache.getHitCount();
+
+        // another renderer reuses the rules rescaled by the first one, and their styles
+        renderLayer(new FeatureLayer(source, style), envelope, hints);
+        assertEquals(1, cache.getMissCount());
+        assertTrue(cache.getHitCount() > hits);
+    }
+
+    private void renderLayer(Layer layer, ReferencedEnvelope envelope) {
+        renderLayer(layer, envelope, null);
+    }
+
+    private void renderLayer(Layer layer, ReferencedEnvelope envelope, Map<Object, Object> hints) {
+        MapContent mc = new MapContent();
+        mc.addLayer(layer);
+        StreamingRenderer sr = new StreamingRenderer();
+        if (hints != null) {
+            sr.setRendererHints(hints);
+        }
+        sr.setMapContent(mc);
+        BufferedImage bi = new BufferedImage(100, 100, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = bi.createGraphics();
+        try {
+            sr.paint(graphics, new Rectangle(100, 100), envelope);
+        } finally {
+            graphics.dispose();
+            mc.dispose();
+        }
+    }
+    
     /*
      * https://osgeo-org.atlassian.net/browse/GEOT-5287
      */
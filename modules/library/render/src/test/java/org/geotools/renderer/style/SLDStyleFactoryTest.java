@@ -49,6 +49,7 @@ import org.geotools.styling.PointSymbolizer;
 import org.geotools.styling.PolygonSymbolizer;
 import org.geotools.styling.StyleFactory;
 import org.geotools.styling.TextSymbolizer;
+import org.geotools.styling.visitor.DuplicatingStyleVisitor;
 import org.geotools.util.NumberRange;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -196,6 +197,66 @@ public class SLDStyleFactoryTest extends TestCase {
         assertTrue(pi.isDone());
     }
     
+    public void testCacheStaticStyle() throws Exception {
+        PolygonSymbolizer symb = sf.createPolygonSymbolizer();
+        symb.setFill(sf.createFill(ff.literal("#FF0000")));
+        Style2D style = sld.createStyle(feature, symb, range);
+        assertSame(style, sld.createStyle(null, symb, range));
+
+        // shared among factories
+        SLDStyleFactory other = new SLDStyleFactory();
+        other.setStyleCache(sld.getStyleCache());
+        assertSame(style, other.createStyle(feature, symb, range));
+        assertEquals(2, sld.getStyleCache().getHitCount());
+
+        // unless the settings differ
+        other.setVectorRenderingEnabled(true);
+        assertNotSame(style, other.createStyle(feature, symb, range));
+    }
+
+    public void testCacheDisplacedSymbolizers() throws Exception {
+        PointSymbolizer symb = sf.createPointSymbolizer();
+        symb.setGraphic(sf.getDefaultGraphic());
+        MarkStyle2D style = (MarkStyle2D) sld.createStyle(feature, symb, range);
+
+        // a copy differing only by displacement, such as a drop shadow, gets its own style
+        DuplicatingStyleVisitor copier = new DuplicatingStyleVisitor();
+        symb.accept(copier);
+        PointSymbolizer shadow = (PointSymbolizer) copier.getCopy();
+        shadow.getGraphic().setDisplacement(sf.createDisplacement(ff.literal(3), ff.literal(-3)));
+        MarkStyle2D shadowStyle = (MarkStyle2D) sld.createStyle(feature, shadow, range);
+        assertNotSame(style, shadowStyle);
+        assertEquals(0, style.getDisplacementX(), 0);
+        assertEquals(3, shadowStyle.getDisplacementX(), 0);
+        assertEquals(-3, shadowStyle.getDisplacementY(), 0);
+        assertSame(style, sld.createStyle(feature, symb, range));
+        assertSame(shadowStyle, sld.createStyle(feature, shadow, range));
+    }
+
+    public void testCacheDynamicStyle() throws Exception {
+        PolygonSymbolizer symb = sf.createPolygonSymbolizer();
+        symb.setFill(sf.createFill(ff.property("symb")));
+        feature.setAttribute("symb", "#FF0000");
+        PolygonStyle2D red = (PolygonStyle2D) sld.createStyle(feature, symb, range);
+        assertEquals(Color.RED, red.getFill());
+        assertTrue(sld.dynamicSymbolizers.containsKey(new SymbolizerKey(symb, range)));
+
+        // same values, same style
+        SimpleFeature other = SimpleFeatureBuilder.copy(feature);
+        assertSame(red, sld.createStyle(other, symb, range));
+        feature.setAttribute("symb", "#0000FF");
+        PolygonStyle2D blue = (PolygonStyle2D) sld.createStyle(feature, symb, range);
+        assertEquals(Color.BLUE, blue.getFill());
+        assertSame(red, sld.createStyle(other, symb, range));
+
+        // too many distinct values, the styles are no more cached
+        for (int i = 0; i <= SLDStyleFactory.MAX_DYNAMIC_VALUES; i++) {
+            feature.setAttribute("symb", "#" + Integer.toHexString(0x1000000 + i).substring(1));
+            sld.createStyle(feature, symb, range);
+        }
+        assertNotSame(sld.createStyle(other, symb, range), sld.createStyle(other, symb, range));
+    }
+
     public void testCreateDynamicExternalGraphics() throws Exception {
         URL url = StreamingRenderer.class.getResource("test-data/");
         PointSymbolizer symb = sf.createPointSymbolizer();
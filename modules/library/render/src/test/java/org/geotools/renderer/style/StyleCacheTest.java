@@ -0,0 +1,95 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.renderer.style;
+
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.styling.Rule;
+import org.geotools.styling.StyleFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link StyleCache} class.
+ *
+ * @source $URL$
+ */
+public class StyleCacheTest extends Assert {
+
+    @Test
+    public void testCounters() {
+        StyleCache cache = new StyleCache(10);
+        Style2D style = new PolygonStyle2D();
+        assertNull(cache.get("a"));
+        cache.put("a", style);
+        assertSame(style, cache.get("a"));
+        assertSame(style, cache.get("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2d / 3, cache.getHitRate(), 1E-9);
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEviction() {
+        // a single segment, the least recently used style is evicted
+        StyleCache cache = new StyleCache(1);
+        Style2D a = new PolygonStyle2D();
+        Style2D b = new PolygonStyle2D();
+        cache.put(1, a);
+        cache.put(2, b);
+        assertNull(cache.get(1));
+        assertSame(b, cache.get(2));
+        assertEquals(1, cache.size());
+
+        // bounded in any case
+        cache = new StyleCache(100);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, a);
+        }
+        assertTrue(cache.size() <= 100);
+        assertEquals(100, cache.getMaximumSize());
+    }
+
+    @Test
+    public void testRescaledRules() {
+        StyleFactory sf = CommonFactoryFinder.getStyleFactory(null);
+        StyleCache cache = new StyleCache(10);
+        Rule rule = sf.createRule();
+        Rule rescaled = sf.createRule();
+        cache.putRescaledRule(rule, 2, 0.5, rescaled);
+        assertSame(rescaled, cache.getRescaledRule(rule, 2, 0.5));
+        assertNull(cache.getRescaledRule(rule, 1, 0.5));
+        assertNull(cache.getRescaledRule(rule, 2, 1));
+
+        // an equal rule is not the same rule
+        assertNull(cache.getRescaledRule(sf.createRule(), 2, 0.5));
+
+        cache.clear();
+        assertNull(cache.getRescaledRule(rule, 2, 0.5));
+        assertEquals(0, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new StyleCache(0);
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.geotools.referencing.wkt.Parser;
+import org.opengis.referencing.IdentifiedObject;
+
+
+/**
+ * A read-only view over an EPSG snapshot file, as written by {@link EpsgSnapshotWriter}. The
+ * snapshot contains the <cite>Well Known Text</cite> of the objects in the EPSG database, indexed
+ * by code. The file is memory-mapped when it is available on the file system, so opening it does
+ * not read the definitions, and looking up a code is a binary search in the index.
+ * <p>
+ * The file layout is:
+ * <ul>
+ *   <li>the header: {@link #MAGIC}, {@link #VERSION}, the number of entries, the length of the
+ *       database edition in bytes, followed by the edition in UTF-8;</li>
+ *   <li>the index, one entry per object sorted by code then by kind: the code, the offset and
+ *       length of the WKT relative to the start of the definitions, and the kind of object as
+ *       the index of a {@linkplain #KEYWORDS keyword}. The EPSG tables have their own code
+ *       spaces, so the same code may appear once per kind;</li>
+ *   <li>the definitions, each object WKT in UTF-8.</li>
+ * </ul>
+ * The WKT root element is the kind keyword, except for the geodetic datums: a {@code DATUM}
+ * element has no prime meridian, so they are written as a {@code GEOGCS} holding the datum
+ * and its prime meridian.
+ * Instances are safe for concurrent use.
+ *
+ * @source $URL$
+ */
+final class EpsgSnapshot {
+    /**
+     * The first bytes of a snapshot file.
+     */
+    static final int MAGIC = 0x47544550; // "GTEP"
+
+    /**
+     * The version of the snapshot file format.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * The WKT root elements of the objects in a snapshot.
+     */
+    static final String[] KEYWORDS = {
+        "GEOGCS", "PROJCS", "GEOCCS", "VERT_CS", "LOCAL_CS", "COMPD_CS", "FITTED_CS",
+        "DATUM", "VERT_DATUM", "LOCAL_DATUM", "SPHEROID", "PRIMEM"
+    };
+
+    /**
+     * The kind of the geodetic datums, written inside a {@code GEOGCS}.
+     */
+    static final int GEODETIC_DATUM = 7;
+
+    /**
+     * The classes of the objects for each kind.
+     */
+    private static final Class<?>[] CLASSES = new Class<?>[KEYWORDS.length];
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            CLASSES[i] = Parser.getClassOf(KEYWORDS[i]);
+        }
+    }
+
+    /**
+     * The size in bytes of an index entry.
+     */
+    static final int ENTRY_SIZE = 13;
+
+    /**
+     * The encoding of the text in the snapshot.
+     */
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The snapshot content. Only absolute methods are used on this buffer.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of objects in the snapshot.
+     */
+    private final int count;
+
+    /**
+     * The position of the index and of the definitions in the buffer.
+     */
+    private final int indexStart, dataStart;
+
+    /**
+     * The edition of the EPSG database the snapshot was created from, or {@code null}.
+     */
+    private final String edition;
+
+    /**
+     * Creates a view over the specified snapshot content.
+     *
+     * @throws IOException if the content is not a valid snapshot.
+     */
+    EpsgSnapshot(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < 16 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not an EPSG snapshot");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported EPSG snapshot version: " + buffer.getInt(4));
+        }
+        count = buffer.getInt(8);
+        final int editionLength = buffer.getInt(12);
+        edition = (editionLength == 0) ? null : read(16, editionLength);
+        indexStart = 16 + editionLength;
+        dataStart  = indexStart + count * ENTRY_SIZE;
+        if (count < 0 || dataStart > buffer.limit()) {
+            throw new IOException("Truncated EPSG snapshot");
+        }
+    }
+
+    /**
+     * Opens the snapshot at the specified URL. The file is memory-mapped if it is on the
+     * file system, or read in memory otherwise (for example if it is packaged in a JAR).
+     */
+    static EpsgSnapshot open(final URL url) throws IOException {
+        if ("file".equalsIgnoreCase(url.getProtocol())) {
+            final File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException e) {
+                throw (IOException) new IOException(e.getLocalizedMessage()).initCause(e);
+            }
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final FileChannel channel = raf.getChannel();
+                // the mapping stays valid after the channel is closed
+                return new EpsgSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } finally {
+                raf.close();
+            }
+        }
+        final InputStream in = url.openStream();
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 20);
+            final byte[] chunk = new byte[8192];
+            int n;
+            while ((n = in.read(chunk)) >= 0) {
+                out.write(chunk, 0, n);
+            }
+            return new EpsgSnapshot(ByteBuffer.wrap(out.toByteArray()));
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the edition of the EPSG database the snapshot was created from, or {@code null}.
+     */
+    String getEdition() {
+        return edition;
+    }
+
+    /**
+     * Returns the number of objects in the snapshot.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the WKT for the specified code of any kind, or {@code null} if the code is not in
+     * the snapshot.
+     */
+    String getWKT(final String code) {
+        final int entry = find(code, null);
+        return (entry < 0) ? null : getWKT(entry);
+    }
+
+    /**
+     * Returns the WKT of the specified entry.
+     */
+    String getWKT(final int entry) {
+        final int position = indexStart + entry * ENTRY_SIZE;
+        return read(dataStart + buffer.getInt(position + 4), buffer.getInt(position + 8));
+    }
+
+    /**
+     * Returns the kind of object of the specified entry, as an index in {@link #KEYWORDS}.
+     */
+    int getKind(final int entry) {
+        return buffer.get(indexStart + entry * ENTRY_SIZE + 12);
+    }
+
+    /**
+     * Returns the codes of the objects of the specified type, sorted by increasing value.
+     */
+    Set<String> getCodes(final Class<? extends IdentifiedObject> type) {
+        final Set<String> codes = new LinkedHashSet<String>();
+        for (int i = 0; i < count; i++) {
+            if (accept(getKind(i), type)) {
+                codes.add(String.valueOf(buffer.getInt(indexStart + i * ENTRY_SIZE)));
+            }
+        }
+        return Collections.unmodifiableSet(codes);
+    }
+
+    /**
+     * Returns {@code true} if the objects of the specified kind are instances of the given type.
+     */
+    private static boolean accept(final int kind, final Class<? extends IdentifiedObject> type) {
+        if (kind < 0 || kind >= CLASSES.length) {
+            return false;
+        }
+        if (type == null || type.isAssignableFrom(IdentifiedObject.class)) {
+            return true;
+        }
+        return CLASSES[kind] != null && type.isAssignableFrom(CLASSES[kind]);
+    }
+
+    /**
+     * Returns the index of the entry for the specified code and type, or -1 if none.
+     *
+     * @param code The code to search for.
+     * @param type The type of the object, or {@code null} for any.
+     */
+    int find(final String code, final Class<? extends IdentifiedObject> type) {
+        final int value;
+        try {
+            value = Integer.parseInt(code.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int candidate = buffer.getInt(indexStart + mid * ENTRY_SIZE);
+            if (candidate < value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // low is the first entry with the code, if any, which may have one entry per kind
+        for (int i = low; i < count && buffer.getInt(indexStart + i * ENTRY_SIZE) == value; i++) {
+            if (accept(getKind(i), type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the UTF-8 text at the specified position.
+     */
+    private String read(final int position, final int length) {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
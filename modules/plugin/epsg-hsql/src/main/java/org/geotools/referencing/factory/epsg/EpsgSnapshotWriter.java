@@ -0,0 +1,261 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.referencing.cs.DefaultEllipsoidalCS;
+import org.geotools.referencing.factory.AbstractAuthorityFactory;
+import org.geotools.referencing.wkt.Formattable;
+import org.geotools.referencing.wkt.UnformattableObjectException;
+import org.geotools.util.logging.Logging;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.datum.Datum;
+import org.opengis.referencing.datum.Ellipsoid;
+import org.opengis.referencing.datum.GeodeticDatum;
+import org.opengis.referencing.datum.PrimeMeridian;
+import org.opengis.util.InternationalString;
+
+
+/**
+ * Writes an {@linkplain EpsgSnapshot EPSG snapshot} from the content of an EPSG factory. Every
+ * object which can be formatted as <cite>Well Known Text</cite> is written, the other ones are
+ * skipped with a log message. This class can be run from the command line with the snapshot
+ * file as argument, in which case the snapshot is created from the HSQL database bundled in
+ * this module:
+ *
+ * <blockquote><pre>
+ * java org.geotools.referencing.factory.epsg.EpsgSnapshotWriter target/EPSG.snapshot
+ * </pre></blockquote>
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public class EpsgSnapshotWriter {
+    /**
+     * The types of objects written in the snapshot.
+     */
+    private static final Class<?>[] TYPES = {
+        CoordinateReferenceSystem.class, Datum.class, Ellipsoid.class, PrimeMeridian.class
+    };
+
+    private static final Logger LOGGER = Logging.getLogger(ThreadedHsqlEpsgFactory.LOGGER);
+
+    /**
+     * The factory to read the objects from.
+     */
+    private final AbstractAuthorityFactory factory;
+
+    /**
+     * Creates a writer for the content of the specified factory.
+     */
+    public EpsgSnapshotWriter(final AbstractAuthorityFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Writes all the coordinate reference systems, datums, ellipsoids and prime meridians of
+     * the factory in the specified file.
+     *
+     * @return The number of objects written.
+     */
+    @SuppressWarnings("unchecked")
+    public int write(final File file) throws FactoryException, IOException {
+        final Map<Long,String> definitions = new TreeMap<Long,String>();
+        for (final Class<?> type : TYPES) {
+            final Class<? extends IdentifiedObject> t = (Class<? extends IdentifiedObject>) type;
+            for (final String code : factory.getAuthorityCodes(t)) {
+                add(t, code, definitions, false);
+            }
+        }
+        return write(definitions, file);
+    }
+
+    /**
+     * Writes the specified objects of the factory in the specified file. Each code is searched
+     * in the tables of every type, and written once for each table it is found in.
+     *
+     * @return The number of objects written.
+     */
+    @SuppressWarnings("unchecked")
+    public int write(final Collection<String> codes, final File file)
+            throws FactoryException, IOException
+    {
+        final Map<Long,String> definitions = new TreeMap<Long,String>();
+        for (final String code : codes) {
+            for (final Class<?> type : TYPES) {
+                add((Class<? extends IdentifiedObject>) type, code, definitions, true);
+            }
+        }
+        return write(definitions, file);
+    }
+
+    /**
+     * Adds the WKT of the specified object to the given map, keyed by code then by kind, so that
+     * objects of different types sharing the same code are all kept.
+     *
+     * @param quiet {@code true} if a code missing for the given type is expected.
+     */
+    private void add(final Class<? extends IdentifiedObject> type, final String code,
+            final Map<Long,String> definitions, final boolean quiet)
+    {
+        final int value;
+        try {
+            value = Integer.parseInt(code.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.fine("Skipping non numeric code " + code);
+            return;
+        }
+        try {
+            final IdentifiedObject object = create(type, code);
+            if (object instanceof Formattable) {
+                final String wkt;
+                final int kind;
+                if (object instanceof GeodeticDatum) {
+                    // a DATUM element has no prime meridian, write it in a GEOGCS
+                    final GeodeticDatum datum = (GeodeticDatum) object;
+                    wkt = new DefaultGeographicCRS(
+                            Collections.singletonMap(IdentifiedObject.NAME_KEY, datum.getName()),
+                            datum, DefaultEllipsoidalCS.GEODETIC_2D).toWKT(Formattable.SINGLE_LINE);
+                    kind = EpsgSnapshot.GEODETIC_DATUM;
+                } else {
+                    wkt = ((Formattable) object).toWKT(Formattable.SINGLE_LINE);
+                    kind = getKind(wkt);
+                }
+                if (kind >= 0) {
+                    definitions.put(((long) value << 8) | kind, wkt);
+                    return;
+                }
+            }
+            LOGGER.fine("Skipping " + code + ", not supported in the snapshot");
+        } catch (NoSuchAuthorityCodeException e) {
+            if (!quiet) {
+                LOGGER.log(Level.FINE, "Skipping " + code + ", can't be found", e);
+            }
+        } catch (FactoryException e) {
+            LOGGER.log(Level.FINE, "Skipping " + code + ", can't be created", e);
+        } catch (UnformattableObjectException e) {
+            LOGGER.log(Level.FINE, "Skipping " + code + ", can't be formatted as WKT", e);
+        }
+    }
+
+    /**
+     * Creates the object of the specified type from the table of that type.
+     */
+    private IdentifiedObject create(final Class<? extends IdentifiedObject> type,
+            final String code) throws FactoryException
+    {
+        if (CoordinateReferenceSystem.class.equals(type)) {
+            return factory.createCoordinateReferenceSystem(code);
+        } else if (Datum.class.equals(type)) {
+            return factory.createDatum(code);
+        } else if (Ellipsoid.class.equals(type)) {
+            return factory.createEllipsoid(code);
+        } else if (PrimeMeridian.class.equals(type)) {
+            return factory.createPrimeMeridian(code);
+        }
+        throw new IllegalArgumentException(String.valueOf(type));
+    }
+
+    /**
+     * Writes the specified definitions, sorted by code, in the snapshot format.
+     */
+    private int write(final Map<Long,String> definitions, final File file)
+            throws FactoryException, IOException
+    {
+        final InternationalString edition = factory.getAuthority().getEdition();
+        final byte[] editionBytes = (edition == null) ? new byte[0] :
+                edition.toString().getBytes(EpsgSnapshot.UTF8);
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(EpsgSnapshot.MAGIC);
+            out.writeInt(EpsgSnapshot.VERSION);
+            out.writeInt(definitions.size());
+            out.writeInt(editionBytes.length);
+            out.write(editionBytes);
+            for (final Map.Entry<Long,String> entry : definitions.entrySet()) {
+                final long key = entry.getKey();
+                final byte[] bytes = entry.getValue().getBytes(EpsgSnapshot.UTF8);
+                out.writeInt((int) (key >> 8));
+                out.writeInt(data.size());
+                out.writeInt(bytes.length);
+                out.writeByte((int) (key & 0xFF));
+                data.write(bytes);
+            }
+            data.writeTo(out);
+        } finally {
+            out.close();
+        }
+        return definitions.size();
+    }
+
+    /**
+     * Returns the index of the root element of the specified WKT in {@link EpsgSnapshot#KEYWORDS},
+     * or -1 if none.
+     */
+    static int getKind(final String wkt) {
+        int end = 0;
+        while (end < wkt.length() && Character.isJavaIdentifierPart(wkt.charAt(end))) {
+            end++;
+        }
+        return Arrays.asList(EpsgSnapshot.KEYWORDS).indexOf(wkt.substring(0, end));
+    }
+
+    /**
+     * Creates a snapshot from the HSQL database bundled in this module.
+     *
+     * @param args The snapshot file to create.
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: EpsgSnapshotWriter <snapshot file>");
+            System.exit(1);
+        }
+        final File file = new File(args[0]);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        final ThreadedHsqlEpsgFactory factory = new ThreadedHsqlEpsgFactory();
+        try {
+            final int count = new EpsgSnapshotWriter(factory).write(file);
+            System.out.println("Wrote " + count + " EPSG objects to " + file
+                    + " (" + file.length() + " bytes)");
+        } finally {
+            factory.dispose();
+        }
+    }
+}
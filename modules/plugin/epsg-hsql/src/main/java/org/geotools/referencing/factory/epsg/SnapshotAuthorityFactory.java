@@ -0,0 +1,299 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.geotools.factory.Hints;
+import org.geotools.metadata.iso.citation.CitationImpl;
+import org.geotools.metadata.iso.citation.Citations;
+import org.geotools.referencing.NamedIdentifier;
+import org.geotools.referencing.factory.DirectAuthorityFactory;
+import org.geotools.referencing.factory.ReferencingFactoryContainer;
+import org.geotools.referencing.wkt.Symbols;
+import org.geotools.util.SimpleInternationalString;
+import org.geotools.util.Version;
+import org.opengis.metadata.citation.Citation;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.IdentifiedObject;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CRSAuthorityFactory;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.datum.Datum;
+import org.opengis.referencing.datum.DatumAuthorityFactory;
+import org.opengis.referencing.datum.Ellipsoid;
+import org.opengis.referencing.datum.PrimeMeridian;
+import org.opengis.util.InternationalString;
+
+
+/**
+ * An EPSG authority factory backed by an {@linkplain EpsgSnapshot EPSG snapshot}. The objects
+ * are created by parsing their <cite>Well Known Text</cite>, so this factory doesn't cache any
+ * result and should be wrapped in a buffered factory like {@link ThreadedSnapshotEpsgFactory}.
+ * Each kind of object is searched in its own code space, as the tables of the EPSG database.
+ * The snapshot holds no coordinate systems, so this factory is not a {@code CSAuthorityFactory}.
+ *
+ * @source $URL$
+ */
+final class SnapshotAuthorityFactory extends DirectAuthorityFactory
+        implements CRSAuthorityFactory, DatumAuthorityFactory
+{
+    /**
+     * The snapshot holding the definitions.
+     */
+    private final EpsgSnapshot snapshot;
+
+    /**
+     * The authority, including the EPSG database edition if known.
+     */
+    private final Citation authority;
+
+    /**
+     * A description of the snapshot location.
+     */
+    private final String description;
+
+    /**
+     * The WKT parser.
+     */
+    private final Parser parser;
+
+    /**
+     * Creates a factory reading the definitions from the specified snapshot.
+     *
+     * @param factories   The underlying factories used for objects creation.
+     * @param snapshot    The snapshot holding the definitions.
+     * @param description A description of the snapshot location.
+     */
+    SnapshotAuthorityFactory(final ReferencingFactoryContainer factories,
+                             final EpsgSnapshot snapshot, final String description)
+    {
+        super(factories, MINIMUM_PRIORITY + 10);
+        this.snapshot    = snapshot;
+        this.description = description;
+        this.parser      = new Parser();
+        // Same axis order than the EPSG database the snapshot was created from.
+        hints.put(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, Boolean.FALSE);
+        hints.put(Hints.FORCE_STANDARD_AXIS_DIRECTIONS,   Boolean.FALSE);
+        hints.put(Hints.FORCE_STANDARD_AXIS_UNITS,        Boolean.FALSE);
+        final String edition = snapshot.getEdition();
+        if (edition != null) {
+            final CitationImpl c = new CitationImpl(Citations.EPSG);
+            c.setEdition(new SimpleInternationalString(edition));
+            authority = (Citation) c.unmodifiable();
+            hints.put(Hints.VERSION, new Version(edition));
+        } else {
+            authority = Citations.EPSG;
+        }
+    }
+
+    /**
+     * Returns the organization or party responsible for definition and maintenance of the
+     * database.
+     */
+    public Citation getAuthority() {
+        return authority;
+    }
+
+    /**
+     * Returns a description of the snapshot this factory reads from.
+     */
+    @Override
+    public String getBackingStoreDescription() {
+        return description;
+    }
+
+    /**
+     * Returns the set of authority codes of the given type.
+     *
+     * @param  type The spatial reference objects type (may be {@code Object.class}).
+     * @return The set of authority codes for spatial reference objects of the given type.
+     */
+    public Set<String> getAuthorityCodes(final Class<? extends IdentifiedObject> type) {
+        return snapshot.getCodes(type);
+    }
+
+    /**
+     * Returns the Well Know Text from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     */
+    private String getWKT(final String code) throws NoSuchAuthorityCodeException {
+        ensureNonNull("code", code);
+        final String wkt = snapshot.getWKT(trimAuthority(code));
+        if (wkt == null) {
+            throw noSuchAuthorityCode(IdentifiedObject.class, code);
+        }
+        return wkt;
+    }
+
+    /**
+     * Gets a description of the object corresponding to a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     */
+    public InternationalString getDescriptionText(final String code)
+            throws NoSuchAuthorityCodeException
+    {
+        final String wkt = getWKT(code);
+        int start = wkt.indexOf('"');
+        if (start >= 0) {
+            final int end = wkt.indexOf('"', ++start);
+            if (end >= 0) {
+                return new SimpleInternationalString(wkt.substring(start, end).trim());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an arbitrary object from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public IdentifiedObject createObject(final String code)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        return create(code, IdentifiedObject.class);
+    }
+
+    /**
+     * Returns a coordinate reference system from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public CoordinateReferenceSystem createCoordinateReferenceSystem(final String code)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        return create(code, CoordinateReferenceSystem.class);
+    }
+
+    /**
+     * Returns a datum from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public Datum createDatum(final String code)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        return create(code, Datum.class);
+    }
+
+    /**
+     * Returns an ellipsoid from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public Ellipsoid createEllipsoid(final String code)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        return create(code, Ellipsoid.class);
+    }
+
+    /**
+     * Returns a prime meridian from a code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    @Override
+    public PrimeMeridian createPrimeMeridian(final String code)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        return create(code, PrimeMeridian.class);
+    }
+
+    /**
+     * Parses the object of the specified type from its code.
+     *
+     * @throws NoSuchAuthorityCodeException if the specified {@code code} was not found.
+     * @throws FactoryException if the object creation failed for some other reason.
+     */
+    private <T extends IdentifiedObject> T create(final String code, final Class<T> type)
+            throws NoSuchAuthorityCodeException, FactoryException
+    {
+        ensureNonNull("code", code);
+        final String trimmed = trimAuthority(code);
+        final int entry = snapshot.find(trimmed, type);
+        if (entry < 0) {
+            throw noSuchAuthorityCode(type, code);
+        }
+        final String wkt = snapshot.getWKT(entry);
+        final Object object;
+        try {
+            synchronized (parser) {
+                parser.code = trimmed;
+                object = parser.parseObject(wkt);
+            }
+        } catch (ParseException exception) {
+            throw new FactoryException(exception);
+        }
+        if (snapshot.getKind(entry) == EpsgSnapshot.GEODETIC_DATUM) {
+            // the datum is written with its prime meridian in a GEOGCS
+            return type.cast(((GeographicCRS) object).getDatum());
+        }
+        return type.cast(object);
+    }
+
+    /**
+     * The WKT parser for this factory. Adds the EPSG code to the parsed object if the WKT
+     * doesn't declare it.
+     */
+    private final class Parser extends org.geotools.referencing.wkt.Parser {
+        /**
+         * For cross-version compatibility.
+         */
+        private static final long serialVersionUID = 3478203944917215582L;
+
+        /**
+         * The authority code for the WKT to be parsed.
+         */
+        String code;
+
+        /**
+         * Creates the parser.
+         */
+        Parser() {
+            super(Symbols.DEFAULT, factories);
+        }
+
+        /**
+         * Add the authority code to the specified properties, if not already present.
+         */
+        @Override
+        protected Map<String,Object> alterProperties(Map<String,Object> properties) {
+            if (properties.get(IdentifiedObject.IDENTIFIERS_KEY) == null && code != null) {
+                properties = new HashMap<String,Object>(properties);
+                properties.put(IdentifiedObject.IDENTIFIERS_KEY,
+                        new NamedIdentifier(Citations.EPSG, code));
+            }
+            return super.alterProperties(properties);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.factory.Hints;
+import org.geotools.referencing.factory.AbstractAuthorityFactory;
+import org.geotools.referencing.factory.FactoryNotFoundException;
+import org.geotools.referencing.factory.ReferencingFactoryContainer;
+import org.geotools.resources.i18n.ErrorKeys;
+import org.geotools.resources.i18n.Errors;
+import org.geotools.util.logging.Logging;
+import org.opengis.referencing.FactoryException;
+
+
+/**
+ * An EPSG factory reading a precompiled snapshot of the EPSG database instead of connecting
+ * to the HSQL database. The snapshot holds the coordinate reference systems, datums, ellipsoids
+ * and prime meridians of the database as <cite>Well Known Text</cite>, with the datum shifts
+ * to WGS84 as {@code TOWGS84} elements, and is memory-mapped when opened. It avoids unpacking
+ * and opening the HSQL database, which makes the first requests much faster in short lived
+ * processes.
+ * <p>
+ * The snapshot is created from the HSQL database by {@link EpsgSnapshotWriter}, for example
+ * with the {@code epsg-snapshot} build profile of this module. It is searched in the file
+ * specified by the {@value #FILE_KEY} {@linkplain System#getProperty(String) system property},
+ * then as the {@value #FILENAME} resource of this package. If no snapshot is found, this
+ * factory is not available and the {@linkplain ThreadedHsqlEpsgFactory HSQL factory} is used
+ * instead. Otherwise this factory takes precedence over the HSQL one for coordinate reference
+ * systems and datums. It is not registered for coordinate systems and coordinate operations,
+ * since the snapshot doesn't contain them.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public class ThreadedSnapshotEpsgFactory extends ThreadedEpsgFactory {
+    /**
+     * The key for fetching the snapshot file from {@linkplain System#getProperty(String)
+     * system properties}.
+     */
+    public static final String FILE_KEY = "EPSG-snapshot.file";
+
+    /**
+     * The name of the snapshot resource bundled in this package.
+     */
+    public static final String FILENAME = "EPSG.snapshot";
+
+    /**
+     * The factories to be given to the backing store.
+     */
+    private final ReferencingFactoryContainer factories;
+
+    /**
+     * Creates a new instance of this factory.
+     */
+    public ThreadedSnapshotEpsgFactory() {
+        this(null);
+    }
+
+    /**
+     * Creates a new instance of this factory using the specified hints. The priority is set
+     * to a higher value than the {@linkplain ThreadedHsqlEpsgFactory HSQL factory}'s one, so
+     * that the snapshot is preferred when available.
+     */
+    public ThreadedSnapshotEpsgFactory(final Hints hints) {
+        super(hints, PRIORITY + 2);
+        factories = ReferencingFactoryContainer.instance(hints);
+    }
+
+    /**
+     * Returns the URL to the snapshot, or {@code null} if none.
+     */
+    protected URL getSnapshotURL() {
+        try {
+            final String property = System.getProperty(FILE_KEY);
+            if (property != null) {
+                final File file = new File(property);
+                if (file.isFile()) {
+                    return file.toURI().toURL();
+                }
+            }
+        } catch (SecurityException exception) {
+            Logging.unexpectedException(LOGGER, exception);
+        } catch (MalformedURLException exception) {
+            Logging.unexpectedException(LOGGER, exception);
+        }
+        return ThreadedSnapshotEpsgFactory.class.getResource(FILENAME);
+    }
+
+    /**
+     * Creates the backing store reading the snapshot.
+     *
+     * @throws FactoryNotFoundException if no snapshot has been found.
+     * @throws FactoryException if the snapshot can't be read.
+     */
+    @Override
+    protected AbstractAuthorityFactory createBackingStore() throws FactoryException {
+        final URL url = getSnapshotURL();
+        if (url == null) {
+            throw new FactoryNotFoundException(Errors.format(
+                    ErrorKeys.FILE_DOES_NOT_EXIST_$1, FILENAME));
+        }
+        final EpsgSnapshot snapshot;
+        try {
+            snapshot = EpsgSnapshot.open(url);
+        } catch (IOException exception) {
+            throw new FactoryException(Errors.format(ErrorKeys.CANT_READ_$1, url), exception);
+        }
+        final Logger logger = Logging.getLogger(ThreadedHsqlEpsgFactory.LOGGER);
+        if (logger.isLoggable(Level.CONFIG)) {
+            logger.config("Using the EPSG snapshot " + url + " (" + snapshot.size() + " objects)");
+        }
+        return new SnapshotAuthorityFactory(factories, snapshot, url.toString());
+    }
+
+    /**
+     * Returns {@code true}, the snapshot can always be mapped again.
+     */
+    @Override
+    protected boolean canDisposeBackingStore(final AbstractAuthorityFactory backingStore) {
+        return true;
+    }
+}
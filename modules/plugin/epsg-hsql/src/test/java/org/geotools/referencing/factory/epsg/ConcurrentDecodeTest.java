@@ -0,0 +1,129 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.TestData;
+import org.geotools.referencing.CRS;
+import org.junit.Test;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+/**
+ * Decodes EPSG codes from many threads at once, checking that each code is created only once
+ * and, in extensive mode, measuring the throughput of cached lookups.
+ *
+ * @source $URL$
+ */
+public class ConcurrentDecodeTest {
+
+    static final int THREADS = 16;
+
+    static final int ITERATIONS = 20000;
+
+    static final boolean SHOW_OUTPUT = false;
+
+    @Test
+    public void testSameCodeSameInstance() throws Exception {
+        final String code = "EPSG:26713";
+        List<Future<CoordinateReferenceSystem>> results = runAll(new DecodeFactory() {
+            public Callable<CoordinateReferenceSystem> create(final CountDownLatch start,
+                    int index) {
+                return new Callable<CoordinateReferenceSystem>() {
+                    public CoordinateReferenceSystem call() throws Exception {
+                        start.await();
+                        return CRS.decode(code);
+                    }
+                };
+            }
+        });
+        CoordinateReferenceSystem expected = CRS.decode(code);
+        for (Future<CoordinateReferenceSystem> result : results) {
+            assertSame(expected, result.get());
+        }
+    }
+
+    @Test
+    public void testThroughput() throws Exception {
+        if (!TestData.isExtensiveTest()) {
+            return;
+        }
+        final String[] codes = HsqlDialectEpsgMediatorStressTest.getCodes();
+        // warm up the caches, we want to measure the hits
+        for (String code : codes) {
+            CRS.decode("EPSG:" + code);
+        }
+        long start = System.nanoTime();
+        List<Future<CoordinateReferenceSystem>> results = runAll(new DecodeFactory() {
+            public Callable<CoordinateReferenceSystem> create(final CountDownLatch start,
+                    final int index) {
+                return new Callable<CoordinateReferenceSystem>() {
+                    public CoordinateReferenceSystem call() throws Exception {
+                        start.await();
+                        CoordinateReferenceSystem crs = null;
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            crs = CRS.decode("EPSG:" + codes[(i + index) % codes.length]);
+                        }
+                        return crs;
+                    }
+                };
+            }
+        });
+        for (Future<CoordinateReferenceSystem> result : results) {
+            assertNotNull(result.get());
+        }
+        long elapsed = System.nanoTime() - start;
+        if (SHOW_OUTPUT) {
+            long lookups = (long) THREADS * ITERATIONS;
+            System.out.println("Threads: " + THREADS);
+            System.out.println("Lookups: " + lookups);
+            System.out.println("Overall Time: " + elapsed / 1000000 + " ms");
+            System.out.println("Throughput: " + lookups * 1e9 / elapsed + " Hz");
+        }
+    }
+
+    List<Future<CoordinateReferenceSystem>> runAll(DecodeFactory factory) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<CoordinateReferenceSystem>> results =
+                    new ArrayList<Future<CoordinateReferenceSystem>>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(factory.create(start, i)));
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface DecodeFactory {
+        Callable<CoordinateReferenceSystem> create(CountDownLatch start, int index);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.referencing.factory.epsg;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+
+import javax.measure.unit.NonSI;
+
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.datum.DefaultGeodeticDatum;
+import org.geotools.referencing.datum.DefaultPrimeMeridian;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opengis.referencing.NoSuchAuthorityCodeException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.GeographicCRS;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.datum.GeodeticDatum;
+import org.opengis.referencing.datum.PrimeMeridian;
+
+/**
+ * Tests {@link ThreadedSnapshotEpsgFactory} against a snapshot of a few codes of the HSQL
+ * database.
+ *
+ * @source $URL$
+ */
+public class ThreadedSnapshotEpsgFactoryTest {
+
+    static final boolean SHOW_OUTPUT = false;
+
+    static final String[] CODES = {
+        "4326", "4267", "26713", "32632", "3857", "6326", "7030", "8901", "6807", "8903", "6318"
+    };
+
+    static ThreadedHsqlEpsgFactory hsql;
+
+    static File file;
+
+    static int count;
+
+    @BeforeClass
+    public static void createSnapshot() throws Exception {
+        hsql = new ThreadedHsqlEpsgFactory();
+        file = File.createTempFile("EPSG", ".snapshot");
+        // a code may be found in more than one table
+        count = new EpsgSnapshotWriter(hsql).write(Arrays.asList(CODES), file);
+        assertTrue(count >= CODES.length);
+    }
+
+    @AfterClass
+    public static void cleanup() throws Exception {
+        hsql.dispose();
+        file.delete();
+    }
+
+    @Test
+    public void testSameAsDatabase() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            long start = System.nanoTime();
+            CoordinateReferenceSystem crs = factory.createCoordinateReferenceSystem("EPSG:32632");
+            long elapsed = System.nanoTime() - start;
+            if (SHOW_OUTPUT) {
+                System.out.println("First decode from the snapshot: " + elapsed / 1000000 + " ms");
+            }
+            assertTrue(crs instanceof ProjectedCRS);
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createCoordinateReferenceSystem("32632"), crs));
+            assertEquals("EPSG:32632", CRS.toSRS(crs));
+            assertSame(crs, factory.createCoordinateReferenceSystem("32632"));
+
+            GeographicCRS wgs84 = factory.createGeographicCRS("4326");
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createGeographicCRS("4326"), wgs84));
+            assertEquals(CRS.AxisOrder.NORTH_EAST, CRS.getAxisOrder(wgs84));
+
+            GeodeticDatum datum = factory.createGeodeticDatum("6326");
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createGeodeticDatum("6326"), datum));
+            assertNotNull(factory.createEllipsoid("7030"));
+            assertNotNull(factory.createPrimeMeridian("8901"));
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test
+    public void testBursaWolfParameters() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            // the datum shifts to WGS84 are saved as TOWGS84 elements
+            GeographicCRS expected = hsql.createGeographicCRS("4267");
+            GeographicCRS actual = factory.createGeographicCRS("4267");
+            assertArrayEquals(
+                    ((DefaultGeodeticDatum) expected.getDatum()).getBursaWolfParameters(),
+                    ((DefaultGeodeticDatum) actual.getDatum()).getBursaWolfParameters());
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test
+    public void testPrimeMeridian() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            // Nouvelle Triangulation Francaise (Paris), the datum keeps its prime meridian
+            GeodeticDatum expected = hsql.createGeodeticDatum("6807");
+            GeodeticDatum actual = factory.createGeodeticDatum("6807");
+            assertTrue(CRS.equalsIgnoreMetadata(expected, actual));
+            PrimeMeridian paris = actual.getPrimeMeridian();
+            assertEquals("8903", paris.getIdentifiers().iterator().next().getCode());
+            assertEquals(2.33722917, ((DefaultPrimeMeridian) paris)
+                    .getGreenwichLongitude(NonSI.DEGREE_ANGLE), 1E-8);
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createPrimeMeridian("8903"),
+                    factory.createPrimeMeridian("8903")));
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test
+    public void testSameCodeDifferentTypes() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            // 6318 is both the NAD83(2011) CRS and the Kuwait National Geodetic Network datum
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createCoordinateReferenceSystem("6318"),
+                    factory.createCoordinateReferenceSystem("6318")));
+            assertTrue(CRS.equalsIgnoreMetadata(hsql.createGeodeticDatum("6318"),
+                    factory.createGeodeticDatum("6318")));
+            assertTrue(factory.getAuthorityCodes(GeographicCRS.class).contains("6318"));
+            assertTrue(factory.getAuthorityCodes(GeodeticDatum.class).contains("6318"));
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test
+    public void testCodes() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            Set<String> projected = factory.getAuthorityCodes(ProjectedCRS.class);
+            assertTrue(projected.contains("32632"));
+            assertFalse(projected.contains("4326"));
+            Set<String> crs = factory.getAuthorityCodes(CoordinateReferenceSystem.class);
+            assertTrue(crs.contains("4326"));
+            assertFalse(crs.contains("6326"));
+            assertEquals(CODES.length, factory.getAuthorityCodes(null).size());
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test(expected = NoSuchAuthorityCodeException.class)
+    public void testMissingCode() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new TestFactory();
+        try {
+            factory.createCoordinateReferenceSystem("EPSG:2154");
+        } finally {
+            factory.dispose();
+        }
+    }
+
+    @Test
+    public void testNotAvailableWithoutSnapshot() throws Exception {
+        ThreadedSnapshotEpsgFactory factory = new ThreadedSnapshotEpsgFactory() {
+            @Override
+            protected URL getSnapshotURL() {
+                return null;
+            }
+        };
+        assertFalse(factory.isAvailable());
+    }
+
+    @Test
+    public void testInMemory() throws Exception {
+        // the content of a snapshot which can't be mapped, for example in a JAR
+        EpsgSnapshot snapshot = new EpsgSnapshot(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        assertEquals(count, snapshot.size());
+        assertTrue(snapshot.getWKT("4326").startsWith("GEOGCS"));
+        assertNull(snapshot.getWKT("4327"));
+        assertNull(snapshot.getWKT("foo"));
+    }
+
+    /**
+     * Reads the snapshot created for the tests.
+     */
+    static class TestFactory extends ThreadedSnapshotEpsgFactory {
+        @Override
+        protected URL getSnapshotURL() {
+            try {
+                return file.toURI().toURL();
+            } catch (MalformedURLException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -101,6 +101,26 @@ public class GeoTiffFormat extends AbstractGridFormat implements Format {
     public static final DefaultParameterDescriptor<Boolean> RETAIN_AXES_ORDER = new DefaultParameterDescriptor<Boolean>(
                     "RETAIN_AXES_ORDER", Boolean.class, new Boolean[] {
                                     Boolean.TRUE, Boolean.FALSE }, Boolean.FALSE);
+
+    /**
+     * This {@link GeneralParameterValue} can be provided to the
+     * {@link GeoTiffWriter}s in order
+     * to read, compress and write the tiles on the given number of threads.
+     * More than one thread writes a tiled TIFF, with the tiling and the
+     * compression of the write params.
+     */
+    public static final DefaultParameterDescriptor<Integer> WRITE_THREADS = new DefaultParameterDescriptor<Integer>(
+                    "WRITE_THREADS", Integer.class, null, Integer.valueOf(1));
+
+    /**
+     * This {@link GeneralParameterValue} can be provided to the
+     * {@link GeoTiffWriter}s in order
+     * to add the given number of internal overviews, each one halving the
+     * resolution of the previous one. The overviews are built while writing
+     * the tiles of the coverage.
+     */
+    public static final DefaultParameterDescriptor<Integer> WRITE_OVERVIEWS = new DefaultParameterDescriptor<Integer>(
+                    "WRITE_OVERVIEWS", Integer.class, null, Integer.valueOf(0));
     
     /** factory for getting tiff writers. */
     final static TIFFImageWriterSpi IMAGEIO_WRITER_FACTORY = new TIFFImageWriterSpi();
@@ -130,7 +150,7 @@ public class GeoTiffFormat extends AbstractGridFormat implements Format {
 		writeParameters = new ParameterGroup(
 				new DefaultParameterDescriptorGroup(
 						mInfo,
-						new GeneralParameterDescriptor[] {RETAIN_AXES_ORDER,AbstractGridFormat.GEOTOOLS_WRITE_PARAMS,AbstractGridFormat.PROGRESS_LISTENER }));
+						new GeneralParameterDescriptor[] {RETAIN_AXES_ORDER,AbstractGridFormat.GEOTOOLS_WRITE_PARAMS,AbstractGridFormat.PROGRESS_LISTENER,WRITE_THREADS,WRITE_OVERVIEWS }));
 
 	}
 
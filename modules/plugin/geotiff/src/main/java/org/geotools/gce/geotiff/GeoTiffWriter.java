@@ -192,6 +192,8 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
                 boolean writeTfw=GeoTiffFormat.WRITE_TFW.getDefaultValue();
                 ProgressListener listener=null;
                 boolean retainAxesOrder = false;
+                int writeThreads = GeoTiffFormat.WRITE_THREADS.getDefaultValue();
+                int writeOverviews = GeoTiffFormat.WRITE_OVERVIEWS.getDefaultValue();
                 if (params != null) {
                         // /////////////////////////////////////////////////////////////////////
                         //
@@ -219,7 +221,21 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
                                         if (name.equals(GeoTiffFormat.RETAIN_AXES_ORDER.getName())) {
                                             retainAxesOrder = (Boolean) param.getValue();
                                             continue;
-                                        }                                        
+                                        }
+                                        if (name.equals(GeoTiffFormat.WRITE_THREADS.getName())) {
+                                            final Object value = param.getValue();
+                                            if (value != null) {
+                                                writeThreads = (Integer) value;
+                                            }
+                                            continue;
+                                        }
+                                        if (name.equals(GeoTiffFormat.WRITE_OVERVIEWS.getName())) {
+                                            final Object value = param.getValue();
+                                            if (value != null) {
+                                                writeOverviews = (Integer) value;
+                                            }
+                                            continue;
+                                        }
                                 }
                         }
                 }
@@ -269,7 +285,8 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
                 // write image
                 //
                 writeImage(((GridCoverage2D) gc).getRenderedImage(), this.outStream,
-                        metadata, gtParams, listener);
+                        metadata, gtParams, listener, writeThreads, writeOverviews,
+                        Double.isNaN(inNoData));
         
                 //
                 // write tfw
@@ -390,14 +407,25 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
          * Writes the provided rendered image to the provided image output stream
          * using the supplied geotiff metadata.
          * 
+         * <p>
+         * With more than one thread, or some overviews, the tiles are written by a
+         * {@link ParallelTiffWriter}, unless it doesn't support the image or the
+         * write params. If it fails, or the listener gets canceled, the incomplete
+         * file is deleted when the destination is a file.
+         * 
          * @param gtParams
          * @param listener 
+         * @param threads the number of threads reading and compressing the tiles
+         * @param overviews the number of internal overviews to add
+         * @param averageOverviews <code>true</code> to average the pixels of the overviews, 
+         *        <code>false</code> to pick them, when the coverage has a noData
          */
         private boolean writeImage(final RenderedImage image,
                         final ImageOutputStream outputStream,
                         final GeoTiffIIOMetadataEncoder geoTIFFMetadata,
                         GeoToolsWriteParams gtParams, 
-                        ProgressListener listener) throws IOException {
+                        ProgressListener listener, int threads, int overviews,
+                        boolean averageOverviews) throws IOException {
                 if (image == null || outputStream == null) {
                         throw new NullPointerException("Some input parameters are null");
                 }
@@ -412,7 +440,25 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
                 final TIFFImageWriter writer = (TIFFImageWriter) GeoTiffFormat.IMAGEIO_WRITER_FACTORY.createWriterInstance();
                 final IIOMetadata metadata = createGeoTiffIIOMetadata(writer,ImageTypeSpecifier.createFromRenderedImage(image),geoTIFFMetadata, params);
 
+                boolean incomplete = false;
                 try{
+                        if (threads > 1 || overviews > 0) {
+                            if (ParallelTiffWriter.canWrite(image, params)) {
+                                incomplete = true;
+                                new ParallelTiffWriter(image, params, threads, overviews,
+                                        averageOverviews).write(outputStream, metadata, listener);
+                                outputStream.flush();
+                                incomplete = false;
+                                return true;
+                            }
+                            // overviews won't be written
+                            final Level level = overviews > 0 ? Level.WARNING : Level.FINE;
+                            if (LOGGER.isLoggable(level)) {
+                                LOGGER.log(level, "Unable to write the tiles in parallel with the "
+                                        + "requested compression or sample model, "
+                                        + "falling back on the TIFF image writer");
+                            }
+                        }
 
                         //
                         // IMAGEWRITE
@@ -450,11 +496,34 @@ public class GeoTiffWriter extends AbstractGridCoverageWriter implements
                                 LOGGER.log(Level.WARNING,e.getLocalizedMessage(),e);
                             }     
                         }                       
+
+                        if (incomplete) {
+                            deleteIncompleteFile();
+                        }
                 }
 
                 return true;
         }
 
+        /**
+         * Deletes the destination file after a failed or canceled write, the
+         * other destinations being left as they are.
+         */
+        private void deleteIncompleteFile() {
+                File file = null;
+                if (destination instanceof File) {
+                        file = (File) destination;
+                } else if (destination instanceof URL
+                                && ((URL) destination).getProtocol().equalsIgnoreCase("file")) {
+                        file = DataUtilities.urlToFile((URL) destination);
+                }
+                if (file != null && file.exists() && !file.delete()) {
+                        if (LOGGER.isLoggable(Level.WARNING)) {
+                                LOGGER.warning("Unable to delete the incomplete file " + file);
+                        }
+                }
+        }
+
         /**
          * Creates image metadata which complies to the GeoTIFFWritingUtilities
          * specification for the given image writer, image type and
@@ -0,0 +1,1077 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.geotiff;
+
+import it.geosolutions.imageio.plugins.tiff.TIFFImageWriteParam;
+
+import java.awt.Rectangle;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+import javax.imageio.ImageWriteParam;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.geotools.coverage.grid.io.imageio.geotiff.GeoTiffConstants;
+import org.opengis.util.ProgressListener;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Writes a {@link RenderedImage} as a tiled TIFF, reading and compressing the tiles on a pool of
+ * threads and writing them to the output in order, with optional internal overviews.
+ * <p>
+ * The overviews are built in the same pass over the source image: each encoded tile is also
+ * halved, and the halved tiles are assembled in strips which are encoded as the tiles of the
+ * next level, so the source is read only once and only a strip per level is kept in memory. The
+ * image file directories are written at the end of the file, the GeoTIFF and the other metadata
+ * fields going in the first one.
+ * <p>
+ * Supports the images whose samples are bytes, shorts, ints, floats or doubles, stored in the
+ * pixel interleaved order, with no compression, LZW or Deflate. Use
+ * {@link #canWrite(RenderedImage, ImageWriteParam)} to check whether an image can be written.
+ *
+ * @source $URL$
+ */
+final class ParallelTiffWriter {
+
+    static final int COMPRESSION_NONE = 1;
+
+    static final int COMPRESSION_LZW = 5;
+
+    static final int COMPRESSION_ZLIB = 8;
+
+    static final int COMPRESSION_DEFLATE = 32946;
+
+    /** The default tile size when the tiling is not set in the write parameters. */
+    static final int DEFAULT_TILE_SIZE = 256;
+
+    private static final int TAG_NEW_SUBFILE_TYPE = 254;
+
+    private static final int TAG_IMAGE_WIDTH = 256;
+
+    private static final int TAG_IMAGE_LENGTH = 257;
+
+    private static final int TAG_BITS_PER_SAMPLE = 258;
+
+    private static final int TAG_COMPRESSION = 259;
+
+    private static final int TAG_PHOTOMETRIC_INTERPRETATION = 262;
+
+    private static final int TAG_STRIP_OFFSETS = 273;
+
+    private static final int TAG_SAMPLES_PER_PIXEL = 277;
+
+    private static final int TAG_ROWS_PER_STRIP = 278;
+
+    private static final int TAG_STRIP_BYTE_COUNTS = 279;
+
+    private static final int TAG_PLANAR_CONFIGURATION = 284;
+
+    private static final int TAG_PREDICTOR = 317;
+
+    private static final int TAG_COLOR_MAP = 320;
+
+    private static final int TAG_TILE_WIDTH = 322;
+
+    private static final int TAG_TILE_LENGTH = 323;
+
+    private static final int TAG_TILE_OFFSETS = 324;
+
+    private static final int TAG_TILE_BYTE_COUNTS = 325;
+
+    private static final int TAG_SUB_IFDS = 330;
+
+    private static final int TAG_EXTRA_SAMPLES = 338;
+
+    private static final int TAG_SAMPLE_FORMAT = 339;
+
+    private static final int TAG_JPEG_TABLES = 347;
+
+    /** The fields of the metadata which describe the layout of the image, written by us. */
+    private static final Set<Integer> LAYOUT_TAGS = new HashSet<Integer>(Arrays.asList(
+            TAG_NEW_SUBFILE_TYPE, TAG_IMAGE_WIDTH, TAG_IMAGE_LENGTH, TAG_BITS_PER_SAMPLE,
+            TAG_COMPRESSION, TAG_PHOTOMETRIC_INTERPRETATION, TAG_STRIP_OFFSETS,
+            TAG_SAMPLES_PER_PIXEL, TAG_ROWS_PER_STRIP, TAG_STRIP_BYTE_COUNTS,
+            TAG_PLANAR_CONFIGURATION, TAG_PREDICTOR, TAG_COLOR_MAP, TAG_TILE_WIDTH,
+            TAG_TILE_LENGTH, TAG_TILE_OFFSETS, TAG_TILE_BYTE_COUNTS, TAG_SUB_IFDS,
+            TAG_EXTRA_SAMPLES, TAG_SAMPLE_FORMAT, TAG_JPEG_TABLES));
+
+    private static final int TYPE_BYTE = 1;
+
+    private static final int TYPE_ASCII = 2;
+
+    private static final int TYPE_SHORT = 3;
+
+    private static final int TYPE_LONG = 4;
+
+    private static final int TYPE_RATIONAL = 5;
+
+    private static final int TYPE_SBYTE = 6;
+
+    private static final int TYPE_SSHORT = 8;
+
+    private static final int TYPE_SLONG = 9;
+
+    private static final int TYPE_SRATIONAL = 10;
+
+    private static final int TYPE_FLOAT = 11;
+
+    private static final int TYPE_DOUBLE = 12;
+
+    private static final int TYPE_UNDEFINED = 7;
+
+    private static final int TYPE_LONG8 = 16;
+
+    private static final long MAX_CLASSIC_OFFSET = 0xFFFFFFFFL;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /** A TIFF field, with its value already encoded. */
+    private static final class Field implements Comparable<Field> {
+
+        final int tag;
+
+        final int type;
+
+        final long count;
+
+        final byte[] data;
+
+        Field(int tag, int type, long count, byte[] data) {
+            this.tag = tag;
+            this.type = type;
+            this.count = count;
+            this.data = data;
+        }
+
+        public int compareTo(Field other) {
+            return tag < other.tag ? -1 : tag == other.tag ? 0 : 1;
+        }
+    }
+
+    /** A level of the image, the full resolution one or an overview. */
+    private static final class Level {
+
+        final int index;
+
+        final int width;
+
+        final int height;
+
+        final int tilesAcross;
+
+        final int tilesDown;
+
+        final long[] offsets;
+
+        final long[] byteCounts;
+
+        /** The halved tiles of the previous level, waiting to form a full row of tiles. */
+        WritableRaster strip;
+
+        int stripRow;
+
+        int stripFilled;
+
+        Level(int index, int width, int height, int tileWidth, int tileHeight) {
+            this.index = index;
+            this.width = width;
+            this.height = height;
+            this.tilesAcross = (width + tileWidth - 1) / tileWidth;
+            this.tilesDown = (height + tileHeight - 1) / tileHeight;
+            this.offsets = new long[tilesAcross * tilesDown];
+            this.byteCounts = new long[tilesAcross * tilesDown];
+        }
+    }
+
+    /** An encoded tile, and its halved data when the next level is needed. */
+    private static final class EncodedTile {
+
+        final Level level;
+
+        final int tileX;
+
+        final int tileY;
+
+        final byte[] data;
+
+        final Raster reduced;
+
+        EncodedTile(Level level, int tileX, int tileY, byte[] data, Raster reduced) {
+            this.level = level;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.data = data;
+            this.reduced = reduced;
+        }
+    }
+
+    private final RenderedImage image;
+
+    private final Rectangle bounds;
+
+    private final int tileWidth;
+
+    private final int tileHeight;
+
+    private final int compression;
+
+    private final int deflateLevel;
+
+    private final boolean bigTiff;
+
+    private final int threads;
+
+    private final boolean averageOverviews;
+
+    private final int dataType;
+
+    private final int bands;
+
+    private final int sampleBytes;
+
+    private final Level[] levels;
+
+    private ImageOutputStream output;
+
+    private long base;
+
+    private final LinkedList<Future<EncodedTile>> pending = new LinkedList<Future<EncodedTile>>();
+
+    private ExecutorService executor;
+
+    /**
+     * Creates a writer for the given image.
+     *
+     * @param image the image to write, {@link #canWrite(RenderedImage, ImageWriteParam)} must
+     *        return {@code true} for it
+     * @param params the tiling, compression and source region parameters
+     * @param threads the number of threads reading and compressing the tiles
+     * @param overviews the number of overviews to add, each one halving the resolution of the
+     *        previous one
+     * @param averageOverviews {@code true} to compute the overview pixels as the average of the
+     *        pixels they cover, {@code false} to pick the top left one, as needed for palette
+     *        images or images with a no data value
+     */
+    ParallelTiffWriter(RenderedImage image, ImageWriteParam params, int threads, int overviews,
+            boolean averageOverviews) {
+        this.image = image;
+        final SampleModel sm = image.getSampleModel();
+        this.dataType = sm.getDataType();
+        this.bands = sm.getNumBands();
+        this.sampleBytes = DataBuffer.getDataTypeSize(dataType) / 8;
+        this.threads = Math.max(1, threads);
+        this.averageOverviews = averageOverviews
+                && !(image.getColorModel() instanceof IndexColorModel);
+
+        Rectangle region = new Rectangle(image.getMinX(), image.getMinY(), image.getWidth(),
+                image.getHeight());
+        if (params != null && params.getSourceRegion() != null) {
+            region = region.intersection(params.getSourceRegion());
+        }
+        if (region.isEmpty()) {
+            throw new IllegalArgumentException("The source region is empty: " + region);
+        }
+        this.bounds = region;
+
+        // TIFF tiles must be a multiple of 16 pixels
+        int tw = DEFAULT_TILE_SIZE, th = DEFAULT_TILE_SIZE;
+        if (params != null && params.canWriteTiles()
+                && params.getTilingMode() == ImageWriteParam.MODE_EXPLICIT) {
+            tw = params.getTileWidth() > 0 ? params.getTileWidth() : tw;
+            th = params.getTileHeight() > 0 ? params.getTileHeight() : th;
+        }
+        this.tileWidth = (tw + 15) / 16 * 16;
+        this.tileHeight = (th + 15) / 16 * 16;
+
+        this.compression = getCompression(params);
+        int level = Deflater.DEFAULT_COMPRESSION;
+        if (params != null && params.getCompressionMode() == ImageWriteParam.MODE_EXPLICIT
+                && (compression == COMPRESSION_ZLIB || compression == COMPRESSION_DEFLATE)) {
+            level = (int) (1 + 8 * params.getCompressionQuality());
+        }
+        this.deflateLevel = level;
+
+        final List<Level> levels = new ArrayList<Level>();
+        int width = bounds.width, height = bounds.height;
+        levels.add(new Level(0, width, height, tileWidth, tileHeight));
+        while (levels.size() <= overviews && (width > 1 || height > 1)) {
+            width = (width + 1) / 2;
+            height = (height + 1) / 2;
+            levels.add(new Level(levels.size(), width, height, tileWidth, tileHeight));
+        }
+        this.levels = levels.toArray(new Level[levels.size()]);
+
+        // without knowing how well the tiles compress, switch to BigTIFF as soon as the
+        // uncompressed data, or the worst LZW expansion of it, could reach 4GB
+        long size = 0;
+        for (Level l : this.levels) {
+            size += (long) l.tilesAcross * l.tilesDown * tileWidth * tileHeight * bands
+                    * sampleBytes;
+        }
+        final boolean force = params instanceof TIFFImageWriteParam
+                && ((TIFFImageWriteParam) params).isForceToBigTIFF();
+        this.bigTiff = force || size / 2 * 3 >= MAX_CLASSIC_OFFSET;
+    }
+
+    /**
+     * Returns the TIFF compression code for the given write parameters, or -1 if the compression
+     * is not supported.
+     */
+    static int getCompression(ImageWriteParam params) {
+        if (params == null || !params.canWriteCompressed()
+                || params.getCompressionMode() != ImageWriteParam.MODE_EXPLICIT) {
+            return COMPRESSION_NONE;
+        }
+        final String type = params.getCompressionType();
+        if (type == null) {
+            return COMPRESSION_NONE;
+        } else if ("LZW".equalsIgnoreCase(type)) {
+            return COMPRESSION_LZW;
+        } else if ("ZLib".equalsIgnoreCase(type)) {
+            return COMPRESSION_ZLIB;
+        } else if ("Deflate".equalsIgnoreCase(type)) {
+            return COMPRESSION_DEFLATE;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks whether the given image can be written with the given parameters.
+     */
+    static boolean canWrite(RenderedImage image, ImageWriteParam params) {
+        if (params != null) {
+            if (getCompression(params) < 0 || params.getSourceBands() != null
+                    || params.getSourceXSubsampling() != 1
+                    || params.getSourceYSubsampling() != 1) {
+                return false;
+            }
+        }
+        final SampleModel sm = image.getSampleModel();
+        final int type = sm.getDataType();
+        if (type != DataBuffer.TYPE_BYTE && type != DataBuffer.TYPE_USHORT
+                && type != DataBuffer.TYPE_SHORT && type != DataBuffer.TYPE_INT
+                && type != DataBuffer.TYPE_FLOAT && type != DataBuffer.TYPE_DOUBLE) {
+            return false;
+        }
+        // no packed samples
+        for (int size : sm.getSampleSize()) {
+            if (size != DataBuffer.getDataTypeSize(type)) {
+                return false;
+            }
+        }
+        return image.getWidth() > 0 && image.getHeight() > 0;
+    }
+
+    /**
+     * Writes the image and the given metadata to the output stream, which is left open.
+     *
+     * @param output the stream to write to
+     * @param metadata the TIFF image metadata holding the GeoTIFF fields, or {@code null}
+     * @param listener the progress listener, or {@code null}. The write stops when it gets
+     *        canceled, leaving an incomplete file the caller has to discard.
+     * @throws InterruptedIOException if the listener got canceled, or the thread interrupted,
+     *         before the image was fully written
+     */
+    void write(ImageOutputStream output, IIOMetadata metadata, ProgressListener listener)
+            throws IOException {
+        this.output = output;
+        this.base = output.getStreamPosition();
+        output.setByteOrder(ByteOrder.BIG_ENDIAN);
+        // header, the offset of the first directory being filled at the end
+        output.writeShort(0x4D4D);
+        if (bigTiff) {
+            output.writeShort(43);
+            output.writeShort(8);
+            output.writeShort(0);
+            output.writeLong(0);
+        } else {
+            output.writeShort(42);
+            output.writeInt(0);
+        }
+
+        int total = 0;
+        for (Level level : levels) {
+            total += level.tilesAcross * level.tilesDown;
+        }
+        int written = 0;
+        float reported = 0;
+        if (listener != null) {
+            listener.started();
+        }
+        executor = Executors.newFixedThreadPool(threads);
+        try {
+            final Level first = levels[0];
+            final int maxPending = threads * 4;
+            for (int ty = 0; ty < first.tilesDown; ty++) {
+                for (int tx = 0; tx < first.tilesAcross; tx++) {
+                    checkCanceled(listener);
+                    pending.add(executor.submit(new TileTask(first, tx, ty, null)));
+                    while (pending.size() >= maxPending) {
+                        write(pending.removeFirst().get());
+                        written++;
+                    }
+                    if (listener != null && 100f * written / total - reported >= 1) {
+                        reported = 100f * written / total;
+                        listener.progress(reported);
+                    }
+                }
+            }
+            // the remaining tiles, and the overviews they trigger
+            while (!pending.isEmpty()) {
+                checkCanceled(listener);
+                write(pending.removeFirst().get());
+                written++;
+                if (listener != null && 100f * written / total - reported >= 1) {
+                    reported = 100f * written / total;
+                    listener.progress(reported);
+                }
+            }
+            writeDirectories(metadata);
+            if (listener != null) {
+                listener.complete();
+            }
+        } catch (InterruptedException e) {
+            final InterruptedIOException ie = new InterruptedIOException(
+                    "Interrupted while writing the tiles");
+            ie.initCause(e);
+            throw ie;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to encode a tile", cause);
+        } finally {
+            for (Future<EncodedTile> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Throws an {@link InterruptedIOException} if the listener got canceled.
+     */
+    private static void checkCanceled(ProgressListener listener) throws InterruptedIOException {
+        if (listener != null && listener.isCanceled()) {
+            throw new InterruptedIOException("The write has been canceled");
+        }
+    }
+
+    /**
+     * Writes an encoded tile and feeds its halved data to the next level.
+     */
+    private void write(EncodedTile tile) throws IOException {
+        final Level level = tile.level;
+        final int index = tile.tileY * level.tilesAcross + tile.tileX;
+        level.offsets[index] = output.getStreamPosition() - base;
+        level.byteCounts[index] = tile.data.length;
+        output.write(tile.data);
+
+        if (tile.reduced != null) {
+            final Level next = levels[level.index + 1];
+            if (next.strip == null) {
+                final int height = Math.min(tileHeight, next.height - next.stripRow * tileHeight);
+                next.strip = tile.reduced.createCompatibleWritableRaster(next.width, height);
+            }
+            next.strip.setRect(tile.tileX * tileWidth / 2, tile.tileY % 2 * tileHeight / 2,
+                    tile.reduced);
+            if (tile.tileX == level.tilesAcross - 1) {
+                next.stripFilled += tile.reduced.getHeight();
+                if (next.stripFilled == next.strip.getHeight()) {
+                    // a full row of tiles of the next level
+                    for (int tx = 0; tx < next.tilesAcross; tx++) {
+                        final int x = tx * tileWidth;
+                        final Raster child = next.strip.createChild(x, 0,
+                                Math.min(tileWidth, next.width - x), next.strip.getHeight(), x,
+                                0, null);
+                        pending.add(executor.submit(new TileTask(next, tx, next.stripRow, child)));
+                    }
+                    next.strip = null;
+                    next.stripRow++;
+                    next.stripFilled = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads, or takes from the strip of its level, a tile, then encodes and halves it.
+     */
+    private final class TileTask implements Callable<EncodedTile> {
+
+        private final Level level;
+
+        private final int tileX;
+
+        private final int tileY;
+
+        private final Raster source;
+
+        TileTask(Level level, int tileX, int tileY, Raster source) {
+            this.level = level;
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.source = source;
+        }
+
+        public EncodedTile call() throws Exception {
+            Raster raster = source;
+            if (raster == null) {
+                final int x = tileX * tileWidth;
+                final int y = tileY * tileHeight;
+                raster = image.getData(new Rectangle(bounds.x + x, bounds.y + y, Math.min(
+                        tileWidth, bounds.width - x), Math.min(tileHeight, bounds.height - y)));
+            }
+            final byte[] data = compress(encode(raster));
+            final Raster reduced = level.index < levels.length - 1 ? halve(raster) : null;
+            return new EncodedTile(level, tileX, tileY, data, reduced);
+        }
+    }
+
+    /**
+     * Returns the samples of a tile in the TIFF order, padding it to the full tile size.
+     */
+    private byte[] encode(Raster raster) {
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final int minX = raster.getMinX();
+        final int minY = raster.getMinY();
+        final byte[] bytes = new byte[tileWidth * tileHeight * bands * sampleBytes];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final int rowLength = width * bands;
+        if (dataType == DataBuffer.TYPE_FLOAT || dataType == DataBuffer.TYPE_DOUBLE) {
+            final double[] row = new double[rowLength];
+            for (int y = 0; y < height; y++) {
+                raster.getPixels(minX, minY + y, width, 1, row);
+                buffer.position(y * tileWidth * bands * sampleBytes);
+                if (dataType == DataBuffer.TYPE_FLOAT) {
+                    for (int i = 0; i < rowLength; i++) {
+                        buffer.putFloat((float) row[i]);
+                    }
+                } else {
+                    for (int i = 0; i < rowLength; i++) {
+                        buffer.putDouble(row[i]);
+                    }
+                }
+            }
+        } else {
+            final int[] row = new int[rowLength];
+            for (int y = 0; y < height; y++) {
+                raster.getPixels(minX, minY + y, width, 1, row);
+                buffer.position(y * tileWidth * bands * sampleBytes);
+                switch (dataType) {
+                case DataBuffer.TYPE_BYTE:
+                    for (int i = 0; i < rowLength; i++) {
+                        buffer.put((byte) row[i]);
+                    }
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                case DataBuffer.TYPE_SHORT:
+                    for (int i = 0; i < rowLength; i++) {
+                        buffer.putShort((short) row[i]);
+                    }
+                    break;
+                default:
+                    for (int i = 0; i < rowLength; i++) {
+                        buffer.putInt(row[i]);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private byte[] compress(byte[] data) {
+        switch (compression) {
+        case COMPRESSION_LZW:
+            return lzw(data);
+        case COMPRESSION_ZLIB:
+        case COMPRESSION_DEFLATE:
+            final Deflater deflater = new Deflater(deflateLevel);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+                final byte[] chunk = new byte[8192];
+                while (!deflater.finished()) {
+                    out.write(chunk, 0, deflater.deflate(chunk));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        default:
+            return data;
+        }
+    }
+
+    /**
+     * Compresses with the TIFF flavor of LZW: codes written most significant bit first, growing
+     * from 9 to 12 bits one code early.
+     */
+    static byte[] lzw(byte[] data) {
+        final int clear = 256, end = 257;
+        // open addressing table of (prefix code << 8 | byte) + 1 to code
+        final int hashSize = 9973;
+        final int[] keys = new int[hashSize];
+        final int[] codes = new int[hashSize];
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+        int bits = 9;
+        int nextCode = 258;
+        long accumulator = 0;
+        int pending = 0;
+
+        // the clear code, then the codes of the longest known strings
+        accumulator = clear;
+        pending = bits;
+        if (data.length == 0) {
+            accumulator = accumulator << bits | end;
+            pending += bits;
+            return flush(out, accumulator, pending);
+        }
+        int prefix = data[0] & 0xFF;
+        for (int i = 1; i < data.length; i++) {
+            final int c = data[i] & 0xFF;
+            final int key = (prefix << 8 | c) + 1;
+            int slot = key % hashSize;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = slot + 1 == hashSize ? 0 : slot + 1;
+            }
+            if (keys[slot] == key) {
+                prefix = codes[slot];
+                continue;
+            }
+            accumulator = accumulator << bits | prefix;
+            pending += bits;
+            while (pending >= 8) {
+                out.write((int) (accumulator >>> (pending - 8)));
+                pending -= 8;
+            }
+            keys[slot] = key;
+            codes[slot] = nextCode++;
+            if (nextCode == 4094) {
+                accumulator = accumulator << bits | clear;
+                pending += bits;
+                Arrays.fill(keys, 0);
+                nextCode = 258;
+                bits = 9;
+            } else if (nextCode > (1 << bits) - 1) {
+                bits++;
+            }
+            prefix = c;
+        }
+        accumulator = accumulator << bits | prefix;
+        pending += bits;
+        // the end code may need one more bit
+        if (nextCode + 1 > (1 << bits) - 1 && bits < 12) {
+            bits++;
+        }
+        accumulator = accumulator << bits | end;
+        pending += bits;
+        return flush(out, accumulator, pending);
+    }
+
+    private static byte[] flush(ByteArrayOutputStream out, long accumulator, int pending) {
+        while (pending >= 8) {
+            out.write((int) (accumulator >>> (pending - 8)));
+            pending -= 8;
+        }
+        if (pending > 0) {
+            out.write((int) (accumulator << (8 - pending)));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Halves the resolution of a tile, rounding its size up.
+     */
+    private Raster halve(Raster raster) {
+        final int width = raster.getWidth();
+        final int height = raster.getHeight();
+        final int minX = raster.getMinX();
+        final int minY = raster.getMinY();
+        final int halfWidth = (width + 1) / 2;
+        final int halfHeight = (height + 1) / 2;
+        final boolean integral = dataType != DataBuffer.TYPE_FLOAT
+                && dataType != DataBuffer.TYPE_DOUBLE;
+        final WritableRaster reduced = raster.createCompatibleWritableRaster(halfWidth,
+                halfHeight);
+        final double[] upper = new double[width * bands];
+        final double[] lower = new double[width * bands];
+        final double[] row = new double[halfWidth * bands];
+        for (int y = 0; y < halfHeight; y++) {
+            raster.getPixels(minX, minY + 2 * y, width, 1, upper);
+            final boolean twoRows = 2 * y + 1 < height;
+            if (averageOverviews && twoRows) {
+                raster.getPixels(minX, minY + 2 * y + 1, width, 1, lower);
+            }
+            for (int x = 0; x < halfWidth; x++) {
+                final boolean twoColumns = 2 * x + 1 < width;
+                for (int b = 0; b < bands; b++) {
+                    final int i = 2 * x * bands + b;
+                    if (!averageOverviews) {
+                        row[x * bands + b] = upper[i];
+                        continue;
+                    }
+                    // NaN samples are left out of the average
+                    double sum = 0;
+                    int count = 0;
+                    for (int k = 0; k < 4; k++) {
+                        if ((k & 1) == 1 && !twoColumns || k > 1 && !twoRows) {
+                            continue;
+                        }
+                        final double value = (k > 1 ? lower : upper)[i + (k & 1) * bands];
+                        if (!Double.isNaN(value)) {
+                            sum += value;
+                            count++;
+                        }
+                    }
+                    final double average = count == 0 ? Double.NaN : sum / count;
+                    row[x * bands + b] = integral ? Math.floor(average + 0.5) : average;
+                }
+            }
+            reduced.setPixels(0, y, halfWidth, 1, row);
+        }
+        return reduced;
+    }
+
+    /**
+     * Writes the image file directories after the tiles, and points the header to the first
+     * one.
+     */
+    private void writeDirectories(IIOMetadata metadata) throws IOException {
+        if (((output.getStreamPosition() - base) & 1) != 0) {
+            // directories start on a word boundary
+            output.write(0);
+        }
+        final List<List<Field>> directories = new ArrayList<List<Field>>();
+        final List<Field> metadataFields = getMetadataFields(metadata);
+        for (Level level : levels) {
+            final List<Field> fields = getLayoutFields(level);
+            if (level.index == 0) {
+                fields.addAll(metadataFields);
+            }
+            Collections.sort(fields);
+            directories.add(fields);
+        }
+
+        final long first = output.getStreamPosition() - base;
+        long position = first;
+        for (int i = 0; i < directories.size(); i++) {
+            final List<Field> fields = directories.get(i);
+            final long next = i < directories.size() - 1 ? position
+                    + getDirectoryLength(fields) : 0;
+            if (!bigTiff && next > MAX_CLASSIC_OFFSET) {
+                throw new IOException("The image is too large for a classic TIFF, "
+                        + "BigTIFF should be forced");
+            }
+            writeDirectory(fields, position, next);
+            position = next;
+        }
+        final long endPosition = output.getStreamPosition();
+        if (!bigTiff && endPosition - base > MAX_CLASSIC_OFFSET) {
+            throw new IOException("The image is too large for a classic TIFF, "
+                    + "BigTIFF should be forced");
+        }
+        if (bigTiff) {
+            output.seek(base + 8);
+            output.writeLong(first);
+        } else {
+            output.seek(base + 4);
+            output.writeInt((int) first);
+        }
+        output.seek(endPosition);
+    }
+
+    private long getDirectoryLength(List<Field> fields) {
+        final int inline = bigTiff ? 8 : 4;
+        long length = bigTiff ? 16 + 20 * fields.size() : 6 + 12 * fields.size();
+        for (Field field : fields) {
+            if (field.data.length > inline) {
+                length += (field.data.length + 1) & ~1;
+            }
+        }
+        return length;
+    }
+
+    private void writeDirectory(List<Field> fields, long position, long next) throws IOException {
+        final int inline = bigTiff ? 8 : 4;
+        long values = position + (bigTiff ? 16 + 20 * fields.size() : 6 + 12 * fields.size());
+        if (bigTiff) {
+            output.writeLong(fields.size());
+        } else {
+            output.writeShort(fields.size());
+        }
+        for (Field field : fields) {
+            output.writeShort(field.tag);
+            output.writeShort(field.type);
+            if (bigTiff) {
+                output.writeLong(field.count);
+            } else {
+                output.writeInt((int) field.count);
+            }
+            if (field.data.length <= inline) {
+                output.write(field.data);
+                output.write(new byte[inline - field.data.length]);
+            } else {
+                if (bigTiff) {
+                    output.writeLong(values);
+                } else {
+                    output.writeInt((int) values);
+                }
+                values += (field.data.length + 1) & ~1;
+            }
+        }
+        if (bigTiff) {
+            output.writeLong(next);
+        } else {
+            output.writeInt((int) next);
+        }
+        for (Field field : fields) {
+            if (field.data.length > inline) {
+                output.write(field.data);
+                if ((field.data.length & 1) != 0) {
+                    output.write(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the fields describing the layout of the given level.
+     */
+    private List<Field> getLayoutFields(Level level) {
+        final List<Field> fields = new ArrayList<Field>();
+        fields.add(longs(TAG_NEW_SUBFILE_TYPE, level.index == 0 ? 0 : 1));
+        fields.add(longs(TAG_IMAGE_WIDTH, level.width));
+        fields.add(longs(TAG_IMAGE_LENGTH, level.height));
+        final int[] bitsPerSample = new int[bands];
+        final int[] sampleFormat = new int[bands];
+        Arrays.fill(bitsPerSample, sampleBytes * 8);
+        Arrays.fill(sampleFormat, dataType == DataBuffer.TYPE_FLOAT
+                || dataType == DataBuffer.TYPE_DOUBLE ? 3 : dataType == DataBuffer.TYPE_SHORT
+                || dataType == DataBuffer.TYPE_INT ? 2 : 1);
+        fields.add(shorts(TAG_BITS_PER_SAMPLE, bitsPerSample));
+        fields.add(shorts(TAG_COMPRESSION, compression));
+        fields.add(shorts(TAG_SAMPLES_PER_PIXEL, bands));
+        fields.add(shorts(TAG_PLANAR_CONFIGURATION, 1));
+        fields.add(shorts(TAG_SAMPLE_FORMAT, sampleFormat));
+        fields.add(longs(TAG_TILE_WIDTH, tileWidth));
+        fields.add(longs(TAG_TILE_LENGTH, tileHeight));
+        fields.add(offsets(TAG_TILE_OFFSETS, level.offsets));
+        fields.add(offsets(TAG_TILE_BYTE_COUNTS, level.byteCounts));
+
+        // the color interpretation
+        final ColorModel cm = image.getColorModel();
+        int colorBands = 1;
+        if (cm instanceof IndexColorModel && bands == 1
+                && (dataType == DataBuffer.TYPE_BYTE || dataType == DataBuffer.TYPE_USHORT)) {
+            final IndexColorModel icm = (IndexColorModel) cm;
+            final int size = 1 << (sampleBytes * 8);
+            final int[] colorMap = new int[3 * size];
+            for (int i = 0; i < Math.min(size, icm.getMapSize()); i++) {
+                colorMap[i] = icm.getRed(i) * 257;
+                colorMap[size + i] = icm.getGreen(i) * 257;
+                colorMap[2 * size + i] = icm.getBlue(i) * 257;
+            }
+            fields.add(shorts(TAG_PHOTOMETRIC_INTERPRETATION, 3));
+            fields.add(shorts(TAG_COLOR_MAP, colorMap));
+        } else if (cm != null && cm.getColorSpace().getType() == ColorSpace.TYPE_RGB
+                && cm.getNumColorComponents() == 3 && bands >= 3) {
+            fields.add(shorts(TAG_PHOTOMETRIC_INTERPRETATION, 2));
+            colorBands = 3;
+        } else {
+            fields.add(shorts(TAG_PHOTOMETRIC_INTERPRETATION, 1));
+        }
+        if (bands > colorBands) {
+            final int[] extraSamples = new int[bands - colorBands];
+            if (cm != null && cm.hasAlpha() && cm.getNumComponents() == bands) {
+                // associated or unassociated alpha
+                extraSamples[0] = cm.isAlphaPremultiplied() ? 1 : 2;
+            }
+            fields.add(shorts(TAG_EXTRA_SAMPLES, extraSamples));
+        }
+        return fields;
+    }
+
+    /**
+     * Returns the fields of the metadata which don't describe the layout, the GeoTIFF ones in
+     * particular.
+     */
+    private static List<Field> getMetadataFields(IIOMetadata metadata) {
+        final List<Field> fields = new ArrayList<Field>();
+        if (metadata == null) {
+            return fields;
+        }
+        final Node root = metadata.getAsTree(GeoTiffConstants.GEOTIFF_IIO_METADATA_FORMAT_NAME);
+        for (Node ifd = root.getFirstChild(); ifd != null; ifd = ifd.getNextSibling()) {
+            if (!GeoTiffConstants.GEOTIFF_IFD_TAG.equals(ifd.getNodeName())) {
+                continue;
+            }
+            for (Node node = ifd.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (!GeoTiffConstants.GEOTIFF_FIELD_TAG.equals(node.getNodeName())) {
+                    continue;
+                }
+                final Element element = (Element) node;
+                final int tag = Integer.parseInt(element
+                        .getAttribute(GeoTiffConstants.NUMBER_ATTRIBUTE));
+                if (!LAYOUT_TAGS.contains(tag) && element.getFirstChild() instanceof Element) {
+                    final Field field = parseField(tag, (Element) element.getFirstChild());
+                    if (field != null) {
+                        fields.add(field);
+                    }
+                }
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Encodes a field from the native TIFF metadata format, or returns {@code null} if its type
+     * is unknown.
+     */
+    private static Field parseField(int tag, Element values) {
+        final String name = values.getNodeName();
+        final List<String> items = new ArrayList<String>();
+        if ("TIFFUndefined".equals(name)) {
+            final String value = values.getAttribute(GeoTiffConstants.VALUE_ATTRIBUTE);
+            if (value.length() > 0) {
+                items.addAll(Arrays.asList(value.split(",")));
+            }
+        } else {
+            for (Node n = values.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n instanceof Element) {
+                    items.add(((Element) n).getAttribute(GeoTiffConstants.VALUE_ATTRIBUTE));
+                }
+            }
+        }
+        final int count = items.size();
+        if ("TIFFAsciis".equals(name)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (String item : items) {
+                final byte[] bytes = item.getBytes(ASCII);
+                out.write(bytes, 0, bytes.length);
+                out.write(0);
+            }
+            final byte[] data = out.toByteArray();
+            return new Field(tag, TYPE_ASCII, data.length, data);
+        } else if ("TIFFBytes".equals(name) || "TIFFSBytes".equals(name)
+                || "TIFFUndefined".equals(name)) {
+            final byte[] data = new byte[count];
+            for (int i = 0; i < count; i++) {
+                data[i] = (byte) Integer.parseInt(items.get(i).trim());
+            }
+            final int type = "TIFFBytes".equals(name) ? TYPE_BYTE
+                    : "TIFFSBytes".equals(name) ? TYPE_SBYTE : TYPE_UNDEFINED;
+            return new Field(tag, type, count, data);
+        } else if ("TIFFShorts".equals(name) || "TIFFSShorts".equals(name)) {
+            final ByteBuffer data = ByteBuffer.allocate(count * 2);
+            for (String item : items) {
+                data.putShort((short) Integer.parseInt(item));
+            }
+            return new Field(tag, "TIFFShorts".equals(name) ? TYPE_SHORT : TYPE_SSHORT, count,
+                    data.array());
+        } else if ("TIFFLongs".equals(name) || "TIFFSLongs".equals(name)) {
+            final ByteBuffer data = ByteBuffer.allocate(count * 4);
+            for (String item : items) {
+                data.putInt((int) Long.parseLong(item));
+            }
+            return new Field(tag, "TIFFLongs".equals(name) ? TYPE_LONG : TYPE_SLONG, count,
+                    data.array());
+        } else if ("TIFFRationals".equals(name) || "TIFFSRationals".equals(name)) {
+            final ByteBuffer data = ByteBuffer.allocate(count * 8);
+            for (String item : items) {
+                final int slash = item.indexOf('/');
+                data.putInt((int) Long.parseLong(item.substring(0, slash)));
+                data.putInt((int) Long.parseLong(item.substring(slash + 1)));
+            }
+            return new Field(tag, "TIFFRationals".equals(name) ? TYPE_RATIONAL : TYPE_SRATIONAL,
+                    count, data.array());
+        } else if ("TIFFFloats".equals(name)) {
+            final ByteBuffer data = ByteBuffer.allocate(count * 4);
+            for (String item : items) {
+                data.putFloat(Float.parseFloat(item));
+            }
+            return new Field(tag, TYPE_FLOAT, count, data.array());
+        } else if (GeoTiffConstants.GEOTIFF_DOUBLES_TAG.equals(name)) {
+            final ByteBuffer data = ByteBuffer.allocate(count * 8);
+            for (String item : items) {
+                data.putDouble(Double.parseDouble(item));
+            }
+            return new Field(tag, TYPE_DOUBLE, count, data.array());
+        }
+        return null;
+    }
+
+    private static Field shorts(int tag, int... values) {
+        final ByteBuffer data = ByteBuffer.allocate(values.length * 2);
+        for (int value : values) {
+            data.putShort((short) value);
+        }
+        return new Field(tag, TYPE_SHORT, values.length, data.array());
+    }
+
+    private static Field longs(int tag, long value) {
+        return new Field(tag, TYPE_LONG, 1, ByteBuffer.allocate(4).putInt((int) value).array());
+    }
+
+    private Field offsets(int tag, long[] values) {
+        final ByteBuffer data = ByteBuffer.allocate(values.length * (bigTiff ? 8 : 4));
+        for (long value : values) {
+            if (bigTiff) {
+                data.putLong(value);
+            } else {
+                data.putInt((int) value);
+            }
+        }
+        return new Field(tag, bigTiff ? TYPE_LONG8 : TYPE_LONG, values.length, data.array());
+    }
+}
@@ -17,16 +17,24 @@
 package org.geotools.gce.geotiff;
 
 import it.geosolutions.imageio.plugins.tiff.BaselineTIFFTagSet;
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
 
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.logging.Logger;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.media.jai.PlanarImage;
 
 import junit.framework.Assert;
@@ -53,6 +61,7 @@ import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.geotools.test.TestData;
+import org.geotools.util.DefaultProgressListener;
 import org.junit.Test;
 import org.opengis.coverage.grid.GridCoverageReader;
 import org.opengis.coverage.grid.GridCoverageWriter;
@@ -628,6 +637,159 @@ public class GeoTiffWriterTest extends Assert {
        
     }
 
+    @Test
+    public void testWriteParallelWithOverviews() throws Exception {
+        final File input = TestData.file(GeoTiffReaderTest.class, "geo.tiff");
+        GeoTiffReader reader = new GeoTiffReader(input);
+        GridCoverage2D coverage = (GridCoverage2D) reader.read(null);
+        assertNotNull(coverage);
+        reader.dispose();
+
+        for (String compression : new String[] { "LZW", "Deflate" }) {
+            final File output = new File(TestData.file(GeoTiffReaderTest.class, "."),
+                    "parallel" + compression + ".tif");
+            GeoTiffWriter writer = new GeoTiffWriter(output);
+            GeoTiffWriteParams params = new GeoTiffWriteParams();
+            params.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
+            params.setCompressionType(compression);
+            params.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
+            params.setTiling(32, 32);
+            ParameterValue<GeoToolsWriteParams> value = GeoTiffFormat.GEOTOOLS_WRITE_PARAMS.createValue();
+            value.setValue(params);
+            ParameterValue<Integer> threads = GeoTiffFormat.WRITE_THREADS.createValue();
+            threads.setValue(4);
+            ParameterValue<Integer> overviews = GeoTiffFormat.WRITE_OVERVIEWS.createValue();
+            overviews.setValue(2);
+            writer.write(coverage, new GeneralParameterValue[] { value, threads, overviews });
+            writer.dispose();
+
+            // same georeferencing, same pixels, tiled with the overviews
+            reader = new GeoTiffReader(output);
+            assertEquals(2, reader.getNumOverviews());
+            GridCoverage2D written = (GridCoverage2D) reader.read(null);
+            assertTrue(CRS.equalsIgnoreMetadata(coverage.getCoordinateReferenceSystem(),
+                    written.getCoordinateReferenceSystem()));
+            assertEquals(coverage.getEnvelope2D(), written.getEnvelope2D());
+            RenderedImage expected = coverage.getRenderedImage();
+            RenderedImage actual = written.getRenderedImage();
+            assertEquals(32, actual.getTileWidth());
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getHeight(), actual.getHeight());
+            int[] expectedPixels = expected.getData().getPixels(0, 0, expected.getWidth(),
+                    expected.getHeight(), (int[]) null);
+            int[] actualPixels = actual.getData().getPixels(0, 0, actual.getWidth(),
+                    actual.getHeight(), (int[]) null);
+            assertTrue(Arrays.equals(expectedPixels, actualPixels));
+            written.dispose(true);
+            reader.dispose();
+        }
+        coverage.dispose(true);
+    }
+
+    @Test
+    public void testWriteParallelOverviewLevels() throws Exception {
+        // blocks of 4x4 pixels, so that averaging or picking give the same overviews
+        final int width = 100, height = 70;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        WritableRaster raster = image.getRaster();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                raster.setSample(x, y, 0, getBlockValue(x / 4, y / 4));
+            }
+        }
+        GridCoverage2D coverage = new GridCoverageFactory().create("test", image,
+                new ReferencedEnvelope(0, width, 0, height, DefaultGeographicCRS.WGS84));
+
+        for (boolean bigTiff : new boolean[] { false, true }) {
+            final File output = new File(TestData.file(GeoTiffReaderTest.class, "."),
+                    "parallelOverviews" + bigTiff + ".tif");
+            GeoTiffWriter writer = new GeoTiffWriter(output);
+            GeoTiffWriteParams params = new GeoTiffWriteParams();
+            params.setCompressionMode(GeoTiffWriteParams.MODE_EXPLICIT);
+            params.setCompressionType("LZW");
+            params.setTilingMode(GeoToolsWriteParams.MODE_EXPLICIT);
+            params.setTiling(16, 16);
+            params.setForceToBigTIFF(bigTiff);
+            ParameterValue<GeoToolsWriteParams> value = GeoTiffFormat.GEOTOOLS_WRITE_PARAMS.createValue();
+            value.setValue(params);
+            ParameterValue<Integer> threads = GeoTiffFormat.WRITE_THREADS.createValue();
+            threads.setValue(3);
+            ParameterValue<Integer> overviews = GeoTiffFormat.WRITE_OVERVIEWS.createValue();
+            overviews.setValue(2);
+            writer.write(coverage, new GeneralParameterValue[] { value, threads, overviews });
+            writer.dispose();
+
+            FileInputStream fis = new FileInputStream(output);
+            try {
+                byte[] bytes = new byte[4];
+                fis.read(bytes);
+                assertEquals(bigTiff ? 43 : 42, bytes[3]);
+            } finally {
+                fis.close();
+            }
+
+            // each level halves the previous one, rounding up
+            ImageInputStream stream = ImageIO.createImageInputStream(output);
+            ImageReader reader = new TIFFImageReaderSpi().createReaderInstance();
+            try {
+                reader.setInput(stream);
+                assertEquals(3, reader.getNumImages(true));
+                int levelWidth = width, levelHeight = height;
+                for (int level = 0; level < 3; level++) {
+                    Raster data = reader.read(level).getRaster();
+                    assertEquals(levelWidth, data.getWidth());
+                    assertEquals(levelHeight, data.getHeight());
+                    assertEquals(16, reader.getTileWidth(level));
+                    final int block = 4 >> level;
+                    for (int y = 0; y < levelHeight; y++) {
+                        for (int x = 0; x < levelWidth; x++) {
+                            assertEquals("Level " + level + " pixel " + x + "," + y,
+                                    getBlockValue(x / block, y / block), data.getSample(x, y, 0));
+                        }
+                    }
+                    levelWidth = (levelWidth + 1) / 2;
+                    levelHeight = (levelHeight + 1) / 2;
+                }
+            } finally {
+                reader.dispose();
+                stream.close();
+            }
+        }
+        coverage.dispose(true);
+    }
+
+    private static int getBlockValue(int blockX, int blockY) {
+        return (blockX * 7 + blockY * 13) % 256;
+    }
+
+    @Test
+    public void testWriteParallelCanceled() throws Exception {
+        final File input = TestData.file(GeoTiffReaderTest.class, "geo.tiff");
+        GeoTiffReader reader = new GeoTiffReader(input);
+        GridCoverage2D coverage = (GridCoverage2D) reader.read(null);
+        reader.dispose();
+
+        final File output = new File(TestData.file(GeoTiffReaderTest.class, "."),
+                "parallelCanceled.tif");
+        GeoTiffWriter writer = new GeoTiffWriter(output);
+        ParameterValue<Integer> threads = GeoTiffFormat.WRITE_THREADS.createValue();
+        threads.setValue(2);
+        DefaultProgressListener listener = new DefaultProgressListener();
+        listener.setCanceled(true);
+        ParameterValue<ProgressListener> progress = AbstractGridFormat.PROGRESS_LISTENER.createValue();
+        progress.setValue(listener);
+        try {
+            writer.write(coverage, new GeneralParameterValue[] { threads, progress });
+            fail("The canceled write should have failed");
+        } catch (InterruptedIOException e) {
+            // the incomplete file is gone
+            assertFalse(output.exists());
+        } finally {
+            writer.dispose();
+            coverage.dispose(true);
+        }
+    }
+
     @Test
     //    @Ignore
         public void testWriteBigTiff() throws Exception {
@@ -493,6 +493,16 @@ public class GranuleDescriptor {
         
     }
 
+    /**
+     * Returns {@code true} if the hints set auxiliary paths on the granule readers, which are
+     * then specific to the request.
+     */
+    private static boolean hasAuxiliaryPaths(Hints hints) {
+        return hints != null
+                && (hints.containsKey(Utils.AUXILIARY_FILES_PATH) || hints
+                        .containsKey(Utils.AUXILIARY_DATASTORE_PATH));
+    }
+
     private void updateReaderWithAuxiliaryPath(Hints hints, ImageReader reader, Key key,
             String method) throws NoSuchMethodException, IllegalAccessException, InvocationTargetException {
         String filePath = (String) hints.get(key);
@@ -739,13 +749,23 @@ public class GranuleDescriptor {
 		ImageInputStream inStream=null;
 		ImageReader reader=null;
 		boolean cleanupInFinally = request.getReadType() != ReadType.JAI_IMAGEREAD;
+		// direct reads of plain granules reuse the readers left open by the previous reads
+		GranuleReaderPool.PooledReader pooledReader = null;
+		boolean reusable = true;
 		try {
 			//
 			//get info about the raster we have to read
 			//
 			
-			// get a stream
 		        assert cachedStreamSPI!=null:"no cachedStreamSPI available!";
+		        if (cleanupInFinally && cachedReaderSPI != null && !hasAuxiliaryPaths(hints)) {
+		            pooledReader = GranuleReaderPool.getInstance().borrow(granuleUrl, cachedStreamSPI, cachedReaderSPI);
+		            if (pooledReader == null)
+		                return null;
+		            inStream = pooledReader.stream;
+		            reader = pooledReader.reader;
+		        } else {
+			// get a stream
                         inStream = cachedStreamSPI.createInputStreamInstance(granuleUrl, ImageIO.getUseCache(), ImageIO.getCacheDirectory());
 			if(inStream==null)
 				return null;
@@ -769,6 +789,7 @@ public class GranuleDescriptor {
 			// set input
 			customizeReaderInitialization(reader, hints);
 			reader.setInput(inStream);
+		        }
 			
                         // Checking for heterogeneous granules and if the mosaic is not multidimensional
                         if (request.isHeterogeneousGranules() && singleDimensionalGranule) {
@@ -795,13 +816,18 @@ public class GranuleDescriptor {
                         // If the file is external we must update the Granule elements
                         if(isExternal){
                             // Disposing File Reader and Stream
-                            try {
-                                if (inStream != null) {
-                                    inStream.close();
-                                }
-                            } finally {
-                                if (reader != null) {
-                                    reader.dispose();
+                            if (pooledReader != null) {
+                                GranuleReaderPool.getInstance().release(pooledReader);
+                                pooledReader = null;
+                            } else {
+                                try {
+                                    if (inStream != null) {
+                                        inStream.close();
+                                    }
+                                } finally {
+                                    if (reader != null) {
+                                        reader.dispose();
+                                    }
                                 }
                             }
                             granuleURLUpdated = ovrProvider.getOvrURL();
@@ -896,6 +922,7 @@ public class GranuleDescriptor {
 				raster= request.getReadType().read(readParameters,ovrIndex, granuleURLUpdated, selectedlevel.rasterDimensions, reader, hints,false);
 				
 			} catch (Throwable e) {
+				reusable = false;
 				if (LOGGER.isLoggable(java.util.logging.Level.FINE)){
 					LOGGER.log(java.util.logging.Level.FINE,
 					        "Unable to load raster for granuleDescriptor "
@@ -1070,11 +1097,18 @@ public class GranuleDescriptor {
 			}
 		
 		} catch (IllegalStateException e) {
+			reusable = false;
 			if (LOGGER.isLoggable(java.util.logging.Level.WARNING)) {
 				LOGGER.log(java.util.logging.Level.WARNING, new StringBuilder("Unable to load raster for granuleDescriptor ")
 				.append(this.toString()).append(" with request ").append(request.toString()).append(" Resulting in no granule loaded: Empty result").toString(), e);
 			}
 			return null;
+		} catch (RuntimeException e) {
+			reusable = false;
+			throw e;
+		} catch (IOException e) {
+			reusable = false;
+			throw e;
 		} catch (org.opengis.referencing.operation.NoninvertibleTransformException e) {
                     if (LOGGER.isLoggable(java.util.logging.Level.WARNING)) {
                         LOGGER.log(java.util.logging.Level.WARNING, new StringBuilder("Unable to load raster for granuleDescriptor ")
@@ -1089,13 +1123,21 @@ public class GranuleDescriptor {
 			return null;
 
                 } finally {
-                    try {
-                        if (cleanupInFinally && inStream != null) {
-                            inStream.close();
+                    if (pooledReader != null) {
+                        if (reusable) {
+                            GranuleReaderPool.getInstance().release(pooledReader);
+                        } else {
+                            GranuleReaderPool.getInstance().discard(pooledReader);
                         }
-                    } finally {
-                        if (cleanupInFinally && reader != null) {
-                            reader.dispose();
+                    } else {
+                        try {
+                            if (cleanupInFinally && inStream != null) {
+                                inStream.close();
+                            }
+                        } finally {
+                            if (cleanupInFinally && reader != null) {
+                                reader.dispose();
+                            }
                         }
                     }
                 }
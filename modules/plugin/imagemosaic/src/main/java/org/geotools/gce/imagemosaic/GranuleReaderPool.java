@@ -0,0 +1,370 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * A pool of open {@link ImageReader}s and {@link ImageInputStream}s on the granules files,
+ * shared by all the mosaics. A granule read borrows a reader already set on the granule stream
+ * when one is idle, so the hot granules don't pay the file opening and the header parsing on
+ * each request, and gives it back once the read is done.
+ * <p>
+ * The idle readers are closed after {@link #IDLE_TIMEOUT} milliseconds, checked by a background
+ * task while some readers are idle, and their number is bounded by {@link #MAX_IDLE}, closing
+ * the least recently used first. Both can be set with the
+ * {@code org.geotools.imagemosaic.readerPool.idleTimeout} and
+ * {@code org.geotools.imagemosaic.readerPool.maxIdle} system properties, a maximum of 0 disables
+ * the pool.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+public final class GranuleReaderPool {
+
+    /** Logger. */
+    private final static Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(GranuleReaderPool.class);
+
+    /**
+     * The maximum number of idle readers, 64 by default.
+     */
+    public final static int MAX_IDLE = Integer.getInteger(
+            "org.geotools.imagemosaic.readerPool.maxIdle", 64);
+
+    /**
+     * The time after which an idle reader is closed, in milliseconds, 60 seconds by default.
+     */
+    public final static long IDLE_TIMEOUT = Long.getLong(
+            "org.geotools.imagemosaic.readerPool.idleTimeout", 60000);
+
+    private final static GranuleReaderPool INSTANCE = new GranuleReaderPool(MAX_IDLE, IDLE_TIMEOUT);
+
+    /**
+     * The timer closing the expired readers, shared by all the pools.
+     */
+    private final static Timer TIMER = new Timer("GT granule reader pool evictor", true);
+
+    /**
+     * A reader set on a granule stream. It must be used by a single thread at a time.
+     */
+    static final class PooledReader {
+
+        final String location;
+
+        final String key;
+
+        final ImageReader reader;
+
+        final ImageInputStream stream;
+
+        long lastUsed;
+
+        PooledReader(String location, String key, ImageReader reader, ImageInputStream stream) {
+            this.location = location;
+            this.key = key;
+            this.reader = reader;
+            this.stream = stream;
+        }
+    }
+
+    /**
+     * Closes the expired readers, until no reader is idle.
+     */
+    private final class Evictor extends TimerTask {
+
+        @Override
+        public void run() {
+            try {
+                final List<PooledReader> expired;
+                synchronized (GranuleReaderPool.this) {
+                    expired = evict(System.currentTimeMillis(), maxIdle);
+                }
+                close(expired);
+            } catch (Throwable t) {
+                // don't kill the shared timer
+                LOGGER.log(Level.WARNING, "Unable to close the expired granule readers", t);
+            }
+        }
+    }
+
+    private final int maxIdle;
+
+    private final long idleTimeout;
+
+    /**
+     * The idle readers, the least recently used first.
+     */
+    private final LinkedList<PooledReader> idle = new LinkedList<PooledReader>();
+
+    private final AtomicInteger openHandles = new AtomicInteger();
+
+    /**
+     * The task closing the expired readers, scheduled while some readers are idle.
+     */
+    private TimerTask evictor;
+
+    private long hits;
+
+    private long misses;
+
+    GranuleReaderPool(int maxIdle, long idleTimeout) {
+        this.maxIdle = maxIdle;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the pool shared by all the mosaics.
+     */
+    public static GranuleReaderPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns an idle reader on the given granule, or opens a new one.
+     *
+     * @param granuleUrl the granule location
+     * @param streamSpi the provider of the granule stream
+     * @param readerSpi the provider of the granule reader
+     * @return the reader set on the granule stream, or {@code null} if the granule can't be
+     *         opened
+     * @throws IOException if the stream or the reader can't be created
+     */
+    PooledReader borrow(URL granuleUrl, ImageInputStreamSpi streamSpi, ImageReaderSpi readerSpi)
+            throws IOException {
+        final String location = granuleUrl.toExternalForm();
+        final String key = location + '#' + readerSpi.getPluginClassName();
+        final List<PooledReader> expired;
+        PooledReader found = null;
+        synchronized (this) {
+            expired = evict(System.currentTimeMillis(), maxIdle);
+            for (ListIterator<PooledReader> it = idle.listIterator(idle.size()); it.hasPrevious();) {
+                PooledReader pooled = it.previous();
+                if (pooled.key.equals(key)) {
+                    it.remove();
+                    found = pooled;
+                    break;
+                }
+            }
+            if (found != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        close(expired);
+        if (found != null) {
+            return found;
+        }
+
+        final ImageInputStream stream = streamSpi.createInputStreamInstance(granuleUrl,
+                ImageIO.getUseCache(), ImageIO.getCacheDirectory());
+        if (stream == null) {
+            return null;
+        }
+        ImageReader reader = null;
+        try {
+            reader = readerSpi.createReaderInstance();
+        } finally {
+            if (reader == null) {
+                stream.close();
+            }
+        }
+        reader.setInput(stream);
+        openHandles.incrementAndGet();
+        return new PooledReader(location, key, reader, stream);
+    }
+
+    /**
+     * Gives back a reader after a successful read, making it available for the next reads of
+     * the same granule.
+     */
+    void release(PooledReader pooled) {
+        final List<PooledReader> expired;
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            pooled.lastUsed = now;
+            idle.addLast(pooled);
+            expired = evict(now, maxIdle);
+            if (!idle.isEmpty() && evictor == null) {
+                // check a few times per timeout, so readers don't stay open much longer
+                final long period = Math.max(1, idleTimeout / 4);
+                evictor = new Evictor();
+                TIMER.schedule(evictor, period, period);
+            }
+        }
+        close(expired);
+    }
+
+    /**
+     * Closes a reader which is not in a reusable state, for example after a failed read.
+     */
+    void discard(PooledReader pooled) {
+        close(pooled);
+    }
+
+    /**
+     * Closes all the idle readers.
+     */
+    public void clear() {
+        final List<PooledReader> expired;
+        synchronized (this) {
+            expired = evict(System.currentTimeMillis(), 0);
+        }
+        close(expired);
+    }
+
+    /**
+     * Closes the idle readers on the given granules, leaving the ones of the other mosaics
+     * open.
+     *
+     * @param granuleUrls the locations of the granules
+     */
+    public void clear(Collection<URL> granuleUrls) {
+        final Set<String> locations = new HashSet<String>();
+        for (URL url : granuleUrls) {
+            locations.add(url.toExternalForm());
+        }
+        List<PooledReader> removed = null;
+        synchronized (this) {
+            for (Iterator<PooledReader> it = idle.iterator(); it.hasNext();) {
+                PooledReader pooled = it.next();
+                if (locations.contains(pooled.location)) {
+                    it.remove();
+                    if (removed == null) {
+                        removed = new ArrayList<PooledReader>();
+                    }
+                    removed.add(pooled);
+                }
+            }
+            stopEvictorIfEmpty();
+        }
+        close(removed);
+    }
+
+    /**
+     * Returns the number of reads which found an idle reader on their granule.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads which had to open their granule.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Returns the ratio of the reads which found an idle reader on their granule, or
+     * {@code NaN} if there was no read.
+     */
+    public synchronized double getHitRate() {
+        final long total = hits + misses;
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of granule streams currently open, idle or in use.
+     */
+    public int getOpenHandles() {
+        return openHandles.get();
+    }
+
+    /**
+     * Returns the number of idle readers.
+     */
+    public synchronized int getIdleHandles() {
+        return idle.size();
+    }
+
+    /**
+     * Removes the idle readers which expired, or exceed the given maximum. They must be closed
+     * outside of the lock.
+     */
+    private List<PooledReader> evict(long now, int max) {
+        List<PooledReader> expired = null;
+        for (Iterator<PooledReader> it = idle.iterator(); it.hasNext();) {
+            PooledReader pooled = it.next();
+            if (idle.size() <= max && now - pooled.lastUsed < idleTimeout) {
+                // the following ones are more recent
+                break;
+            }
+            it.remove();
+            if (expired == null) {
+                expired = new ArrayList<PooledReader>();
+            }
+            expired.add(pooled);
+        }
+        stopEvictorIfEmpty();
+        return expired;
+    }
+
+    /**
+     * Cancels the eviction task when no reader is idle, the next release scheduling a new one.
+     */
+    private void stopEvictorIfEmpty() {
+        if (idle.isEmpty() && evictor != null) {
+            evictor.cancel();
+            evictor = null;
+        }
+    }
+
+    private void close(List<PooledReader> expired) {
+        if (expired != null) {
+            for (PooledReader pooled : expired) {
+                close(pooled);
+            }
+        }
+    }
+
+    private void close(PooledReader pooled) {
+        openHandles.decrementAndGet();
+        try {
+            pooled.stream.close();
+        } catch (Throwable t) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Unable to close the stream on " + pooled.key, t);
+            }
+        } finally {
+            pooled.reader.dispose();
+        }
+    }
+}
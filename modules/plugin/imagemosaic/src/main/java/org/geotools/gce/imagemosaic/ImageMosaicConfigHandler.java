@@ -578,6 +578,9 @@ public class ImageMosaicConfigHandler {
         if (props.containsKey(Prop.CACHING))
             IndexerUtils.setParam(parameters, props, Prop.CACHING);
 
+        if (props.containsKey(Prop.PACKED_INDEX))
+            IndexerUtils.setParam(parameters, props, Prop.PACKED_INDEX);
+
         if (props.containsKey(Prop.ROOT_MOSAIC_DIR)) {
             // Overriding root mosaic directory
             IndexerUtils.setParam(parameters, props, Prop.ROOT_MOSAIC_DIR);
@@ -694,6 +697,9 @@ public class ImageMosaicConfigHandler {
         }
         properties.setProperty(Utils.Prop.CACHING,
                 Boolean.toString(catalogConfigurationBean.isCaching()));
+        if (catalogConfigurationBean.isPackedIndex()) {
+            properties.setProperty(Utils.Prop.PACKED_INDEX, Boolean.TRUE.toString());
+        }
         if (mosaicConfiguration.getAuxiliaryFilePath() != null) {
             properties.setProperty(Utils.Prop.AUXILIARY_FILE,
                     mosaicConfiguration.getAuxiliaryFilePath());
@@ -849,6 +855,8 @@ public class ImageMosaicConfigHandler {
             final CatalogConfigurationBean catalogConfigurationBean = new CatalogConfigurationBean();
             catalogConfigurationBean.setCaching(IndexerUtils.getParameterAsBoolean(Prop.CACHING,
                     indexer));
+            catalogConfigurationBean.setPackedIndex(IndexerUtils.getParameterAsBoolean(
+                    Prop.PACKED_INDEX, indexer));
             catalogConfigurationBean.setAbsolutePath(IndexerUtils.getParameterAsBoolean(
                     Prop.ABSOLUTE_PATH, indexer));
 
@@ -27,21 +27,26 @@ import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
 import java.awt.image.IndexColorModel;
 import java.awt.image.MultiPixelPackedSampleModel;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
@@ -314,6 +319,25 @@ class RasterLayerResponse{
         private final double[][] sourceThreshold;
         
     }
+
+    /**
+     * A granule being loaded, with the collector and position of the granule in the mosaic,
+     * and its estimated memory.
+     */
+    private static final class PendingGranule {
+        private final GranuleCollector collector;
+
+        private final int index;
+
+        private final long memory;
+
+        private PendingGranule(GranuleCollector collector, int index, long memory) {
+            this.collector = collector;
+            this.index = index;
+            this.memory = memory;
+        }
+    }
+
     /**
      * 
      * This class is responsible for collecting the granules that 
@@ -333,6 +357,11 @@ class RasterLayerResponse{
             this.dryRun = dryRun;
             inputTransparentColor = request.getInputTransparentColor();
             doInputTransparency = inputTransparentColor != null && !footprintBehavior.handleFootprints();
+            if (multithreadingAllowed && rasterManager.parentReader.multiThreadedLoader != null
+                    && completionService == null) {
+                completionService = new ExecutorCompletionService<GranuleLoadingResult>(
+                        rasterManager.parentReader.multiThreadedLoader);
+            }
         }
 
         /** The number of collected granules.**/
@@ -344,8 +373,17 @@ class RasterLayerResponse{
         /**We can request a dry run (no tasks are spawn) with this member.*/
         private final boolean dryRun;
 
-        /** The final lists for granules to be computed, splitted per dimension value.*/
-        private final List<Future<GranuleLoadingResult>> granulesFutures = new ArrayList<Future<GranuleLoadingResult>>();
+        /** The number of loads of this collector in progress.*/
+        private int pendingCount;
+
+        /** The prepared granules, in the order they were accepted, <code>null</code> for the ones that could not be loaded.*/
+        private final List<MosaicElement> elements = new ArrayList<MosaicElement>();
+
+        /** The paths of the prepared granules, in the same order.*/
+        private final List<String> elementPaths = new ArrayList<String>();
+
+        /** The first failure met while preparing the granules.*/
+        private IOException failure;
 
         private double[][] sourceThreshold;
 
@@ -378,15 +416,27 @@ class RasterLayerResponse{
                 }
                 
                 final GranuleLoader loader = new GranuleLoader(baseReadParameters, imageChoice, mosaicBBox, finalWorldToGridCorner, granuleDescriptor, request, hints);
-                if (!dryRun) {
-                    if (multithreadingAllowed && rasterManager.parentReader.multiThreadedLoader != null) {
-                        // MULTITHREADED EXECUTION submitting the task
-                        granulesFutures.add(rasterManager.parentReader.multiThreadedLoader.submit(loader));
+                if (!dryRun && failure == null) {
+                    final int index = elements.size();
+                    elements.add(null);
+                    elementPaths.add(null);
+                    if (completionService != null) {
+                        // MULTITHREADED EXECUTION submitting the task, after preparing the
+                        // granules already loaded if the budget is exceeded. The prepared
+                        // granules stay in memory until mosaicked, so once they exceed the
+                        // budget on their own the granules are loaded one at a time
+                        final long memory = estimateMemory(granuleDescriptor);
+                        while (!pendingGranules.isEmpty() && loadingMemory + memory > maxLoadingMemory && failure == null) {
+                            prepareNextGranule();
+                        }
+                        pendingGranules.put(completionService.submit(loader), new PendingGranule(this, index, memory));
+                        pendingCount++;
+                        loadingMemory += memory;
                     } else {
-                        // SINGLE THREADED Execution, we defer the execution to when we have done the loading
+                        // SINGLE THREADED Execution, load and prepare the granule right away
                         final FutureTask<GranuleLoadingResult> task = new FutureTask<GranuleLoadingResult>(loader);
-                        granulesFutures.add(task);
                         task.run(); // run in current thread
+                        prepareGranule(task, index);
                     }
                 }
                 if (LOGGER.isLoggable(Level.FINE)) {
@@ -404,10 +454,152 @@ class RasterLayerResponse{
             return false;
         }
         
+        /**
+         * Estimates the memory needed to load the given granule, from its area in the
+         * requested raster.
+         */
+        private long estimateMemory(GranuleDescriptor granuleDescriptor) {
+            try {
+                final ReferencedEnvelope granuleBBox = ReferencedEnvelope.reference(granuleDescriptor.getGranuleBBOX());
+                final ReferencedEnvelope intersection = granuleBBox.intersection(mosaicBBox);
+                if (intersection.isEmpty()) {
+                    return 0;
+                }
+                final GeneralEnvelope pixels = CRS.transform(finalWorldToGridCorner, intersection);
+                final SampleModel sm = rasterManager.defaultSM;
+                final int pixelSize = sm == null ? 4 : Math.max(1,
+                        sm.getNumBands() * DataBuffer.getDataTypeSize(sm.getDataType()) / 8);
+                return (long) Math.ceil(pixels.getSpan(0)) * (long) Math.ceil(pixels.getSpan(1)) * pixelSize;
+            } catch (Exception e) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Unable to estimate the memory needed by granule " + granuleDescriptor, e);
+                }
+                return 0;
+            }
+        }
+
+        /**
+         * Waits for the next multithreaded load of any collector to complete and prepares it
+         * for the mosaic. The memory of the granules which could not be prepared is released.
+         */
+        private void prepareNextGranule() {
+            final Future<GranuleLoadingResult> future;
+            try {
+                future = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = (IOException) new InterruptedIOException(
+                        "Interrupted while waiting for the granules to load").initCause(e);
+                return;
+            }
+            final PendingGranule pending = pendingGranules.remove(future);
+            pending.collector.pendingCount--;
+            if (!pending.collector.prepareGranule(future, pending.index)) {
+                loadingMemory -= pending.memory;
+            }
+        }
+
+        /**
+         * Prepares a loaded granule for the mosaic, storing it at the given position.
+         * 
+         * @param future the granule load, which must be complete
+         * @param index the position of the granule in the mosaic
+         * @return <code>true</code> if the granule was prepared, <code>false</code> if it could not be loaded
+         */
+        private boolean prepareGranule(Future<GranuleLoadingResult> future, int index) {
+            if (failure != null) {
+                return false;
+            }
+            try {
+                // get the resulting RenderedImage
+                final GranuleLoadingResult result = future.get();
+                if (result == null) {
+                    if (LOGGER.isLoggable(Level.FINE)){
+                        LOGGER.log(Level.FINE, "Unable to load the raster for granule with request " + request.toString());
+                    }
+                    return false;
+                }
+                final RenderedImage loadedImage = result.getRaster();
+                if (loadedImage == null) {
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                       LOGGER.log(Level.FINE,
+                               "Unable to load the raster for granuleDescriptor " +result.granuleUrl+ " with request "+request.toString()
+                       );
+                   }
+                   return false;
+               }
+
+               // now process it
+                if (sourceThreshold == null) {
+                        //
+                        // We check here if the images have an alpha channel or some
+                        // other sort of transparency. In case we have transparency
+                        // I also save the index of the transparent channel.
+                        //
+                        // Specifically, I have to check if the loaded image have
+                        // transparency, because if we do a ROI and/or we have a
+                        // transparent color to set we have to remove it.
+                        //
+                        final ColorModel cm = loadedImage.getColorModel();
+                        hasAlpha = cm.hasAlpha();
+                        if (hasAlpha){
+                            alphaIndex[0]= cm.getNumComponents() - 1 ;
+                        }
+
+                        //
+                        // we set the input threshold accordingly to the input
+                        // image data type. I find the default value (which is 0) very bad
+                        // for data type other than byte and ushort. With float and double
+                        // it can cut off a large par of the dynamic.
+                        //
+                        sourceThreshold = new double[][] { { CoverageUtilities.getMosaicThreshold(loadedImage.getSampleModel().getDataType()) } };
+               }
+
+               // moving on
+               if (LOGGER.isLoggable(Level.FINE)) {
+                   LOGGER.fine("Adding to mosaic granule " +result.granuleUrl);
+               }
+
+               // path management
+               File inputFile = DataUtilities.urlToFile(result.granuleUrl);
+               String canonicalPath = inputFile.getCanonicalPath();
+               // Remove ovr extension if present
+               String fileCanonicalPath = canonicalPath;
+               if (canonicalPath.endsWith(".ovr")) {
+                   fileCanonicalPath = canonicalPath.substring(0, canonicalPath.length() - 4);
+               }
+
+               // add to the mosaic collection, with preprocessing
+               // TODO pluggable mechanism for processing (artifacts,etc...)
+               MosaicElement input = preProcessGranuleRaster(
+                                       loadedImage,
+                                       result,
+                                       fileCanonicalPath);
+               elements.set(index, input);
+               elementPaths.set(index, canonicalPath);
+               return true;
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = (IOException) new InterruptedIOException(
+                        "Interrupted while waiting for the granules to load").initCause(e);
+            } catch (Exception e) {
+                if (LOGGER.isLoggable(Level.INFO)){
+                    LOGGER.info("Adding to mosaic failed, original request was " + request);
+                }
+                failure = new IOException(e);
+            }
+            return false;
+        }
+
         /**
          * This methods collects the granules from their eventual multithreaded processing
          * and turn them into a {@link MosaicInputs} object.
          * 
+         * <p>
+         * The granules are prepared as soon as they are loaded, in the order the loads
+         * complete, while the mosaic keeps the order the granules were accepted in.
+         * 
          * @return a {@link MosaicInputs} ready to be mosaicked.
          */
         private MosaicInputs collectGranules()throws IOException{
@@ -419,92 +611,37 @@ class RasterLayerResponse{
                 return null;
             }
             
-           // execute them all
-           final StringBuilder paths = new StringBuilder();
-           final List<MosaicElement> returnValues= new ArrayList<RasterLayerResponse.MosaicElement>();
-           // collect sources for the current dimension and then process them
-           for (Future<GranuleLoadingResult> future :granulesFutures) {
-                     
-                try {
-                    // get the resulting RenderedImage
-                    final GranuleLoadingResult result = future.get();
-                    if (result == null) {
-                        if (LOGGER.isLoggable(Level.FINE)){
-                            LOGGER.log(Level.FINE, "Unable to load the raster for granule with request " + request.toString());
-                        }
-                        continue;
-                    }
-                    final RenderedImage loadedImage = result.getRaster();
-                    if (loadedImage == null) {
-                        if (LOGGER.isLoggable(Level.FINE)) {
-                           LOGGER.log(Level.FINE,
-                                   "Unable to load the raster for granuleDescriptor " +result.granuleUrl+ " with request "+request.toString()
-                           );
-                       }
-                       continue;
-                   }
-                   
-                   // now process it
-                    if (sourceThreshold == null) {
-                            //
-                            // We check here if the images have an alpha channel or some
-                            // other sort of transparency. In case we have transparency
-                            // I also save the index of the transparent channel.
-                            //
-                            // Specifically, I have to check if the loaded image have
-                            // transparency, because if we do a ROI and/or we have a
-                            // transparent color to set we have to remove it.
-                            //
-                            final ColorModel cm = loadedImage.getColorModel();
-                            hasAlpha = cm.hasAlpha();
-                            if (hasAlpha){
-                                alphaIndex[0]= cm.getNumComponents() - 1 ;
-                            }
-
-                            //
-                            // we set the input threshold accordingly to the input
-                            // image data type. I find the default value (which is 0) very bad
-                            // for data type other than byte and ushort. With float and double
-                            // it can cut off a large par of the dynamic.
-                            //
-                            sourceThreshold = new double[][] { { CoverageUtilities.getMosaicThreshold(loadedImage.getSampleModel().getDataType()) } };                                                                  
-                   }                                    
-
-                   // moving on
-                   if (LOGGER.isLoggable(Level.FINE)) {
-                       LOGGER.fine("Adding to mosaic granule " +result.granuleUrl);
-                   }
-
-                   // path management
-                   File inputFile = DataUtilities.urlToFile(result.granuleUrl);
-                   String canonicalPath = inputFile.getCanonicalPath();
-                   // Remove ovr extension if present
-                   String fileCanonicalPath = canonicalPath;
-                   if (canonicalPath.endsWith(".ovr")) {
-                       fileCanonicalPath = canonicalPath.substring(0, canonicalPath.length() - 4);
+           // wait for the loads still in progress, preparing the ones of the other collectors
+           // completing in the meantime
+           while (pendingCount > 0 && failure == null) {
+               prepareNextGranule();
+           }
+           if (failure != null) {
+               final Iterator<Map.Entry<Future<GranuleLoadingResult>, PendingGranule>> it = pendingGranules.entrySet().iterator();
+               while (it.hasNext()) {
+                   final Map.Entry<Future<GranuleLoadingResult>, PendingGranule> entry = it.next();
+                   if (entry.getValue().collector == this) {
+                       entry.getKey().cancel(true);
+                       loadingMemory -= entry.getValue().memory;
+                       it.remove();
                    }
-                   paths.append(canonicalPath).append(",");
-                   
-                   // add to the mosaic collection, with preprocessing
-                   // TODO pluggable mechanism for processing (artifacts,etc...)
-                   MosaicElement input = preProcessGranuleRaster(
-                                           loadedImage,
-                                           result,
-                                           fileCanonicalPath);  
-                   returnValues.add(input);
-                   
-                } catch (Exception e) {
-                    if (LOGGER.isLoggable(Level.INFO)){
-                        LOGGER.info("Adding to mosaic failed, original request was " + request);
-                    }
-                    throw new IOException(e);
-                }               
-               
+               }
+               pendingCount = 0;
+               throw failure;
+           }
 
-               // collect paths
-                granulesPaths = paths.length() > 1 ? paths.substring(0, paths.length() - 1) : "";
+           // collect sources and paths for the current dimension
+           final StringBuilder paths = new StringBuilder();
+           final List<MosaicElement> returnValues= new ArrayList<RasterLayerResponse.MosaicElement>();
+           for (int i = 0; i < elements.size(); i++) {
+               final MosaicElement element = elements.get(i);
+               if (element != null) {
+                   returnValues.add(element);
+                   paths.append(elementPaths.get(i)).append(",");
+               }
            }
-           if (returnValues == null || returnValues.isEmpty()) {
+           granulesPaths = paths.length() > 1 ? paths.substring(0, paths.length() - 1) : "";
+           if (returnValues.isEmpty()) {
                if (LOGGER.isLoggable(Level.INFO)){
                    LOGGER.info("The MosaicElement list is null or empty");
                }
@@ -1109,6 +1246,21 @@ class RasterLayerResponse{
 	private Hints hints;
 	
 	private String granulesPaths;
+
+	/** Gives back the multithreaded loads of all the collectors as they complete, <code>null</code> for single threaded execution.*/
+	private CompletionService<GranuleLoadingResult> completionService;
+
+	/** The loads in progress, with the collector and position of their granule in the mosaic.*/
+	private final Map<Future<GranuleLoadingResult>, PendingGranule> pendingGranules = new HashMap<Future<GranuleLoadingResult>, PendingGranule>();
+
+	/**
+	 * The estimated memory of the granules being loaded, or prepared and waiting to be
+	 * mosaicked, for all the collectors of this response.
+	 */
+	private long loadingMemory;
+
+	/** The budget of {@link #loadingMemory}, beyond which no more loads are read ahead.*/
+	private long maxLoadingMemory = Utils.MAX_LOADING_MEMORY;
 	
 	/**
 	 * Construct a {@code RasterLayerResponse} given a specific
@@ -171,6 +171,16 @@ public class Utils {
      */
     final static boolean OPTIMIZE_CROP; 
 
+    /**
+     * Maximum estimated memory, in bytes, of the granules being loaded or waiting to be mosaicked
+     * for a single request, all the dimensions together. It can be set in megabytes with the
+     * {@code org.geotools.imagemosaic.maxLoadingMemory} system property, 128 by default. When
+     * reached, the loaded granules are prepared before submitting more loads, and once the
+     * prepared granules reach it on their own the granules are loaded one at a time.
+     */
+    final static long MAX_LOADING_MEMORY = Long.getLong(
+            "org.geotools.imagemosaic.maxLoadingMemory", 128) * 1024 * 1024;
+
     /**
      * Logger.
      */
@@ -235,6 +245,7 @@ public class Utils {
         public static final String RESOLUTION_LEVELS = "ResolutionLevels";
         public static final String PROPERTY_COLLECTORS = "PropertyCollectors";
         public final static String CACHING= "Caching";
+        public final static String PACKED_INDEX = "PackedIndex";
         public static final String WRAP_STORE = "WrapStore";
     }
         /**
@@ -587,6 +598,14 @@ public class Utils {
 			}
 		}
 
+		//
+		// packed index
+		//
+		if (properties.containsKey(Prop.PACKED_INDEX)) {
+			catalogConfigurationBean.setPackedIndex(Boolean.valueOf(properties.getProperty(
+					Prop.PACKED_INDEX).trim()));
+		}
+
 		//
 		// name is not optional
 		//
@@ -17,7 +17,13 @@
 package org.geotools.gce.imagemosaic.catalog;
 
 import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,12 +35,13 @@ import org.geotools.feature.SchemaException;
 import org.geotools.feature.collection.AbstractFeatureVisitor;
 import org.geotools.feature.visitor.FeatureCalc;
 import org.geotools.gce.imagemosaic.GranuleDescriptor;
+import org.geotools.gce.imagemosaic.GranuleReaderPool;
 import org.geotools.gce.imagemosaic.ImageMosaicReader;
 import org.geotools.gce.imagemosaic.Utils;
 import org.geotools.geometry.jts.JTS;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.util.DefaultProgressListener;
-import org.geotools.util.SoftValueHashMap;
+import org.geotools.util.LRULinkedHashMap;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -64,9 +71,24 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
     private final static Logger LOGGER = org.geotools.util.logging.Logging
             .getLogger(CachingDataStoreGranuleCatalog.class);
 
+    /**
+     * The maximum number of granule descriptors kept in memory, 10000 by default. It can be set
+     * with the {@code org.geotools.imagemosaic.descriptorCacheSize} system property.
+     */
+    static final int DESCRIPTOR_CACHE_SIZE = Integer.getInteger(
+            "org.geotools.imagemosaic.descriptorCacheSize", 10000);
+
     private final GTDataStoreGranuleCatalog adaptee;
     
-    private final SoftValueHashMap<String, GranuleDescriptor> descriptorsCache= new SoftValueHashMap<String, GranuleDescriptor>();
+    /**
+     * The granule descriptors by feature id, the least recently used being dropped first. 
+     */
+    private final Map<String, GranuleDescriptor> descriptorsCache = Collections
+            .synchronizedMap(LRULinkedHashMap.<String, GranuleDescriptor> createForRecentAccess(DESCRIPTOR_CACHE_SIZE));
+
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private final AtomicLong cacheMisses = new AtomicLong();
     
    
     /**
@@ -114,6 +136,7 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
     @Override
     public void dispose() {
         adaptee.dispose();
+        clearDescriptors();
         if(multiScaleROIProvider != null) {
             multiScaleROIProvider.dispose();
             multiScaleROIProvider = null;
@@ -160,46 +183,9 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
                 if (feature instanceof SimpleFeature) {
                     // get the feature
                     final SimpleFeature sf = (SimpleFeature) feature;
-                    GranuleDescriptor granule = null;
-
-                    // caching by granule's location
-//                    synchronized (descriptorsCache) {
-                        String featureId = sf.getID();
-                        if(descriptorsCache.containsKey(featureId)){
-                            granule = descriptorsCache.get(featureId);
-                        } else {
-                            try {
-                                // create the granule descriptor
-                                MultiLevelROI footprint = getGranuleFootprint(sf);
-                                if(footprint == null || !footprint.isEmpty()) {
-                                        // caching only if the footprint is either absent or present and NON-empty
-                                        granule = new GranuleDescriptor(
-                                                        sf,
-                                                        adaptee.suggestedRasterSPI,
-                                                        adaptee.pathType,
-                                                        adaptee.locationAttribute,
-                                                        adaptee.parentLocation,
-                                                        footprint,
-                                                        adaptee.heterogeneous, 
-                                                        adaptee.hints); // retain hints since this may contain a reader or anything
-                                        descriptorsCache.put(featureId, granule);
-                                }
-                            } catch(Exception e) {
-                                LOGGER.log(Level.FINE, "Skipping invalid granule", e);
-                            }
-
-                        }
-                        
-                        if(granule != null) {
-                            // check ROI inclusion
-                            final Geometry footprint = granule.getFootprint();
-                            if(intersectionGeometry==null||footprint==null||polygonOverlap(footprint, intersectionGeometry)){
-                                visitor.visit(granule, null);
-                            }else{
-                                if(LOGGER.isLoggable(Level.FINE)){
-                                    LOGGER.fine("Skipping granule "+granule+"\n since its ROI does not intersect the requested area");
-                                }
-                            }
+                    final GranuleDescriptor granule = getGranuleDescriptor(sf);
+                        if(granule != null && isInRequestedArea(granule, intersectionGeometry)) {
+                            visitor.visit(granule, null);
                         }
     
                         // check if something bad occurred
@@ -213,16 +199,80 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
                         }
                 }
             }
-
-            private boolean polygonOverlap(Geometry g1, Geometry g2) {
-                // TODO: try to use relate instead
-                Geometry intersection = g1.intersection(g2);
-                return intersection != null && intersection.getDimension() == 2;
-            }
         }, listener);
         
     }
 
+    /**
+     * Returns the cached descriptor of the granule with the given feature id, or {@code null}
+     * if it's not in the cache.
+     */
+    GranuleDescriptor getCachedGranuleDescriptor(String featureId) {
+        final GranuleDescriptor granule = descriptorsCache.get(featureId);
+        if (granule != null) {
+            cacheHits.incrementAndGet();
+        }
+        return granule;
+    }
+
+    /**
+     * Returns the descriptor of the given granule, from the cache or creating it. Returns
+     * {@code null} if the granule is invalid, or its footprint is empty.
+     */
+    GranuleDescriptor getGranuleDescriptor(SimpleFeature sf) {
+        // caching by granule's location
+        final String featureId = sf.getID();
+        GranuleDescriptor granule = descriptorsCache.get(featureId);
+        if (granule != null) {
+            cacheHits.incrementAndGet();
+            return granule;
+        }
+        cacheMisses.incrementAndGet();
+        try {
+            // create the granule descriptor
+            MultiLevelROI footprint = getGranuleFootprint(sf);
+            if (footprint == null || !footprint.isEmpty()) {
+                // caching only if the footprint is either absent or present and NON-empty
+                granule = new GranuleDescriptor(
+                        sf,
+                        adaptee.suggestedRasterSPI,
+                        adaptee.pathType,
+                        adaptee.locationAttribute,
+                        adaptee.parentLocation,
+                        footprint,
+                        adaptee.heterogeneous,
+                        adaptee.hints); // retain hints since this may contain a reader or anything
+                descriptorsCache.put(featureId, granule);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Skipping invalid granule", e);
+        }
+        return granule;
+    }
+
+    /**
+     * Checks if the footprint of the granule, if any, overlaps the requested area.
+     */
+    static boolean isInRequestedArea(GranuleDescriptor granule, Geometry intersectionGeometry) {
+        // check ROI inclusion
+        final Geometry footprint = granule.getFootprint();
+        if (intersectionGeometry == null || footprint == null
+                || polygonOverlap(footprint, intersectionGeometry)) {
+            return true;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Skipping granule " + granule
+                    + "\n since its ROI does not intersect the requested area");
+        }
+        return false;
+    }
+
+    private static boolean polygonOverlap(Geometry g1, Geometry g2) {
+        // TODO: try to use relate instead
+        Geometry intersection = g1.intersection(g2);
+        return intersection != null && intersection.getDimension() == 2;
+    }
+
     @Override
     public QueryCapabilities getQueryCapabilities(String typeName) {
         return adaptee.getQueryCapabilities(typeName);
@@ -239,7 +289,7 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
         // clear cache if needed 
         // TODO this can be optimized further filtering out elements using the Query's Filter
         if(val>=1){
-            descriptorsCache.clear();
+            clearDescriptors();
         }
         
         return val;
@@ -250,6 +300,56 @@ class CachingDataStoreGranuleCatalog extends GranuleCatalog {
         return adaptee.getTypeNames();
     }
 
+    /**
+     * Drops the cached descriptors, and closes the idle readers on their granules. The readers
+     * of the other mosaics are left in the shared pool, as well as the ones of the descriptors
+     * already dropped from the cache, which the pool closes when they expire.
+     */
+    private void clearDescriptors() {
+        final List<URL> granuleUrls;
+        synchronized (descriptorsCache) {
+            granuleUrls = new ArrayList<URL>(descriptorsCache.size());
+            for (GranuleDescriptor granule : descriptorsCache.values()) {
+                if (granule.getGranuleUrl() != null) {
+                    granuleUrls.add(granule.getGranuleUrl());
+                }
+            }
+            descriptorsCache.clear();
+        }
+        GranuleReaderPool.getInstance().clear(granuleUrls);
+    }
+
+    /**
+     * Returns the number of granules whose descriptor was found in the cache.
+     */
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Returns the number of granules whose descriptor had to be created.
+     */
+    public long getCacheMissCount() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Returns the ratio of the granules whose descriptor was found in the cache, or {@code NaN}
+     * if no granule was visited.
+     */
+    public double getCacheHitRate() {
+        final long hits = cacheHits.get();
+        final long total = hits + cacheMisses.get();
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of granule descriptors in the cache.
+     */
+    public int getCacheSize() {
+        return descriptorsCache.size();
+    }
+
     /**
      * @return the adaptee
      */
@@ -0,0 +1,502 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A packed STR-tree of granule envelopes, with a few numeric attributes of each granule stored
+ * as primitive columns next to it. The whole index lives in a single buffer, usually a
+ * memory-mapped file, so it costs no heap and can be reopened without being rebuilt.
+ * <p>
+ * The granules are sorted in STR order (by slices of their center longitude, then by their
+ * center latitude in each slice), and the tree nodes group {@link #NODE_SIZE} consecutive
+ * entries of the level below. The granules are identified by their row in this order, which
+ * gives their envelope, their attribute values and their feature id.
+ * <p>
+ * The buffer layout is:
+ * <ul>
+ * <li>a header with the number of granules, the node size, the level sizes and the column
+ * names,</li>
+ * <li>the node envelopes, level after level starting from the leaves, as four doubles,</li>
+ * <li>the attribute values, row after row, as doubles ({@code NaN} for {@code null}),</li>
+ * <li>the feature ids, as offsets followed by UTF-8 bytes.</li>
+ * </ul>
+ * Instances are immutable and can be queried by any number of threads.
+ *
+ * @source $URL$
+ */
+final class PackedGranuleIndex {
+
+    /** The number of children of each node. */
+    static final int NODE_SIZE = 16;
+
+    private static final int MAGIC = 0x47435831; // GCX1
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 32;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+
+    private final int size;
+
+    private final String[] columns;
+
+    /** The number of nodes in each level, the leaves first. */
+    private final int[] levelSizes;
+
+    /** The index of the first node of each level. */
+    private final int[] levelStarts;
+
+    private final int boxesOffset, valuesOffset, idOffsetsOffset, idsOffset;
+
+    private PackedGranuleIndex(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_LENGTH || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a granule index");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported granule index version " + buffer.getInt(4));
+        }
+        size = buffer.getInt(8);
+        if (buffer.getInt(12) != NODE_SIZE) {
+            throw new IOException("Unsupported granule index node size " + buffer.getInt(12));
+        }
+        final int columnCount = buffer.getInt(16);
+        final int levels = buffer.getInt(20);
+        final int idsLength = buffer.getInt(24);
+
+        int offset = HEADER_LENGTH;
+        levelSizes = new int[levels];
+        levelStarts = new int[levels];
+        int nodes = 0;
+        for (int i = 0; i < levels; i++) {
+            levelSizes[i] = buffer.getInt(offset);
+            levelStarts[i] = nodes;
+            nodes += levelSizes[i];
+            offset += 4;
+        }
+        columns = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            final byte[] name = new byte[buffer.getShort(offset)];
+            offset += 2;
+            for (int j = 0; j < name.length; j++) {
+                name[j] = buffer.get(offset++);
+            }
+            columns[i] = new String(name, UTF8);
+        }
+        boxesOffset = align(offset);
+        valuesOffset = boxesOffset + nodes * 32;
+        idOffsetsOffset = valuesOffset + size * columnCount * 8;
+        idsOffset = idOffsetsOffset + (size + 1) * 4;
+        if ((long) idsOffset + idsLength != buffer.limit()) {
+            throw new IOException("The granule index is truncated or corrupted");
+        }
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    /**
+     * Opens an index previously written in the given file.
+     *
+     * @throws IOException if the file can't be read or is not a valid index
+     */
+    static PackedGranuleIndex open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not a granule index, " + file + " is too large");
+            }
+            return new PackedGranuleIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Returns the number of granules.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the names of the attribute columns.
+     */
+    String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the feature id of the granule at the given row.
+     */
+    String getFeatureId(int row) {
+        final int start = buffer.getInt(idOffsetsOffset + row * 4);
+        final int end = buffer.getInt(idOffsetsOffset + row * 4 + 4);
+        final byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(idsOffset + start + i);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Returns the envelope of all the granules as {@code minX, minY, maxX, maxY}, or
+     * {@code null} if there are no granules with an envelope.
+     */
+    double[] getBounds() {
+        if (size == 0) {
+            return null;
+        }
+        final int box = boxesOffset + levelStarts[levelSizes.length - 1] * 32;
+        final double[] bounds = new double[] { buffer.getDouble(box), buffer.getDouble(box + 8),
+                buffer.getDouble(box + 16), buffer.getDouble(box + 24) };
+        return bounds[0] <= bounds[2] && bounds[1] <= bounds[3] ? bounds : null;
+    }
+
+    /**
+     * Returns the value of an attribute column for the granule at the given row,
+     * {@code NaN} if the attribute is {@code null}.
+     */
+    double getValue(int row, int column) {
+        return buffer.getDouble(valuesOffset + (row * columns.length + column) * 8);
+    }
+
+    /**
+     * Returns the rows of the granules whose envelope intersects the given one, in ascending
+     * order.
+     */
+    int[] query(double minX, double minY, double maxX, double maxY) {
+        if (size == 0) {
+            return new int[0];
+        }
+        int[] result = new int[64];
+        int count = 0;
+        // pairs of level and node index
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = levelSizes.length - 1;
+        stack[top++] = 0;
+        while (top > 0) {
+            final int node = stack[--top];
+            final int level = stack[--top];
+            final int box = boxesOffset + (levelStarts[level] + node) * 32;
+            if (buffer.getDouble(box) > maxX || buffer.getDouble(box + 8) > maxY
+                    || buffer.getDouble(box + 16) < minX || buffer.getDouble(box + 24) < minY) {
+                continue;
+            }
+            if (level == 0) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = node;
+            } else {
+                final int end = Math.min((node + 1) * NODE_SIZE, levelSizes[level - 1]);
+                for (int child = node * NODE_SIZE; child < end; child++) {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = level - 1;
+                    stack[top++] = child;
+                }
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Collects the granules and packs them in an index.
+     */
+    static final class Builder {
+
+        private final String[] columns;
+
+        private double[] boxes = new double[4 * 1024];
+
+        private double[] values;
+
+        private int[] idOffsets = new int[1025];
+
+        private final ByteArrayOutputStream ids = new ByteArrayOutputStream();
+
+        private int size;
+
+        Builder(String[] columns) {
+            this.columns = columns.clone();
+            this.values = new double[Math.max(1, columns.length) * 1024];
+        }
+
+        /**
+         * Adds a granule.
+         *
+         * @param featureId the granule feature id
+         * @param values the attribute values, in the order of the columns
+         */
+        void add(String featureId, double minX, double minY, double maxX, double maxY,
+                double[] values) {
+            if (size * 4 + 4 > boxes.length) {
+                boxes = Arrays.copyOf(boxes, boxes.length * 2);
+            }
+            if ((size + 1) * columns.length > this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            }
+            if (size + 2 > idOffsets.length) {
+                idOffsets = Arrays.copyOf(idOffsets, idOffsets.length * 2);
+            }
+            boxes[size * 4] = minX;
+            boxes[size * 4 + 1] = minY;
+            boxes[size * 4 + 2] = maxX;
+            boxes[size * 4 + 3] = maxY;
+            System.arraycopy(values, 0, this.values, size * columns.length, columns.length);
+            final byte[] id = featureId.getBytes(UTF8);
+            ids.write(id, 0, id.length);
+            idOffsets[size + 1] = idOffsets[size] + id.length;
+            size++;
+        }
+
+        /**
+         * Returns the number of granules added so far.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Sorts the granules, builds the tree and writes the index.
+         *
+         * @param file the file where to write the index, or {@code null} to keep it in a
+         *        direct buffer. The index is written in a temporary file next to it, then
+         *        renamed, so an index already opened from this file is never modified.
+         */
+        PackedGranuleIndex build(File file) throws IOException {
+            final int[] order = sort();
+
+            // level sizes, the leaves first
+            int levels = 1;
+            for (int n = size; n > 1; n = (n + NODE_SIZE - 1) / NODE_SIZE) {
+                levels++;
+            }
+            final int[] levelSizes = new int[levels];
+            levelSizes[0] = size;
+            long nodes = size;
+            for (int i = 1; i < levels; i++) {
+                levelSizes[i] = (levelSizes[i - 1] + NODE_SIZE - 1) / NODE_SIZE;
+                nodes += levelSizes[i];
+            }
+
+            // layout
+            final byte[][] names = new byte[columns.length][];
+            long offset = HEADER_LENGTH + 4 * levels;
+            for (int i = 0; i < columns.length; i++) {
+                names[i] = columns[i].getBytes(UTF8);
+                offset += 2 + names[i].length;
+            }
+            final long boxesOffset = (offset + 7) & ~7;
+            final long valuesOffset = boxesOffset + nodes * 32;
+            final long idOffsetsOffset = valuesOffset + (long) size * columns.length * 8;
+            final long idsOffset = idOffsetsOffset + (size + 1) * 4L;
+            final long length = idsOffset + ids.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Too many granules for a single index: " + size);
+            }
+
+            if (file == null) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+                write(buffer, order, levelSizes, names, boxesOffset, valuesOffset,
+                        idOffsetsOffset, idsOffset);
+                return new PackedGranuleIndex(buffer);
+            }
+            final File temp = File.createTempFile(file.getName(), ".tmp", file
+                    .getAbsoluteFile().getParentFile());
+            try {
+                final RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+                try {
+                    raf.setLength(length);
+                    final MappedByteBuffer buffer = raf.getChannel().map(
+                            FileChannel.MapMode.READ_WRITE, 0, length);
+                    write(buffer, order, levelSizes, names, boxesOffset, valuesOffset,
+                            idOffsetsOffset, idsOffset);
+                    buffer.force();
+                } finally {
+                    raf.close();
+                }
+                try {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                if (temp.exists()) {
+                    temp.delete();
+                }
+            }
+            return open(file);
+        }
+
+        /**
+         * Writes the header, the tree, the attribute values and the feature ids.
+         */
+        private void write(ByteBuffer buffer, int[] order, int[] levelSizes, byte[][] names,
+                long boxesOffset, long valuesOffset, long idOffsetsOffset, long idsOffset) {
+            final int levels = levelSizes.length;
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, NODE_SIZE);
+            buffer.putInt(16, columns.length);
+            buffer.putInt(20, levels);
+            buffer.putInt(24, ids.size());
+            int position = HEADER_LENGTH;
+            for (int i = 0; i < levels; i++) {
+                buffer.putInt(position, levelSizes[i]);
+                position += 4;
+            }
+            for (int i = 0; i < names.length; i++) {
+                buffer.putShort(position, (short) names[i].length);
+                position += 2;
+                for (int j = 0; j < names[i].length; j++) {
+                    buffer.put(position++, names[i][j]);
+                }
+            }
+
+            // leaves, values and ids in STR order
+            final byte[] idBytes = ids.toByteArray();
+            int box = (int) boxesOffset;
+            int value = (int) valuesOffset;
+            int idOffset = (int) idOffsetsOffset;
+            int id = (int) idsOffset;
+            buffer.putInt(idOffset, 0);
+            for (int row = 0; row < size; row++) {
+                final int granule = order[row];
+                for (int i = 0; i < 4; i++) {
+                    buffer.putDouble(box, boxes[granule * 4 + i]);
+                    box += 8;
+                }
+                for (int i = 0; i < columns.length; i++) {
+                    buffer.putDouble(value, values[granule * columns.length + i]);
+                    value += 8;
+                }
+                final int start = idOffsets[granule];
+                final int end = idOffsets[granule + 1];
+                for (int i = start; i < end; i++) {
+                    buffer.put(id++, idBytes[i]);
+                }
+                idOffset += 4;
+                buffer.putInt(idOffset, id - (int) idsOffset);
+            }
+
+            // upper levels
+            int childStart = (int) boxesOffset;
+            for (int level = 1; level < levels; level++) {
+                final int children = levelSizes[level - 1];
+                for (int node = 0; node < levelSizes[level]; node++) {
+                    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+                    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+                    final int end = Math.min((node + 1) * NODE_SIZE, children);
+                    for (int child = node * NODE_SIZE; child < end; child++) {
+                        final int c = childStart + child * 32;
+                        minX = Math.min(minX, buffer.getDouble(c));
+                        minY = Math.min(minY, buffer.getDouble(c + 8));
+                        maxX = Math.max(maxX, buffer.getDouble(c + 16));
+                        maxY = Math.max(maxY, buffer.getDouble(c + 24));
+                    }
+                    buffer.putDouble(box, minX);
+                    buffer.putDouble(box + 8, minY);
+                    buffer.putDouble(box + 16, maxX);
+                    buffer.putDouble(box + 24, maxY);
+                    box += 32;
+                }
+                childStart += children * 32;
+            }
+        }
+
+        /**
+         * Returns the granules in STR order.
+         */
+        private int[] sort() {
+            double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < size; i++) {
+                final double x = (boxes[i * 4] + boxes[i * 4 + 2]) / 2;
+                final double y = (boxes[i * 4 + 1] + boxes[i * 4 + 3]) / 2;
+                if (Double.isNaN(x) || Double.isNaN(y)) {
+                    // inverted infinite bounds, sorted first
+                    continue;
+                }
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            // sort on quantized centers, keeping the granule index in the low bits
+            final long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = quantize(boxes[i * 4], boxes[i * 4 + 2], minX, maxX) << 32 | i;
+            }
+            Arrays.sort(keys);
+            final int leaves = (size + NODE_SIZE - 1) / NODE_SIZE;
+            final int slices = Math.max(1, (int) Math.ceil(Math.sqrt(leaves)));
+            final int sliceCapacity = ((size + slices - 1) / slices + NODE_SIZE - 1) / NODE_SIZE
+                    * NODE_SIZE;
+            for (int start = 0; start < size; start += sliceCapacity) {
+                final int end = Math.min(start + sliceCapacity, size);
+                for (int j = start; j < end; j++) {
+                    final int i = (int) keys[j];
+                    keys[j] = quantize(boxes[i * 4 + 1], boxes[i * 4 + 3], minY, maxY) << 32 | i;
+                }
+                Arrays.sort(keys, start, end);
+            }
+            final int[] order = new int[size];
+            for (int j = 0; j < size; j++) {
+                order[j] = (int) keys[j];
+            }
+            return order;
+        }
+
+        private static long quantize(double min, double max, double lower, double upper) {
+            final double center = (min + max) / 2;
+            if (!(upper > lower)) {
+                return 0;
+            }
+            final double ratio = (center - lower) / (upper - lower);
+            if (Double.isNaN(ratio)) {
+                return 0;
+            }
+            return (long) (Math.max(0, Math.min(1, ratio)) * Integer.MAX_VALUE);
+        }
+    }
+}
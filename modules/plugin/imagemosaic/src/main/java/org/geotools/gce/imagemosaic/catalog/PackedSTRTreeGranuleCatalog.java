@@ -0,0 +1,668 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataStoreFactorySpi;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.QueryCapabilities;
+import org.geotools.data.Transaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.factory.Hints;
+import org.geotools.feature.SchemaException;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.feature.visitor.FeatureCalc;
+import org.geotools.gce.imagemosaic.GranuleDescriptor;
+import org.geotools.gce.imagemosaic.Utils;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.util.Converters;
+import org.geotools.util.Utilities;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.And;
+import org.opengis.filter.Filter;
+import org.opengis.filter.Id;
+import org.opengis.filter.Not;
+import org.opengis.filter.Or;
+import org.opengis.filter.identity.FeatureId;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.spatial.SpatialOperator;
+import org.opengis.geometry.BoundingBox;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A granule catalog answering the queries with a {@link PackedGranuleIndex}, an STR-tree of
+ * the granule envelopes with the numeric and date attributes of the granules (times,
+ * elevations, ...) stored as primitive columns. The index is memory-mapped, so it doesn't use
+ * any heap even for millions of granules, and it is persisted next to the mosaic (in a
+ * {@code <typeName>.gcx} file) to be reopened without being rebuilt. Each type name of the
+ * store gets its own index.
+ * <p>
+ * A query first selects the granules whose envelope intersects its bounding box in the tree,
+ * then discards the ones whose attribute values don't match its filter. Only the remaining
+ * granules are read from the underlying store, by feature id, unless their descriptor is
+ * already cached. The queries with a sort order are delegated to the store.
+ * <p>
+ * The index is rebuilt when the granules are modified through this catalog, or when the
+ * number of granules or their bounds in the store no longer match it. Delete the index file
+ * to force a rebuild after other changes.
+ *
+ * @since 15.0
+ *
+ * @source $URL$
+ * @version $Id$
+ */
+class PackedSTRTreeGranuleCatalog extends GranuleCatalog {
+
+    /** Logger. */
+    final static Logger LOGGER = org.geotools.util.logging.Logging
+            .getLogger(PackedSTRTreeGranuleCatalog.class);
+
+    /** The extension of the index file. */
+    static final String INDEX_EXTENSION = ".gcx";
+
+    /** The maximum number of feature ids in a single store query. */
+    private static final int MAX_IDS = 1000;
+
+    private final GTDataStoreGranuleCatalog store;
+
+    /** Caches the granule descriptors, and answers the queries delegated to the store. */
+    private final CachingDataStoreGranuleCatalog descriptors;
+
+    /** The type name of the queries without one. */
+    private final String typeName;
+
+    /** The directory of the index files, or {@code null} if the indexes are kept in memory. */
+    private final File indexDirectory;
+
+    /** The indexes of the type names queried so far. */
+    private final Map<String, TypeIndex> indexes = new HashMap<String, TypeIndex>();
+
+    private volatile boolean disposed;
+
+    public PackedSTRTreeGranuleCatalog(final Properties params, DataStoreFactorySpi spi,
+            final Hints hints) {
+        super(hints);
+        Utilities.ensureNonNull("params", params);
+        this.store = new GTDataStoreGranuleCatalog(params, false, spi, hints);
+        this.descriptors = new CachingDataStoreGranuleCatalog(store);
+        String typeName = (String) params.get(Utils.Prop.TYPENAME);
+        if (typeName == null) {
+            typeName = store.typeNames.iterator().next();
+        }
+        this.typeName = typeName;
+        this.indexDirectory = getIndexDirectory(store.parentLocation);
+    }
+
+    /**
+     * The index of the granules of a type name, with the type of the features built from its
+     * columns to evaluate the filters.
+     */
+    static final class TypeIndex {
+
+        final PackedGranuleIndex index;
+
+        final SimpleFeatureType columnsType;
+
+        TypeIndex(PackedGranuleIndex index, SimpleFeatureType columnsType) {
+            this.index = index;
+            this.columnsType = columnsType;
+        }
+    }
+
+    private static File getIndexDirectory(String parentLocation) {
+        if (parentLocation == null) {
+            return null;
+        }
+        try {
+            final File parent = DataUtilities.urlToFile(new URL(parentLocation));
+            if (parent != null && parent.isDirectory() && parent.canWrite()) {
+                return parent;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "The granule indexes will not be persisted", e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the file where the index of the given type name is persisted, or {@code null} if
+     * it is only kept in memory.
+     */
+    File getIndexFile(String typeName) {
+        return indexDirectory != null ? new File(indexDirectory, typeName + INDEX_EXTENSION)
+                : null;
+    }
+
+    private String getTypeName(Query q) {
+        return q.getTypeName() != null ? q.getTypeName() : typeName;
+    }
+
+    /**
+     * Returns the index of the given type name, opening or building it if needed.
+     */
+    synchronized TypeIndex getIndex(String typeName) throws IOException {
+        checkStore();
+        TypeIndex typeIndex = indexes.get(typeName);
+        if (typeIndex == null) {
+            final SimpleFeatureType schema = store.getType(typeName);
+            if (schema == null) {
+                throw new IOException("Unknown type name " + typeName);
+            }
+            final String[] columns = getColumns(schema);
+            final File indexFile = getIndexFile(typeName);
+            PackedGranuleIndex index = null;
+            if (indexFile != null && indexFile.exists()) {
+                try {
+                    final PackedGranuleIndex persisted = PackedGranuleIndex.open(indexFile);
+                    if (Arrays.equals(columns, persisted.getColumns())
+                            && isUpToDate(persisted, typeName)) {
+                        index = persisted;
+                    } else if (LOGGER.isLoggable(Level.INFO)) {
+                        LOGGER.info("The granule index " + indexFile + " is out of date");
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Unable to open the granule index " + indexFile, e);
+                }
+            }
+            if (index == null) {
+                index = createIndex(typeName, columns, indexFile);
+            }
+            final SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+            builder.setName(schema.getName());
+            for (String column : columns) {
+                builder.add(schema.getDescriptor(column));
+            }
+            typeIndex = new TypeIndex(index, builder.buildFeatureType());
+            indexes.put(typeName, typeIndex);
+        }
+        return typeIndex;
+    }
+
+    /**
+     * Checks that a persisted index has as many granules as the store, and the same bounds.
+     * The stores which can't compute them cheaply are trusted.
+     */
+    private boolean isUpToDate(PackedGranuleIndex index, String typeName) throws IOException {
+        final int count = store.getGranulesCount(new Query(typeName));
+        if (count >= 0 && count != index.size()) {
+            return false;
+        }
+        final BoundingBox bounds = store.getBounds(typeName);
+        if (bounds == null) {
+            return true;
+        }
+        final double[] indexed = index.getBounds();
+        if (bounds.isEmpty() || indexed == null) {
+            return bounds.isEmpty() && indexed == null;
+        }
+        return equals(bounds.getMinX(), indexed[0]) && equals(bounds.getMinY(), indexed[1])
+                && equals(bounds.getMaxX(), indexed[2]) && equals(bounds.getMaxY(), indexed[3]);
+    }
+
+    private static boolean equals(double a, double b) {
+        return Math.abs(a - b) <= 1e-9 * Math.max(1, Math.max(Math.abs(a), Math.abs(b)));
+    }
+
+    /**
+     * Returns the attributes stored as columns in the index, the numbers and the dates.
+     */
+    private static String[] getColumns(SimpleFeatureType schema) {
+        final List<String> columns = new ArrayList<String>();
+        for (AttributeDescriptor descriptor : schema.getAttributeDescriptors()) {
+            final Class<?> binding = descriptor.getType().getBinding();
+            if (Number.class.isAssignableFrom(binding) || Date.class.isAssignableFrom(binding)) {
+                columns.add(descriptor.getLocalName());
+            }
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    private PackedGranuleIndex createIndex(String typeName, String[] columns, File indexFile)
+            throws IOException {
+        final long start = System.currentTimeMillis();
+        final PackedGranuleIndex.Builder builder = new PackedGranuleIndex.Builder(columns);
+        final double[] values = new double[columns.length];
+        final SimpleFeatureIterator it = store.getGranules(new Query(typeName)).features();
+        try {
+            while (it.hasNext()) {
+                final SimpleFeature sf = it.next();
+                final Geometry geometry = (Geometry) sf.getDefaultGeometry();
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = toDouble(sf.getAttribute(columns[i]));
+                }
+                if (geometry == null || geometry.isEmpty()) {
+                    // inverted infinite bounds, which no query will intersect
+                    builder.add(sf.getID(), Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, values);
+                } else {
+                    final Envelope envelope = geometry.getEnvelopeInternal();
+                    builder.add(sf.getID(), envelope.getMinX(), envelope.getMinY(),
+                            envelope.getMaxX(), envelope.getMaxY(), values);
+                }
+            }
+        } finally {
+            it.close();
+        }
+
+        PackedGranuleIndex index = null;
+        if (indexFile != null) {
+            try {
+                index = builder.build(indexFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to write the granule index " + indexFile
+                        + ", it will be kept in memory", e);
+            }
+        }
+        if (index == null) {
+            index = builder.build(null);
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Indexed " + index.size() + " granules of " + typeName + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        return index;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        return Double.NaN;
+    }
+
+    private static Object toValue(double value, Class<?> binding) {
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        if (Date.class.isAssignableFrom(binding)) {
+            if (Timestamp.class.equals(binding)) {
+                return new Timestamp((long) value);
+            } else if (java.sql.Date.class.equals(binding)) {
+                return new java.sql.Date((long) value);
+            }
+            return new Date((long) value);
+        }
+        final Object converted = Converters.convert(value, binding);
+        return converted != null ? converted : value;
+    }
+
+    /**
+     * Drops the index of the given type name, which will be rebuilt on the next query.
+     */
+    private synchronized void invalidateIndex(String typeName) {
+        indexes.remove(typeName);
+        final File indexFile = getIndexFile(typeName);
+        if (indexFile != null && indexFile.exists() && !indexFile.delete()) {
+            LOGGER.warning("Unable to delete the granule index " + indexFile);
+        }
+    }
+
+    /**
+     * Returns the rows of the granules which may match the filter. The filter is evaluated on
+     * the attribute columns, its parts which can't be evaluated on them being ignored.
+     */
+    private int[] getCandidates(TypeIndex typeIndex, Filter filter) {
+        final PackedGranuleIndex index = typeIndex.index;
+        final Utils.BBOXFilterExtractor bboxExtractor = new Utils.BBOXFilterExtractor();
+        filter.accept(bboxExtractor, null);
+        final ReferencedEnvelope bbox = bboxExtractor.getBBox();
+        final int[] rows = bbox != null ? index.query(bbox.getMinX(), bbox.getMinY(),
+                bbox.getMaxX(), bbox.getMaxY()) : index.query(Double.NEGATIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+        final SimpleFeatureType columnsType = typeIndex.columnsType;
+        final Set<String> columns = new HashSet<String>();
+        for (AttributeDescriptor descriptor : columnsType.getAttributeDescriptors()) {
+            columns.add(descriptor.getLocalName());
+        }
+        final Filter relaxed = relax(filter, columns);
+        if (relaxed == Filter.INCLUDE) {
+            return rows;
+        }
+        final SimpleFeatureBuilder builder = new SimpleFeatureBuilder(columnsType);
+        final int count = columnsType.getAttributeCount();
+        int matching = 0;
+        for (int row : rows) {
+            for (int i = 0; i < count; i++) {
+                builder.set(i, toValue(index.getValue(row, i), columnsType.getType(i)
+                        .getBinding()));
+            }
+            if (relaxed.evaluate(builder.buildFeature(index.getFeatureId(row)))) {
+                rows[matching++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, matching);
+    }
+
+    /**
+     * Returns a filter accepting at least all the features accepted by the given one, and
+     * which can be evaluated on the index columns. The spatial predicates and the predicates on
+     * other attributes are replaced by {@link Filter#INCLUDE}. Returns the given filter itself
+     * if it can be evaluated as is.
+     */
+    static Filter relax(Filter filter, Set<String> columns) {
+        if (filter instanceof And || filter instanceof Or) {
+            final List<Filter> children = filter instanceof And ? ((And) filter).getChildren()
+                    : ((Or) filter).getChildren();
+            final List<Filter> relaxed = new ArrayList<Filter>(children.size());
+            boolean changed = false;
+            for (Filter child : children) {
+                final Filter r = relax(child, columns);
+                changed |= r != child;
+                relaxed.add(r);
+            }
+            if (!changed) {
+                return filter;
+            }
+            if (filter instanceof Or) {
+                return relaxed.contains(Filter.INCLUDE) ? Filter.INCLUDE : Utils.FF.or(relaxed);
+            }
+            while (relaxed.remove(Filter.INCLUDE)) {
+                // only keep the restrictive children
+            }
+            return relaxed.isEmpty() ? Filter.INCLUDE : relaxed.size() == 1 ? relaxed.get(0)
+                    : Utils.FF.and(relaxed);
+        } else if (filter instanceof Not) {
+            // the negation of a relaxed filter would be more restrictive
+            final Filter child = ((Not) filter).getFilter();
+            return relax(child, columns) == child ? filter : Filter.INCLUDE;
+        } else if (filter == Filter.INCLUDE || filter == Filter.EXCLUDE || filter instanceof Id) {
+            return filter;
+        } else if (filter instanceof SpatialOperator) {
+            return Filter.INCLUDE;
+        }
+        for (String name : DataUtilities.attributeNames(filter)) {
+            if (!columns.contains(name)) {
+                return Filter.INCLUDE;
+            }
+        }
+        return filter;
+    }
+
+    private static boolean isSorted(Query q) {
+        final SortBy[] sortBy = q.getSortBy();
+        return sortBy != null && sortBy.length > 0;
+    }
+
+    private static int getStartIndex(Query q) {
+        final Integer startIndex = q.getStartIndex();
+        return startIndex != null ? Math.max(0, startIndex) : 0;
+    }
+
+    /**
+     * Reads the features with the given ids from the store, and matching the query. The
+     * paging of the query is ignored, it has to be applied on the index order.
+     */
+    private void readFeatures(Query q, String typeName, List<String> featureIds,
+            FeatureVisitor visitor) throws IOException {
+        for (int start = 0; start < featureIds.size(); start += MAX_IDS) {
+            final Set<FeatureId> ids = new HashSet<FeatureId>();
+            for (String id : featureIds.subList(start, Math.min(start + MAX_IDS,
+                    featureIds.size()))) {
+                ids.add(Utils.FF.featureId(id));
+            }
+            final Query query = new Query(q);
+            query.setTypeName(typeName);
+            query.setStartIndex(null);
+            query.setMaxFeatures(Query.DEFAULT_MAX);
+            query.setFilter(Utils.FF.and(Utils.FF.id(ids), q.getFilter()));
+            final SimpleFeatureIterator it = store.getGranules(query).features();
+            try {
+                while (it.hasNext()) {
+                    visitor.visit(it.next());
+                }
+            } finally {
+                it.close();
+            }
+        }
+    }
+
+    private interface FeatureVisitor {
+        void visit(SimpleFeature feature);
+    }
+
+    @Override
+    public void getGranuleDescriptors(Query q, final GranuleCatalogVisitor visitor)
+            throws IOException {
+        Utilities.ensureNonNull("q", q);
+        q = mergeHints(q);
+        if (isSorted(q)) {
+            descriptors.getGranuleDescriptors(q, visitor);
+            return;
+        }
+        final Filter filter = q.getFilter();
+        final String typeName = getTypeName(q);
+        final TypeIndex typeIndex = getIndex(typeName);
+        final PackedGranuleIndex index = typeIndex.index;
+        final int[] rows = getCandidates(typeIndex, filter);
+
+        // the cached granules, and the position of the other ones in the index order
+        final GranuleDescriptor[] granules = new GranuleDescriptor[rows.length];
+        final Map<String, Integer> missing = new HashMap<String, Integer>();
+        for (int i = 0; i < rows.length; i++) {
+            final String featureId = index.getFeatureId(rows[i]);
+            final GranuleDescriptor granule = descriptors.getCachedGranuleDescriptor(featureId);
+            if (granule == null) {
+                missing.put(featureId, i);
+            } else if (granule.getOriginator() != null
+                    && filter.evaluate(granule.getOriginator())) {
+                granules[i] = granule;
+            }
+        }
+        readFeatures(q, typeName, new ArrayList<String>(missing.keySet()), new FeatureVisitor() {
+            public void visit(SimpleFeature feature) {
+                final Integer position = missing.get(feature.getID());
+                if (position != null) {
+                    granules[position] = descriptors.getGranuleDescriptor(feature);
+                }
+            }
+        });
+
+        // ROI
+        final Utils.BBOXFilterExtractor bboxExtractor = new Utils.BBOXFilterExtractor();
+        filter.accept(bboxExtractor, null);
+        final ReferencedEnvelope requestedBBox = bboxExtractor.getBBox();
+        final Geometry intersectionGeometry = requestedBBox != null ? JTS
+                .toGeometry(requestedBBox) : null;
+        final int maxGranules = q.getMaxFeatures();
+        int skipped = getStartIndex(q);
+        int visited = 0;
+        for (GranuleDescriptor granule : granules) {
+            if (visited >= maxGranules) {
+                break;
+            }
+            if (granule != null
+                    && CachingDataStoreGranuleCatalog.isInRequestedArea(granule,
+                            intersectionGeometry)) {
+                if (skipped > 0) {
+                    skipped--;
+                    continue;
+                }
+                visitor.visit(granule, null);
+                visited++;
+            }
+        }
+    }
+
+    @Override
+    public SimpleFeatureCollection getGranules(Query q) throws IOException {
+        Utilities.ensureNonNull("q", q);
+        q = mergeHints(q);
+        if (isSorted(q)) {
+            return store.getGranules(q);
+        }
+        final String typeName = getTypeName(q);
+        final TypeIndex typeIndex = getIndex(typeName);
+        final PackedGranuleIndex index = typeIndex.index;
+        final int[] rows = getCandidates(typeIndex, q.getFilter());
+        final List<String> featureIds = new ArrayList<String>(rows.length);
+        final Map<String, Integer> positions = new HashMap<String, Integer>();
+        for (int i = 0; i < rows.length; i++) {
+            final String featureId = index.getFeatureId(rows[i]);
+            featureIds.add(featureId);
+            positions.put(featureId, i);
+        }
+        final SimpleFeature[] features = new SimpleFeature[rows.length];
+        readFeatures(q, typeName, featureIds, new FeatureVisitor() {
+            public void visit(SimpleFeature feature) {
+                final Integer position = positions.get(feature.getID());
+                if (position != null) {
+                    features[position] = feature;
+                }
+            }
+        });
+
+        SimpleFeatureType schema = null;
+        final List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        final int maxGranules = q.getMaxFeatures();
+        int skipped = getStartIndex(q);
+        for (SimpleFeature feature : features) {
+            if (result.size() >= maxGranules) {
+                break;
+            }
+            if (feature != null && skipped > 0) {
+                skipped--;
+            } else if (feature != null) {
+                schema = feature.getFeatureType();
+                result.add(feature);
+            }
+        }
+        return new ListFeatureCollection(schema != null ? schema : store.getType(typeName),
+                result);
+    }
+
+    @Override
+    public int getGranulesCount(Query q) throws IOException {
+        return store.getGranulesCount(mergeHints(q));
+    }
+
+    @Override
+    public void computeAggregateFunction(Query q, FeatureCalc function) throws IOException {
+        store.computeAggregateFunction(mergeHints(q), function);
+    }
+
+    @Override
+    public BoundingBox getBounds(String typeName) {
+        checkStore();
+        return store.getBounds(typeName);
+    }
+
+    @Override
+    public SimpleFeatureType getType(String typeName) throws IOException {
+        checkStore();
+        return store.getType(typeName);
+    }
+
+    @Override
+    public String[] getTypeNames() {
+        return store.getTypeNames();
+    }
+
+    @Override
+    public QueryCapabilities getQueryCapabilities(String typeName) {
+        return store.getQueryCapabilities(typeName);
+    }
+
+    @Override
+    public void addGranules(String typeName, Collection<SimpleFeature> granules,
+            Transaction transaction) throws IOException {
+        descriptors.addGranules(typeName, granules, transaction);
+        invalidateIndex(typeName);
+    }
+
+    @Override
+    public int removeGranules(Query query) {
+        final int removed = descriptors.removeGranules(query);
+        if (removed > 0) {
+            invalidateIndex(getTypeName(query));
+        }
+        return removed;
+    }
+
+    @Override
+    public void createType(String namespace, String typeName, String typeSpec)
+            throws IOException, SchemaException {
+        descriptors.createType(namespace, typeName, typeSpec);
+    }
+
+    @Override
+    public void createType(SimpleFeatureType featureType) throws IOException {
+        descriptors.createType(featureType);
+    }
+
+    @Override
+    public void createType(String identification, String typeSpec) throws SchemaException,
+            IOException {
+        descriptors.createType(identification, typeSpec);
+    }
+
+    @Override
+    public void removeType(String typeName) throws IOException {
+        descriptors.removeType(typeName);
+        invalidateIndex(typeName);
+    }
+
+    @Override
+    public void setMultiScaleROIProvider(MultiLevelROIProvider footprintProvider) {
+        super.setMultiScaleROIProvider(footprintProvider);
+        descriptors.setMultiScaleROIProvider(footprintProvider);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        // also disposes the store and the footprint provider
+        descriptors.dispose();
+        multiScaleROIProvider = null;
+        indexes.clear();
+        disposed = true;
+    }
+
+    /**
+     * @throws IllegalStateException
+     */
+    private void checkStore() throws IllegalStateException {
+        if (disposed)
+            throw new IllegalStateException("The underlying store has already been disposed!");
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic;
+
+import it.geosolutions.imageioimpl.plugins.tiff.TIFFImageReaderSpi;
+
+import java.net.URL;
+import java.util.Collections;
+
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.spi.ImageReaderSpi;
+
+import org.geotools.coverage.grid.io.imageio.MaskOverviewProvider;
+import org.geotools.gce.imagemosaic.GranuleReaderPool.PooledReader;
+import org.geotools.test.TestData;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link GranuleReaderPool} class.
+ *
+ * @source $URL$
+ */
+public class GranuleReaderPoolTest extends Assert {
+
+    private static final ImageReaderSpi READER_SPI = new TIFFImageReaderSpi();
+
+    @Test
+    public void testReuse() throws Exception {
+        final URL testUrl = TestData.url(this, "/overview/0/D220161A.tif");
+        final ImageInputStreamSpi streamSpi = MaskOverviewProvider.getInputStreamSPIFromURL(testUrl);
+        final GranuleReaderPool pool = new GranuleReaderPool(2, 60000);
+
+        PooledReader first = pool.borrow(testUrl, streamSpi, READER_SPI);
+        assertNotNull(first);
+        assertSame(first.stream, first.reader.getInput());
+        assertTrue(first.reader.getNumImages(true) > 0);
+        // a concurrent read gets its own reader
+        PooledReader second = pool.borrow(testUrl, streamSpi, READER_SPI);
+        assertNotSame(first, second);
+        assertEquals(2, pool.getOpenHandles());
+        assertEquals(0, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+
+        pool.release(first);
+        pool.release(second);
+        assertEquals(2, pool.getIdleHandles());
+        assertEquals(2, pool.getOpenHandles());
+
+        // the most recently used one is reused
+        assertSame(second, pool.borrow(testUrl, streamSpi, READER_SPI));
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1d / 3, pool.getHitRate(), 1E-9);
+
+        pool.discard(second);
+        assertEquals(1, pool.getOpenHandles());
+        pool.clear();
+        assertEquals(0, pool.getIdleHandles());
+        assertEquals(0, pool.getOpenHandles());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final URL testUrl = TestData.url(this, "/overview/0/D220161A.tif");
+        final ImageInputStreamSpi streamSpi = MaskOverviewProvider.getInputStreamSPIFromURL(testUrl);
+
+        // bounded number of idle readers
+        GranuleReaderPool pool = new GranuleReaderPool(1, 60000);
+        PooledReader first = pool.borrow(testUrl, streamSpi, READER_SPI);
+        PooledReader second = pool.borrow(testUrl, streamSpi, READER_SPI);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(1, pool.getIdleHandles());
+        assertEquals(1, pool.getOpenHandles());
+        assertSame(second, pool.borrow(testUrl, streamSpi, READER_SPI));
+        pool.discard(second);
+
+        // idle timeout
+        pool = new GranuleReaderPool(2, 0);
+        first = pool.borrow(testUrl, streamSpi, READER_SPI);
+        pool.release(first);
+        assertNotSame(first, pool.borrow(testUrl, streamSpi, READER_SPI));
+        assertEquals(1, pool.getOpenHandles());
+        assertEquals(0, pool.getHitCount());
+    }
+
+    @Test
+    public void testBackgroundEviction() throws Exception {
+        final URL testUrl = TestData.url(this, "/overview/0/D220161A.tif");
+        final ImageInputStreamSpi streamSpi = MaskOverviewProvider.getInputStreamSPIFromURL(testUrl);
+        final GranuleReaderPool pool = new GranuleReaderPool(2, 100);
+        pool.release(pool.borrow(testUrl, streamSpi, READER_SPI));
+        assertEquals(1, pool.getIdleHandles());
+
+        // closed without any further borrow or release
+        final long end = System.currentTimeMillis() + 5000;
+        while (pool.getOpenHandles() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, pool.getIdleHandles());
+        assertEquals(0, pool.getOpenHandles());
+    }
+
+    @Test
+    public void testClearGranules() throws Exception {
+        final URL testUrl = TestData.url(this, "/overview/0/D220161A.tif");
+        final URL otherUrl = TestData.url(this, "/overview/0/1/D220361A.tif");
+        final ImageInputStreamSpi streamSpi = MaskOverviewProvider.getInputStreamSPIFromURL(testUrl);
+        final GranuleReaderPool pool = new GranuleReaderPool(4, 60000);
+        pool.release(pool.borrow(testUrl, streamSpi, READER_SPI));
+        PooledReader other = pool.borrow(otherUrl, streamSpi, READER_SPI);
+        pool.release(other);
+        assertEquals(2, pool.getIdleHandles());
+
+        // only the readers on the given granules are closed
+        pool.clear(Collections.singleton(testUrl));
+        assertEquals(1, pool.getIdleHandles());
+        assertEquals(1, pool.getOpenHandles());
+        assertSame(other, pool.borrow(otherUrl, streamSpi, READER_SPI));
+        pool.discard(other);
+    }
+}
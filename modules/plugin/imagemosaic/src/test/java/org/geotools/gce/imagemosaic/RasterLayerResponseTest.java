@@ -16,17 +16,25 @@
  */
 package org.geotools.gce.imagemosaic;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.awt.image.Raster;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridEnvelope2D;
 import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
+import org.geotools.factory.Hints;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.referencing.operation.matrix.XAffineTransform;
 import org.geotools.referencing.operation.transform.AffineTransform2D;
@@ -86,4 +94,65 @@ public class RasterLayerResponseTest {
             }
         }
     }
+
+    @Test
+    public void testLoadingMemoryBudget() throws Exception {
+        final URL testMosaic = TestData.url(this, "rgb");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        ImageMosaicReader reader = null;
+        try {
+            reader = (ImageMosaicReader) new ImageMosaicFormat().getReader(testMosaic,
+                    new Hints(Hints.EXECUTOR_SERVICE, executor));
+            final ParameterValue<Boolean> multithreading = ImageMosaicFormat.ALLOW_MULTITHREADING
+                    .createValue();
+            multithreading.setValue(true);
+            final RasterManager manager = reader.getRasterManager(reader.getGridCoverageNames()[0]);
+
+            // a budget smaller than any granule, they are loaded one at a time
+            final RasterLayerResponse unbounded = createResponse(manager, multithreading,
+                    Long.MAX_VALUE);
+            final RasterLayerResponse bounded = createResponse(manager, multithreading, 1);
+            final Raster expected = unbounded.createResponse().getRenderedImage().getData();
+            final GridCoverage2D coverage = bounded.createResponse();
+            final Raster actual = coverage.getRenderedImage().getData();
+            assertEquals(expected.getBounds(), actual.getBounds());
+            assertArrayEquals(expected.getPixels(expected.getMinX(), expected.getMinY(),
+                    expected.getWidth(), expected.getHeight(), (int[]) null), actual.getPixels(
+                    actual.getMinX(), actual.getMinY(), actual.getWidth(), actual.getHeight(),
+                    (int[]) null));
+
+            // the granules waiting to be mosaicked are still counted against the budget
+            final long loadingMemory = getField(bounded, "loadingMemory", Long.class);
+            assertTrue(loadingMemory > 1);
+            assertEquals(loadingMemory, (long) getField(unbounded, "loadingMemory", Long.class));
+            assertTrue(getField(bounded, "pendingGranules", Map.class).isEmpty());
+        } finally {
+            executor.shutdown();
+            if (reader != null) {
+                try {
+                    reader.dispose();
+                } catch (Throwable t) {
+
+                }
+            }
+        }
+    }
+
+    private RasterLayerResponse createResponse(RasterManager manager,
+            ParameterValue<Boolean> multithreading, long maxLoadingMemory) throws Exception {
+        final RasterLayerRequest request = new RasterLayerRequest(
+                new GeneralParameterValue[] { multithreading }, manager);
+        final RasterLayerResponse response = new RasterLayerResponse(request, manager);
+        Field field = RasterLayerResponse.class.getDeclaredField("maxLoadingMemory");
+        field.setAccessible(true);
+        field.setLong(response, maxLoadingMemory);
+        return response;
+    }
+
+    private static <T> T getField(RasterLayerResponse response, String name, Class<T> type)
+            throws Exception {
+        Field field = RasterLayerResponse.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return type.cast(field.get(response));
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Testing {@link PackedGranuleIndex} class.
+ *
+ * @source $URL$
+ */
+public class PackedGranuleIndexTest extends Assert {
+
+    private static final int SIZE = 5000;
+
+    @Test
+    public void testQuery() throws Exception {
+        final Random random = new Random(42);
+        final double[][] boxes = new double[SIZE][];
+        final PackedGranuleIndex.Builder builder = new PackedGranuleIndex.Builder(
+                new String[] { "elevation" });
+        for (int i = 0; i < SIZE; i++) {
+            final double x = random.nextDouble() * 360 - 180;
+            final double y = random.nextDouble() * 180 - 90;
+            boxes[i] = new double[] { x, y, x + random.nextDouble(), y + random.nextDouble() };
+            builder.add("granule." + i, boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3],
+                    new double[] { i % 10 == 0 ? Double.NaN : i });
+        }
+        assertEquals(SIZE, builder.size());
+
+        final File file = File.createTempFile("granules", ".gcx");
+        try {
+            builder.build(file);
+            final PackedGranuleIndex index = PackedGranuleIndex.open(file);
+            assertEquals(SIZE, index.size());
+            assertArrayEquals(new String[] { "elevation" }, index.getColumns());
+
+            for (int q = 0; q < 100; q++) {
+                final double x = random.nextDouble() * 360 - 180;
+                final double y = random.nextDouble() * 180 - 90;
+                final double size = random.nextDouble() * 20;
+                assertQuery(index, boxes, x, y, x + size, y + size);
+            }
+            // the whole world
+            assertEquals(SIZE, index.query(-180, -90, 181, 91).length);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertQuery(PackedGranuleIndex index, double[][] boxes, double minX,
+            double minY, double maxX, double maxY) {
+        final Set<Integer> expected = new TreeSet<Integer>();
+        for (int i = 0; i < boxes.length; i++) {
+            if (boxes[i][0] <= maxX && boxes[i][1] <= maxY && boxes[i][2] >= minX
+                    && boxes[i][3] >= minY) {
+                expected.add(i);
+            }
+        }
+        final Set<Integer> actual = new TreeSet<Integer>();
+        int previous = -1;
+        for (int row : index.query(minX, minY, maxX, maxY)) {
+            assertTrue(row > previous);
+            previous = row;
+            final int i = Integer.parseInt(index.getFeatureId(row).substring("granule.".length()));
+            if (i % 10 == 0) {
+                assertTrue(Double.isNaN(index.getValue(row, 0)));
+            } else {
+                assertEquals(i, index.getValue(row, 0), 0);
+            }
+            actual.add(i);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        final PackedGranuleIndex index = new PackedGranuleIndex.Builder(new String[0]).build(null);
+        assertEquals(0, index.size());
+        assertEquals(0, index.query(-180, -90, 180, 90).length);
+    }
+
+    @Test
+    public void testInvertedEnvelope() throws Exception {
+        // granules without a geometry are never returned
+        final PackedGranuleIndex.Builder builder = new PackedGranuleIndex.Builder(new String[0]);
+        builder.add("granule.0", Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, new double[0]);
+        builder.add("granule.1", 0, 0, 1, 1, new double[0]);
+        builder.add("granule.2", 5, 5, 6, 6, new double[0]);
+        final PackedGranuleIndex index = builder.build(null);
+        assertEquals(3, index.size());
+        assertEquals(2, index.query(-Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE,
+                Double.MAX_VALUE).length);
+        final int[] rows = index.query(-10, -10, 2, 2);
+        assertEquals(1, rows.length);
+        assertEquals("granule.1", index.getFeatureId(rows[0]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws Exception {
+        final File file = File.createTempFile("granules", ".gcx");
+        try {
+            final FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(new byte[] { 'N', 'O', 'P', 'E', 0, 0, 0, 1 });
+            } finally {
+                out.close();
+            }
+            PackedGranuleIndex.open(file);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.gce.imagemosaic.catalog;
+
+import static org.geotools.gce.imagemosaic.Utils.FF;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.h2.H2DataStoreFactory;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.gce.imagemosaic.Utils;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+
+/**
+ * Testing {@link PackedSTRTreeGranuleCatalog} class.
+ *
+ * @source $URL$
+ */
+public class PackedSTRTreeGranuleCatalogTest extends Assert {
+
+    private static final Set<String> COLUMNS = Collections.singleton("elevation");
+
+    private static final Filter ELEVATION = FF.equals(FF.property("elevation"), FF.literal(10));
+
+    private static final Filter LOCATION = FF.like(FF.property("location"), "*.tif");
+
+    private static final Filter BBOX = FF.bbox("the_geom", 0, 0, 10, 10, "EPSG:4326");
+
+    private static final H2DataStoreFactory SPI = new H2DataStoreFactory();
+
+    private File directory;
+
+    private Properties params;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("packed", "catalog");
+        directory.delete();
+        directory.mkdir();
+        params = new Properties();
+        params.put("dbtype", "h2");
+        params.put("database", "granules");
+        params.put(Utils.Prop.PARENT_LOCATION, DataUtilities.fileToURL(directory).toString());
+        params.put(Utils.Prop.LOCATION_ATTRIBUTE, "location");
+
+        // two mosaics in the same store, the granules of the second one are further north
+        final GranuleCatalog catalog = new GTDataStoreGranuleCatalog(params, true, SPI, null);
+        try {
+            for (String typeName : new String[] { "red", "blue" }) {
+                catalog.createType(DataUtilities.createType(typeName,
+                        "the_geom:Polygon,location:String,elevation:Integer"));
+            }
+            catalog.addGranules("red", createGranules("red", 0, 10), Transaction.AUTO_COMMIT);
+            catalog.addGranules("blue", createGranules("blue", 10, 5), Transaction.AUTO_COMMIT);
+        } finally {
+            catalog.dispose();
+        }
+        params.put(Utils.SCAN_FOR_TYPENAMES, "true");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Returns granules of one degree, side by side along the x axis, with their x as elevation.
+     */
+    private List<SimpleFeature> createGranules(String typeName, double y, int count)
+            throws Exception {
+        final SimpleFeatureType type = DataUtilities.createType(typeName,
+                "the_geom:Polygon,location:String,elevation:Integer");
+        final List<SimpleFeature> granules = new ArrayList<SimpleFeature>();
+        for (int i = 0; i < count; i++) {
+            granules.add(createGranule(type, i, y));
+        }
+        return granules;
+    }
+
+    private SimpleFeature createGranule(SimpleFeatureType type, int x, double y) {
+        return SimpleFeatureBuilder.build(type, new Object[] {
+                JTS.toGeometry(new ReferencedEnvelope(x, x + 1, y, y + 1, null)),
+                type.getTypeName() + x + ".tif", x }, null);
+    }
+
+    private static Set<Object> getElevations(SimpleFeatureCollection granules) {
+        final Set<Object> elevations = new HashSet<Object>();
+        final SimpleFeatureIterator it = granules.features();
+        try {
+            while (it.hasNext()) {
+                elevations.add(it.next().getAttribute("elevation"));
+            }
+        } finally {
+            it.close();
+        }
+        return elevations;
+    }
+
+    @Test
+    public void testTypeNames() throws Exception {
+        final PackedSTRTreeGranuleCatalog catalog = new PackedSTRTreeGranuleCatalog(params, SPI,
+                null);
+        try {
+            assertEquals(new HashSet<String>(Arrays.asList("red", "blue")),
+                    new HashSet<String>(Arrays.asList(catalog.getTypeNames())));
+            assertEquals(10, catalog.getGranules(new Query("red")).size());
+            assertEquals(5, catalog.getGranules(new Query("blue")).size());
+            assertTrue(catalog.getIndexFile("red").exists());
+            assertTrue(catalog.getIndexFile("blue").exists());
+
+            // each type name is queried in its own index
+            final Filter bbox = FF.bbox("the_geom", 2.5, 0.25, 5.5, 10.75, null);
+            assertEquals(new HashSet<Object>(Arrays.asList(2, 3, 4, 5)),
+                    getElevations(catalog.getGranules(new Query("red", bbox))));
+            assertEquals(new HashSet<Object>(Arrays.asList(2, 3, 4)),
+                    getElevations(catalog.getGranules(new Query("blue", bbox))));
+            final Filter filter = FF.and(bbox, FF.greater(FF.property("elevation"),
+                    FF.literal(3)));
+            assertEquals(new HashSet<Object>(Arrays.asList(4, 5)),
+                    getElevations(catalog.getGranules(new Query("red", filter))));
+        } finally {
+            catalog.dispose();
+        }
+    }
+
+    @Test
+    public void testPaging() throws Exception {
+        final PackedSTRTreeGranuleCatalog catalog = new PackedSTRTreeGranuleCatalog(params, SPI,
+                null);
+        try {
+            final Set<Object> elevations = new HashSet<Object>();
+            for (int start = 0; start < 10; start += 3) {
+                final Query query = new Query("red");
+                query.setStartIndex(start);
+                query.setMaxFeatures(3);
+                final Set<Object> page = getElevations(catalog.getGranules(query));
+                assertEquals(Math.min(3, 10 - start), page.size());
+                elevations.addAll(page);
+            }
+            assertEquals(10, elevations.size());
+        } finally {
+            catalog.dispose();
+        }
+    }
+
+    @Test
+    public void testOutOfDate() throws Exception {
+        PackedSTRTreeGranuleCatalog catalog = new PackedSTRTreeGranuleCatalog(params, SPI, null);
+        try {
+            assertEquals(10, catalog.getGranules(new Query("red")).size());
+        } finally {
+            catalog.dispose();
+        }
+
+        // move a granule behind the catalog back, keeping the same number of granules
+        final GranuleCatalog store = new GTDataStoreGranuleCatalog(params, false, SPI, null);
+        try {
+            final SimpleFeatureType type = store.getType("red");
+            assertEquals(1, store.removeGranules(new Query("red", FF.equals(
+                    FF.property("elevation"), FF.literal(9)))));
+            store.addGranules("red", Collections.singletonList(createGranule(type, 20, 0)),
+                    Transaction.AUTO_COMMIT);
+        } finally {
+            store.dispose();
+        }
+
+        catalog = new PackedSTRTreeGranuleCatalog(params, SPI, null);
+        try {
+            assertEquals(Collections.singleton((Object) 20), getElevations(catalog.getGranules(
+                    new Query("red", FF.bbox("the_geom", 20.25, 0.25, 20.75, 0.75, null)))));
+            assertEquals(0, catalog.getGranules(new Query("red", FF.bbox("the_geom", 9.25,
+                    0.25, 9.75, 0.75, null))).size());
+        } finally {
+            catalog.dispose();
+        }
+    }
+
+    @Test
+    public void testExact() {
+        assertSame(ELEVATION, PackedSTRTreeGranuleCatalog.relax(ELEVATION, COLUMNS));
+        assertSame(Filter.EXCLUDE, PackedSTRTreeGranuleCatalog.relax(Filter.EXCLUDE, COLUMNS));
+        final Filter not = FF.not(ELEVATION);
+        assertSame(not, PackedSTRTreeGranuleCatalog.relax(not, COLUMNS));
+    }
+
+    @Test
+    public void testRelaxed() {
+        assertSame(Filter.INCLUDE, PackedSTRTreeGranuleCatalog.relax(BBOX, COLUMNS));
+        assertSame(Filter.INCLUDE, PackedSTRTreeGranuleCatalog.relax(LOCATION, COLUMNS));
+        // the negation of a relaxed filter can't be evaluated on the index
+        assertSame(Filter.INCLUDE, PackedSTRTreeGranuleCatalog.relax(FF.not(LOCATION), COLUMNS));
+        assertSame(Filter.INCLUDE,
+                PackedSTRTreeGranuleCatalog.relax(FF.or(ELEVATION, LOCATION), COLUMNS));
+    }
+
+    @Test
+    public void testAnd() {
+        assertEquals(ELEVATION, PackedSTRTreeGranuleCatalog.relax(FF.and(BBOX, ELEVATION),
+                COLUMNS));
+        assertSame(Filter.INCLUDE, PackedSTRTreeGranuleCatalog.relax(FF.and(BBOX, LOCATION),
+                COLUMNS));
+        final Filter lower = FF.greater(FF.property("elevation"), FF.literal(0));
+        assertEquals(FF.and(lower, ELEVATION), PackedSTRTreeGranuleCatalog.relax(
+                FF.and(FF.and(lower, LOCATION), FF.and(BBOX, ELEVATION)), COLUMNS));
+    }
+}
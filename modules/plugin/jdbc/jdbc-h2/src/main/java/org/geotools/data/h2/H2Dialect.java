@@ -26,9 +26,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 
+import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.Geometries;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.SQLDialect;
@@ -68,6 +70,11 @@ public class H2Dialect extends SQLDialect {
     
     public static String H2_SPATIAL_INDEX = "org.geotools.data.h2.spatialIndex";
     
+    /**
+     * Whether the functions backing the geometry clip and snap hints have been registered
+     */
+    boolean geometryFunctionsEnabled = false;
+    
     public H2Dialect( JDBCDataStore dataStore ) {
         super( dataStore );
     }
@@ -81,6 +88,64 @@ public class H2Dialect extends SQLDialect {
     public void initializeConnection(Connection cx) throws SQLException {
         //spatialize the database
         GeoDB.InitGeoDB(cx);
+        
+        //register the functions used to clip and snap geometries
+        Statement st = cx.createStatement();
+        try {
+            st.execute("CREATE ALIAS IF NOT EXISTS GT_ClipByBox FOR \""
+                    + JTS.class.getName() + ".ClipByBox\"");
+            st.execute("CREATE ALIAS IF NOT EXISTS GT_SnapToGrid FOR \""
+                    + JTS.class.getName() + ".SnapToGrid\"");
+            geometryFunctionsEnabled = true;
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Could not register the geometry clip and snap functions", e);
+        } finally {
+            dataStore.closeSafe(st);
+        }
+    }
+    
+    @Override
+    public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid,
+            Hints hints, StringBuffer sql) {
+        Envelope clip = null;
+        Double snap = null;
+        if (hints != null && geometryFunctionsEnabled) {
+            Class<?> binding = gatt.getType().getBinding();
+            if (!Point.class.isAssignableFrom(binding)
+                    && !MultiPoint.class.isAssignableFrom(binding)) {
+                clip = (Envelope) hints.get(Hints.GEOMETRY_CLIP);
+                if (clip != null && clip.isNull()) {
+                    clip = null;
+                }
+            }
+            snap = (Double) hints.get(Hints.GEOMETRY_SNAP);
+            if (snap != null && !(snap > 0)) {
+                snap = null;
+            }
+        }
+        
+        if (snap != null) {
+            sql.append("GT_SnapToGrid(");
+        }
+        if (clip != null) {
+            sql.append("GT_ClipByBox(");
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append(", " + clip.getMinX() + ", " + clip.getMinY() + ", " + clip.getMaxX()
+                    + ", " + clip.getMaxY() + ")");
+        } else {
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+        }
+        if (snap != null) {
+            sql.append(", " + snap + ")");
+        }
+    }
+    
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        if (geometryFunctionsEnabled) {
+            hints.add(Hints.GEOMETRY_CLIP);
+            hints.add(Hints.GEOMETRY_SNAP);
+        }
     }
     
     @Override
@@ -535,6 +600,11 @@ public class H2Dialect extends SQLDialect {
         }
     }
     
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+
     @Override
     public boolean isLimitOffsetSupported() {
         return true;
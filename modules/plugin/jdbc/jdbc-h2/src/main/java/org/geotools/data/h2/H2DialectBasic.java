@@ -22,8 +22,10 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
+import java.util.Set;
 
 import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.factory.Hints;
 import org.geotools.jdbc.BasicSQLDialect;
 import org.geotools.jdbc.JDBCDataStore;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -61,6 +63,17 @@ public class H2DialectBasic extends BasicSQLDialect {
     public void initializeConnection(Connection cx) throws SQLException {
         delegate.initializeConnection(cx);
     }
+
+    @Override
+    public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid,
+            Hints hints, StringBuffer sql) {
+        delegate.encodeGeometryColumn(gatt, prefix, srid, hints, sql);
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        delegate.addSupportedHints(hints);
+    }
     
     @Override
     public boolean includeTable(String schemaName, String tableName, Connection cx)
@@ -156,6 +169,11 @@ public class H2DialectBasic extends BasicSQLDialect {
     public boolean lookupGeneratedValuesPostInsert() {
         return delegate.lookupGeneratedValuesPostInsert();
     }
+
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return delegate.isMultiRowInsertSupported();
+    }
     
     @Override
     public Object getNextAutoGeneratedValue(String schemaName,
@@ -26,7 +26,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.Map;
+import java.util.Set;
 
+import org.geotools.factory.Hints;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.PreparedStatementSQLDialect;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -61,6 +63,17 @@ public class H2DialectPrepared extends PreparedStatementSQLDialect {
     public void initializeConnection(Connection cx) throws SQLException {
         delegate.initializeConnection(cx);
     }
+
+    @Override
+    public void encodeGeometryColumn(GeometryDescriptor gatt, String prefix, int srid,
+            Hints hints, StringBuffer sql) {
+        delegate.encodeGeometryColumn(gatt, prefix, srid, hints, sql);
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        delegate.addSupportedHints(hints);
+    }
     
     @Override
     public boolean includeTable(String schemaName, String tableName, Connection cx)
@@ -156,6 +169,11 @@ public class H2DialectPrepared extends PreparedStatementSQLDialect {
     public boolean lookupGeneratedValuesPostInsert() {
         return delegate.lookupGeneratedValuesPostInsert();
     }
+
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return delegate.isMultiRowInsertSupported();
+    }
     
     @Override
     public Object getNextAutoGeneratedValue(String schemaName,
@@ -20,14 +20,18 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
+import org.geotools.geometry.jts.GeometryClipper;
+
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.PrecisionModel;
 import com.vividsolutions.jts.io.InputStreamInStream;
 import com.vividsolutions.jts.io.OutputStreamOutStream;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKBReader;
 import com.vividsolutions.jts.io.WKBWriter;
 import com.vividsolutions.jts.io.WKTReader;
+import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
 
 /**
  * Static collection of JTS operations.
@@ -153,6 +157,53 @@ public class JTS {
         return g != null ? g.getGeometryType().toUpperCase() : null;
     }
     
+    /**
+     * Clips the geometry to the specified box, returning <code>null</code> if nothing is left.
+     * Backs the {@link org.geotools.factory.Hints#GEOMETRY_CLIP} hint support.
+     */
+    public static byte[] ClipByBox( byte[] wkb, double minx, double miny, double maxx, double maxy ) {
+        if ( wkb == null ) {
+            return null;
+        }
+        
+        Geometry g = readWKB( wkb );
+        Geometry clipped = new GeometryClipper( new Envelope( minx, maxx, miny, maxy ) ).clip( g, false );
+        return clipped != null ? writeWKB( clipped, g ) : null;
+    }
+    
+    /**
+     * Snaps the coordinates of the geometry to a grid of the specified size, removing the 
+     * repeated points. Backs the {@link org.geotools.factory.Hints#GEOMETRY_SNAP} hint support.
+     */
+    public static byte[] SnapToGrid( byte[] wkb, double size ) {
+        if ( wkb == null || size <= 0 ) {
+            return wkb;
+        }
+        
+        Geometry g = readWKB( wkb );
+        GeometryPrecisionReducer reducer = new GeometryPrecisionReducer( new PrecisionModel( 1 / size ) );
+        reducer.setPointwise( true );
+        return writeWKB( reducer.reduce( g ), g );
+    }
+    
+    private static Geometry readWKB( byte[] wkb ) {
+        try {
+            return new WKBReader().read( wkb );
+        } 
+        catch (ParseException e) {
+            throw new RuntimeException( e );
+        }
+    }
+    
+    /**
+     * Writes the geometry with the same dimension and srid as the original one
+     */
+    private static byte[] writeWKB( Geometry g, Geometry original ) {
+        boolean is3D = !original.isEmpty() && !Double.isNaN( original.getCoordinate().z );
+        g.setSRID( original.getSRID() );
+        return new WKBWriter( is3D ? 3 : 2, original.getSRID() != 0 ).write( g );
+    }
+    
     private static Geometry fromWKB( byte[] wkb ) {
         
         try {
@@ -17,6 +17,8 @@
 package org.geotools.data.postgis;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Array;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
@@ -36,12 +38,15 @@ import java.util.UUID;
 import java.util.logging.Level;
 
 import org.geotools.data.jdbc.FilterToSQL;
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
 import org.geotools.factory.Hints;
 import org.geotools.geometry.jts.CircularRing;
 import org.geotools.geometry.jts.CircularString;
 import org.geotools.geometry.jts.CompoundCurve;
 import org.geotools.geometry.jts.CompoundRing;
 import org.geotools.geometry.jts.CurvePolygon;
+import org.geotools.geometry.jts.CurvedGeometry;
 import org.geotools.geometry.jts.CurvedRing;
 import org.geotools.geometry.jts.MultiCurve;
 import org.geotools.geometry.jts.MultiSurface;
@@ -56,6 +61,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
@@ -69,6 +76,7 @@ import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBWriter;
 import com.vividsolutions.jts.io.WKTReader;
 import com.vividsolutions.jts.io.WKTWriter;
 
@@ -153,10 +161,34 @@ public class PostGISDialect extends BasicSQLDialect {
 
     static final Version V_2_0_0 = new Version("2.0.0");
 
+    static final Version V_2_2_0 = new Version("2.2.0");
+
     static final Version PGSQL_V_9_0 = new Version("9.0");
     
     static final Version PGSQL_V_9_1 = new Version("9.1");
 
+    /**
+     * The way geometries are transferred from the database
+     */
+    public enum GeometryTransfer {
+        /**
+         * Base64 encoded WKB/EWKB, the most compatible option
+         */
+        BASE64,
+        /**
+         * Raw WKB/EWKB bytes, avoids the base64 encoding and decoding, and the 33% size increase
+         * that comes with it, when the driver gets bytea values in binary form
+         */
+        BINARY,
+        /**
+         * Like {@link #BINARY}, but geometries are sent as TWKB (delta encoded varints, much
+         * smaller than WKB) when the query carries a {@link Hints#GEOMETRY_DISTANCE} or
+         * {@link Hints#GEOMETRY_SIMPLIFICATION} hint providing the precision. Requires PostGIS
+         * 2.2 or better, falls back on {@link #BINARY} otherwise.
+         */
+        TWKB
+    }
+
     public PostGISDialect(JDBCDataStore dataStore) {
         super(dataStore);
     }
@@ -170,6 +202,10 @@ public class PostGISDialect extends BasicSQLDialect {
     boolean functionEncodingEnabled = false;
     
     boolean simplifyEnabled = true;
+
+    GeometryTransfer geometryTransfer = GeometryTransfer.BASE64;
+
+    boolean bulkInsertEnabled = false;
     
     Version version, pgsqlVersion;
 
@@ -222,11 +258,61 @@ public class PostGISDialect extends BasicSQLDialect {
         this.simplifyEnabled = simplifyEnabled;
     }
 
+    public GeometryTransfer getGeometryTransfer() {
+        return geometryTransfer;
+    }
+
+    /**
+     * Sets the way geometries are transferred from the database
+     * 
+     * @see PostgisNGDataStoreFactory#GEOMETRY_TRANSFER
+     */
+    public void setGeometryTransfer(GeometryTransfer geometryTransfer) {
+        this.geometryTransfer = geometryTransfer;
+    }
+
+    public boolean isBulkInsertEnabled() {
+        return bulkInsertEnabled;
+    }
+
+    /**
+     * Enables/disables loading batches of new features with COPY instead of INSERT
+     * 
+     * @see PostgisNGDataStoreFactory#BULK_INSERT
+     */
+    public void setBulkInsertEnabled(boolean bulkInsertEnabled) {
+        this.bulkInsertEnabled = bulkInsertEnabled;
+    }
+
+    /**
+     * Returns true if TWKB transfer is enabled and supported by the database
+     */
+    boolean isTWKBEnabled() {
+        return geometryTransfer == GeometryTransfer.TWKB && version != null
+                && version.compareTo(V_2_2_0) >= 0;
+    }
+
+    /**
+     * Returns true if the database can clip geometries, see {@link Hints#GEOMETRY_CLIP}
+     */
+    boolean isClipSupported() {
+        return version != null && version.compareTo(V_2_2_0) >= 0;
+    }
+
 
     @Override
     public void initializeConnection(Connection cx) throws SQLException {
         super.initializeConnection(cx);
         getPostgreSQLVersion(cx);
+        if (version == null) {
+            // need the PostGIS version to know if ST_AsTWKB and ST_ClipByBox2D are available
+            try {
+                getVersion(cx);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "Failed to look up the PostGIS version, "
+                        + "TWKB geometry transfer and geometry clipping will not be used", e);
+            }
+        }
     }
 
     @Override
@@ -275,9 +361,10 @@ public class PostGISDialect extends BasicSQLDialect {
         if(reader == null) {
             reader = new WKBAttributeIO(factory);
             wkbReader.set(reader);
-        }  else {
+        } else {
             reader.setGeometryFactory(factory);
         }
+        reader.setBase64EncodingEnabled(geometryTransfer == GeometryTransfer.BASE64);
         return reader;
     }
 
@@ -295,29 +382,141 @@ public class PostGISDialect extends BasicSQLDialect {
                 JDBCDataStore.JDBC_NATIVE_TYPENAME));
     
         if (geography) {
-            sql.append("encode(ST_AsBinary(");
+            openGeometryTransfer("ST_AsBinary", sql);
             encodeColumnName(prefix, gatt.getLocalName(), sql);
-            sql.append("),'base64')");
+            closeGeometryTransfer(sql);
         }
         else {
             boolean force2D = hints != null && hints.containsKey(Hints.FEATURE_2D) && 
                 Boolean.TRUE.equals(hints.get(Hints.FEATURE_2D));
+            Double distance = hints != null ? (Double) hints.get(Hints.GEOMETRY_DISTANCE) : null;
 
-            if (force2D) {
-                sql.append("encode(ST_AsBinary(ST_Force_2D(");
-                encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append(")),'base64')");
+            boolean checkArcs = !NON_CURVED_GEOMETRY_CLASSES.contains(gatt.getType().getBinding());
+
+            if (distance != null && isTWKBEnabled() && !checkArcs) {
+                int precision = getTWKBPrecision(distance);
+                if (force2D) {
+                    sql.append("ST_AsTWKB(ST_Force_2D(");
+                    encodeReducedColumn(gatt, prefix, hints, checkArcs, sql);
+                    sql.append("), " + precision + ")");
+                } else {
+                    // z and m at least to the unit, their scale is unrelated to the distance
+                    int zmPrecision = Math.max(0, precision);
+                    sql.append("ST_AsTWKB(");
+                    encodeReducedColumn(gatt, prefix, hints, checkArcs, sql);
+                    sql.append(", " + precision + ", " + zmPrecision + ", " + zmPrecision + ")");
+                }
+            } else if (force2D) {
+                openGeometryTransfer("ST_AsBinary", sql);
+                sql.append("ST_Force_2D(");
+                encodeReducedColumn(gatt, prefix, hints, checkArcs, sql);
+                sql.append(")");
+                closeGeometryTransfer(sql);
             } else {
-                sql.append("encode(ST_AsEWKB(");
-                encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("),'base64')");
+                openGeometryTransfer("ST_AsEWKB", sql);
+                encodeReducedColumn(gatt, prefix, hints, checkArcs, sql);
+                closeGeometryTransfer(sql);
             }
         }
     }
+
+    /**
+     * Encodes the geometry column, clipped and snapped to a grid as requested by the
+     * {@link Hints#GEOMETRY_CLIP} and {@link Hints#GEOMETRY_SNAP} hints, if any. Geometries
+     * containing arcs are left untouched when <code>checkArcs</code> is true, as the functions
+     * cannot handle them.
+     */
+    void encodeReducedColumn(GeometryDescriptor gatt, String prefix, Hints hints,
+            boolean checkArcs, StringBuffer sql) {
+        Envelope clip = null;
+        Double snap = null;
+        if (hints != null) {
+            Class<?> binding = gatt.getType().getBinding();
+            if (isClipSupported() && !Point.class.isAssignableFrom(binding)
+                    && !MultiPoint.class.isAssignableFrom(binding)) {
+                clip = (Envelope) hints.get(Hints.GEOMETRY_CLIP);
+                if (clip != null && clip.isNull()) {
+                    clip = null;
+                }
+            }
+            snap = (Double) hints.get(Hints.GEOMETRY_SNAP);
+            if (snap != null && !(snap > 0)) {
+                snap = null;
+            }
+        }
+        if (clip == null && snap == null) {
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            return;
+        }
+
+        if (checkArcs) {
+            sql.append("CASE WHEN ST_HasArc(");
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append(") THEN ");
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append(" ELSE ");
+        }
+        if (snap != null) {
+            sql.append("ST_SnapToGrid(");
+        }
+        if (clip != null) {
+            sql.append("ST_ClipByBox2D(");
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+            sql.append(", ST_MakeEnvelope(" + clip.getMinX() + ", " + clip.getMinY() + ", "
+                    + clip.getMaxX() + ", " + clip.getMaxY() + "))");
+        } else {
+            encodeColumnName(prefix, gatt.getLocalName(), sql);
+        }
+        if (snap != null) {
+            sql.append(", " + snap + ")");
+        }
+        if (checkArcs) {
+            sql.append(" END");
+        }
+    }
+
+    /**
+     * Opens the function call turning a geometry into bytes, wrapping it in a base64 encoding
+     * unless raw binary transfer is enabled
+     */
+    private void openGeometryTransfer(String function, StringBuffer sql) {
+        if (geometryTransfer == GeometryTransfer.BASE64) {
+            sql.append("encode(");
+        }
+        sql.append(function).append("(");
+    }
+
+    private void closeGeometryTransfer(StringBuffer sql) {
+        sql.append(")");
+        if (geometryTransfer == GeometryTransfer.BASE64) {
+            sql.append(",'base64')");
+        }
+    }
+
+    /**
+     * Returns the number of decimal digits TWKB should retain to represent the given distance.
+     * The result is clamped to the range TWKB can encode, and is never zero, as a point with zero
+     * precision would start with the same byte as a WKB stream, see
+     * {@link TWKBReader#isTWKB(byte[])}
+     */
+    static int getTWKBPrecision(double distance) {
+        if (!(distance > 0) || Double.isInfinite(distance)) {
+            return 7;
+        }
+        int precision = (int) Math.ceil(-Math.log10(distance));
+        precision = Math.max(-7, Math.min(7, precision));
+        return precision == 0 ? 1 : precision;
+    }
     
     @Override
     public void encodeGeometryColumnSimplified(GeometryDescriptor gatt, String prefix, int srid,
             StringBuffer sql, Double distance) {
+        encodeGeometryColumnSimplified(gatt, prefix, srid, null, sql, distance);
+    }
+
+    @Override
+    public void encodeGeometryColumnSimplified(GeometryDescriptor gatt, String prefix, int srid,
+            Hints hints, StringBuffer sql, Double distance) {
         if(!isSimplifyEnabled()) {
             super.encodeGeometryColumnSimplified(gatt, prefix, srid, sql, distance);
         } else {
@@ -325,25 +524,34 @@ public class PostGISDialect extends BasicSQLDialect {
                     JDBCDataStore.JDBC_NATIVE_TYPENAME));
     
             if (geography) {
-                sql.append("encode(ST_AsBinary(");
+                openGeometryTransfer("ST_AsBinary", sql);
                 encodeColumnName(prefix, gatt.getLocalName(), sql);
-                sql.append("),'base64')");
+                closeGeometryTransfer(sql);
             } else {
                 if (NON_CURVED_GEOMETRY_CLASSES.contains(gatt.getType().getBinding())) {
-                    sql.append("encode(ST_AsBinary(ST_Simplify(ST_Force_2D(");
-                    encodeColumnName(prefix, gatt.getLocalName(), sql);
-                    sql.append("), " + distance + ")),'base64')");
+                    if (isTWKBEnabled()) {
+                        sql.append("ST_AsTWKB(ST_Simplify(ST_Force_2D(");
+                        encodeReducedColumn(gatt, prefix, hints, false, sql);
+                        sql.append("), " + distance + "), " + getTWKBPrecision(distance) + ")");
+                    } else {
+                        openGeometryTransfer("ST_AsBinary", sql);
+                        sql.append("ST_Simplify(ST_Force_2D(");
+                        encodeReducedColumn(gatt, prefix, hints, false, sql);
+                        sql.append("), " + distance + ")");
+                        closeGeometryTransfer(sql);
+                    }
                 } else {
                     // we can have curves mixed in
-                    sql.append("encode(ST_AsBinary(");
+                    openGeometryTransfer("ST_AsBinary", sql);
                     sql.append("CASE WHEN ST_HasArc(");
                     encodeColumnName(prefix, gatt.getLocalName(), sql);
                     sql.append(") THEN ");
                     encodeColumnName(prefix, gatt.getLocalName(), sql);
                     sql.append(" ELSE ");
                     sql.append("ST_Simplify(ST_Force_2D(");
-                    encodeColumnName(prefix, gatt.getLocalName(), sql);
-                    sql.append("), " + distance + ") END),'base64')");
+                    encodeReducedColumn(gatt, prefix, hints, false, sql);
+                    sql.append("), " + distance + ") END");
+                    closeGeometryTransfer(sql);
                 }
 
             }
@@ -1051,6 +1259,174 @@ public class PostGISDialect extends BasicSQLDialect {
         }
     }
 
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isBulkInsertSupported() {
+        return bulkInsertEnabled;
+    }
+
+    /**
+     * Loads the rows with a <code>COPY ... FROM STDIN</code> command, sending the values in the
+     * text format, with geometries as hex encoded EWKB (EWKT for curved ones)
+     */
+    @Override
+    public void insertBulk(String schemaName, String tableName, String[] columnNames,
+            Class<?>[] bindings, int[][] srids, int[][] dimensions, List<Object[]> rows,
+            Connection cx) throws SQLException, IOException {
+        StringBuffer sql = new StringBuffer("COPY ");
+        if (schemaName != null) {
+            encodeSchemaName(schemaName, sql);
+            sql.append(".");
+        }
+        encodeTableName(tableName, sql);
+        sql.append(" (");
+        for (int i = 0; i < columnNames.length; i++) {
+            if (i > 0) {
+                sql.append(",");
+            }
+            encodeColumnName(null, columnNames[i], sql);
+        }
+        sql.append(") FROM STDIN");
+
+        StringBuilder data = new StringBuilder();
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] row = rows.get(r);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    data.append('\t');
+                }
+                encodeCopyValue(row[i], srids[r][i], dimensions[r][i], data);
+            }
+            data.append('\n');
+        }
+
+        LOGGER.log(Level.FINE, "Copying {0} rows: {1}", new Object[] { rows.size(), sql });
+        CopyManager copy = unwrapConnection(cx).getCopyAPI();
+        long copied = copy.copyIn(sql.toString(), new StringReader(data.toString()));
+        if (copied != rows.size()) {
+            throw new IOException("Failed to copy some features, expected " + rows.size()
+                    + " but copied " + copied);
+        }
+    }
+
+    /**
+     * Encodes a value in the COPY text format
+     */
+    void encodeCopyValue(Object value, int srid, int dimension, StringBuilder data) {
+        if (value == null) {
+            data.append("\\N");
+        } else if (value instanceof Geometry) {
+            Geometry g = (Geometry) value;
+            if (g.isEmpty()) {
+                data.append("\\N");
+                return;
+            }
+            if (g instanceof LinearRing && !(g instanceof CurvedRing)) {
+                //postgis does not handle linear rings, convert to just a line string
+                g = g.getFactory().createLineString(((LinearRing) g).getCoordinateSequence());
+            }
+            int outputDimension = dimension == 3 ? 3 : 2;
+            if (g instanceof CurvedGeometry) {
+                data.append("SRID=").append(srid).append(";");
+                data.append(new WKTWriter2(outputDimension).write(g));
+            } else {
+                int originalSrid = g.getSRID();
+                g.setSRID(srid);
+                try {
+                    data.append(WKBWriter.toHex(new WKBWriter(outputDimension, true).write(g)));
+                } finally {
+                    g.setSRID(originalSrid);
+                }
+            }
+        } else if (value instanceof byte[]) {
+            data.append("\\\\x").append(WKBWriter.toHex((byte[]) value));
+        } else if (value.getClass().isArray()) {
+            StringBuilder array = new StringBuilder("{");
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    array.append(",");
+                }
+                Object element = Array.get(value, i);
+                if (element == null) {
+                    array.append("NULL");
+                } else {
+                    String text = element.toString().replace("\\", "\\\\").replace("\"",
+                            "\\\"");
+                    array.append('"').append(text).append('"');
+                }
+            }
+            array.append("}");
+            escapeCopyText(array.toString(), data);
+        } else if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+                && !(value instanceof Time) && !(value instanceof Timestamp)) {
+            data.append(new Timestamp(((java.util.Date) value).getTime()));
+        } else {
+            escapeCopyText(value.toString(), data);
+        }
+    }
+
+    private void escapeCopyText(String text, StringBuilder data) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '\\':
+                data.append("\\\\");
+                break;
+            case '\n':
+                data.append("\\n");
+                break;
+            case '\r':
+                data.append("\\r");
+                break;
+            case '\t':
+                data.append("\\t");
+                break;
+            default:
+                data.append(c);
+            }
+        }
+    }
+
+    /**
+     * Obtains the native PostgreSQL connection, needed to use the COPY api
+     */
+    PGConnection unwrapConnection(Connection cx) throws SQLException {
+        if (cx instanceof PGConnection) {
+            return (PGConnection) cx;
+        }
+
+        try {
+            UnWrapper unwrapper = DataSourceFinder.getUnWrapper(cx);
+            if (unwrapper != null) {
+                Connection unwrapped = unwrapper.unwrap(cx);
+                if (unwrapped instanceof PGConnection) {
+                    return (PGConnection) unwrapped;
+                }
+            }
+        } catch (IOException e) {
+            throw (SQLException) new SQLException(
+                    "Could not obtain native PostgreSQL connection.").initCause(e);
+        }
+
+        // try to use java 6 unwrapping
+        try {
+            if (cx.isWrapperFor(PGConnection.class)) {
+                return cx.unwrap(PGConnection.class);
+            }
+        } catch (Throwable t) {
+            // old DBCP versions will throw an Error here
+            LOGGER.log(Level.FINER, "Failed to unwrap connection using java 6 facilities", t);
+        }
+
+        throw new SQLException("Could not obtain native PostgreSQL connection for "
+                + cx.getClass());
+    }
+
     @Override
     public FilterToSQL createFilterToSQL() {
         PostgisFilterToSQL sql = new PostgisFilterToSQL(this);
@@ -1179,6 +1555,13 @@ public class PostGISDialect extends BasicSQLDialect {
         if(isSimplifyEnabled()) {
             hints.add(Hints.GEOMETRY_SIMPLIFICATION);
         }
+        if (geometryTransfer == GeometryTransfer.TWKB) {
+            hints.add(Hints.GEOMETRY_DISTANCE);
+        }
+        if (isClipSupported()) {
+            hints.add(Hints.GEOMETRY_CLIP);
+        }
+        hints.add(Hints.GEOMETRY_SNAP);
     }
     
 }
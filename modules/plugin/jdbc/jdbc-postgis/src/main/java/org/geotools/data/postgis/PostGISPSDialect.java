@@ -22,8 +22,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.geotools.data.postgis.PostGISDialect.GeometryTransfer;
 import org.geotools.factory.Hints;
 import org.geotools.jdbc.ColumnMetadata;
 import org.geotools.jdbc.JDBCDataStore;
@@ -53,6 +56,23 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         this.delegate = delegate;
     }
     
+    @Override
+    public void initializeConnection(Connection cx) throws SQLException {
+        super.initializeConnection(cx);
+        delegate.initializeConnection(cx);
+    }
+
+    @Override
+    protected void addSupportedHints(Set<Hints.Key> hints) {
+        if (delegate.getGeometryTransfer() == GeometryTransfer.TWKB) {
+            hints.add(Hints.GEOMETRY_DISTANCE);
+        }
+        if (delegate.isClipSupported()) {
+            hints.add(Hints.GEOMETRY_CLIP);
+        }
+        hints.add(Hints.GEOMETRY_SNAP);
+    }
+
     @Override
     public boolean isAggregatedSortSupported(String function) {
         return "distinct".equalsIgnoreCase(function);
@@ -128,6 +148,24 @@ public class PostGISPSDialect extends PreparedStatementSQLDialect {
         return delegate.lookupGeneratedValuesPostInsert();
     }
 
+    @Override
+    public boolean isMultiRowInsertSupported() {
+        return delegate.isMultiRowInsertSupported();
+    }
+
+    @Override
+    public boolean isBulkInsertSupported() {
+        return delegate.isBulkInsertSupported();
+    }
+
+    @Override
+    public void insertBulk(String schemaName, String tableName, String[] columnNames,
+            Class<?>[] bindings, int[][] srids, int[][] dimensions, List<Object[]> rows,
+            Connection cx) throws SQLException, IOException {
+        delegate.insertBulk(schemaName, tableName, columnNames, bindings, srids, dimensions,
+                rows, cx);
+    }
+
     public Object getNextAutoGeneratedValue(String schemaName,
             String tableName, String columnName, Connection cx)
             throws SQLException {
@@ -24,10 +24,12 @@ import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
 import java.util.Map;
 
 import javax.sql.DataSource;
 
+import org.geotools.data.postgis.PostGISDialect.GeometryTransfer;
 import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.jdbc.JDBCDataStoreFactory;
 import org.geotools.jdbc.SQLDialect;
@@ -84,6 +86,27 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
      */
     public static final Param SIMPLIFY = new Param("Support on the fly geometry simplification", Boolean.class, 
             "When enabled, operations such as map rendering will pass a hint that will enable the usage of ST_Simplify", false, Boolean.TRUE);
+
+    /**
+     * How geometries are transferred from the database: base64 encoded WKB, raw WKB, or TWKB
+     * when the queries carry a geometry distance/simplification hint
+     */
+    public static final Param GEOMETRY_TRANSFER = new Param("geometry transfer", String.class,
+            "How geometries are read from the database: 'base64' encoded WKB (default), raw 'binary' WKB, " +
+            "or 'twkb' (PostGIS 2.2+), which sends compact, precision reduced geometries when the " +
+            "query specifies a geometry distance, e.g. during map rendering", false, "base64",
+            new KVP(Param.LEVEL, "advanced", Param.OPTIONS, Arrays.asList("base64", "binary", "twkb")));
+
+    /**
+     * Enables loading batches of new features with COPY, when their primary key values can be
+     * computed before the insert
+     */
+    public static final Param BULK_INSERT = new Param("bulk insert", Boolean.class,
+            "set to true to load each batch of new features (see '" + BATCH_INSERT_SIZE.key + "') " +
+            "with a COPY command instead of INSERT statements, speeding up large loads. " +
+            "Only used when the primary key values can be computed before the insert, e.g., " +
+            "when they are provided or come from a sequence", false, Boolean.FALSE,
+            new KVP(Param.LEVEL, "advanced"));
     
     @Override
     protected SQLDialect createSQLDialect(JDBCDataStore dataStore) {
@@ -155,6 +178,21 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         // check geometry simplification (on by default)
         Boolean simplify = (Boolean) SIMPLIFY.lookUp(params);
         dialect.setSimplifyEnabled(simplify == null || simplify);
+
+        // geometry transfer format (base64 by default)
+        String transfer = (String) GEOMETRY_TRANSFER.lookUp(params);
+        if (transfer != null) {
+            try {
+                dialect.setGeometryTransfer(GeometryTransfer.valueOf(transfer.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid " + GEOMETRY_TRANSFER.key + " value '" + transfer
+                        + "', supported values are " + GEOMETRY_TRANSFER.metadata.get(Param.OPTIONS));
+            }
+        }
+        
+        // COPY based loads (off by default)
+        Boolean bulkInsert = (Boolean) BULK_INSERT.lookUp(params);
+        dialect.setBulkInsertEnabled(Boolean.TRUE.equals(bulkInsert));
         
         // encode BBOX filter with wrapping ST_Envelope (GEOT-5167)
         Boolean encodeBBOXAsEnvelope = false;
@@ -182,6 +220,8 @@ public class PostgisNGDataStoreFactory extends JDBCDataStoreFactory {
         parameters.put(MAX_OPEN_PREPARED_STATEMENTS.key, MAX_OPEN_PREPARED_STATEMENTS);
         parameters.put(ENCODE_FUNCTIONS.key, ENCODE_FUNCTIONS);
         parameters.put(SIMPLIFY.key, SIMPLIFY);
+        parameters.put(GEOMETRY_TRANSFER.key, GEOMETRY_TRANSFER);
+        parameters.put(BULK_INSERT.key, BULK_INSERT);
         parameters.put(CREATE_DB_IF_MISSING.key, CREATE_DB_IF_MISSING);
         parameters.put(CREATE_PARAMS.key, CREATE_PARAMS);
     }
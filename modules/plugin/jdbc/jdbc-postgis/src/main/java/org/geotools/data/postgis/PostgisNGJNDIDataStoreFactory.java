@@ -46,5 +46,7 @@ public class PostgisNGJNDIDataStoreFactory extends JDBCJNDIDataStoreFactory {
         parameters.put(PREPARED_STATEMENTS.key, PREPARED_STATEMENTS);
         parameters.put(ENCODE_FUNCTIONS.key, ENCODE_FUNCTIONS);
         parameters.put(SIMPLIFY.key, SIMPLIFY);
+        parameters.put(GEOMETRY_TRANSFER.key, GEOMETRY_TRANSFER);
+        parameters.put(BULK_INSERT.key, BULK_INSERT);
     }
 }
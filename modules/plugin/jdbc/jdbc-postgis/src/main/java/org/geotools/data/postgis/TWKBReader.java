@@ -0,0 +1,369 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import java.util.Arrays;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.LinearRing;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ParseException;
+
+/**
+ * Reads a {@link Geometry} from the Tiny Well-Known Binary format generated by PostGIS
+ * <code>ST_AsTWKB</code>.
+ * <p>
+ * The varint encoded, delta compressed ordinates are decoded straight into a flat array of
+ * doubles, which is then used as is to build a {@link LiteCoordinateSequence} when the geometry
+ * factory uses a {@link LiteCoordinateSequenceFactory}, avoiding the creation of a
+ * {@link com.vividsolutions.jts.geom.Coordinate} object per point. M values are skipped.
+ * <p>
+ * This class is designed to support reuse of a single instance to read multiple geometries. This
+ * class is not thread-safe; each thread should create its own instance.
+ */
+public class TWKBReader {
+
+    static final int POINT = 1;
+
+    static final int LINESTRING = 2;
+
+    static final int POLYGON = 3;
+
+    static final int MULTIPOINT = 4;
+
+    static final int MULTILINESTRING = 5;
+
+    static final int MULTIPOLYGON = 6;
+
+    static final int GEOMETRYCOLLECTION = 7;
+
+    GeometryFactory factory;
+
+    CoordinateSequenceFactory csFactory;
+
+    boolean lite;
+
+    byte[] data;
+
+    int position;
+
+    /**
+     * Number of ordinates per point in the input, and in the output
+     */
+    int inputDimension, outputDimension;
+
+    /**
+     * The scale factors of the ordinates of the current geometry
+     */
+    double[] scales = new double[4];
+
+    /**
+     * The last value read for each ordinate, coordinates are encoded as deltas
+     */
+    long[] last = new long[4];
+
+    /**
+     * The ordinates of the sequence being read
+     */
+    double[] ordinates = new double[64];
+
+    public TWKBReader(GeometryFactory factory) {
+        this.factory = factory;
+        this.csFactory = factory.getCoordinateSequenceFactory();
+        this.lite = csFactory instanceof LiteCoordinateSequenceFactory;
+    }
+
+    /**
+     * Returns true if the bytes look like TWKB rather than WKB/EWKB. A WKB stream always starts with
+     * a 0 or 1 byte order marker, while the first TWKB byte holds a type between 1 and 7 in its
+     * lower bits, and the zig-zag encoded precision in the upper ones, so only a point with
+     * precision 0 would be ambiguous (see {@link PostGISDialect}, which never asks for precision
+     * 0).
+     */
+    public static boolean isTWKB(byte[] bytes) {
+        return bytes.length > 0 && (bytes[0] & 0xFF) > 1;
+    }
+
+    /**
+     * Reads a single geometry from the byte array
+     *
+     * @param bytes The TWKB bytes
+     * @return The geometry read
+     * @throws ParseException If the TWKB is ill-formed
+     */
+    public Geometry read(byte[] bytes) throws ParseException {
+        this.data = bytes;
+        this.position = 0;
+        try {
+            return readGeometry();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ParseException("Unexpected end of the TWKB stream");
+        } finally {
+            this.data = null;
+        }
+    }
+
+    Geometry readGeometry() throws ParseException {
+        // header: type and precision, then the metadata flags
+        int typeAndPrecision = data[position++] & 0xFF;
+        int type = typeAndPrecision & 0x0F;
+        int precision = unzigzag(typeAndPrecision >> 4);
+        int metadata = data[position++] & 0xFF;
+        boolean hasBBox = (metadata & 0x01) != 0;
+        boolean hasSize = (metadata & 0x02) != 0;
+        boolean hasIdList = (metadata & 0x04) != 0;
+        boolean hasExtendedDims = (metadata & 0x08) != 0;
+        boolean isEmpty = (metadata & 0x10) != 0;
+
+        inputDimension = 2;
+        outputDimension = 2;
+        scales[0] = scales[1] = Math.pow(10, precision);
+        if (hasExtendedDims) {
+            int dims = data[position++] & 0xFF;
+            boolean hasZ = (dims & 0x01) != 0;
+            boolean hasM = (dims & 0x02) != 0;
+            if (hasZ) {
+                scales[inputDimension++] = Math.pow(10, (dims >> 2) & 0x07);
+                outputDimension = 3;
+            }
+            if (hasM) {
+                scales[inputDimension++] = Math.pow(10, (dims >> 5) & 0x07);
+            }
+        }
+        if (hasSize) {
+            readUnsignedVarInt();
+        }
+        if (hasBBox) {
+            for (int i = 0; i < inputDimension * 2; i++) {
+                readSignedVarLong();
+            }
+        }
+        // each geometry header resets the deltas
+        Arrays.fill(last, 0);
+
+        if (isEmpty) {
+            return createEmpty(type);
+        }
+
+        switch (type) {
+        case POINT:
+            return factory.createPoint(readCoordinateSequence(1, 0));
+        case LINESTRING:
+            return readLineString();
+        case POLYGON:
+            return readPolygon();
+        case MULTIPOINT: {
+            int count = readUnsignedVarInt();
+            skipIdList(hasIdList, count);
+            Point[] points = new Point[count];
+            for (int i = 0; i < count; i++) {
+                points[i] = factory.createPoint(readCoordinateSequence(1, 0));
+            }
+            return factory.createMultiPoint(points);
+        }
+        case MULTILINESTRING: {
+            int count = readUnsignedVarInt();
+            skipIdList(hasIdList, count);
+            LineString[] lines = new LineString[count];
+            for (int i = 0; i < count; i++) {
+                lines[i] = readLineString();
+            }
+            return factory.createMultiLineString(lines);
+        }
+        case MULTIPOLYGON: {
+            int count = readUnsignedVarInt();
+            skipIdList(hasIdList, count);
+            Polygon[] polygons = new Polygon[count];
+            for (int i = 0; i < count; i++) {
+                polygons[i] = readPolygon();
+            }
+            return factory.createMultiPolygon(polygons);
+        }
+        case GEOMETRYCOLLECTION: {
+            int count = readUnsignedVarInt();
+            skipIdList(hasIdList, count);
+            Geometry[] geometries = new Geometry[count];
+            for (int i = 0; i < count; i++) {
+                geometries[i] = readGeometry();
+            }
+            return factory.createGeometryCollection(geometries);
+        }
+        default:
+            throw new ParseException("Unknown TWKB type " + type);
+        }
+    }
+
+    private Geometry createEmpty(int type) throws ParseException {
+        switch (type) {
+        case POINT:
+            return factory.createPoint((CoordinateSequence) null);
+        case LINESTRING:
+            return factory.createLineString((CoordinateSequence) null);
+        case POLYGON:
+            return factory.createPolygon(null, null);
+        case MULTIPOINT:
+            return factory.createMultiPoint((Point[]) null);
+        case MULTILINESTRING:
+            return factory.createMultiLineString(null);
+        case MULTIPOLYGON:
+            return factory.createMultiPolygon(null);
+        case GEOMETRYCOLLECTION:
+            return factory.createGeometryCollection(null);
+        default:
+            throw new ParseException("Unknown TWKB type " + type);
+        }
+    }
+
+    private void skipIdList(boolean hasIdList, int count) {
+        if (hasIdList) {
+            for (int i = 0; i < count; i++) {
+                readSignedVarLong();
+            }
+        }
+    }
+
+    private LineString readLineString() {
+        int size = readUnsignedVarInt();
+        // same repair as the WKB reader, a line needs at least two points
+        return factory.createLineString(readCoordinateSequence(size, size == 1 ? 2 : 0));
+    }
+
+    private Polygon readPolygon() {
+        int numRings = readUnsignedVarInt();
+        if (numRings == 0) {
+            return factory.createPolygon(null, null);
+        }
+        LinearRing shell = readLinearRing();
+        LinearRing[] holes = new LinearRing[numRings - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = readLinearRing();
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    private LinearRing readLinearRing() {
+        int size = readUnsignedVarInt();
+        return factory.createLinearRing(readCoordinateSequence(size, -1));
+    }
+
+    /**
+     * Reads the specified number of points
+     *
+     * @param size The number of points to read
+     * @param minSize The minimum number of points in the output, the last point is repeated to
+     *        reach it. Use -1 to get a closed ring with at least 4 points instead.
+     */
+    private CoordinateSequence readCoordinateSequence(int size, int minSize) {
+        int outputSize = Math.max(size, minSize);
+        // leave room to close rings
+        int capacity = (Math.max(outputSize, 4) + 1) * outputDimension;
+        if (ordinates.length < capacity) {
+            ordinates = new double[capacity];
+        }
+
+        int idx = 0;
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < inputDimension; d++) {
+                last[d] += readSignedVarLong();
+                if (d < outputDimension) {
+                    ordinates[idx++] = last[d] / scales[d];
+                }
+            }
+        }
+
+        if (size > 0) {
+            if (minSize < 0) {
+                // close the ring if needed, and make sure it has at least 4 points
+                if (!isClosed(size)) {
+                    System.arraycopy(ordinates, 0, ordinates, idx, outputDimension);
+                    idx += outputDimension;
+                    outputSize++;
+                }
+                while (outputSize < 4) {
+                    System.arraycopy(ordinates, idx - outputDimension, ordinates, idx,
+                            outputDimension);
+                    idx += outputDimension;
+                    outputSize++;
+                }
+            } else {
+                while (idx < outputSize * outputDimension) {
+                    System.arraycopy(ordinates, idx - outputDimension, ordinates, idx,
+                            outputDimension);
+                    idx += outputDimension;
+                }
+            }
+        } else {
+            outputSize = 0;
+        }
+
+        if (lite) {
+            return new LiteCoordinateSequence(Arrays.copyOf(ordinates, idx), outputDimension);
+        } else {
+            CoordinateSequence cs = csFactory.create(outputSize, outputDimension);
+            int targetDimension = Math.min(cs.getDimension(), outputDimension);
+            for (int i = 0; i < outputSize; i++) {
+                for (int d = 0; d < targetDimension; d++) {
+                    cs.setOrdinate(i, d, ordinates[i * outputDimension + d]);
+                }
+            }
+            return cs;
+        }
+    }
+
+    private boolean isClosed(int size) {
+        int lastPoint = (size - 1) * outputDimension;
+        for (int d = 0; d < outputDimension; d++) {
+            if (ordinates[d] != ordinates[lastPoint + d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int readUnsignedVarInt() {
+        return (int) readUnsignedVarLong();
+    }
+
+    long readUnsignedVarLong() {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[position++];
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    long readSignedVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -44,19 +44,32 @@ import com.vividsolutions.jts.io.WKBWriter;
  */
 public class WKBAttributeIO {
     WKBReader wkbr;
+    TWKBReader twkbr;
     ByteArrayInStream inStream = new ByteArrayInStream(new byte[0]);
     GeometryFactory gf;
+    boolean base64EncodingEnabled = true;
 
     public WKBAttributeIO() {
         this(new GeometryFactory());
     }
     
     public WKBAttributeIO(GeometryFactory gf) {
+        this.gf = gf;
         wkbr = new WKBReader(gf);
     }
     
     public void setGeometryFactory(GeometryFactory gf) {
+        this.gf = gf;
         wkbr = new WKBReader(gf);
+        twkbr = null;
+    }
+
+    /**
+     * Sets whether the geometries are read as base64 encoded WKB (the default), or as raw bytes,
+     * in which case both WKB/EWKB and TWKB are recognized
+     */
+    public void setBase64EncodingEnabled(boolean base64EncodingEnabled) {
+        this.base64EncodingEnabled = base64EncodingEnabled;
     }
 
     /**
@@ -84,6 +97,30 @@ public class WKBAttributeIO {
         }
     }
 
+    /**
+     * Converts a Tiny Well Known Binary representation to a JTS Geometry object
+     */
+    private Geometry twkb2Geometry(byte[] twkbBytes) throws IOException {
+        if (twkbr == null) {
+            twkbr = new TWKBReader(gf != null ? gf : new GeometryFactory());
+        }
+        try {
+            return twkbr.read(twkbBytes);
+        } catch (Exception e) {
+            throw new DataSourceException("An exception occurred while parsing TWKB data", e);
+        }
+    }
+
+    private Geometry bytes2Geometry(byte[] bytes) throws IOException {
+        if (base64EncodingEnabled) {
+            return wkb2Geometry(Base64.decode(bytes));
+        } else if (TWKBReader.isTWKB(bytes)) {
+            return twkb2Geometry(bytes);
+        } else {
+            return wkb2Geometry(bytes);
+        }
+    }
+
     /**
      * @see org.geotools.data.jdbc.attributeio.AttributeIO#read(java.sql.ResultSet,
      *      int)
@@ -93,7 +130,7 @@ public class WKBAttributeIO {
             byte bytes[] = rs.getBytes(columnName);
             if (bytes == null) // ie. its a null column -> return a null geometry!
                 return null;
-            return wkb2Geometry(Base64.decode(bytes));
+            return bytes2Geometry(bytes);
         } catch (SQLException e) {
             throw new DataSourceException("SQL exception occurred while reading the geometry.", e);
         }
@@ -108,7 +145,7 @@ public class WKBAttributeIO {
             byte bytes[] = rs.getBytes(columnIndex);
             if (bytes == null) // ie. its a null column -> return a null geometry!
                 return null;
-            return wkb2Geometry(Base64.decode(bytes));
+            return bytes2Geometry(bytes);
         } catch (SQLException e) {
             throw new DataSourceException("SQL exception occurred while reading the geometry.", e);
         }
@@ -16,6 +16,8 @@
  */
 package org.geotools.data.postgis;
 
+import java.io.IOException;
+
 import org.geotools.jdbc.JDBCFeatureStoreOnlineTest;
 import org.geotools.jdbc.JDBCTestSetup;
 
@@ -31,4 +33,17 @@ public class PostgisFeatureStoreOnlineTest extends JDBCFeatureStoreOnlineTest {
         return new PostGISTestSetup();
     }
 
+    public void testAddFeaturesWithCopy() throws IOException {
+        PostGISDialect dialect = (PostGISDialect) dataStore.getSQLDialect();
+        int batchInsertSize = dataStore.getBatchInsertSize();
+        dialect.setBulkInsertEnabled(true);
+        dataStore.setBatchInsertSize(4);
+        try {
+            assertAddFeaturesInBatches(10);
+        } finally {
+            dialect.setBulkInsertEnabled(false);
+            dataStore.setBatchInsertSize(batchInsertSize);
+        }
+    }
+
 }
@@ -0,0 +1,142 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.postgis;
+
+import static org.junit.Assert.*;
+
+import org.geotools.geometry.jts.LiteCoordinateSequence;
+import org.geotools.geometry.jts.LiteCoordinateSequenceFactory;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class TWKBReaderTest {
+
+    GeometryFactory gf = new GeometryFactory();
+
+    TWKBReader reader = new TWKBReader(gf);
+
+    @Test
+    public void testPoint() throws Exception {
+        assertGeometry("POINT(1 2)", bytes(0x01, 0x00, 0x02, 0x04));
+    }
+
+    @Test
+    public void testPrecision() throws Exception {
+        // precision 2, x = 150 and y = -225 once scaled
+        assertGeometry("POINT(1.5 -2.25)", bytes(0x41, 0x00, 0xAC, 0x02, 0xC1, 0x03));
+    }
+
+    @Test
+    public void testLineString() throws Exception {
+        assertGeometry("LINESTRING(1 1, 5 5)", bytes(0x02, 0x00, 0x02, 0x02, 0x02, 0x08, 0x08));
+    }
+
+    @Test
+    public void testSizeAndBBox() throws Exception {
+        assertGeometry("LINESTRING(1 1, 5 5)", bytes(0x02, 0x03, 0x0A, 0x02, 0x08, 0x02, 0x08,
+                0x02, 0x02, 0x02, 0x08, 0x08));
+    }
+
+    @Test
+    public void testPolygonRingClosed() throws Exception {
+        assertGeometry("POLYGON((0 0, 10 0, 10 10, 0 0))", bytes(0x03, 0x00, 0x01, 0x03, 0x00,
+                0x00, 0x14, 0x00, 0x00, 0x14));
+    }
+
+    @Test
+    public void testMultiPointDeltas() throws Exception {
+        // deltas carry over from one point to the next
+        assertGeometry("MULTIPOINT((1 1), (3 4))", bytes(0x04, 0x00, 0x02, 0x02, 0x02, 0x04,
+                0x06));
+    }
+
+    @Test
+    public void testCollectionResetsDeltas() throws Exception {
+        // each member has its own header, resetting the deltas
+        assertGeometry("GEOMETRYCOLLECTION(POINT(1 2), POINT(1 2))", bytes(0x07, 0x00, 0x02,
+                0x01, 0x00, 0x02, 0x04, 0x01, 0x00, 0x02, 0x04));
+    }
+
+    @Test
+    public void testZ() throws Exception {
+        Point point = (Point) reader.read(bytes(0x01, 0x08, 0x01, 0x02, 0x04, 0x06));
+        assertEquals(1, point.getX(), 0d);
+        assertEquals(2, point.getY(), 0d);
+        assertEquals(3, point.getCoordinate().z, 0d);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Geometry geometry = reader.read(bytes(0x06, 0x10));
+        assertTrue(geometry instanceof MultiPolygon);
+        assertTrue(geometry.isEmpty());
+    }
+
+    @Test
+    public void testLiteSequence() throws Exception {
+        TWKBReader liteReader = new TWKBReader(new GeometryFactory(
+                new LiteCoordinateSequenceFactory()));
+        LineString line = (LineString) liteReader.read(bytes(0x02, 0x00, 0x02, 0x02, 0x02, 0x08,
+                0x08));
+        assertTrue(line.getCoordinateSequence() instanceof LiteCoordinateSequence);
+        assertTrue(line.equalsExact(new WKTReader().read("LINESTRING(1 1, 5 5)")));
+    }
+
+    @Test(expected = ParseException.class)
+    public void testTruncated() throws Exception {
+        reader.read(bytes(0x02, 0x00, 0x02, 0x02));
+    }
+
+    @Test
+    public void testIsTWKB() throws Exception {
+        assertFalse(TWKBReader.isTWKB(bytes(0x00, 0x00, 0x00, 0x00, 0x01)));
+        assertFalse(TWKBReader.isTWKB(bytes(0x01, 0x01, 0x00, 0x00, 0x00)));
+        assertTrue(TWKBReader.isTWKB(bytes(0x02, 0x00, 0x02, 0x02, 0x02, 0x08, 0x08)));
+        assertTrue(TWKBReader.isTWKB(bytes(0x41, 0x00, 0xAC, 0x02, 0xC1, 0x03)));
+    }
+
+    @Test
+    public void testPrecisionNeverZero() throws Exception {
+        assertEquals(3, PostGISDialect.getTWKBPrecision(0.001));
+        assertEquals(1, PostGISDialect.getTWKBPrecision(0.5));
+        assertEquals(1, PostGISDialect.getTWKBPrecision(1));
+        assertEquals(-2, PostGISDialect.getTWKBPrecision(100));
+        assertEquals(7, PostGISDialect.getTWKBPrecision(1e-12));
+        assertEquals(-7, PostGISDialect.getTWKBPrecision(1e12));
+    }
+
+    void assertGeometry(String expectedWKT, byte[] twkb) throws Exception {
+        Geometry expected = new WKTReader(gf).read(expectedWKT);
+        Geometry actual = reader.read(twkb);
+        assertTrue("Expected " + expected + " but got " + actual, expected.equalsExact(actual));
+    }
+
+    static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
@@ -24,6 +24,7 @@ import org.geotools.data.shapefile.index.CachedQuadTree;
 import org.geotools.data.shapefile.index.Data;
 import org.geotools.data.shapefile.index.DataDefinition;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.hilbert.HilbertRTree;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
 import org.geotools.data.shapefile.index.quadtree.fs.FileSystemIndexStore;
@@ -46,12 +47,22 @@ class IndexManager {
 
     static final int DEFAULT_MAX_QIX_CACHE_SIZE;
 
+    static final ShpFileType DEFAULT_SPATIAL_INDEX_TYPE;
+
     ShpFiles shpFiles;
 
     int maxQixCacheSize = DEFAULT_MAX_QIX_CACHE_SIZE;
 
     CachedQuadTree cachedTree;
 
+    HilbertRTree hilbertTree;
+
+    /**
+     * Set once a packed Hilbert R-tree is found, so that it gets rebuilt instead of a quadtree
+     * after the shapefile is modified
+     */
+    boolean hilbertIndexed;
+
     ShapefileDataStore store;
     
     /**
@@ -76,6 +87,17 @@ class IndexManager {
             LOGGER.log(Level.SEVERE, "Could not set the max qix cache size", t);
         }
         DEFAULT_MAX_QIX_CACHE_SIZE = max;
+
+        ShpFileType type = QIX;
+        try {
+            String stype = System.getProperty("org.geotools.shapefile.spatialIndexType");
+            if (stype != null && HRX.extension.equalsIgnoreCase(stype)) {
+                type = HRX;
+            }
+        } catch (Throwable t) {
+            LOGGER.log(Level.SEVERE, "Could not set the spatial index type", t);
+        }
+        DEFAULT_SPATIAL_INDEX_TYPE = type;
     }
 
     public IndexManager(ShpFiles shpFiles, ShapefileDataStore store) {
@@ -92,12 +114,20 @@ class IndexManager {
     public boolean createSpatialIndex(boolean force) {
         // create index as needed
         try {
-            if (shpFiles.isLocal() && (isIndexStale(QIX) || force)) {
+            if (!shpFiles.isLocal()) {
+                return false;
+            }
+            ShpFileType indexType = getSpatialIndexType();
+            if (isIndexStale(indexType) || force) {
                 ShapefileDataStoreFactory.LOGGER.fine("Creating spatial index for "
                         + shpFiles.get(SHP));
 
+                if (indexType == HRX) {
+                    closeHilbertTree();
+                }
                 ShapeFileIndexer indexer = new ShapeFileIndexer();
                 indexer.setShapeFileName(shpFiles);
+                indexer.setIndexType(indexType);
                 indexer.index(false, new NullProgressListener());
 
                 return true;
@@ -108,6 +138,23 @@ class IndexManager {
         return false;
     }
 
+    /**
+     * Returns the type of spatial index in use, the packed Hilbert R-tree if it's already there or
+     * has been configured as the default, the quadtree otherwise
+     * 
+     * @return
+     */
+    ShpFileType getSpatialIndexType() {
+        if (!hilbertIndexed && shpFiles.exists(HRX)) {
+            hilbertIndexed = true;
+        }
+        if (DEFAULT_SPATIAL_INDEX_TYPE == HRX || hilbertIndexed) {
+            return HRX;
+        } else {
+            return QIX;
+        }
+    }
+
     /**
      * If the fid index can be used and it is missing this method will try to create it
      * 
@@ -176,7 +223,7 @@ class IndexManager {
      * @return
      */
     boolean isSpatialIndexAvailable() {
-        return shpFiles.isLocal() && shpFiles.exists(QIX);
+        return shpFiles.isLocal() && (shpFiles.exists(QIX) || shpFiles.exists(HRX));
     }
 
     /**
@@ -297,6 +344,10 @@ class IndexManager {
         // check if the spatial index needs recreating
         createSpatialIndex(false);
 
+        if (shpFiles.isLocal() && shpFiles.exists(HRX)) {
+            return searchHilbertTree(bbox);
+        }
+
         if (cachedTree == null) {
             boolean canCache = false;
             URL treeURL = shpFiles.acquireRead(QIX, writer);
@@ -343,6 +394,41 @@ class IndexManager {
         return tmp;
     }
 
+    /**
+     * Searches the packed Hilbert R-tree, opening it on first usage
+     * 
+     * @param bbox
+     * @return The matching records, or null if the bbox contains the whole tree
+     * @throws StoreException
+     */
+    synchronized CloseableIterator<Data> searchHilbertTree(Envelope bbox) throws StoreException {
+        if (hilbertTree == null) {
+            URL treeURL = shpFiles.acquireRead(HRX, writer);
+            try {
+                File treeFile = DataUtilities.urlToFile(treeURL);
+                hilbertTree = new HilbertRTree(treeFile, store.isMemoryMapped());
+            } finally {
+                shpFiles.unlockRead(treeURL, writer);
+            }
+        }
+
+        if (bbox.contains(hilbertTree.getBounds())) {
+            return null;
+        }
+        return hilbertTree.search(bbox);
+    }
+
+    /**
+     * Releases the packed Hilbert R-tree, if open. Has to be called before the index file gets
+     * rebuilt or removed.
+     */
+    synchronized void closeHilbertTree() {
+        if (hilbertTree != null) {
+            hilbertTree.close();
+            hilbertTree = null;
+        }
+    }
+
     /**
      * Convenience method for opening a QuadTree index.
      * 
@@ -375,5 +461,6 @@ class IndexManager {
 
     public void dispose() {
         this.cachedTree = null;
+        closeHilbertTree();
     }
 }
@@ -0,0 +1,341 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Merges the output of a set of shard readers, each one decoded on its own thread. In ordered mode
+ * the features are returned in the same order as the shards (and thus, the same order as a
+ * sequential read), otherwise they are returned as soon as they are available.
+ * <p>
+ * Each shard is buffered in a bounded queue, in ordered mode the shards that are not being
+ * consumed can get at most {@link #QUEUE_SIZE} features ahead of the consumer. If the executor did
+ * not start the shard being consumed yet, e.g. because its threads are busy with the following
+ * shards or with other work, the consumer reads it on its own thread instead of waiting.
+ * <p>
+ * The shard readers are opened, used and closed by the thread decoding them, as the
+ * {@link org.geotools.data.shapefile.files.ShpFiles} read locks are bound to the thread that
+ * acquired them.
+ */
+class ParallelShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleFeature> {
+
+    static final Logger LOGGER = Logging.getLogger(ParallelShapefileFeatureReader.class);
+
+    /**
+     * The number of features buffered by each shard
+     */
+    static final int QUEUE_SIZE = 1024;
+
+    /**
+     * How long a shard waits for room in the queue before checking if the reader got closed
+     */
+    static final long OFFER_TIMEOUT_MS = 100;
+
+    SimpleFeatureType schema;
+
+    List<Shard> shards;
+
+    BlockingQueue<Object>[] queues;
+
+    /**
+     * The queue being consumed, always the first one in unordered mode
+     */
+    int current;
+
+    /**
+     * Number of shards whose end marker has been consumed
+     */
+    int completed;
+
+    boolean ordered;
+
+    SimpleFeature nextFeature;
+
+    /**
+     * The reader of the shard being read on the consumer thread, in ordered mode
+     */
+    ShapefileFeatureReader inlineReader;
+
+    volatile boolean closed;
+
+    /**
+     * Returns the number of tasks the executor can run at the same time, or the fallback if it
+     * cannot be determined
+     */
+    static int getParallelism(ExecutorService executor, int fallback) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        } else if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+            // threads beyond the core ones are only created when the queue cannot hold the task
+            if (tpe.getQueue() instanceof SynchronousQueue) {
+                return tpe.getMaximumPoolSize();
+            }
+            return Math.max(1, tpe.getCorePoolSize());
+        }
+        return fallback;
+    }
+
+    @SuppressWarnings("unchecked")
+    public ParallelShapefileFeatureReader(SimpleFeatureType schema,
+            List<Callable<ShapefileFeatureReader>> readers, ExecutorService executor,
+            boolean ordered) {
+        this.schema = schema;
+        this.ordered = ordered;
+        if (ordered) {
+            queues = new BlockingQueue[readers.size()];
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+            }
+        } else {
+            queues = new BlockingQueue[] { new ArrayBlockingQueue<Object>(QUEUE_SIZE
+                    * readers.size()) };
+        }
+
+        shards = new ArrayList<Shard>(readers.size());
+        for (int i = 0; i < readers.size(); i++) {
+            shards.add(new Shard(readers.get(i), queues[ordered ? i : 0]));
+        }
+        for (Shard shard : shards) {
+            shard.future = executor.submit(shard);
+        }
+    }
+
+    @Override
+    public SimpleFeatureType getFeatureType() {
+        return schema;
+    }
+
+    @Override
+    public SimpleFeature next() throws IOException, IllegalArgumentException,
+            NoSuchElementException {
+        if (hasNext()) {
+            SimpleFeature result = nextFeature;
+            nextFeature = null;
+            return result;
+        } else {
+            throw new NoSuchElementException("hasNext() returned false");
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        if (closed) {
+            return false;
+        }
+        while (nextFeature == null && completed < shards.size()) {
+            if (inlineReader != null) {
+                if (inlineReader.hasNext()) {
+                    nextFeature = inlineReader.next();
+                } else {
+                    closeInlineReader();
+                    completed++;
+                    current++;
+                }
+                continue;
+            }
+
+            Object item = queues[current].poll();
+            if (item == null && ordered && shards.get(current).claim()) {
+                // the executor did not get to the shard we need, read it here rather than
+                // waiting behind the shards that are further ahead
+                Shard shard = shards.get(current);
+                shard.future.cancel(false);
+                shard.released.countDown();
+                try {
+                    inlineReader = shard.opener.call();
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Failed to read a shapefile shard", e);
+                }
+                continue;
+            }
+            try {
+                if (item == null) {
+                    item = queues[current].take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the shapefile shards", e);
+            }
+
+            if (item instanceof ShardEnd) {
+                completed++;
+                if (ordered) {
+                    current++;
+                }
+                Throwable error = ((ShardEnd) item).error;
+                if (error != null) {
+                    throw new IOException("Failed to read a shapefile shard", error);
+                }
+            } else {
+                nextFeature = (SimpleFeature) item;
+            }
+        }
+
+        return nextFeature != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closeInlineReader();
+        for (Shard shard : shards) {
+            // the shards not started yet will never be
+            if (shard.claim()) {
+                shard.future.cancel(false);
+                shard.released.countDown();
+            }
+        }
+        for (BlockingQueue<Object> queue : queues) {
+            queue.clear();
+        }
+        // wait for the running shards to notice the close and release their files
+        for (Shard shard : shards) {
+            try {
+                shard.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while closing the shapefile shards", e);
+            }
+        }
+    }
+
+    private void closeInlineReader() throws IOException {
+        if (inlineReader != null) {
+            ShapefileFeatureReader reader = inlineReader;
+            inlineReader = null;
+            reader.close();
+        }
+    }
+
+    /**
+     * Marks the end of a shard, eventually carrying the exception that stopped it
+     */
+    static class ShardEnd {
+        Throwable error;
+
+        ShardEnd(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reads a shard and pushes its features in the queue
+     */
+    class Shard implements Runnable {
+
+        Callable<ShapefileFeatureReader> opener;
+
+        BlockingQueue<Object> queue;
+
+        Future<?> future;
+
+        /**
+         * Set by the first thread reading the shard, either an executor one or the consumer
+         */
+        AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * Released once the executor thread closed the shard files, or when the shard is claimed
+         * by another thread
+         */
+        CountDownLatch released = new CountDownLatch(1);
+
+        Shard(Callable<ShapefileFeatureReader> opener, BlockingQueue<Object> queue) {
+            this.opener = opener;
+            this.queue = queue;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (!claim()) {
+                // being read by the consumer
+                return;
+            }
+            Throwable error = null;
+            ShapefileFeatureReader reader = null;
+            try {
+                reader = opener.call();
+                while (!closed && reader.hasNext()) {
+                    if (!put(reader.next())) {
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.FINE, "Failed to close shapefile shard reader", e);
+                    }
+                }
+                released.countDown();
+            }
+            put(new ShardEnd(error));
+        }
+
+        /**
+         * Puts the item in the queue, waiting for room unless the merging reader gets closed
+         */
+        boolean put(Object item) {
+            try {
+                while (!closed) {
+                    if (queue.offer(item, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+}
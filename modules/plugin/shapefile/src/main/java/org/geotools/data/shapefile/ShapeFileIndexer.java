@@ -33,6 +33,7 @@ import org.geotools.data.shapefile.files.ShpFiles;
 import org.geotools.data.shapefile.files.StorageFile;
 import org.geotools.data.shapefile.index.LockTimeoutException;
 import org.geotools.data.shapefile.index.TreeException;
+import org.geotools.data.shapefile.index.hilbert.HilbertRTreeBuilder;
 import org.geotools.data.shapefile.index.quadtree.Node;
 import org.geotools.data.shapefile.index.quadtree.QuadTree;
 import org.geotools.data.shapefile.index.quadtree.StoreException;
@@ -62,6 +63,7 @@ class ShapeFileIndexer implements FileWriter {
     
     private int max = -1;
     private int leafSize = 16;
+    private ShpFileType indexType = ShpFileType.QIX;
 
 	private String byteOrder;
     private boolean interactive = false;
@@ -79,9 +81,10 @@ class ShapeFileIndexer implements FileWriter {
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-t")) {
-                // idx.setIdxType(IndexType.valueOf(args[++i]));
-                // just skip it for backwards compatibility
-                i++;
+                // anything but HRX builds a quadtree, for backwards compatibility
+                if (ShpFileType.HRX.name().equalsIgnoreCase(args[++i])) {
+                    idx.setIndexType(ShpFileType.HRX);
+                }
             } else if (args[i].equals("-M")) {
                 idx.setMax(Integer.parseInt(args[++i]));
             } else if (args[i].equals("-s")) {
@@ -115,7 +118,7 @@ class ShapeFileIndexer implements FileWriter {
     }
 
     private static void usage() {
-        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX> "
+        System.out.println("Usage: ShapeFileIndexer " + "-t <QIX | HRX> "
                 + "[-M <max tree depth>] "
                 + "[-b <byte order NL | NM>] " + "<shape file>"
                 + "[-s <max number of items in a leaf>]");
@@ -123,7 +126,9 @@ class ShapeFileIndexer implements FileWriter {
         System.out.println();
 
         System.out.println("Options:");
-        System.out.println("\t-t Index type: RTREE or QUADTREE");
+        System.out.println("\t-t Index type: QIX (quadtree, default) or HRX (packed Hilbert R-tree)");
+        System.out.println();
+        System.out.println("\t-s Applies to both index types, for HRX it's the node size");
         System.out.println();
         System.out.println("Following options apllies only to QUADTREE:");
         System.out.println("\t-b byte order to use: NL = LSB; "
@@ -165,32 +170,36 @@ class ShapeFileIndexer implements FileWriter {
         ShapefileReader reader = null;
 
         // Temporary file for building...
-        StorageFile storage = shpFiles.getStorageFile(ShpFileType.QIX);
+        StorageFile storage = shpFiles.getStorageFile(indexType);
         File treeFile = storage.getFile();
 
         try {
             reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
             
-            if(max == -1) {
-                // compute a reasonable index max depth, considering a fully developed
-                // 10 levels one already contains 200k index nodes, good for indexing up
-                // to 3M features without consuming too much memory
-                int features = reader.getCount(0);
-                max = 1;
-                int nodes = 1;
-                while(nodes * leafSize < features) {
-                    max++;
-                    nodes *= 4;
-                }
-                if(max < 10) {
-                    max = 10;
-                }
+            if (indexType == ShpFileType.HRX) {
+                cnt = this.buildHilbertTree(reader, treeFile, verbose);
+            } else {
+                if(max == -1) {
+                    // compute a reasonable index max depth, considering a fully developed
+                    // 10 levels one already contains 200k index nodes, good for indexing up
+                    // to 3M features without consuming too much memory
+                    int features = reader.getCount(0);
+                    max = 1;
+                    int nodes = 1;
+                    while(nodes * leafSize < features) {
+                        max++;
+                        nodes *= 4;
+                    }
+                    if(max < 10) {
+                        max = 10;
+                    }
                 
-                reader.close();
-                reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
-            }
+                    reader.close();
+                    reader = new ShapefileReader(shpFiles, true, false, new GeometryFactory());
+                }
             
-            cnt = this.buildQuadTree(reader, treeFile, verbose);
+                cnt = this.buildQuadTree(reader, treeFile, verbose);
+            }
         } finally {
             if (reader != null)
                 reader.close();
@@ -202,6 +211,39 @@ class ShapeFileIndexer implements FileWriter {
         return cnt;
     }
 
+    private int buildHilbertTree(ShapefileReader reader, File file, boolean verbose)
+            throws IOException, StoreException {
+        int nodeSize = leafSize > 1 ? leafSize : HilbertRTreeBuilder.DEFAULT_NODE_SIZE;
+        LOGGER.fine("Building packed Hilbert R-tree spatial index with node size " + nodeSize
+                + " for file " + file.getAbsolutePath());
+
+        IndexFile shpIndex = new IndexFile(shpFiles, false);
+        int numRecs;
+        try {
+            numRecs = shpIndex.getRecordCount();
+        } finally {
+            shpIndex.close();
+        }
+
+        HilbertRTreeBuilder builder = new HilbertRTreeBuilder(numRecs, nodeSize);
+        int cnt = 0;
+        while (reader.hasNext()) {
+            Record rec = reader.nextRecord();
+            builder.add(rec.offset(), rec.minX, rec.maxX, rec.minY, rec.maxY);
+            cnt++;
+
+            if (verbose && ((cnt % 1000) == 0)) {
+                System.out.print('.');
+            }
+            if (verbose && cnt % 100000 == 0)
+                System.out.print('\n');
+        }
+        if (verbose)
+            System.out.println("done");
+        builder.write(file);
+        return cnt;
+    }
+
     private int buildQuadTree(ShapefileReader reader, File file, boolean verbose)
             throws IOException, StoreException {
         LOGGER.fine("Building quadtree spatial index with depth " +  max + " for file " + file.getAbsolutePath());
@@ -401,6 +443,19 @@ class ShapeFileIndexer implements FileWriter {
         max = i;
     }
 
+    /**
+     * Sets the type of spatial index to build, either {@link ShpFileType#QIX} (the default) or
+     * {@link ShpFileType#HRX}
+     * 
+     * @param indexType
+     */
+    public void setIndexType(ShpFileType indexType) {
+        if (indexType != ShpFileType.QIX && indexType != ShpFileType.HRX) {
+            throw new IllegalArgumentException("Unsupported spatial index type " + indexType);
+        }
+        this.indexType = indexType;
+    }
+
     /**
      * DOCUMENT ME!
      * 
@@ -33,6 +33,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 
 import org.geotools.data.DataSourceException;
@@ -113,6 +114,17 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
 
     boolean fidIndexed = true;
 
+    ExecutorService readExecutor;
+
+    int readShards = Runtime.getRuntime().availableProcessors();
+
+    boolean parallelReadOrdered = true;
+
+    /**
+     * The minimum number of records each shard must contain for a parallel read to be attempted
+     */
+    int minShardSize = 10000;
+
     IndexManager indexManager;
 
     ShapefileSetManager shpManager;
@@ -195,6 +207,51 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
         this.indexed = indexed;
     }
 
+    public ExecutorService getReadExecutor() {
+        return readExecutor;
+    }
+
+    /**
+     * When set, full scans of large shapefiles will be split in shards, by record ranges, each one
+     * decoded on its own thread of the provided executor. The executor is not managed by the
+     * store, it's the caller responsibility to shut it down. Set to null (the default) to disable
+     * parallel reads.
+     * 
+     * @param readExecutor
+     */
+    public void setReadExecutor(ExecutorService readExecutor) {
+        this.readExecutor = readExecutor;
+    }
+
+    public int getReadShards() {
+        return readShards;
+    }
+
+    /**
+     * Sets the maximum number of shards a parallel read is split into, defaults to the number of
+     * available processors. Reads never use more shards than the threads of the read executor.
+     * 
+     * @param readShards
+     */
+    public void setReadShards(int readShards) {
+        this.readShards = readShards;
+    }
+
+    public boolean isParallelReadOrdered() {
+        return parallelReadOrdered;
+    }
+
+    /**
+     * When true (default) parallel reads return the features in the same order as a sequential
+     * one, when false they are returned as soon as they are decoded, which is faster when the
+     * order does not matter (e.g., when computing aggregates)
+     * 
+     * @param parallelReadOrdered
+     */
+    public void setParallelReadOrdered(boolean parallelReadOrdered) {
+        this.parallelReadOrdered = parallelReadOrdered;
+    }
+
     public SimpleFeatureType getSchema() throws IOException {
         return getSchema(getTypeName());
     }
@@ -401,6 +458,9 @@ public class ShapefileDataStore extends ContentDataStore implements FileDataStor
     @Override
     public void dispose() {
         super.dispose();
+        if (indexManager != null) {
+            indexManager.dispose();
+        }
         if (shpFiles != null) {
             shpFiles.dispose();
             shpFiles = null;
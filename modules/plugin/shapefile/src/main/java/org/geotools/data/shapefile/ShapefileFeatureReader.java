@@ -132,6 +132,20 @@ class ShapefileFeatureReader implements FeatureReader<SimpleFeatureType, SimpleF
                     }
                 }
             }
+            
+            // if we are reading a subset of the dbf fields, skip the others while reading 
+            int[] fields = new int[dbfindexes.length];
+            int fieldCount = 0;
+            for (int idx : dbfindexes) {
+                if (idx != -1) {
+                    fields[fieldCount++] = idx;
+                }
+            }
+            if (fieldCount < head.getNumFields()) {
+                int[] selected = new int[fieldCount];
+                System.arraycopy(fields, 0, selected, 0, fieldCount);
+                dbf.setFieldsToRead(selected);
+            }
         }
     }
 
@@ -28,6 +28,8 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,6 +43,7 @@ import org.geotools.data.Query;
 import org.geotools.data.ReTypeFeatureReader;
 import org.geotools.data.shapefile.dbf.DbaseFileHeader;
 import org.geotools.data.shapefile.dbf.DbaseFileReader;
+import org.geotools.data.shapefile.dbf.IndexedDbaseFileReader;
 import org.geotools.data.shapefile.fid.IndexedFidReader;
 import org.geotools.data.shapefile.files.FileReader;
 import org.geotools.data.shapefile.files.ShpFiles;
@@ -362,22 +365,49 @@ class ShapefileFeatureSource extends ContentFeatureSource {
 
         // setup the feature readers
         ShapefileSetManager shpManager = getDataStore().shpManager;
-        ShapefileReader shapeReader = shpManager.openShapeReader(geometryFactory, goodRecs != null);
-        DbaseFileReader dbfReader = null;
+        boolean readDbf = true;
         List<AttributeDescriptor> attributes = readSchema.getAttributeDescriptors();
         if (attributes.size() < 1
                 || (attributes.size() == 1 && readSchema.getGeometryDescriptor() != null)) {
             LOGGER.fine("The DBF file won't be opened since no attributes will be read from it");
-        } else {
-            dbfReader = shpManager.openDbfReader(goodRecs != null);
+            readDbf = false;
+        }
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = null;
+        if (goodRecs == null && fidReader == null) {
+            reader = getParallelReader(readSchema, geometryFactory, readDbf, filter, bbox, q);
+        }
+        if (reader == null) {
+            ShapefileReader shapeReader = shpManager.openShapeReader(geometryFactory,
+                    goodRecs != null);
+            DbaseFileReader dbfReader = null;
+            if (readDbf) {
+                dbfReader = shpManager.openDbfReader(goodRecs != null);
+            }
+            ShapefileFeatureReader shpReader;
+            if (goodRecs != null) {
+                shpReader = new IndexedShapefileFeatureReader(readSchema, shapeReader, dbfReader,
+                        fidReader, goodRecs);
+            } else {
+                shpReader = new ShapefileFeatureReader(readSchema, shapeReader, dbfReader,
+                        fidReader);
+            }
+            configureReader(shpReader, shapeReader, filter, bbox, q);
+            reader = shpReader;
         }
-        ShapefileFeatureReader reader;
-        if (goodRecs != null) {
-            reader = new IndexedShapefileFeatureReader(readSchema, shapeReader, dbfReader, fidReader, 
-                    goodRecs);
+
+        // do the retyping
+        if(!FeatureTypes.equals(readSchema, resultSchema)) {
+           return new ReTypeFeatureReader(reader, resultSchema);
         } else {
-            reader = new ShapefileFeatureReader(readSchema, shapeReader, dbfReader, fidReader);
+            return reader;
         }
+    }
+
+    /**
+     * Sets up the filter, the target bbox and the generalization hints on the reader
+     */
+    void configureReader(ShapefileFeatureReader reader, ShapefileReader shapeReader,
+            Filter filter, Envelope bbox, Query q) {
         if (filter != null && !Filter.INCLUDE.equals(filter)) {
             reader.setFilter(filter);
         }
@@ -402,13 +432,86 @@ class ShapefileFeatureSource extends ContentFeatureSource {
             }
 
         }
+    }
 
-        // do the retyping
-        if(!FeatureTypes.equals(readSchema, resultSchema)) {
-           return new ReTypeFeatureReader(reader, resultSchema);
-        } else {
-            return reader;
+    /**
+     * Splits a full scan in shards by record ranges, to be decoded in parallel by the store read
+     * executor. Returns null if parallel reading is disabled or not applicable (no .shx file, not
+     * enough records, or a screenmap that would be shared among threads)
+     */
+    FeatureReader<SimpleFeatureType, SimpleFeature> getParallelReader(
+            final SimpleFeatureType readSchema, final GeometryFactory geometryFactory,
+            final boolean readDbf, final Filter filter, final Envelope bbox, final Query q)
+            throws IOException {
+        ShapefileDataStore ds = getDataStore();
+        ExecutorService executor = ds.getReadExecutor();
+        if (executor == null || ds.getReadShards() < 2) {
+            return null;
+        }
+        if (q != null && q.getHints() != null && q.getHints().get(Hints.SCREENMAP) != null) {
+            return null;
         }
+
+        final ShapefileSetManager shpManager = ds.shpManager;
+        IndexFile shx = shpManager.openIndexFile();
+        if (shx == null) {
+            return null;
+        }
+        int count;
+        try {
+            count = shx.getRecordCount();
+        } finally {
+            shx.close();
+        }
+        // no more shards than the executor can decode at once, a shard waiting for a thread
+        // would only delay the ones after it
+        int numShards = Math.min(ds.getReadShards(),
+                ParallelShapefileFeatureReader.getParallelism(executor, ds.getReadShards()));
+        numShards = Math.min(numShards, count / Math.max(1, ds.minShardSize));
+        if (numShards < 2) {
+            return null;
+        }
+
+        // the shard readers are opened in the shard threads, as the file locks are thread bound
+        List<Callable<ShapefileFeatureReader>> readers = new ArrayList<Callable<ShapefileFeatureReader>>();
+        for (int i = 0; i < numShards; i++) {
+            final int start = (int) ((long) count * i / numShards);
+            final int end = (int) ((long) count * (i + 1) / numShards);
+            readers.add(new Callable<ShapefileFeatureReader>() {
+
+                @Override
+                public ShapefileFeatureReader call() throws Exception {
+                    ShapefileReader shapeReader = null;
+                    IndexedDbaseFileReader dbfReader = null;
+                    IndexFile shardShx = null;
+                    try {
+                        shapeReader = shpManager.openShapeReader(geometryFactory, true);
+                        if (readDbf) {
+                            dbfReader = (IndexedDbaseFileReader) shpManager.openDbfReader(true);
+                        }
+                        shardShx = shpManager.openIndexFile();
+                        ShapefileRangeFeatureReader reader = new ShapefileRangeFeatureReader(
+                                readSchema, shapeReader, dbfReader, shardShx, start, end);
+                        configureReader(reader, shapeReader, filter, bbox, q);
+                        return reader;
+                    } catch (IOException e) {
+                        if (shapeReader != null) {
+                            shapeReader.close();
+                        }
+                        if (dbfReader != null) {
+                            dbfReader.close();
+                        }
+                        if (shardShx != null) {
+                            shardShx.close();
+                        }
+                        throw e;
+                    }
+                }
+            });
+        }
+
+        return new ParallelShapefileFeatureReader(readSchema, readers, executor,
+                ds.isParallelReadOrdered());
     }
 
     SimpleFeatureType getResultSchema(Query q) {
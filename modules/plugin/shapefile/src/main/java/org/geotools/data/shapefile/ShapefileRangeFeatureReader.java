@@ -0,0 +1,98 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import java.io.IOException;
+
+import org.geotools.data.shapefile.dbf.DbaseFileReader.Row;
+import org.geotools.data.shapefile.dbf.IndexedDbaseFileReader;
+import org.geotools.data.shapefile.shp.IndexFile;
+import org.geotools.data.shapefile.shp.ShapefileReader;
+import org.geotools.data.shapefile.shp.ShapefileReader.Record;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * A shapefile feature reader that only reads a contiguous range of records, locating them with
+ * the .shx file. Used to split a full scan in shards that can be decoded in parallel.
+ */
+class ShapefileRangeFeatureReader extends ShapefileFeatureReader {
+
+    IndexFile shx;
+
+    int current;
+
+    int end;
+
+    /**
+     * Builds a reader for the records between start (included) and end (excluded), zero based
+     *
+     * @param schema The schema to read
+     * @param shp The shapefile reader, opened for random access
+     * @param dbf The dbf reader, opened for random access, or null if no attributes are read
+     * @param shx The .shx file, will be closed along with this reader
+     */
+    public ShapefileRangeFeatureReader(SimpleFeatureType schema, ShapefileReader shp,
+            IndexedDbaseFileReader dbf, IndexFile shx, int start, int end) throws IOException {
+        super(schema, shp, dbf, null);
+        this.shx = shx;
+        this.current = start;
+        this.end = end;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        while (nextFeature == null && current < end) {
+            int recno = current++;
+            shp.goTo(shx.getOffsetInBytes(recno));
+            Record record = shp.nextRecord();
+
+            Geometry geometry = getGeometry(record);
+            if (geometry == SKIP) {
+                continue;
+            }
+
+            Row row;
+            if (dbf != null) {
+                ((IndexedDbaseFileReader) dbf).goTo(recno + 1);
+                row = dbf.readRow();
+                if (row.isDeleted()) {
+                    continue;
+                }
+            } else {
+                row = null;
+            }
+
+            nextFeature = buildFeature(record.number, geometry, row, record.envelope());
+        }
+
+        return nextFeature != null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (shx != null) {
+                shx.close();
+                shx = null;
+            }
+        }
+    }
+}
@@ -76,6 +76,7 @@ public class DbaseFileReader implements FileReader {
         boolean deleted;
         
         public Object read(final int column) throws IOException {
+            checkFieldRead(column);
             final int offset = fieldOffsets[column];
             return readObject(offset, column);
         }
@@ -83,6 +84,9 @@ public class DbaseFileReader implements FileReader {
         public String toString() {
             final StringBuffer ret = new StringBuffer("DBF Row - ");
             for (int i = 0; i < header.getNumFields(); i++) {
+                if (fieldsRead != null && !fieldsRead[i]) {
+                    continue;
+                }
                 ret.append(header.getFieldName(i)).append(": \"");
                 try {
                     ret.append(this.read(i));
@@ -113,6 +117,17 @@ public class DbaseFileReader implements FileReader {
     
     int[] fieldOffsets;
 
+    /**
+     * The fields that will be read from the records, or null if all of them are
+     */
+    boolean[] fieldsRead;
+
+    /**
+     * Start and length of the contiguous byte ranges to be copied out of each record when only a
+     * subset of the fields is read, or null if all of them are
+     */
+    int[] fieldRanges;
+
     int cnt = 1;
 
     Row row;
@@ -265,6 +280,59 @@ public class DbaseFileReader implements FileReader {
         }
     }
 
+    /**
+     * Restricts the fields read from each record to the specified ones. The bytes of the other
+     * fields are skipped by offset and never copied out of the (eventually memory mapped) buffer,
+     * trying to read them will result in an {@link IllegalArgumentException}, while
+     * {@link #readEntry(Object[])} will return null for them.
+     * 
+     * @param fields The zero based indexes of the fields to be read, or null to read all fields
+     */
+    public void setFieldsToRead(int[] fields) {
+        if (fields == null) {
+            fieldsRead = null;
+            fieldRanges = null;
+            return;
+        }
+        
+        final int numFields = header.getNumFields();
+        boolean[] selected = new boolean[numFields];
+        for (int field : fields) {
+            if (field < 0 || field >= numFields) {
+                throw new IllegalArgumentException("Invalid field index " + field
+                        + ", the dbf has " + numFields + " fields");
+            }
+            selected[field] = true;
+        }
+        
+        // merge adjacent fields in a single range
+        int[] ranges = new int[numFields * 2];
+        int rangeCount = 0;
+        for (int i = 0; i < numFields; i++) {
+            if (selected[i]) {
+                if (rangeCount > 0
+                        && ranges[rangeCount - 2] + ranges[rangeCount - 1] == fieldOffsets[i]) {
+                    ranges[rangeCount - 1] += fieldLengths[i];
+                } else {
+                    ranges[rangeCount++] = fieldOffsets[i];
+                    ranges[rangeCount++] = fieldLengths[i];
+                }
+            }
+        }
+        int[] trimmed = new int[rangeCount];
+        System.arraycopy(ranges, 0, trimmed, 0, rangeCount);
+        
+        this.fieldsRead = selected;
+        this.fieldRanges = trimmed;
+    }
+    
+    void checkFieldRead(int field) {
+        if (fieldsRead != null && !fieldsRead[field]) {
+            throw new IllegalArgumentException("Field " + field
+                    + " is not among the ones selected for reading");
+        }
+    }
+
     /**
      * Get the header from this file. The header is read upon instantiation.
      * 
@@ -381,7 +449,11 @@ public class DbaseFileReader implements FileReader {
         final int numFields = header.getNumFields();
 
         for (int j = 0; j < numFields; j++) {
-            entry[j + offset] = readObject(fieldOffsets[j], j);
+            if (fieldsRead == null || fieldsRead[j]) {
+                entry[j + offset] = readObject(fieldOffsets[j], j);
+            } else {
+                entry[j + offset] = null;
+            }
         }
 
         return entry;
@@ -397,6 +469,7 @@ public class DbaseFileReader implements FileReader {
      */
     public Object readField(final int fieldNum)
             throws IOException {
+        checkFieldRead(fieldNum);
         return readObject(fieldOffsets[fieldNum], fieldNum);
     }
 
@@ -424,12 +497,22 @@ public class DbaseFileReader implements FileReader {
             bufferCheck();
 
             // read the deleted flag
+            final int recordStart = buffer.position();
             final char deleted = (char) buffer.get();
             row.deleted = deleted == '*';
 
-            buffer.limit(buffer.position() + header.getRecordLength() - 1);
-            buffer.get(bytes); // SK: There is a side-effect here!!!
-            buffer.limit(buffer.capacity());
+            if (fieldRanges == null) {
+                buffer.limit(buffer.position() + header.getRecordLength() - 1);
+                buffer.get(bytes); // SK: There is a side-effect here!!!
+                buffer.limit(buffer.capacity());
+            } else {
+                // copy only the selected fields, at their usual offsets
+                for (int i = 0; i < fieldRanges.length; i += 2) {
+                    buffer.position(recordStart + 1 + fieldRanges[i]);
+                    buffer.get(bytes, fieldRanges[i], fieldRanges[i + 1]);
+                }
+                buffer.position(recordStart + header.getRecordLength());
+            }
 
             foundRecord = true;
         }
@@ -549,8 +632,14 @@ public class DbaseFileReader implements FileReader {
                 if (bytes[fieldOffset] == '*') {
                     break;
                 } else {
-                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     Class clazz = header.getFieldClass(fieldNum);
+                    if (clazz == Integer.class || clazz == Long.class) {
+                        object = parseIntegral(bytes, fieldOffset, fieldLen, clazz == Integer.class);
+                        if (object != null) {
+                            break;
+                        }
+                    }
+                    final String string = fastParse(bytes,fieldOffset,fieldLen).trim();
                     if (clazz == Integer.class) {
                         try {
                             object = Integer.parseInt(string);
@@ -575,6 +664,10 @@ public class DbaseFileReader implements FileReader {
             case 'f':
             case 'F': 
                 if (bytes[fieldOffset] != '*') {
+                    object = parseDouble(bytes, fieldOffset, fieldLen);
+                    if (object != null) {
+                        break;
+                    }
                     try {
                         object = Double.parseDouble(fastParse(bytes,fieldOffset,fieldLen));
                     } catch (final NumberFormatException e) {
@@ -592,6 +685,118 @@ public class DbaseFileReader implements FileReader {
         return object;
     }
     
+    /**
+     * Parses an integral number straight from the record bytes, without building an intermediate
+     * String. Returns null if the content is not a plain (eventually signed and space padded)
+     * integral number, the caller should then fall back on the String based parsing.
+     * 
+     * @param preferInteger If true an Integer will be returned when the value fits one, a Long
+     *        otherwise
+     */
+    static Object parseIntegral(final byte[] bytes, final int fieldOffset, final int fieldLen,
+            final boolean preferInteger) {
+        int i = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        // same as String.trim()
+        while (i < end && (bytes[i] & 0xFF) <= ' ') {
+            i++;
+        }
+        while (end > i && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return null;
+        }
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        // 18 digits always fit in a long
+        final int digits = end - i;
+        if (digits == 0 || digits > 18) {
+            return null;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            final int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            value = value * 10 + digit;
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (preferInteger && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return Integer.valueOf((int) value);
+        } else {
+            return Long.valueOf(value);
+        }
+    }
+
+    /**
+     * Powers of ten that can be exactly represented as doubles
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+            1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Parses a decimal number straight from the record bytes, without building an intermediate
+     * String. Only handles the common case of numbers with at most 15 significant digits and no
+     * exponent, where a single division between two exactly representable doubles returns the
+     * correctly rounded result, same as {@link Double#parseDouble(String)}. Returns null in all
+     * other cases, the caller should then fall back on the String based parsing.
+     */
+    static Double parseDouble(final byte[] bytes, final int fieldOffset, final int fieldLen) {
+        int i = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        while (i < end && (bytes[i] & 0xFF) <= ' ') {
+            i++;
+        }
+        while (end > i && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        if (i == end) {
+            return null;
+        }
+        boolean negative = false;
+        if (bytes[i] == '-' || bytes[i] == '+') {
+            negative = bytes[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            final byte b = bytes[i];
+            if (b == '.') {
+                if (decimals >= 0) {
+                    return null;
+                }
+                decimals = 0;
+            } else {
+                final int digit = b - '0';
+                if (digit < 0 || digit > 9) {
+                    return null;
+                }
+                mantissa = mantissa * 10 + digit;
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            }
+        }
+        if (digits == 0 || digits > 15 || decimals >= POWERS_OF_TEN.length) {
+            return null;
+        }
+        double value = mantissa;
+        if (decimals > 0) {
+            value = value / POWERS_OF_TEN[decimals];
+        }
+        return negative ? -value : value;
+    }
+
     /**
      * Performs a faster byte[] to String conversion under the assumption the content
      * is represented with one byte per char 
@@ -58,7 +58,12 @@ public enum ShpFileType {
     /**
      * the .shp.xml file, it contains the metadata about the shapefile
      */
-    SHP_XML("shp.xml");
+    SHP_XML("shp.xml"),
+    /**
+     * the .hrx file, A packed Hilbert R-tree spatial index of the shapefile. It is an alternative
+     * to the .qix file that stays balanced on skewed data
+     */
+    HRX("hrx");
 
     public final String extension;
     public final String extensionWithPeriod;
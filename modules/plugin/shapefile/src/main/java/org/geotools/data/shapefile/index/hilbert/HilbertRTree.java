@@ -0,0 +1,284 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.geotools.data.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.DataDefinition;
+import org.geotools.data.shapefile.index.quadtree.StoreException;
+import org.geotools.resources.NIOUtilities;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Read only access to a packed Hilbert R-tree written by {@link HilbertRTreeBuilder}. The nodes are
+ * accessed directly from the (usually memory mapped) file buffer, nothing but the header is
+ * decoded up front.
+ * <p>
+ * Searches return the matching records sorted by record number, so that the .shp file is scanned
+ * forward only.
+ */
+public class HilbertRTree {
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final DataDefinition DATA_DEFINITION = new DataDefinition("US-ASCII");
+    static {
+        DATA_DEFINITION.addField(Integer.class);
+        DATA_DEFINITION.addField(Long.class);
+    };
+
+    ByteBuffer buffer;
+
+    boolean memoryMapped;
+
+    int nodeSize;
+
+    int numItems;
+
+    int[] levelEnds;
+
+    int boxesStart;
+
+    int indexesStart;
+
+    int offsetsStart;
+
+    Envelope bounds;
+
+    /**
+     * Opens the tree stored in the specified file
+     *
+     * @param file The .hrx file
+     * @param memoryMapped If true the file will be memory mapped, otherwise it will be loaded in
+     *        memory
+     * @throws StoreException
+     */
+    public HilbertRTree(File file, boolean memoryMapped) throws StoreException {
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            if (memoryMapped) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) != -1)
+                    ;
+                buffer.flip();
+            }
+            this.memoryMapped = memoryMapped;
+            buffer.order(BYTE_ORDER);
+            readHeader();
+        } catch (IOException e) {
+            close();
+            throw new StoreException("Could not open the packed Hilbert R-tree " + file, e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private void readHeader() throws StoreException {
+        if (buffer.limit() < headerSize(0)) {
+            throw new StoreException("Packed Hilbert R-tree file is too short");
+        }
+        byte[] signature = new byte[HilbertRTreeBuilder.SIGNATURE.length];
+        buffer.get(signature);
+        if (!Arrays.equals(signature, HilbertRTreeBuilder.SIGNATURE)) {
+            throw new StoreException("Not a packed Hilbert R-tree file");
+        }
+        byte version = buffer.get();
+        if (version != HilbertRTreeBuilder.VERSION) {
+            throw new StoreException("Unsupported packed Hilbert R-tree version " + version);
+        }
+        nodeSize = buffer.getInt();
+        numItems = buffer.getInt();
+        int numLevels = buffer.getInt();
+        levelEnds = new int[numLevels];
+        for (int i = 0; i < numLevels; i++) {
+            levelEnds[i] = buffer.getInt();
+        }
+        int numNodes = numLevels > 0 ? levelEnds[numLevels - 1] : 0;
+        boxesStart = headerSize(numLevels);
+        indexesStart = boxesStart + numNodes * 16;
+        offsetsStart = indexesStart + numNodes * 4;
+        if (buffer.limit() < offsetsStart + numItems * 4L) {
+            throw new StoreException("Packed Hilbert R-tree file is truncated");
+        }
+
+        if (numNodes > 0) {
+            int root = (numNodes - 1) * 4;
+            bounds = new Envelope(box(root), box(root + 2), box(root + 1), box(root + 3));
+        } else {
+            bounds = new Envelope();
+        }
+    }
+
+    static int headerSize(int numLevels) {
+        return 16 + numLevels * 4;
+    }
+
+    /**
+     * The bounds of all the records in the tree
+     */
+    public Envelope getBounds() {
+        return new Envelope(bounds);
+    }
+
+    /**
+     * The number of records in the tree
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * Returns the records whose envelope intersects the specified bounds. The iterator values are
+     * the 1-based record number and the record offset in bytes in the .shp file.
+     *
+     * @param bbox
+     * @throws StoreException
+     */
+    public synchronized CloseableIterator<Data> search(Envelope bbox) throws StoreException {
+        if (buffer == null) {
+            throw new StoreException("The packed Hilbert R-tree has already been closed");
+        }
+
+        int[] records = new int[64];
+        int count = 0;
+        int numLevels = levelEnds.length;
+        if (numLevels > 0 && intersects(levelEnds[numLevels - 1] - 1, bbox)) {
+            // depth first visit, each stack entry is a node position and its level
+            int[] stack = new int[numLevels * nodeSize * 2];
+            int top = 0;
+            stack[top++] = levelEnds[numLevels - 1] - 1;
+            stack[top++] = numLevels - 1;
+            while (top > 0) {
+                int level = stack[--top];
+                int node = stack[--top];
+                int first = buffer.getInt(indexesStart + node * 4);
+                int end = Math.min(first + nodeSize, levelEnds[level - 1]);
+                for (int child = first; child < end; child++) {
+                    if (!intersects(child, bbox)) {
+                        continue;
+                    }
+                    if (level == 1) {
+                        if (count == records.length) {
+                            records = Arrays.copyOf(records, count * 2);
+                        }
+                        records[count++] = buffer.getInt(indexesStart + child * 4);
+                    } else {
+                        stack[top++] = child;
+                        stack[top++] = level - 1;
+                    }
+                }
+            }
+        }
+
+        // sort to get a forward only scan of the .shp file, then resolve the offsets so that
+        // the iterator does not need to access the buffer anymore
+        Arrays.sort(records, 0, count);
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = buffer.getInt(offsetsStart + records[i] * 4);
+        }
+
+        return new SearchIterator(records, offsets, count);
+    }
+
+    private boolean intersects(int node, Envelope bbox) {
+        int base = boxesStart + node * 16;
+        return !(buffer.getFloat(base) > bbox.getMaxX() || buffer.getFloat(base + 8) < bbox.getMinX()
+                || buffer.getFloat(base + 4) > bbox.getMaxY() || buffer.getFloat(base + 12) < bbox
+                .getMinY());
+    }
+
+    private float box(int ordinate) {
+        return buffer.getFloat(boxesStart + ordinate * 4);
+    }
+
+    /**
+     * Releases the file buffer. Searches are not possible anymore after this call.
+     */
+    public synchronized void close() {
+        if (buffer != null && memoryMapped) {
+            NIOUtilities.clean(buffer, true);
+        }
+        buffer = null;
+    }
+
+    static class SearchIterator implements CloseableIterator<Data> {
+        int[] records;
+
+        int[] offsets;
+
+        int count;
+
+        int idx = 0;
+
+        Data data = new Data(DATA_DEFINITION);
+
+        SearchIterator(int[] records, int[] offsets, int count) {
+            this.records = records;
+            this.offsets = offsets;
+            this.count = count;
+        }
+
+        public boolean hasNext() {
+            return idx < count;
+        }
+
+        public Data next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            try {
+                data.clear();
+                data.addValue(records[idx] + 1);
+                data.addValue((long) offsets[idx]);
+                idx++;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return data;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void close() throws IOException {
+            idx = count;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.geotools.data.shapefile.index.quadtree.StoreException;
+
+/**
+ * Builds a static, packed Hilbert R-tree out of the record envelopes of a shapefile and writes it
+ * to disk in the format read by {@link HilbertRTree}.
+ * <p>
+ * The records are sorted along the Hilbert curve of their envelope centers and then packed
+ * bottom-up into completely filled nodes, so the resulting tree is balanced regardless of the data
+ * distribution. Envelopes are stored as floats, rounded outwards so that no match can be lost.
+ * <p>
+ * The file layout (little endian) is:
+ * <ul>
+ * <li>the "SHR" signature and a version byte</li>
+ * <li>node size, number of items and number of levels (ints)</li>
+ * <li>the end position of each level (ints), leaves first</li>
+ * <li>the node boxes as minx, miny, maxx, maxy (floats), leaves first, root last</li>
+ * <li>the node indexes (ints): record numbers for the leaves, the position of the first child
+ * for the other nodes</li>
+ * <li>the .shp offset in bytes of each record (ints), by record number</li>
+ * </ul>
+ */
+public class HilbertRTreeBuilder {
+
+    static final byte[] SIGNATURE = { 'S', 'H', 'R' };
+
+    static final byte VERSION = 1;
+
+    /**
+     * The default number of children per node
+     */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    static final int HILBERT_MAX = (1 << 16) - 1;
+
+    int nodeSize;
+
+    int numItems;
+
+    float[] boxes;
+
+    int[] offsets;
+
+    /**
+     * Creates a builder for the specified number of records
+     *
+     * @param expectedItems The number of records, used to size the internal arrays
+     * @param nodeSize The number of children per node
+     */
+    public HilbertRTreeBuilder(int expectedItems, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("The node size must be at least 2, was " + nodeSize);
+        }
+        this.nodeSize = nodeSize;
+        int capacity = Math.max(expectedItems, 16);
+        this.boxes = new float[capacity * 4];
+        this.offsets = new int[capacity];
+    }
+
+    /**
+     * Adds the next record. Records must be added in the order they appear in the shapefile, the
+     * first one being record number zero.
+     *
+     * @param offset The record offset in bytes in the .shp file
+     */
+    public void add(int offset, double minX, double maxX, double minY, double maxY) {
+        if (numItems == offsets.length) {
+            int newSize = offsets.length * 3 / 2;
+            boxes = Arrays.copyOf(boxes, newSize * 4);
+            offsets = Arrays.copyOf(offsets, newSize);
+        }
+        int base = numItems * 4;
+        boxes[base] = floorFloat(minX);
+        boxes[base + 1] = floorFloat(minY);
+        boxes[base + 2] = ceilFloat(maxX);
+        boxes[base + 3] = ceilFloat(maxY);
+        offsets[numItems] = offset;
+        numItems++;
+    }
+
+    /**
+     * Returns the number of records added so far
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * Packs the tree and writes it to the specified file
+     *
+     * @param file
+     * @throws StoreException
+     */
+    public void write(File file) throws StoreException {
+        // compute the level structure
+        int[] levelEnds = computeLevelEnds(numItems, nodeSize);
+        int numNodes = levelEnds.length > 0 ? levelEnds[levelEnds.length - 1] : 0;
+        long size = HilbertRTree.headerSize(levelEnds.length) + numNodes * 20L + numItems * 4L;
+        if (size > Integer.MAX_VALUE) {
+            throw new StoreException("Too many records for a packed Hilbert R-tree: " + numItems);
+        }
+
+        float[] nodeBoxes = new float[numNodes * 4];
+        int[] nodeIndexes = new int[numNodes];
+        if (numItems > 0) {
+            sortLeaves(nodeBoxes, nodeIndexes);
+            packLevels(levelEnds, nodeBoxes, nodeIndexes);
+        }
+
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(file);
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            buf.order(HilbertRTree.BYTE_ORDER);
+
+            buf.put(SIGNATURE);
+            buf.put(VERSION);
+            buf.putInt(nodeSize);
+            buf.putInt(numItems);
+            buf.putInt(levelEnds.length);
+            for (int levelEnd : levelEnds) {
+                buf = ensureRemaining(channel, buf, 4);
+                buf.putInt(levelEnd);
+            }
+            for (float f : nodeBoxes) {
+                buf = ensureRemaining(channel, buf, 4);
+                buf.putFloat(f);
+            }
+            for (int index : nodeIndexes) {
+                buf = ensureRemaining(channel, buf, 4);
+                buf.putInt(index);
+            }
+            for (int i = 0; i < numItems; i++) {
+                buf = ensureRemaining(channel, buf, 4);
+                buf.putInt(offsets[i]);
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException e) {
+            throw new StoreException(e);
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buf, int bytes)
+            throws IOException {
+        if (buf.remaining() < bytes) {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+        return buf;
+    }
+
+    /**
+     * Sorts the records along the Hilbert curve and copies them in the leaf level
+     */
+    void sortLeaves(float[] nodeBoxes, int[] nodeIndexes) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numItems; i++) {
+            int base = i * 4;
+            minX = Math.min(minX, boxes[base]);
+            minY = Math.min(minY, boxes[base + 1]);
+            maxX = Math.max(maxX, boxes[base + 2]);
+            maxY = Math.max(maxY, boxes[base + 3]);
+        }
+        double scaleX = maxX > minX ? HILBERT_MAX / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? HILBERT_MAX / (maxY - minY) : 0;
+
+        // hilbert value in the upper 32 bits, record number in the lower ones
+        long[] keys = new long[numItems];
+        for (int i = 0; i < numItems; i++) {
+            int base = i * 4;
+            double cx = (boxes[base] + (double) boxes[base + 2]) / 2;
+            double cy = (boxes[base + 1] + (double) boxes[base + 3]) / 2;
+            int hx = (int) Math.floor(scaleX * (cx - minX));
+            int hy = (int) Math.floor(scaleY * (cy - minY));
+            long h = hilbert(clamp(hx), clamp(hy)) & 0xFFFFFFFFL;
+            keys[i] = (h << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        for (int i = 0; i < numItems; i++) {
+            int recno = (int) keys[i];
+            System.arraycopy(boxes, recno * 4, nodeBoxes, i * 4, 4);
+            nodeIndexes[i] = recno;
+        }
+    }
+
+    /**
+     * Builds the parent levels, each node grouping up to nodeSize consecutive children
+     */
+    void packLevels(int[] levelEnds, float[] nodeBoxes, int[] nodeIndexes) {
+        int pos = 0;
+        int parent = levelEnds[0];
+        for (int level = 0; level < levelEnds.length - 1; level++) {
+            int end = levelEnds[level];
+            while (pos < end) {
+                int first = pos;
+                float nMinX = Float.POSITIVE_INFINITY;
+                float nMinY = Float.POSITIVE_INFINITY;
+                float nMaxX = Float.NEGATIVE_INFINITY;
+                float nMaxY = Float.NEGATIVE_INFINITY;
+                for (int i = 0; i < nodeSize && pos < end; i++, pos++) {
+                    int base = pos * 4;
+                    nMinX = Math.min(nMinX, nodeBoxes[base]);
+                    nMinY = Math.min(nMinY, nodeBoxes[base + 1]);
+                    nMaxX = Math.max(nMaxX, nodeBoxes[base + 2]);
+                    nMaxY = Math.max(nMaxY, nodeBoxes[base + 3]);
+                }
+                int base = parent * 4;
+                nodeBoxes[base] = nMinX;
+                nodeBoxes[base + 1] = nMinY;
+                nodeBoxes[base + 2] = nMaxX;
+                nodeBoxes[base + 3] = nMaxY;
+                nodeIndexes[parent] = first;
+                parent++;
+            }
+        }
+    }
+
+    /**
+     * Returns the end position of each level, leaves first, root last
+     */
+    static int[] computeLevelEnds(int numItems, int nodeSize) {
+        if (numItems == 0) {
+            return new int[0];
+        }
+        int levels = 1;
+        for (int n = numItems; n > 1; n = (n + nodeSize - 1) / nodeSize) {
+            levels++;
+        }
+        if (numItems == 1) {
+            // a single leaf still gets its own root
+            levels = 2;
+        }
+        int[] levelEnds = new int[levels];
+        int n = numItems;
+        int total = n;
+        levelEnds[0] = total;
+        for (int i = 1; i < levels; i++) {
+            n = (n + nodeSize - 1) / nodeSize;
+            total += n;
+            levelEnds[i] = total;
+        }
+        return levelEnds;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > HILBERT_MAX ? HILBERT_MAX : value);
+    }
+
+    /**
+     * Rounds down to the closest float
+     */
+    static float floorFloat(double value) {
+        float f = (float) value;
+        if (f > value) {
+            f = Math.nextAfter(f, Double.NEGATIVE_INFINITY);
+        }
+        return f;
+    }
+
+    /**
+     * Rounds up to the closest float
+     */
+    static float ceilFloat(double value) {
+        float f = (float) value;
+        if (f < value) {
+            f = Math.nextUp(f);
+        }
+        return f;
+    }
+
+    /**
+     * Computes the position of a point on a 16 bits per side Hilbert curve, see "Fast Hilbert
+     * curve generation, sorting, and range queries" by rawrunprotected
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >> 1);
+        int B = (a >> 1) ^ a;
+        int C = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int D = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >> 2)) ^ (b & (b >> 2)));
+        B = ((a & (b >> 2)) ^ (b & ((a ^ b) >> 2)));
+        C ^= ((a & (c >> 2)) ^ (b & (d >> 2)));
+        D ^= ((b & (c >> 2)) ^ ((a ^ b) & (d >> 2)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        A = ((a & (a >> 4)) ^ (b & (b >> 4)));
+        B = ((a & (b >> 4)) ^ (b & ((a ^ b) >> 4)));
+        C ^= ((a & (c >> 4)) ^ (b & (d >> 4)));
+        D ^= ((b & (c >> 4)) ^ ((a ^ b) & (d >> 4)));
+
+        a = A;
+        b = B;
+        c = C;
+        d = D;
+        C ^= ((a & (c >> 8)) ^ (b & (d >> 8)));
+        D ^= ((b & (c >> 8)) ^ ((a ^ b) & (d >> 8)));
+
+        a = C ^ (C >> 1);
+        b = D ^ (D >> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
@@ -18,6 +18,7 @@ package org.geotools.data.shapefile;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -107,6 +108,36 @@ public class DbaseFileTest extends TestCaseSupport {
         dbf2.close();
     }
 
+    @Test
+    public void testFieldSelection() throws Exception {
+        int[] fields = new int[] { 0, 4, 5, 100 };
+        Object[] attrs = new Object[dbf.getHeader().getNumFields()];
+        DbaseFileReader dbf2 = new DbaseFileReader(shpFiles, true,
+                ShapefileDataStore.DEFAULT_STRING_CHARSET);
+        dbf2.setFieldsToRead(fields);
+        Object[] selected = new Object[dbf2.getHeader().getNumFields()];
+        while (dbf.hasNext()) {
+            dbf.readEntry(attrs);
+            dbf2.readEntry(selected);
+            for (int i = 0; i < attrs.length; i++) {
+                if (i == 0 || i == 4 || i == 5 || i == 100) {
+                    assertEquals(attrs[i], selected[i]);
+                } else {
+                    assertNull(selected[i]);
+                }
+            }
+        }
+        dbf2.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadUnselectedField() throws Exception {
+        dbf.setFieldsToRead(new int[] { 1, 2 });
+        DbaseFileReader.Row row = dbf.readRow();
+        assertNotNull(row.read(1));
+        row.read(0);
+    }
+
     @Test
     public void testHeader() throws Exception {
         DbaseFileHeader header = new DbaseFileHeader();
@@ -0,0 +1,230 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
+
+public class ParallelShapefileReadTest extends TestCaseSupport {
+
+    ExecutorService executor;
+
+    ShapefileDataStore sequential;
+
+    ShapefileDataStore parallel;
+
+    @Before
+    public void setUp() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        executor = Executors.newFixedThreadPool(3);
+
+        sequential = new ShapefileDataStore(url);
+        sequential.setIndexed(false);
+
+        parallel = new ShapefileDataStore(url);
+        parallel.setIndexed(false);
+        parallel.setReadExecutor(executor);
+        parallel.setReadShards(4);
+        parallel.minShardSize = 1;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sequential.dispose();
+        parallel.dispose();
+        executor.shutdown();
+        super.tearDown();
+    }
+
+    @Test
+    public void testUsesParallelReader() throws Exception {
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = parallel.getFeatureReader(
+                new Query(parallel.getTypeNames()[0]), Transaction.AUTO_COMMIT);
+        try {
+            assertTrue(reader instanceof ParallelShapefileFeatureReader);
+            // 4 shards requested, but the executor has only 3 threads
+            assertEquals(3, ((ParallelShapefileFeatureReader) reader).shards.size());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testExecutorParallelism() throws Exception {
+        assertEquals(3, ParallelShapefileFeatureReader.getParallelism(executor, 8));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ExecutorService cached = Executors.newCachedThreadPool();
+        try {
+            assertEquals(2, ParallelShapefileFeatureReader.getParallelism(pool, 8));
+            assertEquals(Integer.MAX_VALUE,
+                    ParallelShapefileFeatureReader.getParallelism(cached, 8));
+        } finally {
+            pool.shutdown();
+            cached.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrderedWithBusyExecutor() throws Exception {
+        // all the executor threads are busy, the shards are read by the consumer
+        final CountDownLatch latch = new CountDownLatch(1);
+        for (int i = 0; i < 3; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        try {
+            Query q = new Query(sequential.getTypeNames()[0]);
+            assertFeaturesEqual(read(sequential, q), read(parallel, q));
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void testOrderedFullScan() throws Exception {
+        Query q = new Query(sequential.getTypeNames()[0]);
+        List<SimpleFeature> expected = read(sequential, q);
+        List<SimpleFeature> actual = read(parallel, q);
+        assertEquals(49, expected.size());
+        assertFeaturesEqual(expected, actual);
+    }
+
+    @Test
+    public void testUnorderedFullScan() throws Exception {
+        parallel.setParallelReadOrdered(false);
+        Query q = new Query(sequential.getTypeNames()[0]);
+        Map<String, SimpleFeature> expected = byId(read(sequential, q));
+        Map<String, SimpleFeature> actual = byId(read(parallel, q));
+        assertEquals(expected.keySet(), actual.keySet());
+        for (String id : expected.keySet()) {
+            assertEquals(expected.get(id).getAttributes(), actual.get(id).getAttributes());
+        }
+    }
+
+    @Test
+    public void testFilterAndProperties() throws Exception {
+        String typeName = sequential.getTypeNames()[0];
+        ReferencedEnvelope bounds = sequential.getFeatureSource().getBounds();
+        Filter bbox = ff.bbox(ff.property("the_geom"), bounds.getMinX(), bounds.getMinY(),
+                bounds.centre().x, bounds.centre().y, null);
+        Filter filter = ff.and(bbox, ff.greater(ff.property("PERSONS"), ff.literal(1000000)));
+        Query q = new Query(typeName, filter, new String[] { "STATE_NAME", "the_geom" });
+
+        List<SimpleFeature> expected = read(sequential, q);
+        List<SimpleFeature> actual = read(parallel, q);
+        assertTrue(expected.size() > 0);
+        assertFeaturesEqual(expected, actual);
+    }
+
+    @Test
+    public void testEarlyClose() throws Exception {
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = parallel.getFeatureReader(
+                new Query(parallel.getTypeNames()[0]), Transaction.AUTO_COMMIT);
+        assertTrue(reader.hasNext());
+        reader.next();
+        reader.close();
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testCloseWaitsForRunningShards() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean released = new AtomicBoolean();
+        List<Callable<ShapefileFeatureReader>> openers;
+        openers = new ArrayList<Callable<ShapefileFeatureReader>>();
+        openers.add(new Callable<ShapefileFeatureReader>() {
+            @Override
+            public ShapefileFeatureReader call() throws Exception {
+                started.countDown();
+                // a slow shard, still holding its files when the reader gets closed
+                Thread.sleep(500);
+                released.set(true);
+                throw new IOException("Shard stopped");
+            }
+        });
+        ParallelShapefileFeatureReader reader = new ParallelShapefileFeatureReader(null,
+                openers, executor, true);
+        started.await();
+        reader.close();
+        assertTrue(released.get());
+    }
+
+    private List<SimpleFeature> read(ShapefileDataStore store, Query q) throws Exception {
+        List<SimpleFeature> result = new ArrayList<SimpleFeature>();
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader = store.getFeatureReader(q,
+                Transaction.AUTO_COMMIT);
+        try {
+            while (reader.hasNext()) {
+                result.add(reader.next());
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private Map<String, SimpleFeature> byId(List<SimpleFeature> features) {
+        Map<String, SimpleFeature> result = new HashMap<String, SimpleFeature>();
+        for (SimpleFeature feature : features) {
+            result.put(feature.getID(), feature);
+        }
+        return result;
+    }
+
+    private void assertFeaturesEqual(List<SimpleFeature> expected, List<SimpleFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SimpleFeature ef = expected.get(i);
+            SimpleFeature af = actual.get(i);
+            assertEquals(ef.getID(), af.getID());
+            assertEquals(ef.getAttributes(), af.getAttributes());
+        }
+    }
+}
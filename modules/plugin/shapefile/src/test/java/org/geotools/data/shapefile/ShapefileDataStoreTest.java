@@ -54,6 +54,7 @@ import org.geotools.data.FeatureWriter;
 import org.geotools.data.Query;
 import org.geotools.data.Transaction;
 import org.geotools.data.shapefile.files.ShpFileType;
+import org.geotools.data.shapefile.files.ShpFiles;
 import org.geotools.data.simple.SimpleFeatureCollection;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.simple.SimpleFeatureSource;
@@ -69,6 +70,7 @@ import org.geotools.feature.type.BasicFeatureTypes;
 import org.geotools.filter.IllegalFilterException;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.util.NullProgressListener;
 import org.junit.After;
 import org.junit.Test;
 import org.opengis.feature.Feature;
@@ -382,6 +384,44 @@ public class ShapefileDataStoreTest extends TestCaseSupport {
         ds2.dispose();
     }
     
+    @Test
+    public void testCreateAndReadHRX() throws Exception {
+        File shpFile = copyShapefiles(STATE_POP);
+        URL url = shpFile.toURI().toURL();
+        File hrx = sibling(shpFile, "hrx");
+        File qix = sibling(shpFile, "qix");
+        hrx.deleteOnExit();
+
+        // build the packed Hilbert R-tree, the store will then pick it over the quadtree
+        ShpFiles shpFiles = new ShpFiles(url);
+        ShapeFileIndexer indexer = new ShapeFileIndexer();
+        indexer.setShapeFileName(shpFiles);
+        indexer.setIndexType(ShpFileType.HRX);
+        int indexed = indexer.index(false, new NullProgressListener());
+        shpFiles.dispose();
+        assertTrue(indexed > 0);
+        assertTrue(hrx.exists());
+
+        ShapefileDataStore ds = new ShapefileDataStore(url);
+        ShapefileDataStore ds2 = new ShapefileDataStore(url);
+        ds2.setIndexed(false);
+
+        Envelope bounds = ds.getFeatureSource().getBounds(Query.ALL);
+        CoordinateReferenceSystem crs = ds.getSchema().getCoordinateReferenceSystem();
+        double dx = bounds.getWidth() / 4;
+        double dy = bounds.getHeight() / 4;
+        Envelope quarter = new Envelope(bounds.getMinX() + dx, bounds.getMaxX() - dx,
+                bounds.getMinY() + dy, bounds.getMaxY() - dy);
+        performQueryComparison(ds, ds2, new ReferencedEnvelope(quarter, crs));
+        Envelope corner = new Envelope(bounds.getMinX(), bounds.getMinX() + dx,
+                bounds.getMinY(), bounds.getMinY() + dy);
+        performQueryComparison(ds, ds2, new ReferencedEnvelope(corner, crs));
+
+        assertFalse(qix.exists());
+        ds.dispose();
+        ds2.dispose();
+    }
+
     @Test
     public void testRemove() throws Exception {
         File shpFile = copyShapefiles(STATE_POP);
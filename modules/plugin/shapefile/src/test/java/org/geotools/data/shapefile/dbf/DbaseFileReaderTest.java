@@ -0,0 +1,61 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.dbf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Tests the String-free number parsing in {@link DbaseFileReader}
+ */
+public class DbaseFileReaderTest {
+
+    @Test
+    public void testNumberParsing() throws Exception {
+        assertEquals(Integer.valueOf(12), parseIntegral("  12 ", true));
+        assertEquals(Integer.valueOf(-12), parseIntegral("-12", true));
+        assertEquals(Long.valueOf(12), parseIntegral("+12", false));
+        assertEquals(Long.valueOf(3000000000L), parseIntegral("3000000000", true));
+        assertNull(parseIntegral("   ", true));
+        assertNull(parseIntegral("1.5", true));
+        assertNull(parseIntegral("1234567890123456789", false));
+
+        String[] doubles = new String[] { "143986.61", " -0.5", "1.", ".25", "0.1", "-0",
+                "123456789012345", "0.00000000000001", "12.3456789" };
+        for (String d : doubles) {
+            byte[] bytes = d.getBytes("ISO-8859-1");
+            Double parsed = DbaseFileReader.parseDouble(bytes, 0, bytes.length);
+            assertEquals(d, Double.valueOf(d), parsed);
+        }
+        assertNull(parseDouble("1e5"));
+        assertNull(parseDouble("1.2.3"));
+        assertNull(parseDouble("1234567890123456"));
+        assertNull(parseDouble(" - "));
+    }
+
+    private Object parseIntegral(String value, boolean preferInteger) throws Exception {
+        byte[] bytes = value.getBytes("ISO-8859-1");
+        return DbaseFileReader.parseIntegral(bytes, 0, bytes.length, preferInteger);
+    }
+
+    private Double parseDouble(String value) throws Exception {
+        byte[] bytes = value.getBytes("ISO-8859-1");
+        return DbaseFileReader.parseDouble(bytes, 0, bytes.length);
+    }
+}
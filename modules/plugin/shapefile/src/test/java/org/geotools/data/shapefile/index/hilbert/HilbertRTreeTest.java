@@ -0,0 +1,164 @@
+/*
+ *    GeoTools - The Open Source Java GIS Toolkit
+ *    http://geotools.org
+ *
+ *    (C) 2015, Open Source Geospatial Foundation (OSGeo)
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Lesser General Public
+ *    License as published by the Free Software Foundation;
+ *    version 2.1 of the License.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Lesser General Public License for more details.
+ */
+package org.geotools.data.shapefile.index.hilbert;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.geotools.data.CloseableIterator;
+import org.geotools.data.shapefile.index.Data;
+import org.geotools.data.shapefile.index.quadtree.StoreException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class HilbertRTreeTest {
+
+    File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("hilbert", ".hrx");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void testLevels() {
+        assertArrayEquals(new int[0], HilbertRTreeBuilder.computeLevelEnds(0, 16));
+        assertArrayEquals(new int[] { 1, 2 }, HilbertRTreeBuilder.computeLevelEnds(1, 16));
+        assertArrayEquals(new int[] { 16, 17 }, HilbertRTreeBuilder.computeLevelEnds(16, 16));
+        assertArrayEquals(new int[] { 20, 22, 23 }, HilbertRTreeBuilder.computeLevelEnds(20, 16));
+    }
+
+    @Test
+    public void testOutwardRounding() {
+        double value = 0.1;
+        assertTrue(HilbertRTreeBuilder.floorFloat(value) <= value);
+        assertTrue(HilbertRTreeBuilder.ceilFloat(value) >= value);
+        assertEquals(1f, HilbertRTreeBuilder.floorFloat(1), 0f);
+        assertEquals(1f, HilbertRTreeBuilder.ceilFloat(1), 0f);
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() throws Exception {
+        Random random = new Random(0);
+        List<Envelope> envelopes = new ArrayList<Envelope>();
+        HilbertRTreeBuilder builder = new HilbertRTreeBuilder(10, 8);
+        for (int i = 0; i < 5000; i++) {
+            // skewed data, most of it clustered in a corner
+            double x = i % 10 == 0 ? random.nextDouble() * 1000 : random.nextDouble() * 10;
+            double y = i % 10 == 0 ? random.nextDouble() * 1000 : random.nextDouble() * 10;
+            Envelope env = new Envelope(x, x + random.nextDouble(), y, y + random.nextDouble());
+            envelopes.add(env);
+            builder.add(100 + i * 8, env.getMinX(), env.getMaxX(), env.getMinY(), env.getMaxY());
+        }
+        builder.write(file);
+
+        for (boolean memoryMapped : new boolean[] { true, false }) {
+            HilbertRTree tree = new HilbertRTree(file, memoryMapped);
+            try {
+                assertEquals(5000, tree.getNumItems());
+                for (int i = 0; i < 100; i++) {
+                    double x = random.nextDouble() * 1000;
+                    double y = random.nextDouble() * 1000;
+                    double size = random.nextDouble() * 50;
+                    assertSearch(tree, envelopes, new Envelope(x, x + size, y, y + size));
+                }
+                assertSearch(tree, envelopes, new Envelope(2, 3, 2, 3));
+                assertSearch(tree, envelopes, new Envelope(-10, -5, -10, -5));
+            } finally {
+                tree.close();
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        new HilbertRTreeBuilder(0, 16).write(file);
+        HilbertRTree tree = new HilbertRTree(file, true);
+        try {
+            assertTrue(tree.getBounds().isNull());
+            CloseableIterator<Data> it = tree.search(new Envelope(0, 1, 0, 1));
+            assertFalse(it.hasNext());
+            it.close();
+        } finally {
+            tree.close();
+        }
+    }
+
+    @Test
+    public void testSearchAfterClose() throws Exception {
+        HilbertRTreeBuilder builder = new HilbertRTreeBuilder(1, 16);
+        builder.add(100, 0, 1, 0, 1);
+        builder.write(file);
+        HilbertRTree tree = new HilbertRTree(file, true);
+        assertEquals(new Envelope(0, 1, 0, 1), tree.getBounds());
+        tree.close();
+        try {
+            tree.search(new Envelope(0, 1, 0, 1));
+            fail("Search should have failed on a closed tree");
+        } catch (StoreException e) {
+            // fine
+        }
+    }
+
+    private void assertSearch(HilbertRTree tree, List<Envelope> envelopes, Envelope bbox)
+            throws Exception {
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < envelopes.size(); i++) {
+            if (envelopes.get(i).intersects(bbox)) {
+                expected.add(i);
+            }
+        }
+
+        CloseableIterator<Data> it = tree.search(bbox);
+        List<Integer> actual = new ArrayList<Integer>();
+        try {
+            while (it.hasNext()) {
+                Data data = it.next();
+                int recno = (Integer) data.getValue(0) - 1;
+                assertEquals(100 + recno * 8, ((Long) data.getValue(1)).longValue());
+                actual.add(recno);
+            }
+        } finally {
+            it.close();
+        }
+
+        // float rounding can only add false positives, never lose matches
+        assertTrue(actual.containsAll(expected));
+        for (Integer recno : actual) {
+            Envelope env = envelopes.get(recno);
+            Envelope grown = new Envelope(env);
+            grown.expandBy(1e-4);
+            assertTrue(grown.intersects(bbox));
+        }
+        // results are sorted by record number
+        for (int i = 1; i < actual.size(); i++) {
+            assertTrue(actual.get(i - 1) < actual.get(i));
+        }
+    }
+}